@@ -0,0 +1,305 @@
+package org.ericghara;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Executes a stream of commands against one scanned {@link MovieCollection}, one command per line:
+ * <pre>
+ *     open   P          the absolute path of folder P
+ *     list   P          one line per sub-folder and file of folder P: type, tab, name
+ *     stat   P          type, size in bytes and last modified time of file P, or number of entries of folder P
+ *     move   P1 P2      move a file or folder
+ *     copy   P1 P2      copy a file or folder
+ *     delete P [-r]     delete a file, an empty folder, or with -r a folder and everything below it
+ * </pre>
+ * Paths are relative to the root unless absolute, and may be double quoted, but must lie under the root.  Blank lines and lines starting with
+ * {@code #} are skipped.  Output is written in command order as soon as it is available, and a failed command
+ * prints {@code error <line number>: <reason>} without stopping the batch.
+ * <p>
+ * With a parallelism above one, runs of consecutive read-only commands ({@code open}, {@code list}, {@code stat})
+ * execute concurrently.  Commands which modify the collection wait for every earlier command to finish and run
+ * alone, so the result is the same as a serial execution.
+ */
+class BatchCli {
+
+    private static final Set<String> READ_ONLY = Set.of("open", "list", "stat");
+
+    private final MovieCollection collection;
+    private final int parallelism;
+    private int errors;
+
+    /**
+     * @param collection collection to execute commands against
+     * @param parallelism maximum number of read-only commands executing at once
+     */
+    BatchCli(MovieCollection collection, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Received a non-positive parallelism: " + parallelism);
+        }
+        this.collection = Objects.requireNonNull(collection, "Received a null collection.");
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @param commands one command per line
+     * @param out receives the output of every command
+     * @return the number of commands which failed
+     * @throws IOException if the commands could not be read
+     */
+    int run(Reader commands, PrintStream out) throws IOException {
+        errors = 0;
+        ExecutorService executor = parallelism == 1 ? null : Executors.newFixedThreadPool(parallelism, (r) -> {
+            Thread t = new Thread(r, "batch-cli");
+            t.setDaemon(true);
+            return t;
+        });
+        Deque<Future<String>> pending = new ArrayDeque<>(); // read-only commands, in input order
+        try (BufferedReader reader = new BufferedReader(commands) ) {
+            int lineNumber = 0;
+            for (String line = reader.readLine(); Objects.nonNull(line); line = reader.readLine() ) {
+                lineNumber++;
+                String trimmed = line.strip();
+                if (trimmed.isEmpty() || trimmed.startsWith("#") ) {
+                    continue;
+                }
+                int number = lineNumber;
+                if (Objects.nonNull(executor) && READ_ONLY.contains(trimmed.split("\\s+", 2)[0]) ) {
+                    pending.addLast(executor.submit( () -> execute(trimmed, number) ) );
+                    while (pending.size() > parallelism || (!pending.isEmpty() && pending.peekFirst().isDone() ) ) {
+                        out.print(await(pending.removeFirst() ) );
+                    }
+                }
+                else {
+                    while (!pending.isEmpty() ) {
+                        out.print(await(pending.removeFirst() ) );
+                    }
+                    out.print(execute(trimmed, number) );
+                }
+                out.flush();
+            }
+            while (!pending.isEmpty() ) {
+                out.print(await(pending.removeFirst() ) );
+            }
+            out.flush();
+        } finally {
+            if (Objects.nonNull(executor) ) {
+                executor.shutdownNow();
+            }
+        }
+        return errors;
+    }
+
+    private static String await(Future<String> result) {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a command.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A command failed unexpectedly.", e.getCause() );
+        }
+    }
+
+    /**
+     * Splits a command into whitespace separated tokens, keeping double quoted tokens whole.
+     * @param line a command
+     * @return its tokens, without quotes
+     */
+    static List<String> tokenize(String line) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder token = new StringBuilder();
+        boolean quoted = false;
+        boolean inToken = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+                inToken = true;
+            }
+            else if (Character.isWhitespace(c) && !quoted) {
+                if (inToken) {
+                    tokens.add(token.toString() );
+                    token.setLength(0);
+                    inToken = false;
+                }
+            }
+            else {
+                token.append(c);
+                inToken = true;
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unbalanced quotes: " + line);
+        }
+        if (inToken) {
+            tokens.add(token.toString() );
+        }
+        return tokens;
+    }
+
+    private String execute(String line, int lineNumber) {
+        try {
+            return command(tokenize(line) );
+        } catch (RuntimeException e) { // any failure of a command is reported on its line, the batch carries on
+            synchronized (this) {
+                errors++;
+            }
+            String reason = e instanceof IllegalArgumentException ? e.getMessage() : e.toString();
+            return "error " + lineNumber + ": " + reason + System.lineSeparator();
+        }
+    }
+
+    private String command(List<String> tokens) {
+        String name = tokens.get(0);
+        switch (name) {
+            case "open":
+                expectArguments(tokens, 1);
+                return collection.openFolder(path(tokens.get(1) ), "Not a folder in the collection: " + tokens.get(1) )
+                        .getFolderPath() + System.lineSeparator();
+            case "list":
+                expectArguments(tokens, 1);
+                return list(path(tokens.get(1) ) );
+            case "stat":
+                expectArguments(tokens, 1);
+                return stat(path(tokens.get(1) ) );
+            case "move":
+                expectArguments(tokens, 2);
+                if (collection.containsFolder(path(tokens.get(1) ) ) ) {
+                    collection.moveFolder(path(tokens.get(1) ), path(tokens.get(2) ) );
+                }
+                else {
+                    collection.moveFile(path(tokens.get(1) ), path(tokens.get(2) ) );
+                }
+                return "";
+            case "copy":
+                expectArguments(tokens, 2);
+                if (collection.containsFolder(path(tokens.get(1) ) ) ) {
+                    collection.copyFolder(path(tokens.get(1) ), path(tokens.get(2) ) );
+                }
+                else {
+                    collection.copyFile(path(tokens.get(1) ), path(tokens.get(2) ) );
+                }
+                return "";
+            case "delete":
+                return delete(tokens);
+            default:
+                throw new IllegalArgumentException("Unknown command: " + name);
+        }
+    }
+
+    private static void expectArguments(List<String> tokens, int count) {
+        if (tokens.size() != count + 1) {
+            throw new IllegalArgumentException(tokens.get(0) + " takes " + count + " argument" + (count == 1 ? "" : "s")
+                    + " but received " + (tokens.size() - 1) );
+        }
+    }
+
+    private Path path(String token) {
+        Path root = collection.getRootPath();
+        Path path = Path.of(token);
+        path = (path.isAbsolute() ? path : root.resolve(path) ).normalize();
+        if (!path.startsWith(root) ) {
+            throw new IllegalArgumentException("Not under the root " + root + ": " + token);
+        }
+        return path;
+    }
+
+    private String list(Path path) {
+        MovieFolder folder = collection.openFolder(path, "Not a folder in the collection: " + path);
+        StringBuilder sb = new StringBuilder();
+        for (FileType type : FileType.values() ) {
+            folder.getFilenames(type).stream().sorted().forEach( (f) ->
+                    sb.append(type).append('\t').append(f).append(System.lineSeparator() ) );
+        }
+        return sb.toString();
+    }
+
+    private String stat(Path path) {
+        if (collection.containsFolder(path) ) {
+            MovieFolder folder = collection.openFolder(path, "");
+            int entries = 0;
+            for (FileType type : FileType.values() ) {
+                entries += folder.getFilenames(type).size();
+            }
+            return FileType.Folder + "\t" + entries + System.lineSeparator();
+        }
+        MovieFolder folder = collection.openFolder(path.getParent(), "Not in the collection: " + path);
+        FileType type = folder.getFileType(path.getFileName() ).orElseThrow( () ->
+                new IllegalArgumentException("Not in the collection: " + path) );
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class,
+                    LinkOption.NOFOLLOW_LINKS);
+            return type + "\t" + attributes.size() + "\t" + attributes.lastModifiedTime() + System.lineSeparator();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Could not read the attributes of: " + path, e);
+        }
+    }
+
+    private String delete(List<String> tokens) {
+        boolean recursive = tokens.size() == 3 && tokens.get(2).equals("-r");
+        if (!recursive) {
+            expectArguments(tokens, 1);
+        }
+        Path path = path(tokens.get(1) );
+        if (!collection.containsFolder(path) ) {
+            collection.deleteFile(path);
+            return "";
+        }
+        if (!recursive) {
+            collection.deleteFolder(path);
+            return "";
+        }
+        TreeDeleter.Report report = collection.deleteFolderRecursive(path);
+        if (!report.isComplete() ) {
+            throw new IllegalArgumentException("Could not delete " + report.getFailures().size() + " entries, first: "
+                    + report.getFailures().keySet().iterator().next() );
+        }
+        return "";
+    }
+
+    /**
+     * Usage: {@code batch <root> [commands file] [--parallel N]}, commands are read from stdin without a file.
+     * @param args see usage
+     * @return the number of commands which failed
+     * @throws IOException if the commands could not be read
+     */
+    static int batch(String[] args) throws IOException {
+        if (args.length < 1) {
+            throw new IllegalArgumentException("Usage: batch <root> [commands file] [--parallel N]");
+        }
+        Path file = null;
+        int parallelism = 1;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--parallel") && i + 1 < args.length) {
+                parallelism = Integer.parseInt(args[++i]);
+            }
+            else {
+                file = Path.of(args[i]);
+            }
+        }
+        try (MovieCollection collection = new MovieCollection(args[0]);
+             Reader commands = Objects.isNull(file) ? new InputStreamReader(System.in, StandardCharsets.UTF_8)
+                                                    : Files.newBufferedReader(file) ) {
+            return new BatchCli(collection, parallelism).run(commands, System.out);
+        }
+    }
+}
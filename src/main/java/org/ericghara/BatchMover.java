@@ -0,0 +1,229 @@
+package org.ericghara;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Moves many files or folders within a {@link MovieCollection} at once.
+ * <p>
+ * The filesystem moves of a batch are performed in parallel.  Each is first attempted as an atomic rename, which
+ * on the same filesystem is a single metadata operation.  When that is not possible files fall back to a verified
+ * {@link FileTransfer} and folders to a regular move.  Record updates are then applied serially, in batch order,
+ * for the moves which succeeded.  The moves of a batch must be independent: no source or destination may be below
+ * another move's source or destination.  Failures never interrupt a batch, they are collected in the returned {@link Report}.
+ */
+class BatchMover {
+
+    private static final Metrics.Timer BATCH_TIMER = Metrics.timer("io.batchMove");
+    private static final Metrics.Counter ATOMIC = Metrics.counter("io.batchMove.atomic");
+    private static final Metrics.Counter FAILURES = Metrics.counter("io.batchMove.failures");
+
+    private final MovieCollection collection;
+    private final int parallelism;
+
+    /**
+     * @param collection collection containing every source and destination
+     * @param parallelism maximum number of concurrent filesystem moves
+     */
+    BatchMover(MovieCollection collection, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Received a non-positive parallelism: " + parallelism);
+        }
+        this.collection = Objects.requireNonNull(collection, "Received a null collection.");
+        this.parallelism = parallelism;
+    }
+
+    BatchMover(MovieCollection collection) {
+        this(collection, Runtime.getRuntime().availableProcessors() );
+    }
+
+    /**
+     * @param moves independent moves to perform
+     * @return the moves performed and those which failed
+     */
+    Report move(List<Move> moves) {
+        long start = BATCH_TIMER.start();
+        Report report = new Report();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, (r) -> {
+            Thread t = new Thread(r, "batch-mover");
+            t.setDaemon(true);
+            return t;
+        });
+        List<Callable<Exception>> tasks = new ArrayList<>(moves.size() );
+        moves.forEach( (m) -> tasks.add( () -> {
+            try {
+                moveIO(m.source, m.destination, m.folder);
+                return null;
+            } catch (IOException e) {
+                return e;
+            }
+        }) );
+        List<Exception> results;
+        try {
+            results = invokeAll(executor, tasks);
+        } finally {
+            executor.shutdownNow();
+        }
+        for (int i = 0; i < moves.size(); i++) {
+            Move m = moves.get(i);
+            Exception failure = results.get(i);
+            if (Objects.isNull(failure) ) {
+                try {
+                    if (m.folder) {
+                        collection.recordFolderMove(m.source, m.destination);
+                    }
+                    else {
+                        collection.recordFileMove(m.source, m.destination);
+                    }
+                    report.moved.add(m);
+                    continue;
+                } catch (IllegalArgumentException e) {
+                    failure = e;
+                }
+            }
+            report.failures.put(m, failure);
+        }
+        FAILURES.add(report.failures.size() );
+        BATCH_TIMER.stop(start);
+        return report;
+    }
+
+    private static void moveIO(Path source, Path destination, boolean folder) throws IOException {
+        // an atomic rename silently replaces an existing destination on some platforms
+        if (Files.exists(destination, LinkOption.NOFOLLOW_LINKS) ) {
+            throw new FileAlreadyExistsException(destination.toString() );
+        }
+        try {
+            Files.move(source, destination, StandardCopyOption.ATOMIC_MOVE);
+            ATOMIC.increment();
+        } catch (AtomicMoveNotSupportedException e) {
+            if (folder) {
+                Files.move(source, destination, LinkOption.NOFOLLOW_LINKS);
+            }
+            else { // most likely another filesystem
+                FileTransfer.copyAndDelete(source, destination, FileTransfer.Verification.SIZE, (b) -> { } );
+            }
+        }
+    }
+
+    private static <T> List<T> invokeAll(ExecutorService executor, List<Callable<T>> tasks) {
+        List<T> results = new ArrayList<>(tasks.size() );
+        try {
+            for (Future<T> f : executor.invokeAll(tasks) ) {
+                results.add(f.get() );
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while moving.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("An unexpected error occurred while moving.", e.getCause() );
+        }
+        return results;
+    }
+
+    /**
+     * A single file or folder move.
+     */
+    static class Move {
+        private final Path source;
+        private final Path destination;
+        private final boolean folder;
+
+        private Move(Path source, Path destination, boolean folder) {
+            this.source = Objects.requireNonNull(source, "Received a null source.");
+            this.destination = Objects.requireNonNull(destination, "Received a null destination.");
+            this.folder = folder;
+        }
+
+        static Move file(Path source, Path destination) {
+            return new Move(source, destination, false);
+        }
+
+        static Move folder(Path source, Path destination) {
+            return new Move(source, destination, true);
+        }
+
+        Path getSource() {
+            return source;
+        }
+
+        Path getDestination() {
+            return destination;
+        }
+
+        boolean isFolder() {
+            return folder;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Move) ) {
+                return false;
+            }
+            Move move = (Move) o;
+            return folder == move.folder && source.equals(move.source) && destination.equals(move.destination);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(source, destination, folder);
+        }
+
+        @Override
+        public String toString() {
+            return (folder ? "folder " : "file ") + source + " -> " + destination;
+        }
+    }
+
+    /**
+     * The outcome of a batch of moves.
+     */
+    static class Report {
+        private final List<Move> moved = new ArrayList<>();
+        private final LinkedHashMap<Move, Exception> failures = new LinkedHashMap<>();
+
+        List<Move> getMoved() {
+            return Collections.unmodifiableList(moved);
+        }
+
+        /**
+         * @return moves which could not be performed, and why
+         */
+        Map<Move, Exception> getFailures() {
+            return Collections.unmodifiableMap(failures);
+        }
+
+        boolean isComplete() {
+            return failures.isEmpty();
+        }
+
+        void addAll(Report other) {
+            moved.addAll(other.moved);
+            failures.putAll(other.failures);
+        }
+
+        @Override
+        public String toString() {
+            return "BatchMover.Report{moved=" + moved.size() + ", failures=" + failures.size() + "}";
+        }
+    }
+}
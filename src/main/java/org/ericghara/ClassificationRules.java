@@ -0,0 +1,308 @@
+package org.ericghara;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.Collectors;
+
+/**
+ * Maps a filename and size to a {@link FileType} using an ordered list of rules, where the first matching rule wins.
+ * Rules are read from a config file with one rule per line and whitespace delimited columns:
+ * <pre>
+ * # Type        Extensions       Size(MB)   Name pattern (optional)
+ * PossiblyJunk  mkv,mp4          *          (?i).*\bsample\b.*
+ * Movie         mkv,mp4,avi      &gt;50
+ * Sub           srt,sub,ass      &lt;=50
+ * PossiblyJunk  *                *
+ * </pre>
+ * <ul>
+ *     <li>Type: any {@link FileType} other than {@code Folder}</li>
+ *     <li>Extensions: comma separated and case insensitive, or {@code *} for any file.  Names beginning with a
+ *     {@code .} are treated as having no extension</li>
+ *     <li>Size: in whole MB (bytes / 1,048,576 rounded down), one of {@code *}, {@code >N}, {@code >=N},
+ *     {@code <N}, {@code <=N} or an inclusive range {@code N-M}</li>
+ *     <li>Name pattern: a regular expression which must match the whole filename</li>
+ * </ul>
+ * A file matching no rule is {@link FileType#PossiblyJunk}.  The rules are compiled into a table per extension of
+ * size intervals, each holding the few rules which could decide it, so classification is a hash lookup and a
+ * binary search over the extension's size boundaries regardless of how many rules there are.  Instances are
+ * immutable and thread safe.
+ */
+class ClassificationRules {
+
+    private static final String DEFAULT_RULES = "default-rules.conf";
+    private static final long ONE_MB = 1_048_576L; // bytes per MB
+    private static final String ANY = "*";
+    private static final Pattern COLUMNS = Pattern.compile("\\s+");
+    private static final Pattern SIZE = Pattern.compile("^(\\*|(>=|<=|>|<)(\\d+)|(\\d+)-(\\d+))$");
+
+    private final HashMap<String, SizeTable> byExtension;
+    private final SizeTable anyExtension;
+    private final int numRules;
+
+    private ClassificationRules(List<Rule> rules) {
+        numRules = rules.size();
+        Set<String> extensions = new LinkedHashSet<>();
+        rules.forEach( (r) -> extensions.addAll(r.extensions) );
+        byExtension = new HashMap<>();
+        extensions.forEach( (ext) -> byExtension.put(ext, new SizeTable(rules, ext) ) );
+        anyExtension = new SizeTable(rules, null);
+    }
+
+    /**
+     * @return the built in rules, equivalent to the original hard-coded extension lists and 50 MB video threshold
+     */
+    static ClassificationRules defaults() {
+        return DefaultHolder.DEFAULTS;
+    }
+
+    /**
+     * @param config path to a rules file
+     * @return the compiled rules
+     * @throws IllegalArgumentException if the file cannot be read or contains an invalid rule
+     */
+    static ClassificationRules load(Path config) {
+        try {
+            return parse(Files.readAllLines(config, StandardCharsets.UTF_8), config.toString() );
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Couldn't read the rules file " + config + ".", e);
+        }
+    }
+
+    /**
+     * @param lines lines of a rules file
+     * @param source name of the rules' origin used in error messages
+     * @return the compiled rules
+     * @throws IllegalArgumentException if a line contains an invalid rule
+     */
+    static ClassificationRules parse(List<String> lines, String source) {
+        List<Rule> rules = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            String line = stripComment(lines.get(i) ).strip();
+            if (line.isEmpty() ) {
+                continue;
+            }
+            try {
+                rules.add(Rule.parse(line) );
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Couldn't parse line " + (i + 1) + " of " + source + ": "
+                        + e.getMessage(), e);
+            }
+        }
+        return new ClassificationRules(rules);
+    }
+
+    // a # starts a comment unless it is part of a name pattern, which may contain \# to match a literal #
+    private static String stripComment(String line) {
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) == '#' && (i == 0 || line.charAt(i - 1) != '\\') ) {
+                return line.substring(0, i);
+            }
+        }
+        return line;
+    }
+
+    /**
+     * @param filename the name of the file (may be an absolute or relative path, only the last element is used)
+     * @param sizeBytes size of the file
+     * @return the type decided by the first matching rule
+     */
+    FileType classify(Path filename, long sizeBytes) {
+        return classify(filename.getFileName().toString(), sizeBytes);
+    }
+
+    FileType classify(String filename, long sizeBytes) {
+        String ext = extension(filename);
+        SizeTable table = Objects.isNull(ext) ? anyExtension : byExtension.getOrDefault(ext, anyExtension);
+        return table.classify(filename, sizeBytes / ONE_MB);
+    }
+
+    int numRules() {
+        return numRules;
+    }
+
+    // lower case extension, or null if there is none.  Mirrors the original regex: ^[^\.].*\.(ext)$
+    static String extension(String filename) {
+        int dot = filename.lastIndexOf('.');
+        if (dot <= 0 || dot == filename.length() - 1 || filename.charAt(0) == '.') {
+            return null;
+        }
+        return filename.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * The rules applicable to a single extension, as the sorted lower bounds of size intervals and, for each
+     * interval, the rules which could decide it in priority order.  Each candidate list ends at the first rule without
+     * a name pattern, so it is almost always a single rule.
+     */
+    private static class SizeTable {
+        private final long[] lowerBounds;
+        private final Rule[][] candidates;
+
+        private SizeTable(List<Rule> rules, String ext) {
+            List<Rule> applicable = rules.stream()
+                                         .filter( (r) -> r.appliesTo(ext) )
+                                         .collect(Collectors.toList() );
+            TreeSet<Long> bounds = new TreeSet<>();
+            bounds.add(0L);
+            applicable.forEach( (r) -> {
+                bounds.add(r.minMB);
+                if (r.maxMB < Long.MAX_VALUE) {
+                    bounds.add(r.maxMB + 1);
+                }
+            });
+            lowerBounds = bounds.stream().mapToLong(Long::longValue).toArray();
+            candidates = new Rule[lowerBounds.length][];
+            for (int i = 0; i < lowerBounds.length; i++) {
+                long sizeMB = lowerBounds[i]; // every size in the interval matches the same rules
+                List<Rule> cell = new ArrayList<>();
+                for (Rule r : applicable) {
+                    if (r.containsSize(sizeMB) ) {
+                        cell.add(r);
+                        if (Objects.isNull(r.namePattern) ) {
+                            break;
+                        }
+                    }
+                }
+                candidates[i] = cell.toArray(new Rule[0]);
+            }
+        }
+
+        private FileType classify(String filename, long sizeMB) {
+            int i = Arrays.binarySearch(lowerBounds, sizeMB);
+            if (i < 0) {
+                i = -i - 2; // interval with the greatest lower bound <= sizeMB
+            }
+            for (Rule r : candidates[i]) {
+                if (r.matchesName(filename) ) {
+                    return r.type;
+                }
+            }
+            return FileType.PossiblyJunk;
+        }
+    }
+
+    private static class Rule {
+        private final FileType type;
+        private final Set<String> extensions; // empty for any extension
+        private final long minMB;
+        private final long maxMB;
+        private final Pattern namePattern;    // null for any name
+        private final ThreadLocal<Matcher> matcher;
+
+        private Rule(FileType type, Set<String> extensions, long minMB, long maxMB, Pattern namePattern) {
+            this.type = type;
+            this.extensions = extensions;
+            this.minMB = minMB;
+            this.maxMB = maxMB;
+            this.namePattern = namePattern;
+            matcher = Objects.isNull(namePattern) ? null : ThreadLocal.withInitial( () -> namePattern.matcher("") );
+        }
+
+        private static Rule parse(String line) {
+            String[] cols = COLUMNS.split(line, 4);
+            if (cols.length < 3) {
+                throw new IllegalArgumentException("expected at least 3 columns but found " + cols.length);
+            }
+            FileType type;
+            try {
+                type = FileType.valueOf(cols[0]);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("unknown file type " + cols[0]);
+            }
+            if (type == FileType.Folder) {
+                throw new IllegalArgumentException("files cannot be classified as a Folder");
+            }
+            Set<String> extensions = new LinkedHashSet<>();
+            if (!cols[1].equals(ANY) ) {
+                for (String ext : cols[1].split(",") ) {
+                    String e = ext.strip().toLowerCase(Locale.ROOT);
+                    if (e.startsWith(".") ) {
+                        e = e.substring(1);
+                    }
+                    if (e.isEmpty() ) {
+                        throw new IllegalArgumentException("empty extension in " + cols[1]);
+                    }
+                    extensions.add(e);
+                }
+            }
+            Matcher size = SIZE.matcher(cols[2]);
+            if (!size.matches() ) {
+                throw new IllegalArgumentException("invalid size " + cols[2]);
+            }
+            long min = 0;
+            long max = Long.MAX_VALUE;
+            if (Objects.nonNull(size.group(2) ) ) {
+                long n = Long.parseLong(size.group(3) );
+                switch (size.group(2) ) {
+                    case ">":  min = n + 1; break;
+                    case ">=": min = n;     break;
+                    case "<":  max = n - 1; break;
+                    default:   max = n;     break; // <=
+                }
+            }
+            else if (Objects.nonNull(size.group(4) ) ) {
+                min = Long.parseLong(size.group(4) );
+                max = Long.parseLong(size.group(5) );
+            }
+            if (max < min) {
+                throw new IllegalArgumentException("size range " + cols[2] + " is empty");
+            }
+            Pattern name = null;
+            if (cols.length == 4) {
+                try {
+                    name = Pattern.compile(cols[3].strip() );
+                } catch (PatternSyntaxException e) {
+                    throw new IllegalArgumentException("invalid name pattern " + cols[3]);
+                }
+            }
+            return new Rule(type, extensions, min, max, name);
+        }
+
+        // ext is null for files without an extension
+        private boolean appliesTo(String ext) {
+            return extensions.isEmpty() || (Objects.nonNull(ext) && extensions.contains(ext) );
+        }
+
+        private boolean containsSize(long sizeMB) {
+            return minMB <= sizeMB && sizeMB <= maxMB;
+        }
+
+        private boolean matchesName(String filename) {
+            return Objects.isNull(namePattern) || matcher.get().reset(filename).matches();
+        }
+    }
+
+    // Lazily loads the built in rules on first use
+    private static class DefaultHolder {
+        private static final ClassificationRules DEFAULTS = loadDefaults();
+
+        private static ClassificationRules loadDefaults() {
+            try (InputStream in = ClassificationRules.class.getResourceAsStream(DEFAULT_RULES) ) {
+                if (Objects.isNull(in) ) {
+                    throw new IllegalStateException("Couldn't locate the resource " + DEFAULT_RULES + ".");
+                }
+                BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8) );
+                return parse(reader.lines().collect(Collectors.toList() ), DEFAULT_RULES);
+            } catch (IOException e) {
+                throw new IllegalStateException("Couldn't read the resource " + DEFAULT_RULES + ".", e);
+            }
+        }
+    }
+}
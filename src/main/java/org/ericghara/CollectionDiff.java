@@ -0,0 +1,444 @@
+package org.ericghara;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * The differences between two states of a collection: two scans, or a {@link ColumnarReader snapshot} and a scan.
+ * Paths in the results are relative to the roots, so the two states may also be of different roots.  Sizes of a
+ * scanned collection are read from disk when its {@link Tree} is built, so to compare a collection with its own
+ * earlier state capture that state with {@link Tree#of(MovieCollection)} or a snapshot before it changes.
+ * <p>
+ * Each state is reduced to the sorted children of every folder, built in parallel, then each folder present in
+ * either state is compared by a merge of its two sorted child lists, also in parallel.  A name present only before
+ * is removed, only after is added, and a file in both whose size changed is resized.  Below a folder which was
+ * added or removed only the files are reported, the folder itself stands for its sub-folders.
+ * <p>
+ * Removed and added files are then paired up as moves: first by file key (the inode on most filesystems) and size
+ * when both states have a key, the size guarding against a deleted file's key being reused, then by name and size.
+ * Pairs by name and size are only made when the name and size are unique on both sides, so files are never paired
+ * by guesswork, and a file matching a removal by size alone stays an addition.  Finally a removed folder whose
+ * files all moved to the same relative places below one added folder is reported as a single folder move.
+ */
+final class CollectionDiff {
+
+    private static final Metrics.Timer DIFF_TIMER = Metrics.timer("diff.compare");
+
+    enum Kind {
+        ADDED, REMOVED, MOVED, RESIZED
+    }
+
+    private final List<Change> changes;
+
+    private CollectionDiff(List<Change> changes) {
+        this.changes = Collections.unmodifiableList(changes);
+    }
+
+    /**
+     * @param before a scan, for example of a mirror
+     * @param after another scan
+     * @return the changes from {@code before} to {@code after}
+     */
+    static CollectionDiff compare(MovieCollection before, MovieCollection after) {
+        return compare(Tree.of(before), Tree.of(after) );
+    }
+
+    /**
+     * @param before a snapshot written by {@link MovieCollection#exportColumnar}
+     * @param after the later scan
+     * @return the changes from {@code before} to {@code after}
+     */
+    static CollectionDiff compare(ColumnarReader before, MovieCollection after) {
+        return compare(Tree.of(before), Tree.of(after) );
+    }
+
+    static CollectionDiff compare(Tree before, Tree after) {
+        long start = DIFF_TIMER.start();
+        Set<Path> folders = new HashSet<>(before.folders.keySet() );
+        folders.addAll(after.folders.keySet() );
+        List<Change> changes = folders.parallelStream()
+                                      .flatMap( (f) -> merge(f, before.folders.get(f), after.folders.get(f) ).stream() )
+                                      .collect(Collectors.toList() );
+        changes = pairMoves(changes);
+        changes = collapseFolderMoves(changes);
+        changes.sort(Comparator.comparing(Change::getPath).thenComparing(Change::getKind) );
+        DIFF_TIMER.stop(start);
+        return new CollectionDiff(changes);
+    }
+
+    // merges the sorted children of one folder, either list is null if the folder is missing from that state
+    private static List<Change> merge(Path folder, List<Entry> before, List<Entry> after) {
+        List<Change> changes = new ArrayList<>();
+        boolean reportFolders = Objects.nonNull(before) && Objects.nonNull(after);
+        List<Entry> b = Objects.requireNonNullElse(before, List.of() );
+        List<Entry> a = Objects.requireNonNullElse(after, List.of() );
+        int i = 0;
+        int j = 0;
+        while (i < b.size() || j < a.size() ) {
+            int cmp = i == b.size() ? 1 : j == a.size() ? -1 : b.get(i).name.compareTo(a.get(j).name);
+            if (cmp < 0) {
+                removed(folder, b.get(i++), reportFolders, changes);
+            }
+            else if (cmp > 0) {
+                added(folder, a.get(j++), reportFolders, changes);
+            }
+            else {
+                Entry old = b.get(i++);
+                Entry now = a.get(j++);
+                if ( (old.type == FileType.Folder) != (now.type == FileType.Folder) ) {
+                    removed(folder, old, true, changes);
+                    added(folder, now, true, changes);
+                }
+                else if (old.type != FileType.Folder && old.size != now.size) {
+                    changes.add(new Change(Kind.RESIZED, null, folder.resolve(now.name), now.type, old.size,
+                            now.size, null) );
+                }
+            }
+        }
+        return changes;
+    }
+
+    private static void removed(Path folder, Entry e, boolean reportFolders, List<Change> changes) {
+        if (e.type != FileType.Folder || reportFolders) {
+            changes.add(new Change(Kind.REMOVED, null, folder.resolve(e.name), e.type, e.size, -1, e.fileKey) );
+        }
+    }
+
+    private static void added(Path folder, Entry e, boolean reportFolders, List<Change> changes) {
+        if (e.type != FileType.Folder || reportFolders) {
+            changes.add(new Change(Kind.ADDED, null, folder.resolve(e.name), e.type, -1, e.size, e.fileKey) );
+        }
+    }
+
+    private static List<Change> pairMoves(List<Change> changes) {
+        List<Change> removed = new ArrayList<>();
+        List<Change> added = new ArrayList<>();
+        List<Change> result = new ArrayList<>();
+        for (Change c : changes) {
+            if (c.type != FileType.Folder && c.kind == Kind.REMOVED) {
+                removed.add(c);
+            }
+            else if (c.type != FileType.Folder && c.kind == Kind.ADDED) {
+                added.add(c);
+            }
+            else {
+                result.add(c);
+            }
+        }
+        Set<Change> paired = new HashSet<>();
+        pair(removed, added, paired, result,
+                (c) -> Objects.isNull(c.fileKey) || Objects.isNull(c.size() ) ? null : List.of(c.fileKey, c.size() ),
+                false);
+        pair(removed, added, paired, result,
+                (c) -> Objects.isNull(c.size() ) ? null : List.of(c.path.getFileName(), c.size() ), true);
+        removed.stream().filter( (c) -> !paired.contains(c) ).forEach(result::add);
+        added.stream().filter( (c) -> !paired.contains(c) ).forEach(result::add);
+        return result;
+    }
+
+    // pairs unpaired removals and additions with equal keys, with unique keys only if required
+    private static void pair(List<Change> removed, List<Change> added, Set<Change> paired, List<Change> result,
+                             Function<Change, Object> key, boolean unique) {
+        Map<Object, List<Change>> byKey = new HashMap<>();
+        removed.stream().filter( (c) -> !paired.contains(c) && Objects.nonNull(key.apply(c) ) )
+               .forEach( (c) -> byKey.computeIfAbsent(key.apply(c), (k) -> new ArrayList<>() ).add(c) );
+        Map<Object, Long> addedCounts = added.stream()
+                                             .filter( (c) -> !paired.contains(c) && Objects.nonNull(key.apply(c) ) )
+                                             .collect(Collectors.groupingBy(key, Collectors.counting() ) );
+        for (Change a : added) {
+            Object k = paired.contains(a) ? null : key.apply(a);
+            List<Change> candidates = Objects.isNull(k) ? null : byKey.get(k);
+            if (Objects.isNull(candidates) || candidates.isEmpty()
+                    || (unique && (candidates.size() != 1 || addedCounts.get(k) != 1) ) ) {
+                continue;
+            }
+            Change r = candidates.remove(0);
+            paired.add(r);
+            paired.add(a);
+            result.add(new Change(Kind.MOVED, r.path, a.path, a.type, r.oldSize, a.newSize, null) );
+        }
+    }
+
+    private static List<Change> collapseFolderMoves(List<Change> changes) {
+        Map<Path, Change> removedFolders = new HashMap<>();
+        Map<Path, Change> addedFolders = new HashMap<>();
+        for (Change c : changes) {
+            if (c.type == FileType.Folder && c.kind == Kind.REMOVED) {
+                removedFolders.put(c.path, c);
+            }
+            else if (c.type == FileType.Folder && c.kind == Kind.ADDED) {
+                addedFolders.put(c.path, c);
+            }
+        }
+        if (removedFolders.isEmpty() || addedFolders.isEmpty() ) {
+            return changes;
+        }
+        // for each removed folder, the one added folder all its files moved into, or null if there is none
+        Map<Path, Path> targets = new LinkedHashMap<>();
+        Set<Path> blocked = new HashSet<>();
+        for (Change c : changes) {
+            Path removedRoot = topFolder(c.kind == Kind.MOVED || c.kind == Kind.REMOVED ? c.from() : null,
+                    removedFolders);
+            Path addedRoot = topFolder(c.kind == Kind.MOVED || c.kind == Kind.ADDED ? c.path : null, addedFolders);
+            if (c.kind == Kind.MOVED && Objects.nonNull(removedRoot) && Objects.nonNull(addedRoot)
+                    && removedRoot.relativize(c.from() ).equals(addedRoot.relativize(c.path) ) ) {
+                Path previous = targets.putIfAbsent(removedRoot, addedRoot);
+                if (Objects.nonNull(previous) && !previous.equals(addedRoot) ) {
+                    blocked.add(removedRoot);
+                }
+            }
+            else if (c.type != FileType.Folder) { // a file which didn't follow its folder
+                if (Objects.nonNull(removedRoot) ) {
+                    blocked.add(removedRoot);
+                }
+                if (Objects.nonNull(addedRoot) ) {
+                    blocked.add(addedRoot);
+                }
+            }
+        }
+        Map<Path, Path> moves = new HashMap<>();
+        Set<Path> claimed = new HashSet<>();
+        targets.forEach( (from, to) -> {
+            if (!blocked.contains(from) && !blocked.contains(to) && claimed.add(to) ) {
+                moves.put(from, to);
+            }
+        });
+        if (moves.isEmpty() ) {
+            return changes;
+        }
+        List<Change> result = new ArrayList<>();
+        for (Change c : changes) {
+            boolean collapsed = c.type == FileType.Folder
+                    ? (c.kind == Kind.REMOVED && moves.containsKey(c.path) )
+                      || (c.kind == Kind.ADDED && claimed.contains(c.path) && moves.containsValue(c.path) )
+                    : c.kind == Kind.MOVED && moves.containsKey(topFolder(c.from(), removedFolders) );
+            if (!collapsed) {
+                result.add(c);
+            }
+        }
+        moves.forEach( (from, to) -> result.add(new Change(Kind.MOVED, from, to, FileType.Folder, -1, -1, null) ) );
+        return result;
+    }
+
+    // the reported folder containing path, if any.  Only top-most added or removed folders are reported
+    private static Path topFolder(Path path, Map<Path, Change> folders) {
+        for (Path p = Objects.isNull(path) ? null : path.getParent(); Objects.nonNull(p); p = p.getParent() ) {
+            if (folders.containsKey(p) ) {
+                return p;
+            }
+        }
+        return null;
+    }
+
+    List<Change> getChanges() {
+        return changes;
+    }
+
+    List<Change> getChanges(Kind kind) {
+        return changes.stream().filter( (c) -> c.kind == kind ).collect(Collectors.toList() );
+    }
+
+    boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    /**
+     * @return one line per change, sorted by path
+     */
+    String report() {
+        StringBuilder sb = new StringBuilder();
+        changes.forEach( (c) -> sb.append(c).append(System.lineSeparator() ) );
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        Map<Kind, Long> counts = changes.stream().collect(Collectors.groupingBy(Change::getKind,
+                () -> new EnumMap<>(Kind.class), Collectors.counting() ) );
+        return "CollectionDiff" + counts;
+    }
+
+    /**
+     * One difference.  Paths are relative to the root.
+     */
+    static final class Change {
+        private final Kind kind;
+        private final Path from;
+        private final Path path;
+        private final FileType type;
+        private final long oldSize;
+        private final long newSize;
+        private final Object fileKey; // only used to pair moves
+
+        private Change(Kind kind, Path from, Path path, FileType type, long oldSize, long newSize, Object fileKey) {
+            this.kind = kind;
+            this.from = from;
+            this.path = path;
+            this.type = type;
+            this.oldSize = oldSize;
+            this.newSize = newSize;
+            this.fileKey = fileKey;
+        }
+
+        Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * @return the path after the change, or for {@link Kind#REMOVED} the path which was removed
+         */
+        Path getPath() {
+            return path;
+        }
+
+        /**
+         * @return for {@link Kind#MOVED} the path before the move, otherwise null
+         */
+        Path getFrom() {
+            return from;
+        }
+
+        private Path from() {
+            return kind == Kind.MOVED ? from : path;
+        }
+
+        FileType getType() {
+            return type;
+        }
+
+        /**
+         * @return size in bytes before the change, -1 for added entries and folders
+         */
+        long getOldSize() {
+            return oldSize;
+        }
+
+        /**
+         * @return size in bytes after the change, -1 for removed entries and folders
+         */
+        long getNewSize() {
+            return newSize;
+        }
+
+        private Long size() {
+            long size = kind == Kind.REMOVED ? oldSize : newSize;
+            return size < 0 ? null : size;
+        }
+
+        @Override
+        public String toString() {
+            switch (kind) {
+                case MOVED:
+                    return kind + " " + from + " -> " + path;
+                case RESIZED:
+                    return kind + " " + path + " " + oldSize + " -> " + newSize;
+                default:
+                    return kind + " " + path;
+            }
+        }
+    }
+
+    /**
+     * A state of a collection reduced to the children of each folder, sorted by name.
+     */
+    static final class Tree {
+        private final Map<Path, List<Entry>> folders; // keyed by path relative to the root
+
+        private Tree(Map<Path, List<Entry>> folders) {
+            this.folders = folders;
+        }
+
+        /**
+         * Reads each file's size and file key, in parallel.  Files which can't be read have a size of -1.
+         * @param collection a scanned collection
+         * @return its tree
+         */
+        static Tree of(MovieCollection collection) {
+            Path root = collection.getRootPath();
+            ConcurrentHashMap<Path, List<Entry>> folders = new ConcurrentHashMap<>();
+            collection.getSubFolders(root).collect(Collectors.toList() ).parallelStream().forEach( (f) -> {
+                List<Entry> entries = new ArrayList<>();
+                f.getFolders().forEach( (child) -> entries.add(new Entry(
+                        child.getFolderPath().getFileName().toString(), FileType.Folder, -1, null) ) );
+                for (FileType type : FileType.values() ) {
+                    if (type != FileType.Folder) {
+                        f.getFilenames(type).forEach( (name) -> entries.add(stat(f.toAbsolutePath(name), type) ) );
+                    }
+                }
+                entries.sort(Comparator.comparing( (Entry e) -> e.name) );
+                folders.put(root.relativize(f.getFolderPath() ), entries);
+            });
+            return new Tree(folders);
+        }
+
+        private static Entry stat(Path file, FileType type) {
+            String name = file.getFileName().toString();
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class,
+                        LinkOption.NOFOLLOW_LINKS);
+                return new Entry(name, type, attrs.size(), attrs.fileKey() );
+            } catch (IOException e) {
+                return new Entry(name, type, -1, null);
+            }
+        }
+
+        /**
+         * @param snapshot a snapshot written by {@link MovieCollection#exportColumnar}
+         * @return its tree
+         */
+        static Tree of(ColumnarReader snapshot) {
+            int numFolders = snapshot.numFolders();
+            Path[] relative = new Path[numFolders];
+            List<List<Entry>> children = new ArrayList<>(numFolders);
+            for (int i = 0; i < numFolders; i++) { // parents precede their children
+                int parent = snapshot.folderParent(i);
+                relative[i] = parent < 0 ? Path.of("") : relative[parent].resolve(snapshot.folderName(i) );
+                children.add(new ArrayList<>() );
+                if (parent >= 0) {
+                    children.get(parent).add(new Entry(snapshot.folderName(i), FileType.Folder, -1, null) );
+                }
+            }
+            IntStream.range(0, snapshot.numFiles() ).forEach( (i) -> children.get(snapshot.fileFolder(i) ).add(
+                    new Entry(snapshot.fileName(i), snapshot.fileType(i), snapshot.fileSize(i), null) ) );
+            Map<Path, List<Entry>> folders = new HashMap<>();
+            IntStream.range(0, numFolders).parallel().forEach( (i) ->
+                    children.get(i).sort(Comparator.comparing( (Entry e) -> e.name) ) );
+            for (int i = 0; i < numFolders; i++) {
+                folders.put(relative[i], children.get(i) );
+            }
+            return new Tree(folders);
+        }
+    }
+
+    private static final class Entry {
+        private final String name;
+        private final FileType type;
+        private final long size;
+        private final Object fileKey;
+
+        private Entry(String name, FileType type, long size, Object fileKey) {
+            this.name = name;
+            this.type = type;
+            this.size = size;
+            this.fileKey = fileKey;
+        }
+    }
+}
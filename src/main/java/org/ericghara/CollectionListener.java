@@ -0,0 +1,53 @@
+package org.ericghara;
+
+import java.nio.file.Path;
+
+/**
+ * Receives notifications after {@link MovieCollection} records change, so derived structures (indexes, pairings)
+ * can be maintained incrementally instead of rebuilt.  Callbacks run synchronously on the thread performing the
+ * operation, after both the filesystem and the records have been updated.  All methods default to no-ops.
+ *
+ * @see MovieCollection#addListener
+ */
+interface CollectionListener {
+
+    /**
+     * A file record was added by a copy or move.
+     * @param folder the folder now containing the file
+     * @param filename name of the file
+     * @param type type of the file
+     */
+    default void fileAdded(MovieFolder folder, Path filename, FileType type) {}
+
+    /**
+     * A file record was removed by a delete or move.
+     * @param folder the folder which contained the file
+     * @param filename name of the file
+     * @param type type of the file
+     */
+    default void fileRemoved(MovieFolder folder, Path filename, FileType type) {}
+
+    /**
+     * A folder record was added.  Files copied into it are reported afterwards with {@link #fileAdded}.
+     * @param parent the folder's parent
+     * @param folder the new folder
+     */
+    default void folderAdded(MovieFolder parent, MovieFolder folder) {}
+
+    /**
+     * A folder record, and the subtree below it, was removed.  The removed {@code MovieFolder}s still report their
+     * former paths.
+     * @param parent the folder's former parent
+     * @param folder the removed folder
+     */
+    default void folderRemoved(MovieFolder parent, MovieFolder folder) {}
+
+    /**
+     * A folder, and the subtree below it, was moved or renamed.  Paths of the subtree have already been updated.
+     * @param folder the moved folder
+     * @param formerPath the folder's absolute path before the move
+     * @param formerParent the folder's parent before the move
+     * @param newParent the folder's parent after the move
+     */
+    default void folderMoved(MovieFolder folder, Path formerPath, MovieFolder formerParent, MovieFolder newParent) {}
+}
@@ -0,0 +1,477 @@
+package org.ericghara;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Keeps a {@link MovieCollection} in memory and serves queries and file operations over HTTP on the loopback
+ * interface, so that a lookup costs a hash map walk instead of a full scan.
+ * <p>
+ * Paths in requests are relative to the collection's root, and responses are JSON.  Queries share a read lock and
+ * run concurrently; file operations and refreshes take the write lock.  A refresh scans the root into a new
+ * collection without holding the lock, then swaps it in.  File operations wait for a running scan, so a scan never
+ * misses one and then replaces its records, and refreshes requested while a scan runs share the next scan.
+ * <pre>
+ *     GET  /folder?path=P              sub-folders and files (with types) of a folder
+ *     GET  /contains?path=P            whether P is a file and/or folder in the collection
+ *     GET  /search?q=Q[&amp;limit=N]       file and folder names matching the query, see {@link SearchIndex}
+ *     GET  /recent[?limit=N]           the most recently added movies, see {@link RecentAdditions}
+ *     GET  /metrics                    see {@link Metrics#snapshotJson()}
+ *     GET  /stats                      the last background failure, see {@link #getLastFailure()}, and the metrics
+ *     POST /move?from=P&amp;to=P           move a file or folder
+ *     POST /copy?from=P&amp;to=P           copy a file or folder
+ *     POST /delete?path=P[&amp;recursive=true]   delete a file or folder
+ *     POST /mkdir?path=P               create a folder
+ *     POST /refresh                    rescan the root
+ * </pre>
+ * Invalid requests are answered with status 400 and {@code {"error": "..."}}.
+ */
+class CollectionServer {
+
+    private static final Metrics.Timer REQUEST_TIMER = Metrics.timer("server.request");
+    private static final Metrics.Counter COALESCED_REFRESHES = Metrics.counter("server.refresh.coalesced");
+    private static final int DEFAULT_SEARCH_LIMIT = 20;
+    private static final int DEFAULT_RECENT_LIMIT = 20;
+    private static final int RECENT_CAPACITY = 1_000;
+    private static final Duration REFRESH_LATENCY_TARGET = Duration.ofMillis(20);
+
+    private final Supplier<MovieCollection> scanner;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ReentrantLock writes = new ReentrantLock(); // orders file operations and refresh scans, not queries
+    private long lastScanStart; // nanoTime at which the installed collection's scan began, guarded by writes
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private ScheduledExecutorService refresher;
+    private MovieCollection collection;
+    private SearchIndex index;
+    private RecentAdditions recent;
+    private volatile Exception lastFailure; // of a periodic refresh, or of closing a replaced collection
+
+    /**
+     * Scans the collection and binds the server.  Requests are not served until {@link #start()}.
+     * @param scanner creates a freshly scanned collection, called now and on every refresh
+     * @param port loopback port to listen on, 0 for any free port
+     * @throws IOException if the port could not be bound
+     */
+    CollectionServer(Supplier<MovieCollection> scanner, int port) throws IOException {
+        this.scanner = Objects.requireNonNull(scanner, "Received a null scanner.");
+        lastScanStart = System.nanoTime();
+        install(scanner.get() );
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        // one thread per concurrent request, requests mostly wait on the lock or on disk
+        executor = Executors.newCachedThreadPool( (r) -> {
+            Thread t = new Thread(r, "collection-server");
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(executor);
+        server.createContext("/folder", (e) -> respond(e, "GET", Access.READ, this::folder) );
+        server.createContext("/contains", (e) -> respond(e, "GET", Access.READ, this::contains) );
+        server.createContext("/search", (e) -> respond(e, "GET", Access.READ, this::search) );
+        server.createContext("/recent", (e) -> respond(e, "GET", Access.READ, this::recent) );
+        server.createContext("/metrics", (e) -> respond(e, "GET", Access.READ, (q) -> Metrics.snapshotJson() ) );
+        server.createContext("/stats", (e) -> respond(e, "GET", Access.NONE, this::stats) );
+        server.createContext("/move", (e) -> respond(e, "POST", Access.WRITE, this::move) );
+        server.createContext("/copy", (e) -> respond(e, "POST", Access.WRITE, this::copy) );
+        server.createContext("/delete", (e) -> respond(e, "POST", Access.WRITE, this::delete) );
+        server.createContext("/mkdir", (e) -> respond(e, "POST", Access.WRITE, this::mkdir) );
+        server.createContext("/refresh", (e) -> respond(e, "POST", Access.NONE, (q) -> refresh() ) );
+    }
+
+    void start() {
+        server.start();
+    }
+
+    /**
+     * Rescans the root every period, in addition to requested refreshes.
+     * @param period time between the end of a scan and the start of the next
+     * @param unit unit of the period
+     */
+    void refreshEvery(long period, TimeUnit unit) {
+        if (Objects.nonNull(refresher) ) {
+            throw new IllegalStateException("Periodic refresh has already been scheduled.");
+        }
+        refresher = Executors.newSingleThreadScheduledExecutor( (r) -> {
+            Thread t = new Thread(r, "collection-refresher");
+            t.setDaemon(true);
+            return t;
+        });
+        refresher.scheduleWithFixedDelay( () -> {
+            try {
+                refresh();
+            } catch (RuntimeException e) { // keep serving the last good scan and try again next period
+                lastFailure = e;
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * Stops serving and closes the collection.
+     * @throws IOException if the collection could not be closed
+     */
+    void stop() throws IOException {
+        server.stop(0);
+        executor.shutdownNow();
+        if (Objects.nonNull(refresher) ) {
+            refresher.shutdownNow();
+        }
+        lock.writeLock().lock();
+        try {
+            collection.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // releases the record file of a replaced collection scanned in spill mode, a refresh doesn't fail for it
+    private void closeCollection() {
+        try {
+            collection.close();
+        } catch (IOException e) {
+            lastFailure = e;
+        }
+    }
+
+    /**
+     * @return the last failure of a periodic refresh or of closing a collection a refresh replaced, these don't
+     * fail a request
+     */
+    Optional<Exception> getLastFailure() {
+        return Optional.ofNullable(lastFailure);
+    }
+
+    private String stats(Map<String, String> query) {
+        Exception failure = lastFailure;
+        return "{\"lastFailure\": " + (Objects.isNull(failure) ? "null" : quote(failure.toString() ) )
+                + ", \"metrics\": " + Metrics.snapshotJson() + "}";
+    }
+
+    /**
+     * @return an estimate of the file operations and refreshes waiting for a running one, such as a refresh scan
+     */
+    int queuedWrites() {
+        return writes.getQueueLength();
+    }
+
+    /**
+     * @return the address the server is listening on
+     */
+    InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    private void install(MovieCollection scanned) {
+        if (Objects.nonNull(index) ) {
+            index.close();
+            recent.close();
+            closeCollection();
+        }
+        collection = scanned;
+        index = new SearchIndex(scanned);
+        recent = new RecentAdditions(scanned, FileType.Movie, RECENT_CAPACITY);
+    }
+
+    private String refresh() {
+        long requested = System.nanoTime();
+        writes.lock();
+        try {
+            if (lastScanStart - requested >= 0) { // a scan which began after this request has been installed
+                COALESCED_REFRESHES.increment();
+            }
+            else {
+                long scanStart = System.nanoTime();
+                MovieCollection scanned = scanner.get(); // queries continue meanwhile, file operations wait
+                lock.writeLock().lock();
+                try {
+                    install(scanned);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                lastScanStart = scanStart;
+            }
+            return "{\"refreshed\": " + quote(collection.getRootPath().toString() ) + "}";
+        } finally {
+            writes.unlock();
+        }
+    }
+
+    // the locks a request holds while it is handled, a WRITE also waits for a running refresh scan
+    private enum Access {
+        READ, WRITE, NONE
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        String handle(Map<String, String> query);
+    }
+
+    private void respond(HttpExchange exchange, String method, Access access, Handler handler)
+            throws IOException {
+        long start = REQUEST_TIMER.start();
+        int status = 200;
+        String body;
+        try {
+            if (!method.equals(exchange.getRequestMethod() ) ) {
+                status = 405;
+                body = error("Expected " + method + " but received " + exchange.getRequestMethod() );
+            }
+            else {
+                body = handle(handler, parseQuery(exchange.getRequestURI().getRawQuery() ), access);
+            }
+        } catch (IllegalArgumentException e) {
+            status = 400;
+            body = error(e.getMessage() );
+        } catch (RuntimeException e) {
+            status = 500;
+            body = error(e.toString() );
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody() ) {
+            out.write(bytes);
+        }
+        REQUEST_TIMER.stop(start);
+    }
+
+    private String handle(Handler handler, Map<String, String> query, Access access) {
+        if (access == Access.NONE) {
+            return handler.handle(query);
+        }
+        if (access == Access.READ) {
+            lock.readLock().lock();
+            try {
+                return handler.handle(query);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        writes.lock();
+        lock.writeLock().lock();
+        try {
+            return handler.handle(query);
+        } finally {
+            lock.writeLock().unlock();
+            writes.unlock();
+        }
+    }
+
+    static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (Objects.isNull(rawQuery) || rawQuery.isEmpty() ) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&") ) {
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            query.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8) );
+        }
+        return query;
+    }
+
+    // resolves a relative path parameter against the root, refusing anything outside of it
+    private Path resolve(Map<String, String> query, String parameter) {
+        String value = query.get(parameter);
+        if (Objects.isNull(value) ) {
+            throw new IllegalArgumentException("Missing the parameter: " + parameter);
+        }
+        Path root = collection.getRootPath();
+        Path path = root.resolve(value).normalize();
+        if (!path.startsWith(root) ) {
+            throw new IllegalArgumentException("The path is outside of the collection: " + value);
+        }
+        return path;
+    }
+
+    private String relative(Path path) {
+        return collection.getRootPath().relativize(path).toString();
+    }
+
+    private String folder(Map<String, String> query) {
+        Path path = resolve(query, "path");
+        MovieFolder folder = collection.openFolder(path, "The folder is not in the collection: " + relative(path) );
+        StringBuilder json = new StringBuilder("{\"path\": ").append(quote(relative(path) ) ).append(", \"folders\": [");
+        List<String> folders = new ArrayList<>();
+        folder.getFilenames(FileType.Folder).forEach( (f) -> folders.add(quote(f.toString() ) ) );
+        folders.sort(null);
+        json.append(String.join(", ", folders) ).append("], \"files\": [");
+        List<String> files = new ArrayList<>();
+        for (FileType type : FileType.values() ) {
+            if (type != FileType.Folder) {
+                folder.getFilenames(type).forEach( (f) -> files.add("{\"name\": " + quote(f.toString() )
+                        + ", \"type\": " + quote(type.name() ) + "}") );
+            }
+        }
+        files.sort(null);
+        return json.append(String.join(", ", files) ).append("]}").toString();
+    }
+
+    private String contains(Map<String, String> query) {
+        Path path = resolve(query, "path");
+        return "{\"file\": " + collection.containsFile(path) + ", \"folder\": " + collection.containsFolder(path)
+                + "}";
+    }
+
+    private String search(Map<String, String> query) {
+        String q = Optional.ofNullable(query.get("q") ).orElseThrow( () ->
+                new IllegalArgumentException("Missing the parameter: q") );
+        int limit = query.containsKey("limit") ? parseInt(query.get("limit") ) : DEFAULT_SEARCH_LIMIT;
+        List<String> results = new ArrayList<>();
+        index.search(q, limit).forEach( (p) -> results.add(quote(relative(p) ) ) );
+        return "{\"results\": [" + String.join(", ", results) + "]}";
+    }
+
+    private String recent(Map<String, String> query) {
+        int limit = query.containsKey("limit") ? parseInt(query.get("limit") ) : DEFAULT_RECENT_LIMIT;
+        List<String> results = new ArrayList<>();
+        recent.latest(limit).forEach( (e) -> results.add("{\"path\": " + quote(relative(e.getPath() ) )
+                + ", \"added\": " + quote(Instant.ofEpochMilli(e.getAddedTime() ).toString() ) + "}") );
+        return "{\"results\": [" + String.join(", ", results) + "]}";
+    }
+
+    private static int parseInt(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Expected a number but received: " + value);
+        }
+    }
+
+    private String move(Map<String, String> query) {
+        Path from = resolve(query, "from");
+        Path to = resolve(query, "to");
+        if (collection.containsFolder(from) ) {
+            collection.moveFolder(from, to);
+        }
+        else {
+            collection.moveFile(from, to);
+        }
+        return ok();
+    }
+
+    private String copy(Map<String, String> query) {
+        Path from = resolve(query, "from");
+        Path to = resolve(query, "to");
+        if (collection.containsFolder(from) ) {
+            collection.copyFolder(from, to);
+        }
+        else {
+            collection.copyFile(from, to);
+        }
+        return ok();
+    }
+
+    private String delete(Map<String, String> query) {
+        Path path = resolve(query, "path");
+        if (!collection.containsFolder(path) ) {
+            collection.deleteFile(path);
+            return ok();
+        }
+        if (!Boolean.parseBoolean(query.get("recursive") ) ) {
+            collection.deleteFolder(path);
+            return ok();
+        }
+        TreeDeleter.Report report = collection.deleteFolderRecursive(path);
+        List<String> failures = new ArrayList<>();
+        report.getFailures().forEach( (p, e) -> failures.add(quote(relative(p) ) ) );
+        return "{\"ok\": " + report.isComplete() + ", \"failures\": [" + String.join(", ", failures) + "]}";
+    }
+
+    private String mkdir(Map<String, String> query) {
+        collection.createFolder(resolve(query, "path") );
+        return ok();
+    }
+
+    private static String ok() {
+        return "{\"ok\": true}";
+    }
+
+    private static String error(String message) {
+        return "{\"error\": " + quote(String.valueOf(message) ) + "}";
+    }
+
+    static String quote(String s) {
+        StringBuilder json = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c) );
+                    }
+                    else {
+                        json.append(c);
+                    }
+            }
+        }
+        return json.append('"').toString();
+    }
+
+    /**
+     * Usage: {@code serve <root> [port] [refresh seconds] [refresh operations per second]}.  The first scan runs at
+     * full speed, refreshes are throttled when a rate is given, see {@link ScanThrottle}.
+     * @param args root of the collection, optionally a port (default 8123), a refresh period and a refresh rate
+     * @throws IOException if the port could not be bound
+     */
+    static void serve(String[] args) throws IOException {
+        if (args.length < 1) {
+            throw new IllegalArgumentException(
+                    "Usage: serve <root> [port] [refresh seconds] [refresh operations per second]");
+        }
+        String root = args[0];
+        int port = args.length > 1 ? parseInt(args[1]) : 8123;
+        ScanOptions refreshOptions = args.length > 3
+                ? ScanOptions.defaults().throttle(Double.parseDouble(args[3]), REFRESH_LATENCY_TARGET)
+                : ScanOptions.defaults();
+        AtomicBoolean firstScan = new AtomicBoolean(true);
+        CollectionServer server = new CollectionServer( () -> firstScan.getAndSet(false)
+                ? new MovieCollection(root) : new MovieCollection(root, refreshOptions), port);
+        if (args.length > 2) {
+            server.refreshEvery(parseInt(args[2]), TimeUnit.SECONDS);
+        }
+        server.start();
+        System.out.println("Serving " + root + " on http://" + server.getAddress().getHostString() + ":"
+                + server.getAddress().getPort() );
+    }
+}
@@ -0,0 +1,176 @@
+package org.ericghara;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.ericghara.ColumnarReader.FILE_FOLDER_OFFSET;
+import static org.ericghara.ColumnarReader.FILE_MODIFIED_OFFSET;
+import static org.ericghara.ColumnarReader.FILE_NAME_OFFSET;
+import static org.ericghara.ColumnarReader.FILE_SIZE_OFFSET;
+import static org.ericghara.ColumnarReader.FILE_TYPE_OFFSET;
+import static org.ericghara.ColumnarReader.FOLDER_NAME_OFFSET;
+import static org.ericghara.ColumnarReader.FOLDER_PARENT_OFFSET;
+import static org.ericghara.ColumnarReader.HEADER_BYTES;
+import static org.ericghara.ColumnarReader.MAGIC;
+import static org.ericghara.ColumnarReader.NAMES_LENGTH;
+import static org.ericghara.ColumnarReader.NAMES_OFFSET;
+import static org.ericghara.ColumnarReader.NUM_FILES;
+import static org.ericghara.ColumnarReader.NUM_FOLDERS;
+import static org.ericghara.ColumnarReader.VERSION;
+
+/**
+ * Writes a {@link MovieCollection} as a compact columnar snapshot, see {@link ColumnarReader} for the format.
+ * <p>
+ * The export makes two passes.  The first numbers the folders breadth first, lays out each folder's files in
+ * consecutive rows and interns every distinct name, which fixes the size of the file.  The second maps the whole
+ * file and writes each column in place; the files' sizes and modification times are read in parallel, one folder per
+ * task, straight into the mapping.
+ */
+final class ColumnarExport {
+
+    private static final Metrics.Timer EXPORT_TIMER = Metrics.timer("export.columnar");
+
+    private ColumnarExport() {
+    }
+
+    /**
+     * @param collection the collection to export
+     * @param destination the snapshot file to create or replace
+     * @throws IOException if the snapshot could not be written
+     */
+    static void write(MovieCollection collection, Path destination) throws IOException {
+        long start = EXPORT_TIMER.start();
+        // pass 1: rows and names
+        List<MovieFolder> folders = collection.getSubFolders(collection.getRootPath() ).collect(Collectors.toList() );
+        IdentityHashMap<MovieFolder, Integer> folderRows = new IdentityHashMap<>(folders.size() );
+        int[] firstFile = new int[folders.size() + 1];
+        List<List<Path>> folderFiles = new ArrayList<>(folders.size() );
+        Names names = new Names();
+        for (int i = 0; i < folders.size(); i++) {
+            MovieFolder folder = folders.get(i);
+            folderRows.put(folder, i);
+            names.intern(exportedName(folder, i) );
+            List<Path> files = folder.getAllFiles().collect(Collectors.toList() );
+            files.forEach( (f) -> names.intern(f.toString() ) );
+            folderFiles.add(files);
+            firstFile[i + 1] = firstFile[i] + files.size();
+        }
+        int numFolders = folders.size();
+        int numFiles = firstFile[numFolders];
+        int[] parents = new int[numFolders];
+        parents[0] = -1;
+        for (int i = 0; i < numFolders; i++) {
+            for (MovieFolder child : folders.get(i).getFolders() ) {
+                parents[folderRows.get(child)] = i;
+            }
+        }
+
+        long fileSize = align(HEADER_BYTES);
+        long fileModified = align(fileSize + (long) Long.BYTES * numFiles);
+        long folderParent = align(fileModified + (long) Long.BYTES * numFiles);
+        long folderName = align(folderParent + (long) Integer.BYTES * numFolders);
+        long fileFolder = align(folderName + (long) Integer.BYTES * numFolders);
+        long fileName = align(fileFolder + (long) Integer.BYTES * numFiles);
+        long fileType = align(fileName + (long) Integer.BYTES * numFiles);
+        long namesStart = align(fileType + numFiles);
+        long total = namesStart + names.length;
+        if (total > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The collection is too large for a single snapshot: " + total
+                    + " bytes.");
+        }
+
+        // pass 2: columns
+        try (FileChannel channel = FileChannel.open(destination, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE) ) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, total);
+            ByteBuffer out = mapped.order(ByteOrder.LITTLE_ENDIAN);
+            out.putInt(0, MAGIC).putInt(4, VERSION).putInt(NUM_FOLDERS, numFolders).putInt(NUM_FILES, numFiles)
+               .putLong(NAMES_LENGTH, names.length)
+               .putLong(FILE_SIZE_OFFSET, fileSize).putLong(FILE_MODIFIED_OFFSET, fileModified)
+               .putLong(FOLDER_PARENT_OFFSET, folderParent).putLong(FOLDER_NAME_OFFSET, folderName)
+               .putLong(FILE_FOLDER_OFFSET, fileFolder).putLong(FILE_NAME_OFFSET, fileName)
+               .putLong(FILE_TYPE_OFFSET, fileType).putLong(NAMES_OFFSET, namesStart);
+            for (int i = 0; i < numFolders; i++) {
+                MovieFolder folder = folders.get(i);
+                out.putInt((int) folderParent + Integer.BYTES * i, parents[i]);
+                out.putInt((int) folderName + Integer.BYTES * i, names.offsets.get(exportedName(folder, i) ) );
+            }
+            // absolute puts don't touch the buffer's position, so folders may be written concurrently
+            IntStream.range(0, numFolders).parallel().forEach( (i) -> {
+                MovieFolder folder = folders.get(i);
+                int row = firstFile[i];
+                for (Path f : folderFiles.get(i) ) {
+                    FileType type = folder.getFileType(f).orElseThrow(IllegalStateException::new);
+                    long size = -1L;
+                    long modified = -1L;
+                    try {
+                        BasicFileAttributes attributes = Files.readAttributes(folder.toAbsolutePath(f),
+                                BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                        size = attributes.size();
+                        modified = attributes.lastModifiedTime().toMillis();
+                    } catch (IOException e) {
+                        // exported as unknown
+                    }
+                    out.putLong((int) fileSize + Long.BYTES * row, size);
+                    out.putLong((int) fileModified + Long.BYTES * row, modified);
+                    out.putInt((int) fileFolder + Integer.BYTES * row, i);
+                    out.putInt((int) fileName + Integer.BYTES * row, names.offsets.get(f.toString() ) );
+                    out.put((int) fileType + row, (byte) type.id() );
+                    row++;
+                }
+            });
+            ByteBuffer namesOut = out.duplicate().order(ByteOrder.LITTLE_ENDIAN).position((int) namesStart);
+            names.ordered.forEach( (bytes) -> namesOut.putShort((short) bytes.length).put(bytes) );
+            mapped.force();
+        }
+        EXPORT_TIMER.stop(start);
+    }
+
+    // the root is exported with its absolute path, so the snapshot can be read without the collection
+    private static String exportedName(MovieFolder folder, int row) {
+        Path path = folder.getFolderPath();
+        return row == 0 ? path.toString() : path.getFileName().toString();
+    }
+
+    private static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+
+    // a string table of distinct names, each stored once as a u16 length and UTF-8 bytes
+    private static final class Names {
+        private final HashMap<String, Integer> offsets = new HashMap<>();
+        private final List<byte[]> ordered = new ArrayList<>();
+        private long length;
+
+        void intern(String name) {
+            if (offsets.containsKey(name) ) {
+                return;
+            }
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > 0xFFFF) {
+                throw new IllegalArgumentException("The name is too long to export: " + name);
+            }
+            if (length > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("The collection has too many distinct names to export.");
+            }
+            offsets.put(name, (int) length);
+            ordered.add(bytes);
+            length += Short.BYTES + bytes.length;
+        }
+    }
+}
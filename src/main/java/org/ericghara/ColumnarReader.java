@@ -0,0 +1,190 @@
+package org.ericghara;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a collection snapshot written by {@link ColumnarExport}.  The file is memory-mapped and every value is read
+ * from the mapping where it is requested, so opening a snapshot costs the same for ten rows as for ten million and
+ * nothing is copied onto the heap except the names that are asked for.
+ * <p>
+ * The format is little-endian.  A fixed size header holds the magic number, version, row counts and the offset of
+ * each column.  Columns are stored contiguously with 8 byte aligned starts:
+ * <pre>
+ *     file size      long[numFiles]    bytes, -1 if unknown
+ *     file modified  long[numFiles]    epoch milliseconds, -1 if unknown
+ *     folder parent  int[numFolders]   row of the parent folder, -1 for the root
+ *     folder name    int[numFolders]   offset into names, the root's name is its absolute path
+ *     file folder    int[numFiles]     row of the containing folder
+ *     file name      int[numFiles]     offset into names
+ *     file type      byte[numFiles]    {@link FileType#id()}
+ *     names          u16 length and UTF-8 bytes per distinct name
+ * </pre>
+ * Folders are stored breadth first from the root, so a parent's row always precedes its children's, and the files
+ * of a folder occupy consecutive rows.
+ */
+class ColumnarReader implements AutoCloseable {
+
+    static final int MAGIC = 0x4C43564D; // "MVCL"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 96;
+    // header layout
+    static final int NUM_FOLDERS = 8;
+    static final int NUM_FILES = 12;
+    static final int NAMES_LENGTH = 16;
+    static final int FILE_SIZE_OFFSET = 24;
+    static final int FILE_MODIFIED_OFFSET = 32;
+    static final int FOLDER_PARENT_OFFSET = 40;
+    static final int FOLDER_NAME_OFFSET = 48;
+    static final int FILE_FOLDER_OFFSET = 56;
+    static final int FILE_NAME_OFFSET = 64;
+    static final int FILE_TYPE_OFFSET = 72;
+    static final int NAMES_OFFSET = 80;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final int numFolders;
+    private final int numFiles;
+    private final int fileSize, fileModified, folderParent, folderName, fileFolder, fileName, fileType, names;
+
+    /**
+     * @param snapshot a file written by {@link ColumnarExport}
+     * @throws IOException if the file can't be mapped
+     * @throws IllegalArgumentException if the file is not a snapshot of a supported version
+     */
+    ColumnarReader(Path snapshot) throws IOException {
+        channel = FileChannel.open(snapshot, StandardOpenOption.READ);
+        try {
+            if (channel.size() < HEADER_BYTES || channel.size() > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Not a collection snapshot: " + snapshot);
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+            buffer = mapped.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getInt(0) != MAGIC) {
+                throw new IllegalArgumentException("Not a collection snapshot: " + snapshot);
+            }
+            if (buffer.getInt(4) != VERSION) {
+                throw new IllegalArgumentException("Unsupported snapshot version " + buffer.getInt(4) + ": "
+                        + snapshot);
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        numFolders = buffer.getInt(NUM_FOLDERS);
+        numFiles = buffer.getInt(NUM_FILES);
+        fileSize = (int) buffer.getLong(FILE_SIZE_OFFSET);
+        fileModified = (int) buffer.getLong(FILE_MODIFIED_OFFSET);
+        folderParent = (int) buffer.getLong(FOLDER_PARENT_OFFSET);
+        folderName = (int) buffer.getLong(FOLDER_NAME_OFFSET);
+        fileFolder = (int) buffer.getLong(FILE_FOLDER_OFFSET);
+        fileName = (int) buffer.getLong(FILE_NAME_OFFSET);
+        fileType = (int) buffer.getLong(FILE_TYPE_OFFSET);
+        names = (int) buffer.getLong(NAMES_OFFSET);
+    }
+
+    int numFolders() {
+        return numFolders;
+    }
+
+    int numFiles() {
+        return numFiles;
+    }
+
+    /**
+     * @param folder a folder row
+     * @return the row of the folder's parent, -1 for the root
+     */
+    int folderParent(int folder) {
+        return buffer.getInt(folderParent + Integer.BYTES * checkFolder(folder) );
+    }
+
+    /**
+     * @param folder a folder row
+     * @return the folder's name, for the root its absolute path
+     */
+    String folderName(int folder) {
+        return name(buffer.getInt(folderName + Integer.BYTES * checkFolder(folder) ) );
+    }
+
+    /**
+     * @param folder a folder row
+     * @return the absolute path of the folder, resolved through its parents
+     */
+    Path folderPath(int folder) {
+        int parent = folderParent(folder);
+        return parent < 0 ? Path.of(folderName(folder) ) : folderPath(parent).resolve(folderName(folder) );
+    }
+
+    int fileFolder(int file) {
+        return buffer.getInt(fileFolder + Integer.BYTES * checkFile(file) );
+    }
+
+    String fileName(int file) {
+        return name(buffer.getInt(fileName + Integer.BYTES * checkFile(file) ) );
+    }
+
+    FileType fileType(int file) {
+        return FileType.getFileType(buffer.get(fileType + checkFile(file) ) );
+    }
+
+    /**
+     * @param file a file row
+     * @return the size of the file in bytes when exported, -1 if it could not be read
+     */
+    long fileSize(int file) {
+        return buffer.getLong(fileSize + Long.BYTES * checkFile(file) );
+    }
+
+    /**
+     * @param file a file row
+     * @return the last modified time of the file in epoch milliseconds when exported, -1 if it could not be read
+     */
+    long fileModified(int file) {
+        return buffer.getLong(fileModified + Long.BYTES * checkFile(file) );
+    }
+
+    Path filePath(int file) {
+        return folderPath(fileFolder(file) ).resolve(fileName(file) );
+    }
+
+    private String name(int offset) {
+        int length = Short.toUnsignedInt(buffer.getShort(names + offset) );
+        byte[] bytes = new byte[length];
+        buffer.duplicate().position(names + offset + Short.BYTES).get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int checkFolder(int folder) {
+        if (folder < 0 || folder >= numFolders) {
+            throw new IllegalArgumentException("Folder row out of range: " + folder);
+        }
+        return folder;
+    }
+
+    private int checkFile(int file) {
+        if (file < 0 || file >= numFiles) {
+            throw new IllegalArgumentException("File row out of range: " + file);
+        }
+        return file;
+    }
+
+    /**
+     * Closes the underlying channel.  The mapping itself is released when this reader is garbage collected.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    @Override
+    public String toString() {
+        return "ColumnarReader{folders=" + numFolders + ", files=" + numFiles + "}";
+    }
+}
@@ -0,0 +1,302 @@
+package org.ericghara;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Identifies video containers by the magic numbers in the first few KB of a file, independent of its name.
+ * Reads go through a small pool of direct buffers, and results are cached by path and validated against the file's
+ * size and modification time, so each unchanged file is only read once.  The cache keeps the most recently sniffed
+ * files up to a bound, and forgets a file found to be gone.  Instances are thread safe.
+ */
+class ContainerSniffer {
+
+    static final int SNIFF_BYTES = 4096;
+
+    private static final int TS_PACKET = 188;
+    private static final int M2TS_PACKET = 192;
+    private static final byte TS_SYNC = 0x47;
+    private static final byte[] EBML = {0x1A, 0x45, (byte) 0xDF, (byte) 0xA3};
+    private static final byte[] MPEG_PACK = {0x00, 0x00, 0x01, (byte) 0xBA};
+    private static final byte[] ASF_GUID = {0x30, 0x26, (byte) 0xB2, 0x75, (byte) 0x8E, 0x66, (byte) 0xCF, 0x11};
+    private static final byte[] FLV_VERSION_1 = {'F', 'L', 'V', 0x01};
+    private static final int FLV_HEADER = 9;
+    private static final byte[] FTYP = ascii("ftyp");
+    private static final byte[] MOOV = ascii("moov");
+    private static final byte[] MDAT = ascii("mdat");
+    private static final byte[][] PADDING_ATOMS = {ascii("wide"), ascii("free"), ascii("skip")};
+    private static final int ATOM_HEADER = 8;
+    private static final int MAX_CACHED = 65_536;
+
+    private static final Metrics.Timer SNIFF_TIMER = Metrics.timer("sniff.read");
+    private static final Metrics.Counter CACHE_HITS = Metrics.counter("sniff.cacheHits");
+
+    enum Container {
+        MATROSKA, MP4, AVI, MPEG_TS, MPEG_PS, ASF, FLV, NONE;
+
+        boolean isVideo() {
+            return this != NONE;
+        }
+    }
+
+    private final BlockingQueue<ByteBuffer> bufferPool;
+    private final LinkedHashMap<Path, CacheEntry> cache; // least recently sniffed first, guarded by itself
+
+    /**
+     * @param poolSize the maximum number of direct buffers retained between reads, usually the number of threads
+     *                 which will sniff concurrently
+     */
+    ContainerSniffer(int poolSize) {
+        this(poolSize, MAX_CACHED);
+    }
+
+    /**
+     * @param poolSize see {@link #ContainerSniffer(int)}
+     * @param maxCached the maximum number of results cached
+     */
+    ContainerSniffer(int poolSize, int maxCached) {
+        if (maxCached < 1) {
+            throw new IllegalArgumentException("Received a non-positive cache size: " + maxCached);
+        }
+        bufferPool = new ArrayBlockingQueue<>(Math.max(1, poolSize) );
+        cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, CacheEntry> eldest) {
+                return size() > maxCached;
+            }
+        };
+    }
+
+    /**
+     * @return a process wide sniffer, whose cache is shared by every {@link MovieCollection} using it
+     */
+    static ContainerSniffer shared() {
+        return SharedHolder.SHARED;
+    }
+
+    // Lazily creates the shared sniffer on first use
+    private static class SharedHolder {
+        private static final ContainerSniffer SHARED =
+                new ContainerSniffer(Runtime.getRuntime().availableProcessors() );
+    }
+
+    /**
+     * @param path absolute path to a regular file
+     * @return the detected container, {@link Container#NONE} if unrecognized
+     * @throws IOException if the file could not be read
+     */
+    Container sniff(Path path) throws IOException {
+        FileClassifier.mustBeAbsolutePath(path);
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (NoSuchFileException e) {
+            synchronized (cache) {
+                cache.remove(path);
+            }
+            throw e;
+        }
+        long size = attrs.size();
+        long modified = attrs.lastModifiedTime().toMillis();
+        CacheEntry cached;
+        synchronized (cache) {
+            cached = cache.get(path);
+        }
+        if (cached != null && cached.size == size && cached.modified == modified) {
+            CACHE_HITS.increment();
+            return cached.container;
+        }
+        Container container = read(path, size);
+        synchronized (cache) {
+            cache.put(path, new CacheEntry(size, modified, container) );
+        }
+        return container;
+    }
+
+    /**
+     * Drops all cached results.
+     */
+    void clearCache() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * @return the number of cached results
+     */
+    int cachedResults() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    private Container read(Path path, long fileSize) throws IOException {
+        ByteBuffer buffer = bufferPool.poll();
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(SNIFF_BYTES);
+        }
+        long start = SNIFF_TIMER.start();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ) ) {
+            buffer.clear();
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // fill the buffer or stop at EOF
+            }
+            buffer.flip();
+            return identify(buffer, fileSize);
+        } finally {
+            SNIFF_TIMER.stop(start);
+            bufferPool.offer(buffer); // dropped if the pool is full
+        }
+    }
+
+    /**
+     * @param header the beginning of a file, between position and limit
+     * @return the detected container, {@link Container#NONE} if unrecognized
+     */
+    static Container identify(ByteBuffer header) {
+        return identify(header, -1L);
+    }
+
+    /**
+     * @param header the beginning of a file, between position and limit
+     * @param fileSize size of the file, negative if unknown, a leading {@code mdat} atom must fit in it
+     * @return the detected container, {@link Container#NONE} if unrecognized
+     */
+    static Container identify(ByteBuffer header, long fileSize) {
+        if (startsWith(header, 0, EBML) ) {
+            return Container.MATROSKA;
+        }
+        if (isQuickTime(header, fileSize) ) {
+            return Container.MP4;
+        }
+        if (startsWith(header, 0, ascii("RIFF") ) && startsWith(header, 8, ascii("AVI ") ) ) {
+            return Container.AVI;
+        }
+        if (startsWith(header, 0, ASF_GUID) ) {
+            return Container.ASF;
+        }
+        if (isFlv(header) ) {
+            return Container.FLV;
+        }
+        if (startsWith(header, 0, MPEG_PACK) ) {
+            return Container.MPEG_PS;
+        }
+        if (hasSyncBytes(header, 0, TS_PACKET) || hasSyncBytes(header, 4, M2TS_PACKET) ) {
+            return Container.MPEG_TS;
+        }
+        return Container.NONE;
+    }
+
+    /*
+     * An MP4 or QuickTime file is a sequence of atoms, each a 32 bit big endian size followed by a 4 character type.
+     * It begins with an ftyp or moov atom, or in older QuickTime files with padding atoms or the media data ahead of
+     * the moov atom.  Padding atoms are small, so the atom after them must be found in the header as well, while the
+     * media data atom may be most of the file but not larger than it.  Text which happens to have one of the types
+     * at offset 4, such as "For free", has an implausible size.
+     */
+    private static boolean isQuickTime(ByteBuffer header, long fileSize) {
+        final int MAX_PADDING_ATOMS = 4;
+        long offset = 0;
+        for (int i = 0; i <= MAX_PADDING_ATOMS; i++) {
+            int base = header.position() + (int) offset;
+            if (header.limit() < base + ATOM_HEADER) {
+                return false;
+            }
+            long size = header.getInt(base) & 0xFFFFFFFFL;
+            boolean sized = size >= ATOM_HEADER || size == 1; // 1: a 64 bit size follows the type
+            if (startsWith(header, (int) offset + 4, FTYP) ) {
+                return size >= ATOM_HEADER && size <= SNIFF_BYTES;
+            }
+            if (startsWith(header, (int) offset + 4, MOOV) ) {
+                return sized;
+            }
+            if (startsWith(header, (int) offset + 4, MDAT) ) {
+                return sized && (fileSize < 0 || size == 1 || offset + size <= fileSize);
+            }
+            if (!startsWithAny(header, (int) offset + 4, PADDING_ATOMS) || size < ATOM_HEADER) {
+                return false;
+            }
+            offset += size;
+            if (offset > SNIFF_BYTES) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * An FLV file begins with "FLV", the version, which is 1, a flags byte in which only the audio (4) and video (1)
+     * bits may be set, and the 32 bit big endian size of this header, which is 9.
+     */
+    private static boolean isFlv(ByteBuffer header) {
+        int base = header.position();
+        return startsWith(header, 0, FLV_VERSION_1) && header.limit() >= base + FLV_HEADER
+                && (header.get(base + 4) & ~0x05) == 0 && header.getInt(base + 5) == FLV_HEADER;
+    }
+
+    private static boolean startsWithAny(ByteBuffer header, int offset, byte[][] magics) {
+        for (byte[] magic : magics) {
+            if (startsWith(header, offset, magic) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // MPEG transport streams are a sequence of fixed size packets each beginning with a sync byte
+    private static boolean hasSyncBytes(ByteBuffer header, int offset, int packetSize) {
+        final int PACKETS = 3;
+        int base = header.position() + offset;
+        if (header.limit() < base + (PACKETS - 1) * packetSize + 1) {
+            return false;
+        }
+        for (int i = 0; i < PACKETS; i++) {
+            if (header.get(base + i * packetSize) != TS_SYNC) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean startsWith(ByteBuffer header, int offset, byte[] magic) {
+        int base = header.position() + offset;
+        if (header.limit() < base + magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if (header.get(base + i) != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static class CacheEntry {
+        private final long size;
+        private final long modified;
+        private final Container container;
+
+        private CacheEntry(long size, long modified, Container container) {
+            this.size = size;
+            this.modified = modified;
+            this.container = container;
+        }
+    }
+}
@@ -0,0 +1,364 @@
+package org.ericghara;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Byte totals per {@link FileType} for every subtree of a {@link MovieCollection}, and its largest files and
+ * folders.
+ * <p>
+ * Totals are computed in a single post-order pass over the {@code MovieFolder} tree, run in parallel on the
+ * common {@link ForkJoinPool}: each folder stats its own files and then adds up its children's totals.  The size of
+ * every file is kept, so the totals are maintained as a {@link CollectionListener} by adding or subtracting a
+ * change along the path from the changed folder up to the root, without another stat of anything else.  The
+ * largest files and folders are selected with heaps bounded to the requested number of entries, and are cached
+ * until the next change.
+ */
+class DiskUsage implements CollectionListener {
+
+    private static final Metrics.Timer COMPUTE_TIMER = Metrics.timer("diskUsage.compute");
+    private static final String[] UNITS = {"B", "K", "M", "G", "T", "P"};
+
+    private final MovieCollection collection;
+    private final int topN;
+    private final ConcurrentHashMap<MovieFolder, Usage> usage = new ConcurrentHashMap<>();
+    private List<Entry> largestFiles;   // null when invalidated by a change
+    private List<Entry> largestFolders;
+
+    /**
+     * Computes the totals of the whole collection and registers for updates.
+     * @param collection the collection to measure
+     * @param topN the number of largest files and folders to report
+     */
+    DiskUsage(MovieCollection collection, int topN) {
+        if (topN < 1) {
+            throw new IllegalArgumentException("Received a non-positive number of entries: " + topN);
+        }
+        this.collection = Objects.requireNonNull(collection, "Received a null collection.");
+        this.topN = topN;
+        compute();
+        collection.addListener(this);
+    }
+
+    /**
+     * Stops incremental maintenance.  Results are frozen as of this call.
+     */
+    void close() {
+        collection.removeListener(this);
+    }
+
+    /**
+     * Discards all totals and computes them again from the filesystem, for instance after changes made outside of
+     * the collection.
+     */
+    void compute() {
+        long start = COMPUTE_TIMER.start();
+        usage.clear();
+        invalidate();
+        MovieFolder root = collection.openFolder(collection.getRootPath(), "Could not open the root folder.");
+        ForkJoinPool.commonPool().invoke(new Measure(root, usage) );
+        COMPUTE_TIMER.stop(start);
+    }
+
+    // post-order: children are measured in parallel, then their totals are added to the folder's own bytes
+    private static final class Measure extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final MovieFolder folder;
+        private final Map<MovieFolder, Usage> usage;
+
+        Measure(MovieFolder folder, Map<MovieFolder, Usage> usage) {
+            this.folder = folder;
+            this.usage = usage;
+        }
+
+        @Override
+        protected void compute() {
+            List<Measure> children = new ArrayList<>();
+            folder.getFolders().forEach( (f) -> children.add(new Measure(f, usage) ) );
+            invokeAll(children);
+            Usage u = new Usage();
+            for (FileType type : FileType.values() ) {
+                if (type != FileType.Folder) {
+                    folder.getFilenames(type).forEach( (f) -> u.addFile(f, type, size(folder.toAbsolutePath(f) ) ) );
+                }
+            }
+            System.arraycopy(u.ownBytes, 0, u.totalBytes, 0, u.ownBytes.length);
+            children.forEach( (c) -> u.add(usage.get(c.folder).totalBytes, 1) );
+            usage.put(folder, u);
+        }
+    }
+
+    private static long size(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0L; // vanished or unreadable, it takes no space we can account for
+        }
+    }
+
+    /**
+     * @param folder absolute path of a folder in the collection
+     * @param type a file type other than {@link FileType#Folder}
+     * @return bytes of files of the type in the folder and below it
+     */
+    long totalBytes(Path folder, FileType type) {
+        return usageOf(folder).totalBytes[type.id()];
+    }
+
+    /**
+     * @param folder absolute path of a folder in the collection
+     * @return bytes of all files in the folder and below it
+     */
+    long totalBytes(Path folder) {
+        return usageOf(folder).sum();
+    }
+
+    /**
+     * @return totals of the root folder by file type
+     */
+    Map<FileType, Long> totals() {
+        Usage root = usageOf(collection.getRootPath() );
+        Map<FileType, Long> totals = new HashMap<>();
+        for (FileType type : FileType.values() ) {
+            if (type != FileType.Folder) {
+                totals.put(type, root.totalBytes[type.id()]);
+            }
+        }
+        return totals;
+    }
+
+    private Usage usageOf(Path folder) {
+        MovieFolder f = collection.openFolder(folder, "Could not open the folder: " + folder);
+        return usage.get(f);
+    }
+
+    /**
+     * @return the largest files of the collection, largest first
+     */
+    List<Entry> largestFiles() {
+        if (Objects.isNull(largestFiles) ) {
+            PriorityQueue<Entry> heap = new PriorityQueue<>(topN + 1, Comparator.comparingLong(Entry::getBytes) );
+            usage.forEach( (folder, u) -> u.fileBytes.forEach( (name, bytes) ->
+                    offer(heap, folder, name, bytes) ) );
+            largestFiles = drain(heap);
+        }
+        return largestFiles;
+    }
+
+    /**
+     * @return the folders below the root with the largest totals, largest first
+     */
+    List<Entry> largestFolders() {
+        if (Objects.isNull(largestFolders) ) {
+            PriorityQueue<Entry> heap = new PriorityQueue<>(topN + 1, Comparator.comparingLong(Entry::getBytes) );
+            Path rootPath = collection.getRootPath();
+            usage.forEach( (folder, u) -> {
+                if (!folder.getFolderPath().equals(rootPath) ) {
+                    offer(heap, folder, null, u.sum() );
+                }
+            });
+            largestFolders = drain(heap);
+        }
+        return largestFolders;
+    }
+
+    // keeps the topN largest entries in a min-heap, creating an entry only if it makes the cut
+    private void offer(PriorityQueue<Entry> heap, MovieFolder folder, Path filename, long bytes) {
+        if (heap.size() < topN || bytes > heap.peek().getBytes() ) {
+            Path path = Objects.isNull(filename) ? folder.getFolderPath() : folder.toAbsolutePath(filename);
+            heap.add(new Entry(path, bytes) );
+            if (heap.size() > topN) {
+                heap.poll();
+            }
+        }
+    }
+
+    private static List<Entry> drain(PriorityQueue<Entry> heap) {
+        List<Entry> entries = new ArrayList<>(heap.size() );
+        while (!heap.isEmpty() ) {
+            entries.add(heap.poll() );
+        }
+        Collections.reverse(entries);
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * @return a {@code du -h} like report: totals per file type, then the largest folders and files
+     */
+    String report() {
+        Path rootPath = collection.getRootPath();
+        Usage root = usageOf(rootPath);
+        long total = root.sum();
+        StringBuilder sb = new StringBuilder();
+        for (FileType type : FileType.values() ) {
+            if (type != FileType.Folder) {
+                long bytes = root.totalBytes[type.id()];
+                sb.append(String.format(Locale.ROOT, "%-7s %5.1f%%  %s%n", humanReadable(bytes),
+                        total == 0 ? 0.0 : 100.0 * bytes / total, type) );
+            }
+        }
+        sb.append(String.format("%-7s %6s  %s%n%n", humanReadable(total), "", rootPath) );
+        sb.append("largest folders").append(System.lineSeparator() );
+        largestFolders().forEach( (e) -> sb.append(String.format("%-7s  %s%n", humanReadable(e.getBytes() ),
+                rootPath.relativize(e.getPath() ) ) ) );
+        sb.append(System.lineSeparator() ).append("largest files").append(System.lineSeparator() );
+        largestFiles().forEach( (e) -> sb.append(String.format("%-7s  %s%n", humanReadable(e.getBytes() ),
+                rootPath.relativize(e.getPath() ) ) ) );
+        return sb.toString();
+    }
+
+    /**
+     * @param bytes a size
+     * @return the size in the largest binary unit in which it is at least 1, as {@code du -h} prints it
+     */
+    static String humanReadable(long bytes) {
+        double size = bytes;
+        int unit = 0;
+        while (size >= 1024 && unit < UNITS.length - 1) {
+            size /= 1024;
+            unit++;
+        }
+        if (unit == 0) {
+            return bytes + UNITS[0];
+        }
+        return size < 10 ? String.format(Locale.ROOT, "%.1f%s", size, UNITS[unit])
+                         : String.format(Locale.ROOT, "%.0f%s", size, UNITS[unit]);
+    }
+
+    private void invalidate() {
+        largestFiles = null;
+        largestFolders = null;
+    }
+
+    // adds delta, scaled by sign, to the totals of folder and every folder above it
+    private void propagate(MovieFolder folder, long[] delta, int sign) {
+        Path rootPath = collection.getRootPath();
+        for (Path p = folder.getFolderPath(); Objects.nonNull(p) && p.startsWith(rootPath); p = p.getParent() ) {
+            collection.openFolder(p).map(usage::get).ifPresent( (u) -> u.add(delta, sign) );
+        }
+        invalidate();
+    }
+
+    @Override
+    public void fileAdded(MovieFolder folder, Path filename, FileType type) {
+        long bytes = size(folder.toAbsolutePath(filename) );
+        usage.computeIfAbsent(folder, (f) -> new Usage() ).addFile(filename, type, bytes);
+        long[] delta = new long[FileType.numFileTypes()];
+        delta[type.id()] = bytes;
+        propagate(folder, delta, 1);
+    }
+
+    @Override
+    public void fileRemoved(MovieFolder folder, Path filename, FileType type) {
+        Usage u = usage.get(folder);
+        if (Objects.isNull(u) ) {
+            return;
+        }
+        long bytes = u.removeFile(filename, type);
+        long[] delta = new long[FileType.numFileTypes()];
+        delta[type.id()] = bytes;
+        propagate(folder, delta, -1);
+    }
+
+    @Override
+    public void folderAdded(MovieFolder parent, MovieFolder folder) {
+        usage.put(folder, new Usage() ); // a new folder is empty, its files are reported as they are added
+        invalidate();
+    }
+
+    @Override
+    public void folderRemoved(MovieFolder parent, MovieFolder folder) {
+        Usage u = usage.get(folder);
+        if (Objects.nonNull(u) ) {
+            propagate(parent, u.totalBytes, -1);
+        }
+        collection.getSubFolders(folder).forEach(usage::remove);
+    }
+
+    @Override
+    public void folderMoved(MovieFolder folder, Path formerPath, MovieFolder formerParent, MovieFolder newParent) {
+        Usage u = usage.get(folder);
+        if (Objects.nonNull(u) && formerParent != newParent) {
+            long[] totals = u.totalBytes.clone();
+            propagate(formerParent, totals, -1);
+            propagate(newParent, totals, 1);
+        }
+        invalidate();
+    }
+
+    @Override
+    public String toString() {
+        return "DiskUsage{folders=" + usage.size() + ", topN=" + topN + "}";
+    }
+
+    private static final class Usage {
+        private final HashMap<Path, Long> fileBytes = new HashMap<>();
+        private final long[] ownBytes = new long[FileType.numFileTypes()];   // by FileType id
+        private final long[] totalBytes = new long[FileType.numFileTypes()]; // including every sub-folder
+
+        void addFile(Path filename, FileType type, long bytes) {
+            fileBytes.put(filename, bytes);
+            ownBytes[type.id()] += bytes;
+        }
+
+        long removeFile(Path filename, FileType type) {
+            long bytes = Objects.requireNonNullElse(fileBytes.remove(filename), 0L);
+            ownBytes[type.id()] -= bytes;
+            return bytes;
+        }
+
+        void add(long[] delta, int sign) {
+            for (int i = 0; i < delta.length; i++) {
+                totalBytes[i] += sign * delta[i];
+            }
+        }
+
+        long sum() {
+            long sum = 0;
+            for (long b : totalBytes) {
+                sum += b;
+            }
+            return sum;
+        }
+    }
+
+    /**
+     * A file or folder and its size in bytes.
+     */
+    static final class Entry {
+        private final Path path;
+        private final long bytes;
+
+        Entry(Path path, long bytes) {
+            this.path = path;
+            this.bytes = bytes;
+        }
+
+        Path getPath() {
+            return path;
+        }
+
+        long getBytes() {
+            return bytes;
+        }
+
+        @Override
+        public String toString() {
+            return humanReadable(bytes) + " " + path;
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package org.ericghara;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+/**
+ * One logical view of several {@link MovieCollection} roots, typically one per library volume.
+ * <p>
+ * The roots are scanned concurrently, one thread per root, so the scan takes as long as the largest volume rather
+ * than the sum of all of them.  Paths are routed to the collection of the root they're under by looking up each of
+ * their ancestors in a map keyed by root, which costs at most one lookup per path element however many roots
+ * there are.  Roots may not be nested.
+ * <p>
+ * Moves within a root are delegated to its collection.  A move between roots is made file by file: each file is
+ * renamed when both roots share a filesystem and otherwise streamed across and verified by {@link FileTransfer},
+ * then both collections' records are updated.  A folder move creates the destination folders first and deletes
+ * the emptied source folders last, so if it fails part way both collections still match the filesystem.
+ * Like {@code MovieCollection}, instances are not thread safe, and those scanned in spill mode must be closed.
+ */
+class FederatedCollection implements Closeable {
+
+    private static final Metrics.Timer SCAN_TIMER = Metrics.timer("federated.scan");
+    private static final Metrics.Counter CROSS_ROOT_MOVES = Metrics.counter("federated.crossRootMoves");
+    private static final Metrics.Counter CROSS_ROOT_BYTES = Metrics.counter("federated.crossRootMoves.bytes");
+
+    private final LinkedHashMap<Path, MovieCollection> byRoot = new LinkedHashMap<>();
+
+    FederatedCollection(List<String> roots) {
+        this(roots, ScanOptions.defaults() );
+    }
+
+    /**
+     * Scans every root concurrently.
+     * @param roots paths to the root folders (may be relative or absolute), none may contain another
+     * @param options controls how each root is scanned
+     * @throws IllegalArgumentException if the roots are nested or duplicated, or a root could not be scanned
+     */
+    FederatedCollection(List<String> roots, ScanOptions options) {
+        Objects.requireNonNull(options, "Received null scan options.");
+        if (roots.isEmpty() ) {
+            throw new IllegalArgumentException("Received no roots.");
+        }
+        List<Path> paths = roots.stream()
+                                .map( (r) -> Path.of(r).toAbsolutePath().normalize() )
+                                .collect(Collectors.toList() );
+        for (int i = 0; i < paths.size(); i++) {
+            for (int j = 0; j < paths.size(); j++) {
+                if (i != j && paths.get(i).startsWith(paths.get(j) ) ) {
+                    throw new IllegalArgumentException("The root " + paths.get(i) + " is inside of the root "
+                            + paths.get(j) );
+                }
+            }
+        }
+        long start = SCAN_TIMER.start();
+        ExecutorService executor = Executors.newFixedThreadPool(paths.size(), (r) -> {
+            Thread t = new Thread(r, "federated-scan");
+            t.setDaemon(true);
+            return t;
+        });
+        List<Future<MovieCollection>> scans = new ArrayList<>();
+        try {
+            paths.forEach( (p) -> scans.add(executor.submit( () -> new MovieCollection(p.toString(), options) ) ) );
+            for (int i = 0; i < paths.size(); i++) {
+                byRoot.put(paths.get(i), await(scans.get(i), paths.get(i) ) );
+            }
+        } catch (RuntimeException e) {
+            closeScanned(scans, e);
+            throw e;
+        } finally {
+            executor.shutdownNow();
+        }
+        SCAN_TIMER.stop(start);
+    }
+
+    private static MovieCollection await(Future<MovieCollection> scan, Path root) {
+        try {
+            return scan.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while scanning: " + root, e);
+        } catch (ExecutionException e) {
+            throw new IllegalArgumentException("Could not scan the root: " + root, e.getCause() );
+        }
+    }
+
+    // waits for the scans and closes the collections of those which succeeded, errors are added to failure
+    private static void closeScanned(List<Future<MovieCollection>> scans, RuntimeException failure) {
+        for (Future<MovieCollection> scan : scans) {
+            try {
+                scan.get().close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                // the scan failed, it closed its own store
+            } catch (IOException e) {
+                failure.addSuppressed(e);
+            }
+        }
+    }
+
+    /**
+     * Closes the collection of every root, see {@link MovieCollection#close()}.
+     * @throws IOException if a collection couldn't be closed, the others are closed regardless
+     */
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (MovieCollection collection : byRoot.values() ) {
+            try {
+                collection.close();
+            } catch (IOException e) {
+                if (Objects.isNull(failure) ) {
+                    failure = e;
+                }
+                else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (Objects.nonNull(failure) ) {
+            throw failure;
+        }
+    }
+
+    /**
+     * @return the absolute paths of the roots, in the order they were given
+     */
+    List<Path> getRoots() {
+        return List.copyOf(byRoot.keySet() );
+    }
+
+    /**
+     * @param root absolute path of one of the roots
+     * @return the collection of the root
+     */
+    MovieCollection getCollection(Path root) {
+        return Optional.ofNullable(byRoot.get(root) ).orElseThrow( () ->
+                new IllegalArgumentException("Not a root: " + root) );
+    }
+
+    /**
+     * @param path an absolute path
+     * @return the collection whose root the path is under
+     */
+    Optional<MovieCollection> route(Path path) {
+        FileClassifier.mustBeAbsolutePath(path);
+        for (Path p = path; Objects.nonNull(p); p = p.getParent() ) {
+            MovieCollection collection = byRoot.get(p);
+            if (Objects.nonNull(collection) ) {
+                return Optional.of(collection);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private MovieCollection route(Path path, String exceptionMsg) {
+        return route(path).orElseThrow( () -> new IllegalArgumentException(exceptionMsg) );
+    }
+
+    Optional<MovieFolder> openFolder(Path path) {
+        return route(path).flatMap( (c) -> c.openFolder(path) );
+    }
+
+    boolean containsFolder(Path path) {
+        return openFolder(path).isPresent();
+    }
+
+    boolean containsFile(Path path) {
+        return route(path).map( (c) -> c.containsFile(path) ).orElse(false);
+    }
+
+    /**
+     * Moves a file within or between roots.
+     * @param source absolute path of a file in one of the roots
+     * @param destination absolute path to move the file to, its parent must be a folder in one of the roots
+     */
+    void moveFile(Path source, Path destination) {
+        MovieCollection from = route(source, "Not under any root: " + source);
+        MovieCollection to = route(destination, "Not under any root: " + destination);
+        if (from == to) {
+            from.moveFile(source, destination);
+            return;
+        }
+        MovieFolder sourceFolder = from.openFolder(source.getParent(), "Could not resolve the source path: " + source);
+        FileType type = sourceFolder.getFileType(source.getFileName() ).orElseThrow( () ->
+                new IllegalArgumentException("The source file could not be located: " + source) );
+        MovieFolder destinationFolder = to.openFolder(destination.getParent(),
+                "Could not resolve the destination path: " + destination);
+        Path filename = destination.getFileName();
+        if (destinationFolder.containsFile(filename) || destinationFolder.getFolder(filename).isPresent() ) {
+            throw new IllegalArgumentException("The destination folder already contains: " + destination);
+        }
+        try {
+            if (FileTransfer.sameFileStore(source, destination) ) {
+                Files.move(source, destination, LinkOption.NOFOLLOW_LINKS);
+            }
+            else {
+                FileTransfer.copyAndDelete(source, destination, FileTransfer.Verification.SIZE,
+                        CROSS_ROOT_BYTES::add);
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("A low level file IO error occurred " + source + " to " + destination
+                    + " - check file permissions.", e);
+        }
+        CROSS_ROOT_MOVES.increment();
+        to.recordFileAdd(destination, type);
+        from.recordFileDelete(source);
+    }
+
+    /**
+     * Moves a folder and everything below it within or between roots.
+     * @param source absolute path of a folder in one of the roots, not a root
+     * @param destination absolute path of the folder to create, its parent must be a folder in one of the roots
+     */
+    void moveFolder(Path source, Path destination) {
+        if (byRoot.containsKey(source) ) {
+            throw new IllegalArgumentException("A root can not be moved: " + source);
+        }
+        MovieCollection from = route(source, "Not under any root: " + source);
+        MovieCollection to = route(destination, "Not under any root: " + destination);
+        if (from == to) {
+            from.moveFolder(source, destination);
+            return;
+        }
+        MovieFolder origin = from.openFolder(source, "Could not open the source: " + source);
+        List<MovieFolder> folders = from.getSubFolders(origin).collect(Collectors.toList() ); // parents first
+        for (MovieFolder folder : folders) {
+            Path target = destination.resolve(source.relativize(folder.getFolderPath() ) );
+            to.createFolder(target);
+            List<Path> files = folder.getAllFiles().collect(Collectors.toList() );
+            files.forEach( (f) -> moveFile(folder.toAbsolutePath(f), target.resolve(f) ) );
+        }
+        for (int i = folders.size() - 1; i >= 0; i--) {
+            from.deleteFolder(folders.get(i).getFolderPath() );
+        }
+    }
+
+    /**
+     * @return the scan statistics of each root
+     */
+    Map<Path, ScanReport> getScanReports() {
+        LinkedHashMap<Path, ScanReport> reports = new LinkedHashMap<>();
+        byRoot.forEach( (root, c) -> reports.put(root, c.getScanReport() ) );
+        return Collections.unmodifiableMap(reports);
+    }
+
+    /**
+     * Counts are taken from the current records, so they include changes made since the scan.
+     * @return for each root, the number of folders including the root ({@link FileType#Folder}) and of files of
+     * each type
+     */
+    Map<Path, Map<FileType, Long>> countsByRoot() {
+        Map<Path, Map<FileType, Long>> counts = byRoot.entrySet().parallelStream().collect(Collectors.toMap(
+                Map.Entry::getKey, (e) -> count(e.getValue() ) ) );
+        LinkedHashMap<Path, Map<FileType, Long>> ordered = new LinkedHashMap<>();
+        byRoot.keySet().forEach( (root) -> ordered.put(root, counts.get(root) ) );
+        return Collections.unmodifiableMap(ordered);
+    }
+
+    /**
+     * @return the number of folders and of files of each type summed over every root, see
+     * {@link FederatedCollection#countsByRoot()}
+     */
+    Map<FileType, Long> counts() {
+        EnumMap<FileType, Long> totals = new EnumMap<>(FileType.class);
+        countsByRoot().values().forEach( (c) -> c.forEach( (type, n) -> totals.merge(type, n, Long::sum) ) );
+        return totals;
+    }
+
+    private static Map<FileType, Long> count(MovieCollection collection) {
+        EnumMap<FileType, Long> counts = new EnumMap<>(FileType.class);
+        for (FileType type : FileType.values() ) {
+            counts.put(type, 0L);
+        }
+        collection.getSubFolders(collection.getRootPath() ).forEach( (f) -> {
+            counts.merge(FileType.Folder, 1L, Long::sum);
+            for (FileType type : FileType.values() ) {
+                if (type != FileType.Folder) {
+                    counts.merge(type, (long) f.getNum(type), Long::sum);
+                }
+            }
+        });
+        return counts;
+    }
+
+    @Override
+    public String toString() {
+        return "FederatedCollection{roots=" + byRoot.keySet() + "}";
+    }
+}
@@ -3,11 +3,17 @@ package org.ericghara;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.Objects;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import static java.nio.file.LinkOption.NOFOLLOW_LINKS;
 
+/**
+ * Path validation helpers and the original regular expression based video and subtitle matchers.  Scans classify
+ * files with {@link ClassificationRules}, which by default are equivalent to {@link FileClassifier#isVideo},
+ * {@link FileClassifier#isSub} and a 50 MB video threshold.
+ */
 class FileClassifier {
 
     private static final String[] VIDEO_EXTS = {"ASX", "GXF", "M2V", "M3U", "M4V", "MPEG1", "MPEG2", "MTS", "MXF",
@@ -16,16 +22,19 @@ class FileClassifier {
             "MP4", "M4P"};
     private static final String[] SUB_EXTS = {"SRT", "SUB", "IDX"};
 
-    private final Matcher videoMatcher;
-    private final Matcher subMatcher;
+    private Matcher videoMatcher; // created on first use, most runs classify with ClassificationRules only
+    private Matcher subMatcher;
 
     FileClassifier() {
-        videoMatcher = getMatcher(VIDEO_EXTS);
-        subMatcher = getMatcher(SUB_EXTS);
     }
 
-    // returns an empty matcher. It needs to be reset with a new char sequence;
-    private static Matcher getMatcher(String[] exts) {
+    // Lazily compiles the patterns on first use, once per process
+    private static class Patterns {
+        private static final Pattern VIDEO = getPattern(VIDEO_EXTS);
+        private static final Pattern SUB = getPattern(SUB_EXTS);
+    }
+
+    private static Pattern getPattern(String[] exts) {
         if (exts.length < 1) {
             throw new IllegalArgumentException("Received an empty extensions array");
         }
@@ -38,7 +47,7 @@ class FileClassifier {
         Arrays.asList(exts).forEach((ext) -> builder.append(ext).append('|'));
         builder.setCharAt(builder.length()-1, ')');
         builder.append("$");
-        return Pattern.compile(builder.toString(), Flags).matcher("");
+        return Pattern.compile(builder.toString(), Flags);
     }
 
     static void mustBeFilename(Path filename) {
@@ -57,6 +66,9 @@ class FileClassifier {
     // accepts both absolute and relative paths
     boolean isVideo(Path path) {
         String filename = path.getFileName().toString();
+        if (Objects.isNull(videoMatcher) ) {
+            videoMatcher = Patterns.VIDEO.matcher("");
+        }
         videoMatcher.reset(filename);
         return videoMatcher.matches();
     }
@@ -64,6 +76,9 @@ class FileClassifier {
     // accepts both absolute and relative paths
     boolean isSub(Path path) {
         String filename = path.getFileName().toString();
+        if (Objects.isNull(subMatcher) ) {
+            subMatcher = Patterns.SUB.matcher("");
+        }
         subMatcher.reset(filename);
         return subMatcher.matches();
     }
@@ -105,13 +120,19 @@ class FileClassifier {
      */
     boolean fileSizeLargerThan(Path path, int sizeMB) {
         final int ONE_MB = 1_048_576; // bytes per MB
+        return fileSize(path)/ONE_MB > sizeMB;
+    }
+
+    /**
+     * @param path must be absolute
+     * @return file size in bytes
+     */
+    static long fileSize(Path path) {
         mustBeAbsolutePath(path);
-        long sizeBytes;
         try {
-            sizeBytes = Files.size(path);
+            return Files.size(path);
         } catch (Exception e) {
             throw new IllegalArgumentException("Couldn't open file: " + path + ".", e);
         }
-        return sizeBytes/ONE_MB > sizeMB;
     }
 }
@@ -0,0 +1,125 @@
+package org.ericghara;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copies files, optionally without duplicating their data.
+ * <p>
+ * When the source and destination share a {@link FileStore} a copy can be made in constant time: either as a
+ * copy-on-write clone (a reflink, on filesystems such as Btrfs, XFS, ZFS and APFS) or as a hard link.  A reflink is
+ * an independent file which shares unmodified blocks with its source.  A hard link is the same file under a second
+ * name, so modifying either modifies both; that suits staging copies which are only read.  Java has no reflink API,
+ * so clones are made with the platform's {@code cp}, and a filesystem which refuses a clone is remembered so it is
+ * not asked again.  A clone which fails for another reason, such as a timeout or a full disk, isn't remembered.
+ * Each mode falls back to the next cheapest one that is possible.
+ */
+final class FileCopier {
+
+    /**
+     * How a file copy is made.
+     */
+    enum CopyMode {
+        /** duplicate the data */
+        COPY,
+        /** hard link when on the same filesystem, otherwise duplicate the data */
+        LINK,
+        /** copy-on-write clone when supported, otherwise a hard link or duplicate as for {@link #LINK} */
+        REFLINK
+    }
+
+    private static final Metrics.Counter LINKS = Metrics.counter("io.copyFile.links");
+    private static final Metrics.Counter REFLINKS = Metrics.counter("io.copyFile.reflinks");
+    private static final long REFLINK_TIMEOUT_SECONDS = 60;
+    private static final boolean MAC_OS = System.getProperty("os.name", "").toLowerCase(Locale.ROOT)
+                                                .startsWith("mac");
+    private static final boolean WINDOWS = System.getProperty("os.name", "").toLowerCase(Locale.ROOT)
+                                                 .startsWith("windows");
+    // file stores which refused a clone
+    private static final ConcurrentHashMap<FileStore, Boolean> NO_REFLINK = new ConcurrentHashMap<>();
+
+    private FileCopier() {
+    }
+
+    /**
+     * @param source an existing file
+     * @param destination the file to create, it must not exist
+     * @param mode the preferred way of making the copy
+     * @return the way the copy was actually made
+     * @throws IOException if no copy could be made
+     */
+    static CopyMode copy(Path source, Path destination, CopyMode mode) throws IOException {
+        if (Files.exists(destination, LinkOption.NOFOLLOW_LINKS) ) {
+            throw new FileAlreadyExistsException(destination.toString() );
+        }
+        if (mode != CopyMode.COPY && FileTransfer.sameFileStore(source, destination) ) {
+            if (mode == CopyMode.REFLINK && reflink(source, destination) ) {
+                REFLINKS.increment();
+                return CopyMode.REFLINK;
+            }
+            try {
+                Files.createLink(destination, source);
+                LINKS.increment();
+                return CopyMode.LINK;
+            } catch (UnsupportedOperationException | IOException e) {
+                if (Files.exists(destination, LinkOption.NOFOLLOW_LINKS) ) {
+                    throw e; // not a lack of support
+                }
+            }
+        }
+        Files.copy(source, destination, StandardCopyOption.COPY_ATTRIBUTES, LinkOption.NOFOLLOW_LINKS);
+        return CopyMode.COPY;
+    }
+
+    // true if a clone was made, false if none could be made this time
+    private static boolean reflink(Path source, Path destination) throws IOException {
+        FileStore store = Files.getFileStore(source);
+        if (WINDOWS || NO_REFLINK.containsKey(store) ) {
+            return false;
+        }
+        ProcessBuilder cp = MAC_OS
+                ? new ProcessBuilder("cp", "-c", "-p", "-n", source.toString(), destination.toString() )
+                : new ProcessBuilder("cp", "--reflink=always", "--preserve=timestamps", "--no-clobber",
+                                     source.toString(), destination.toString() );
+        cp.environment().put("LC_ALL", "C"); // untranslated error messages
+        cp.redirectErrorStream(true);
+        try {
+            Process process = cp.start();
+            if (!process.waitFor(REFLINK_TIMEOUT_SECONDS, TimeUnit.SECONDS) ) {
+                process.destroyForcibly().waitFor(); // cp must not be writing while the destination is removed
+            }
+            else if (process.exitValue() == 0 && Files.exists(destination, LinkOption.NOFOLLOW_LINKS) ) {
+                return true;
+            }
+            else if (refusesClone(new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8) ) ) {
+                NO_REFLINK.put(store, Boolean.TRUE);
+            }
+        } catch (IOException e) {
+            // no usable cp
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while cloning " + source, e);
+        }
+        Files.deleteIfExists(destination); // a failed clone may leave an empty file behind
+        return false;
+    }
+
+    /**
+     * @param cpOutput what a failed {@code cp} printed, in the C locale
+     * @return true if the filesystem refused the clone, rather than the copy failing for a reason such as an
+     * unreadable source or a full disk which may not recur
+     */
+    static boolean refusesClone(String cpOutput) {
+        return cpOutput.contains("Operation not supported") || cpOutput.contains("Inappropriate ioctl for device")
+                || cpOutput.contains("Invalid cross-device link") || cpOutput.contains("Invalid argument");
+    }
+}
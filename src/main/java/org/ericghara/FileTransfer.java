@@ -0,0 +1,147 @@
+package org.ericghara;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Moves files between filesystems.  {@link Files#move} falls back to an unverified copy and delete when the source
+ * and destination are on different filesystems, and gives no indication of progress while it blocks.  Here the file
+ * is instead streamed to a temporary file beside the destination with {@link FileChannel#transferTo}, which lets the
+ * kernel copy large chunks without passing them through the heap.  The copy is verified, renamed into place and
+ * only then is the source deleted.  A failure at any step leaves the source untouched and removes the partial copy,
+ * and if the source can't be deleted the renamed copy is removed as well, so the file is never left at both paths.
+ */
+final class FileTransfer {
+
+    /**
+     * How a copy is checked before the source is deleted.
+     */
+    enum Verification {
+        /** the copy and the source must be the same size */
+        SIZE,
+        /** the copy and the source must be the same size and have the same SHA-256 digest */
+        HASH
+    }
+
+    static final long CHUNK_BYTES = 64L * 1024 * 1024;
+    private static final int HASH_BUFFER_BYTES = 1024 * 1024;
+    private static final String PARTIAL_SUFFIX = ".partial";
+
+    private FileTransfer() {
+    }
+
+    /**
+     * @param source an existing file
+     * @param destination a path whose parent folder exists
+     * @return true if the source file and the destination's parent folder are on the same filesystem
+     * @throws IOException if either file store could not be determined
+     */
+    static boolean sameFileStore(Path source, Path destination) throws IOException {
+        return Files.getFileStore(source).equals(Files.getFileStore(destination.getParent() ) );
+    }
+
+    /**
+     * Copies the source to the destination, verifies the copy and then deletes the source.  The last modified time
+     * of the source is preserved.
+     * @param source the file to move
+     * @param destination the file to create, it must not exist
+     * @param verification how the copy is checked
+     * @param progress receives the number of bytes copied after each chunk
+     * @throws IOException if the copy could not be made, did not verify or the source could not be deleted, the
+     * source is then left in place and the destination does not exist
+     */
+    static void copyAndDelete(Path source, Path destination, Verification verification, LongConsumer progress)
+            throws IOException {
+        copyAndDelete(source, destination, verification, progress, Files::delete);
+    }
+
+    /**
+     * @param deleteSource deletes the source once the copy is in place
+     * @see #copyAndDelete(Path, Path, Verification, LongConsumer)
+     */
+    static void copyAndDelete(Path source, Path destination, Verification verification, LongConsumer progress,
+                              Deleter deleteSource) throws IOException {
+        if (Files.exists(destination, LinkOption.NOFOLLOW_LINKS) ) {
+            throw new FileAlreadyExistsException(destination.toString() );
+        }
+        Path partial = destination.resolveSibling("." + destination.getFileName() + PARTIAL_SUFFIX);
+        try {
+            long size = transfer(source, partial, progress);
+            verify(source, partial, size, verification);
+            Files.setLastModifiedTime(partial, Files.getLastModifiedTime(source) );
+            Files.move(partial, destination, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(partial);
+            throw e;
+        }
+        try {
+            deleteSource.delete(source);
+        } catch (IOException | RuntimeException e) { // roll back, the source stays the only copy
+            try {
+                Files.deleteIfExists(destination);
+            } catch (IOException rollback) {
+                e.addSuppressed(rollback);
+            }
+            throw e;
+        }
+    }
+
+    @FunctionalInterface
+    interface Deleter {
+        void delete(Path path) throws IOException;
+    }
+
+    private static long transfer(Path source, Path target, LongConsumer progress) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE) ) {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                long transferred = in.transferTo(position, Math.min(CHUNK_BYTES, size - position), out);
+                if (transferred <= 0) {
+                    throw new IOException("The source was truncated during the transfer: " + source);
+                }
+                position += transferred;
+                progress.accept(transferred);
+            }
+            out.force(true);
+            return size;
+        }
+    }
+
+    private static void verify(Path source, Path copy, long size, Verification verification) throws IOException {
+        if (Files.size(source) != size || Files.size(copy) != size) {
+            throw new IOException("The copy of " + source + " is not the same size as the source.");
+        }
+        if (verification == Verification.HASH && !Arrays.equals(sha256(source), sha256(copy) ) ) {
+            throw new IOException("The copy of " + source + " does not have the same digest as the source.");
+        }
+    }
+
+    static byte[] sha256(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required by every Java platform.", e);
+        }
+        byte[] buffer = new byte[HASH_BUFFER_BYTES];
+        try (InputStream in = Files.newInputStream(file) ) {
+            for (int read = in.read(buffer); read >= 0; read = in.read(buffer) ) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return digest.digest();
+    }
+}
@@ -0,0 +1,158 @@
+package org.ericghara;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * Java Flight Recorder event types emitted by {@link MovieCollection}.  Events are only populated and committed
+ * while a recording that enables them is running, so they cost an allocation the JIT usually eliminates
+ * otherwise.  Every event is in the {@code MovieOrganizer} category in JMC.
+ */
+final class FlightEvents {
+
+    private static boolean periodicRegistered;
+
+    private FlightEvents() {}
+
+    /**
+     * Registers the periodic {@link MetricsSnapshotEvent}.  Safe to call more than once and on runtimes where
+     * the {@code jdk.jfr} module is unavailable.
+     */
+    static synchronized void registerPeriodicEvents() {
+        if (periodicRegistered) {
+            return;
+        }
+        periodicRegistered = true;
+        try {
+            FlightRecorder.addPeriodicEvent(MetricsSnapshotEvent.class, MetricsSnapshotEvent::emit);
+        } catch (LinkageError | RuntimeException e) {
+            // JFR missing or disabled: metrics are still available through Metrics.snapshotJson()
+        }
+    }
+
+    private static String toString(Path path) {
+        return Objects.isNull(path) ? null : path.toString();
+    }
+
+    @Name("org.ericghara.FileOperation")
+    @Label("File Operation")
+    @Category({"MovieOrganizer", "I/O"})
+    @Description("A delete, copy or move of a single file in a MovieCollection")
+    static class FileOperationEvent extends Event {
+        @Label("Operation")
+        String operation;
+
+        @Label("Source")
+        String source;
+
+        @Label("Destination")
+        String destination;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        @Label("Succeeded")
+        boolean succeeded;
+
+        /**
+         * Ends the event and commits it if the running recording wants it.
+         */
+        void finish(MovieCollection.IOOperation op, Path src, Path dst, long numBytes, boolean success) {
+            end();
+            if (shouldCommit() ) {
+                operation = op.label();
+                source = FlightEvents.toString(src);
+                destination = FlightEvents.toString(dst);
+                bytes = numBytes;
+                succeeded = success;
+                commit();
+            }
+        }
+    }
+
+    @Name("org.ericghara.FolderOperation")
+    @Label("Folder Operation")
+    @Category({"MovieOrganizer", "I/O"})
+    @Description("The filesystem part of a delete, copy or move of a folder in a MovieCollection")
+    static class FolderOperationEvent extends Event {
+        @Label("Operation")
+        String operation;
+
+        @Label("Source")
+        String source;
+
+        @Label("Destination")
+        String destination;
+
+        @Label("Succeeded")
+        boolean succeeded;
+
+        void finish(MovieCollection.IOOperation op, Path src, Path dst, boolean success) {
+            end();
+            if (shouldCommit() ) {
+                operation = op.label();
+                source = FlightEvents.toString(src);
+                destination = FlightEvents.toString(dst);
+                succeeded = success;
+                commit();
+            }
+        }
+    }
+
+    @Name("org.ericghara.ScanPhase")
+    @Label("Scan Phase")
+    @Category({"MovieOrganizer", "Scan"})
+    @Description("One phase of building a MovieCollection: walking the filesystem or sorting the walked paths")
+    @StackTrace(false)
+    static class ScanPhaseEvent extends Event {
+        @Label("Root")
+        String root;
+
+        @Label("Phase")
+        String phase;
+
+        @Label("Entries")
+        @Description("Paths produced by the walk, or paths sorted into the tree")
+        long entries;
+
+        void finish(Path rootPath, String phaseName, long numEntries) {
+            end();
+            if (shouldCommit() ) {
+                root = FlightEvents.toString(rootPath);
+                phase = phaseName;
+                entries = numEntries;
+                commit();
+            }
+        }
+    }
+
+    @Name("org.ericghara.MetricsSnapshot")
+    @Label("Metrics Snapshot")
+    @Category({"MovieOrganizer", "Metrics"})
+    @Description("A JSON snapshot of the MovieOrganizer metrics registry, only populated when metrics are enabled")
+    @Period("60 s")
+    @StackTrace(false)
+    static class MetricsSnapshotEvent extends Event {
+        @Label("Snapshot")
+        String json;
+
+        private static void emit() {
+            if (Metrics.isEnabled() ) {
+                MetricsSnapshotEvent event = new MetricsSnapshotEvent();
+                event.json = Metrics.snapshotJson();
+                event.commit();
+            }
+        }
+    }
+}
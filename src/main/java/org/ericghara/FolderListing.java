@@ -0,0 +1,245 @@
+package org.ericghara;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Sorted, paginated listings of one {@link MovieFolder}.
+ * <p>
+ * Each combination of file type and {@link Order} is backed by a sorted index, built the first time it's listed and
+ * cached until the folder's records change.  A page is found by a binary search for its {@link Cursor}, so page N of
+ * a large folder costs O(log n + page size) and stays consistent while entries before it are added or removed.
+ * Sizes and modification times are read from disk when an index is built, an entry which can't be read sorts as -1.
+ */
+class FolderListing {
+
+    private static final Metrics.Counter INDEX_BUILDS = Metrics.counter("listing.indexBuilds");
+    private static final Metrics.Timer PAGE_TIMER = Metrics.timer("listing.page");
+
+    enum Order {
+        NAME, SIZE, MODIFIED
+    }
+
+    private final MovieFolder folder;
+    // slot 0 is all files, then one per FileType, each holding one index per Order
+    private final Index[][] indexes = new Index[FileType.values().length + 1][Order.values().length];
+
+    FolderListing(MovieFolder folder) {
+        this.folder = Objects.requireNonNull(folder, "Received a null folder.");
+    }
+
+    /**
+     * @param type the type to list, or null for files of every type
+     * @param order sort order, ties are broken by name
+     * @param descending if the order should be reversed
+     * @param after the cursor of the previous page, or null for the first page
+     * @param limit maximum entries in the page
+     * @return the page following {@code after}
+     */
+    synchronized Page page(FileType type, Order order, boolean descending, Cursor after, int limit) {
+        Objects.requireNonNull(order, "Received a null order.");
+        if (limit < 1) {
+            throw new IllegalArgumentException("Received a non-positive page size: " + limit);
+        }
+        if (Objects.nonNull(after) && (after.order != order || after.descending != descending) ) {
+            throw new IllegalArgumentException("The cursor " + after + " belongs to a listing by "
+                    + after.order + (after.descending ? " descending" : "") );
+        }
+        long start = PAGE_TIMER.start();
+        Index index = index(type, order);
+        int n = index.names.length;
+        List<Path> names = new ArrayList<>(Math.min(limit, n) );
+        int i;
+        if (descending) {
+            i = Objects.isNull(after) ? n - 1 : index.firstAfter(after.value, after.name) - 1;
+            if (Objects.nonNull(after) && i >= 0 && index.compare(i, after.value, after.name) == 0) {
+                i--;
+            }
+            for (; i >= 0 && names.size() < limit; i--) {
+                names.add(index.names[i]);
+            }
+        }
+        else {
+            i = Objects.isNull(after) ? 0 : index.firstAfter(after.value, after.name);
+            for (; i < n && names.size() < limit; i++) {
+                names.add(index.names[i]);
+            }
+        }
+        boolean more = descending ? i >= 0 : i < n;
+        int last = descending ? i + 1 : i - 1;
+        Cursor next = more && !names.isEmpty() ? new Cursor(order, descending, index.key(last), index.names[last])
+                                               : null;
+        PAGE_TIMER.stop(start);
+        return new Page(names, next);
+    }
+
+    private Index index(FileType type, Order order) {
+        int slot = Objects.isNull(type) ? 0 : type.ordinal() + 1;
+        Index index = indexes[slot][order.ordinal()];
+        if (Objects.isNull(index) || index.modCount != folder.getModCount() ) {
+            if (Objects.nonNull(index) ) { // the folder changed, every index is stale
+                Arrays.stream(indexes).forEach( (byOrder) -> Arrays.fill(byOrder, null) );
+            }
+            index = build(type, order);
+            indexes[slot][order.ordinal()] = index;
+        }
+        return index;
+    }
+
+    private Index build(FileType type, Order order) {
+        INDEX_BUILDS.increment();
+        List<Path> names = Objects.isNull(type) ? folder.getAllFiles().collect(Collectors.toList() )
+                                                : new ArrayList<>(folder.getFilenames(type) );
+        if (order == Order.NAME) {
+            Path[] sorted = names.toArray(Path[]::new);
+            Arrays.sort(sorted);
+            return new Index(folder.getModCount(), sorted, null);
+        }
+        List<Entry> entries = names.stream().map( (name) -> new Entry(name, stat(name, order) ) )
+                                   .sorted(Comparator.comparingLong( (Entry e) -> e.key).thenComparing(e -> e.name) )
+                                   .collect(Collectors.toList() );
+        Path[] sorted = new Path[entries.size()];
+        long[] keys = new long[entries.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = entries.get(i).name;
+            keys[i] = entries.get(i).key;
+        }
+        return new Index(folder.getModCount(), sorted, keys);
+    }
+
+    private long stat(Path name, Order order) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(folder.toAbsolutePath(name), BasicFileAttributes.class,
+                    LinkOption.NOFOLLOW_LINKS);
+            return order == Order.SIZE ? attrs.size() : attrs.lastModifiedTime().toMillis();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private static final class Entry {
+        private final Path name;
+        private final long key;
+
+        private Entry(Path name, long key) {
+            this.name = name;
+            this.key = key;
+        }
+    }
+
+    private static final class Index {
+        private final int modCount;
+        private final Path[] names;
+        private final long[] keys; // null when sorted by name only
+
+        private Index(int modCount, Path[] names, long[] keys) {
+            this.modCount = modCount;
+            this.names = names;
+            this.keys = keys;
+        }
+
+        private long key(int i) {
+            return Objects.isNull(keys) ? 0L : keys[i];
+        }
+
+        private int compare(int i, long value, Path name) {
+            int cmp = Long.compare(key(i), Objects.isNull(keys) ? 0L : value);
+            return cmp != 0 ? cmp : names[i].compareTo(name);
+        }
+
+        // the first position sorting strictly after (value, name)
+        private int firstAfter(long value, Path name) {
+            int lo = 0;
+            int hi = names.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (compare(mid, value, name) <= 0) {
+                    lo = mid + 1;
+                }
+                else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
+
+    /**
+     * One page of a listing.
+     */
+    static final class Page {
+        private final List<Path> names;
+        private final Cursor next;
+
+        private Page(List<Path> names, Cursor next) {
+            this.names = Collections.unmodifiableList(names);
+            this.next = next;
+        }
+
+        /**
+         * @return names of the entries in this page, in order
+         */
+        List<Path> getNames() {
+            return names;
+        }
+
+        /**
+         * @return the cursor of the following page, empty if this is the last page
+         */
+        Optional<Cursor> next() {
+            return Optional.ofNullable(next);
+        }
+    }
+
+    /**
+     * The position after the last entry of a page.  {@link #toString()} gives a token which {@link #parse} accepts, so
+     * a cursor can be handed to a client and back.
+     */
+    static final class Cursor {
+        private final Order order;
+        private final boolean descending;
+        private final long value;
+        private final Path name;
+
+        private Cursor(Order order, boolean descending, long value, Path name) {
+            this.order = order;
+            this.descending = descending;
+            this.value = value;
+            this.name = name;
+        }
+
+        /**
+         * @param token a token given by {@link #toString()}
+         * @return the cursor
+         */
+        static Cursor parse(String token) {
+            String[] parts = Objects.requireNonNull(token, "Received a null cursor.").split(":", 3);
+            if (parts.length != 3 || !parts[0].matches("[A-Z]+[+-]") ) {
+                throw new IllegalArgumentException("Received a malformed cursor: " + token);
+            }
+            String order = parts[0].substring(0, parts[0].length() - 1);
+            try {
+                return new Cursor(Order.valueOf(order), parts[0].endsWith("-"), Long.parseLong(parts[1]),
+                        Path.of(parts[2]) );
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Received a malformed cursor: " + token, e);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return order + (descending ? "-" : "+") + ":" + value + ":" + name;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package org.ericghara;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The folder records of a collection scanned in spill mode, see {@link ScanOptions#spill}.
+ * <p>
+ * Recently used {@link MovieFolder}s are kept in an LRU cache of bounded size.  A folder evicted from the cache is
+ * appended to a record file, unless it is unchanged since it was last written, and an index from the folder's id to
+ * the offset of its latest record lets it be read back on demand.  A folder in spill mode refers to its sub-folders
+ * by id, so an evicted folder is only reachable through the store, and the heap holds the cache, the index and
+ * whatever folders callers still reference.
+ * <p>
+ * A folder still referenced after its eviction is remembered weakly, so loading it again returns the same instance
+ * rather than a copy, and changes made through the reference re-admit it to the cache.  The record file is
+ * append-only and deleted when the store is closed.  Instances are thread safe.
+ */
+class FolderStore implements Closeable {
+
+    private static final Metrics.Counter WRITES = Metrics.counter("spill.writes");
+    private static final Metrics.Counter WRITE_BYTES = Metrics.counter("spill.writes.bytes");
+    private static final Metrics.Counter READS = Metrics.counter("spill.reads");
+
+    private final Path file;
+    private final FileChannel channel;
+    private final int capacity;
+    private final LinkedHashMap<Integer, MovieFolder> cache;
+    private final Map<Integer, IdReference> evicted = new HashMap<>(); // still referenced outside the store
+    private final ReferenceQueue<MovieFolder> collected = new ReferenceQueue<>();
+    private final BitSet dirty = new BitSet();
+    private long[] offsets = new long[1024]; // of each folder's latest record by id, -1 if never written
+    private int nextId;
+    private long end;
+
+    /**
+     * @param directory directory in which to create the record file
+     * @param capacity maximum folders kept in memory by the store
+     */
+    FolderStore(Path directory, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Received a non-positive cache capacity: " + capacity);
+        }
+        this.capacity = capacity;
+        try {
+            file = Files.createTempFile(directory, "folders", ".spill");
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.DELETE_ON_CLOSE);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("A low level file IO error occurred creating a record file in "
+                    + directory, e);
+        }
+        Arrays.fill(offsets, -1L);
+        cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, MovieFolder> eldest) {
+                if (size() <= FolderStore.this.capacity) {
+                    return false;
+                }
+                evict(eldest.getKey(), eldest.getValue() );
+                return true;
+            }
+        };
+    }
+
+    /**
+     * @return an id for a new folder
+     */
+    synchronized int newId() {
+        if (nextId == offsets.length) {
+            int length = offsets.length;
+            offsets = Arrays.copyOf(offsets, length * 2);
+            Arrays.fill(offsets, length, offsets.length, -1L);
+        }
+        return nextId++;
+    }
+
+    /**
+     * Admits a folder which is new or has changed to the cache.
+     * @param id the folder's id
+     * @param folder the folder
+     */
+    synchronized void changed(int id, MovieFolder folder) {
+        expunge();
+        evicted.remove(id);
+        dirty.set(id);
+        cache.put(id, folder);
+    }
+
+    /**
+     * @param id a folder's id
+     * @return the folder, from the cache, an instance still referenced elsewhere or the record file
+     */
+    synchronized MovieFolder load(int id) {
+        MovieFolder folder = cache.get(id);
+        if (Objects.nonNull(folder) ) {
+            return folder;
+        }
+        expunge();
+        IdReference reference = evicted.remove(id);
+        folder = Objects.isNull(reference) ? null : reference.get();
+        if (Objects.isNull(folder) ) {
+            folder = read(id);
+        }
+        cache.put(id, folder);
+        return folder;
+    }
+
+    private void evict(int id, MovieFolder folder) {
+        if (dirty.get(id) ) {
+            write(id, folder);
+        }
+        evicted.put(id, new IdReference(id, folder, collected) );
+    }
+
+    private void write(int id, MovieFolder folder) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0); // length, filled in below
+            folder.write(out);
+            ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray() );
+            record.putInt(0, record.capacity() - Integer.BYTES);
+            long offset = end;
+            while (record.hasRemaining() ) {
+                end += channel.write(record, end);
+            }
+            offsets[id] = offset;
+            dirty.clear(id);
+            WRITES.increment();
+            WRITE_BYTES.add(record.capacity() );
+        } catch (IOException e) {
+            throw new IllegalStateException("A low level file IO error occurred spilling the folder "
+                    + folder + " to " + file, e);
+        }
+    }
+
+    private MovieFolder read(int id) {
+        long offset = id < nextId ? offsets[id] : -1L;
+        if (offset < 0) {
+            throw new IllegalArgumentException("The store has no record of the folder: " + id);
+        }
+        try {
+            ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+            readFully(length, offset);
+            ByteBuffer record = ByteBuffer.allocate(length.flip().getInt() );
+            readFully(record, offset + Integer.BYTES);
+            READS.increment();
+            return MovieFolder.read(new DataInputStream(new ByteArrayInputStream(record.array() ) ), this, id);
+        } catch (IOException e) {
+            throw new IllegalStateException("A low level file IO error occurred reading the folder " + id
+                    + " from " + file, e);
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining() ) {
+            if (channel.read(buffer, position + buffer.position() ) < 0) {
+                throw new IOException("Unexpected end of the record file at " + position);
+            }
+        }
+    }
+
+    // forgets evicted folders which are no longer referenced, their records are current
+    private void expunge() {
+        for (Object ref = collected.poll(); Objects.nonNull(ref); ref = collected.poll() ) {
+            IdReference reference = (IdReference) ref;
+            evicted.remove(reference.id, reference);
+        }
+    }
+
+    /**
+     * @return folders held in the cache
+     */
+    synchronized int cachedFolders() {
+        return cache.size();
+    }
+
+    /**
+     * @return bytes appended to the record file
+     */
+    synchronized long fileBytes() {
+        return end;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "FolderStore{file=" + file + ", folders=" + nextId + ", cached=" + cache.size() + ", bytes=" + end
+                + "}";
+    }
+
+    private static final class IdReference extends WeakReference<MovieFolder> {
+        private final int id;
+
+        private IdReference(int id, MovieFolder folder, ReferenceQueue<MovieFolder> queue) {
+            super(folder, queue);
+            this.id = id;
+        }
+    }
+}
@@ -0,0 +1,510 @@
+package org.ericghara;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+/**
+ * Detects truncated and corrupt {@link FileType#Movie} files, such as incomplete downloads, without reading their
+ * contents.
+ * <p>
+ * The container is identified from the first few KB by {@link ContainerSniffer#identify}, then its top level
+ * structure is walked with positional {@link FileChannel} reads of a few bytes each, skipping over the data:
+ * <ul>
+ *     <li>MP4/QuickTime: every top level box must fit in the file and a {@code moov} box must be present</li>
+ *     <li>Matroska: the EBML header and Segment sizes, then every level 1 element (clusters, cues, ...) must fit in
+ *     the Segment, and there must be at least one Cluster</li>
+ *     <li>AVI: every RIFF chunk must fit in the file, and the first must hold a {@code movi} list</li>
+ *     <li>MPEG-TS: the file must be a whole number of packets and the last packet must begin with a sync byte</li>
+ * </ul>
+ * A file whose first few KB are zeros, as left by a client which preallocates its downloads, is corrupt.  Other
+ * containers are reported as unchecked.  A check costs a few reads for most containers and one read per cluster
+ * for Matroska, whatever the size of the file.  Files are checked in parallel.
+ */
+class IntegrityVerifier {
+
+    private static final Metrics.Timer VERIFY_TIMER = Metrics.timer("verify.file");
+    private static final Metrics.Counter PROBLEMS = Metrics.counter("verify.problems");
+    private static final int MAX_ELEMENTS = 1 << 20; // per file, bounds the walk of a corrupt file
+    private static final int TS_PACKET = 188;
+    private static final int M2TS_PACKET = 192;
+
+    // Matroska element ids, including their length markers
+    private static final int EBML = 0x1A45DFA3;
+    private static final int SEGMENT = 0x18538067;
+    private static final int CLUSTER = 0x1F43B675;
+
+    /**
+     * The outcome of a check.
+     */
+    enum Status {
+        OK, TRUNCATED, CORRUPT, UNCHECKED, UNREADABLE;
+
+        boolean isProblem() {
+            return this == TRUNCATED || this == CORRUPT || this == UNREADABLE;
+        }
+    }
+
+    private final MovieCollection collection;
+    private final int parallelism;
+
+    /**
+     * @param collection collection whose movies are verified
+     * @param parallelism maximum number of files checked at once
+     */
+    IntegrityVerifier(MovieCollection collection, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Received a non-positive parallelism: " + parallelism);
+        }
+        this.collection = Objects.requireNonNull(collection, "Received a null collection.");
+        this.parallelism = parallelism;
+    }
+
+    IntegrityVerifier(MovieCollection collection) {
+        this(collection, Runtime.getRuntime().availableProcessors() );
+    }
+
+    /**
+     * Checks every {@link FileType#Movie} in the collection.
+     * @return the result of each check
+     */
+    Report verify() {
+        List<Path> movies = collection.getSubFolders(collection.getRootPath() )
+                                      .flatMap( (f) -> f.getFilenames(FileType.Movie).stream()
+                                                        .map(f::toAbsolutePath) )
+                                      .collect(Collectors.toList() );
+        return verify(movies);
+    }
+
+    /**
+     * @param files absolute paths of the files to check
+     * @return the result of each check, in the order of {@code files}
+     */
+    Report verify(List<Path> files) {
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, (r) -> {
+            Thread t = new Thread(r, "integrity-verifier");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Callable<Result>> checks = new ArrayList<>();
+            files.forEach( (f) -> checks.add( () -> check(f) ) );
+            Report report = new Report();
+            for (Future<Result> f : executor.invokeAll(checks) ) {
+                report.results.add(f.get() );
+            }
+            return report;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while verifying.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A check failed unexpectedly.", e.getCause() );
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @param file absolute path of a file
+     * @return the result of checking the file's container structure
+     */
+    static Result check(Path file) {
+        FileClassifier.mustBeAbsolutePath(file);
+        long start = VERIFY_TIMER.start();
+        Result result;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ) ) {
+            long length = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(ContainerSniffer.SNIFF_BYTES);
+            while (header.hasRemaining() && channel.read(header, header.position() ) >= 0) {
+                // fill the buffer or stop at EOF
+            }
+            header.flip();
+            ContainerSniffer.Container container = ContainerSniffer.identify(header);
+            result = check(channel, length, header, container, file);
+        } catch (IOException e) {
+            result = new Result(file, Status.UNREADABLE, ContainerSniffer.Container.NONE, e.toString() );
+        }
+        VERIFY_TIMER.stop(start);
+        if (result.getStatus().isProblem() ) {
+            PROBLEMS.increment();
+        }
+        return result;
+    }
+
+    private static Result check(FileChannel channel, long length, ByteBuffer header,
+                                ContainerSniffer.Container container, Path file) throws IOException {
+        try {
+            switch (container) {
+                case MP4:
+                    checkMp4(channel, length);
+                    break;
+                case MATROSKA:
+                    checkMatroska(channel, length);
+                    break;
+                case AVI:
+                    checkAvi(channel, length);
+                    break;
+                case MPEG_TS:
+                    checkTs(channel, length, header);
+                    break;
+                case NONE:
+                    if (length > 0 && isZeros(header) ) {
+                        throw new Defect(Status.CORRUPT, "begins with zeros, likely an incomplete download");
+                    }
+                    return new Result(file, Status.UNCHECKED, container, "unrecognized container");
+                default:
+                    return new Result(file, Status.UNCHECKED, container, "container not checked");
+            }
+        } catch (Defect d) {
+            return new Result(file, d.status, container, d.getMessage() );
+        }
+        return new Result(file, Status.OK, container, "");
+    }
+
+    private static void checkMp4(FileChannel channel, long length) throws IOException, Defect {
+        boolean moov = false;
+        long pos = 0;
+        for (int boxes = 0; pos < length; boxes++) {
+            checkCount(boxes);
+            ByteBuffer h = read(channel, pos, Math.min(16, length - pos), 8);
+            long size = Integer.toUnsignedLong(h.getInt(0) );
+            String type = fourCC(h, 4);
+            if (!isFourCC(h, 4) ) {
+                throw new Defect(Status.CORRUPT, "invalid box type at offset " + pos);
+            }
+            long headerSize = 8;
+            if (size == 1) { // a 64 bit size follows the type
+                if (h.limit() < 16) {
+                    throw truncated("box '" + type + "'", pos, 16, length);
+                }
+                size = h.getLong(8);
+                headerSize = 16;
+            }
+            else if (size == 0) { // extends to the end of the file
+                size = length - pos;
+            }
+            if (size < headerSize) {
+                throw new Defect(Status.CORRUPT, "box '" + type + "' at offset " + pos + " has an invalid size");
+            }
+            if (size > length - pos) {
+                throw truncated("box '" + type + "'", pos, size, length);
+            }
+            moov |= type.equals("moov");
+            pos += size;
+        }
+        if (!moov) {
+            throw new Defect(Status.CORRUPT, "has no 'moov' box");
+        }
+    }
+
+    private static void checkMatroska(FileChannel channel, long length) throws IOException, Defect {
+        Element ebml = Element.read(channel, 0, length);
+        if (ebml.id != EBML || ebml.unknownSize) {
+            throw new Defect(Status.CORRUPT, "invalid EBML header");
+        }
+        if (ebml.end() > length) {
+            throw truncated("EBML header", 0, ebml.end(), length);
+        }
+        Element segment = Element.read(channel, ebml.end(), length);
+        if (segment.id != SEGMENT) {
+            throw new Defect(Status.CORRUPT, "expected a Segment at offset " + ebml.end() );
+        }
+        long end = segment.unknownSize ? length : segment.end();
+        if (end > length) {
+            throw truncated("Segment", segment.start, end - segment.start, length);
+        }
+        boolean clusters = false;
+        long pos = segment.dataStart;
+        for (int elements = 0; pos < end; elements++) {
+            checkCount(elements);
+            Element e = Element.read(channel, pos, end);
+            clusters |= e.id == CLUSTER;
+            if (e.unknownSize) { // only live recordings leave sizes unknown, the rest can't be skipped to
+                break;
+            }
+            if (e.end() > end) {
+                throw truncated(Element.name(e.id), pos, e.end() - pos, end);
+            }
+            pos = e.end();
+        }
+        if (!clusters) {
+            throw new Defect(Status.CORRUPT, "has no clusters");
+        }
+    }
+
+    private static void checkAvi(FileChannel channel, long length) throws IOException, Defect {
+        long pos = 0;
+        for (int chunks = 0; pos < length; chunks++) {
+            checkCount(chunks);
+            ByteBuffer h = read(channel, pos, Math.min(12, length - pos), 12).order(ByteOrder.LITTLE_ENDIAN);
+            String form = fourCC(h, 8);
+            if (!fourCC(h, 0).equals("RIFF") || !(form.equals("AVI ") || form.equals("AVIX") ) ) {
+                throw new Defect(Status.CORRUPT, "expected a RIFF AVI chunk at offset " + pos);
+            }
+            long size = Integer.toUnsignedLong(h.getInt(4) );
+            if (8 + size > length - pos) {
+                throw truncated("RIFF '" + form + "' chunk", pos, 8 + size, length);
+            }
+            if (pos == 0) {
+                checkAviLists(channel, pos + 12, pos + 8 + size);
+            }
+            pos += 8 + size + (size & 1); // chunks are padded to an even size
+        }
+    }
+
+    // the first RIFF chunk must hold the movi list, and its sub-chunks must fit in it
+    private static void checkAviLists(FileChannel channel, long pos, long end) throws IOException, Defect {
+        boolean movi = false;
+        for (int chunks = 0; pos + 8 <= end; chunks++) {
+            checkCount(chunks);
+            ByteBuffer h = read(channel, pos, Math.min(12, end - pos), 8).order(ByteOrder.LITTLE_ENDIAN);
+            long size = Integer.toUnsignedLong(h.getInt(4) );
+            if (8 + size > end - pos) {
+                throw new Defect(Status.CORRUPT, "chunk '" + fourCC(h, 0) + "' at offset " + pos
+                        + " overruns its RIFF chunk");
+            }
+            movi |= fourCC(h, 0).equals("LIST") && h.limit() >= 12 && fourCC(h, 8).equals("movi");
+            pos += 8 + size + (size & 1);
+        }
+        if (!movi) {
+            throw new Defect(Status.CORRUPT, "has no 'movi' list");
+        }
+    }
+
+    private static void checkTs(FileChannel channel, long length, ByteBuffer header) throws IOException, Defect {
+        boolean ts = header.limit() > TS_PACKET && header.get(0) == 0x47 && header.get(TS_PACKET) == 0x47;
+        int packet = ts ? TS_PACKET : M2TS_PACKET;
+        int sync = ts ? 0 : 4; // M2TS packets begin with a 4 byte timestamp
+        if (length % packet != 0) {
+            throw new Defect(Status.TRUNCATED, "ends with a partial " + packet + " byte packet, "
+                    + length % packet + " of " + packet + " bytes");
+        }
+        if (read(channel, length - packet + sync, 1, 1).get(0) != 0x47) {
+            throw new Defect(Status.CORRUPT, "the last packet has no sync byte");
+        }
+    }
+
+    /**
+     * @return {@code length} bytes read at {@code pos}, big-endian
+     * @throws Defect if the file ends before {@code required} bytes
+     */
+    private static ByteBuffer read(FileChannel channel, long pos, long length, int required)
+            throws IOException, Defect {
+        ByteBuffer buffer = ByteBuffer.allocate( (int) Math.max(length, 0) );
+        while (buffer.hasRemaining() && channel.read(buffer, pos + buffer.position() ) >= 0) {
+            // fill the buffer or stop at EOF
+        }
+        if (buffer.position() < required) {
+            throw new Defect(Status.TRUNCATED, "ends inside of a header at offset " + pos);
+        }
+        return buffer.flip();
+    }
+
+    private static Defect truncated(String what, long pos, long size, long available) {
+        return new Defect(Status.TRUNCATED, what + " at offset " + pos + " needs " + size + " bytes but "
+                + Math.max(0, available - pos) + " remain");
+    }
+
+    private static void checkCount(int count) throws Defect {
+        if (count >= MAX_ELEMENTS) {
+            throw new Defect(Status.CORRUPT, "has more than " + MAX_ELEMENTS + " top level elements");
+        }
+    }
+
+    private static String fourCC(ByteBuffer b, int offset) {
+        byte[] bytes = new byte[4];
+        for (int i = 0; i < 4; i++) {
+            bytes[i] = b.get(offset + i);
+        }
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    // printable ASCII, and the copyright sign QuickTime uses in metadata atoms
+    private static boolean isFourCC(ByteBuffer b, int offset) {
+        for (int i = 0; i < 4; i++) {
+            int c = Byte.toUnsignedInt(b.get(offset + i) );
+            if ( (c < 0x20 || c > 0x7E) && c != 0xA9) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isZeros(ByteBuffer b) {
+        for (int i = b.position(); i < b.limit(); i++) {
+            if (b.get(i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // an EBML element header: a variable length id including its marker, then a variable length data size
+    private static final class Element {
+        private final long start;
+        private final int id;
+        private final long dataStart;
+        private final long size;
+        private final boolean unknownSize;
+
+        private Element(long start, int id, long dataStart, long size, boolean unknownSize) {
+            this.start = start;
+            this.id = id;
+            this.dataStart = dataStart;
+            this.size = size;
+            this.unknownSize = unknownSize;
+        }
+
+        long end() {
+            return dataStart + size;
+        }
+
+        static Element read(FileChannel channel, long pos, long limit) throws IOException, Defect {
+            ByteBuffer h = IntegrityVerifier.read(channel, pos, Math.min(12, limit - pos), 2);
+            int idLength = vintLength(h.get(0), 4, pos);
+            if (h.limit() < idLength + 1) {
+                throw new Defect(Status.TRUNCATED, "ends inside of a header at offset " + pos);
+            }
+            int id = 0;
+            for (int i = 0; i < idLength; i++) {
+                id = (id << 8) | Byte.toUnsignedInt(h.get(i) );
+            }
+            int sizeLength = vintLength(h.get(idLength), 8, pos);
+            if (h.limit() < idLength + sizeLength) {
+                throw new Defect(Status.TRUNCATED, "ends inside of a header at offset " + pos);
+            }
+            long size = Byte.toUnsignedInt(h.get(idLength) ) & (0xFF >>> sizeLength);
+            for (int i = 1; i < sizeLength; i++) {
+                size = (size << 8) | Byte.toUnsignedInt(h.get(idLength + i) );
+            }
+            boolean unknown = size == (1L << (7 * sizeLength) ) - 1; // all value bits set
+            return new Element(pos, id, pos + idLength + sizeLength, size, unknown);
+        }
+
+        // the number of leading zeros of the first byte gives the length
+        private static int vintLength(byte first, int maxLength, long pos) throws Defect {
+            int length = Integer.numberOfLeadingZeros(Byte.toUnsignedInt(first) ) - 23;
+            if (length > maxLength) {
+                throw new Defect(Status.CORRUPT, "invalid element header at offset " + pos);
+            }
+            return length;
+        }
+
+        static String name(int id) {
+            switch (id) {
+                case 0x114D9B74: return "SeekHead";
+                case 0x1549A966: return "Info";
+                case 0x1654AE6B: return "Tracks";
+                case CLUSTER: return "Cluster";
+                case 0x1C53BB6B: return "Cues";
+                case 0x1043A770: return "Chapters";
+                case 0x1254C367: return "Tags";
+                case 0x1941A469: return "Attachments";
+                default: return "element 0x" + Integer.toHexString(id).toUpperCase();
+            }
+        }
+    }
+
+    // a problem found by a check, thrown to end the walk
+    private static final class Defect extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        private final Status status;
+
+        Defect(Status status, String message) {
+            super(message, null, false, false);
+            this.status = status;
+        }
+    }
+
+    /**
+     * The outcome of checking one file.
+     */
+    static final class Result {
+        private final Path path;
+        private final Status status;
+        private final ContainerSniffer.Container container;
+        private final String detail;
+
+        Result(Path path, Status status, ContainerSniffer.Container container, String detail) {
+            this.path = path;
+            this.status = status;
+            this.container = container;
+            this.detail = detail;
+        }
+
+        Path getPath() {
+            return path;
+        }
+
+        Status getStatus() {
+            return status;
+        }
+
+        ContainerSniffer.Container getContainer() {
+            return container;
+        }
+
+        /**
+         * @return what is wrong with the file, or why it wasn't checked
+         */
+        String getDetail() {
+            return detail;
+        }
+
+        @Override
+        public String toString() {
+            return status + " " + path + (detail.isEmpty() ? "" : ": " + detail);
+        }
+    }
+
+    /**
+     * The results of a verification.
+     */
+    static final class Report {
+        private final List<Result> results = new ArrayList<>();
+
+        List<Result> getResults() {
+            return Collections.unmodifiableList(results);
+        }
+
+        /**
+         * @return the truncated, corrupt and unreadable files
+         */
+        List<Result> getProblems() {
+            return results.stream().filter( (r) -> r.getStatus().isProblem() ).collect(Collectors.toList() );
+        }
+
+        Map<Status, Integer> counts() {
+            EnumMap<Status, Integer> counts = new EnumMap<>(Status.class);
+            results.forEach( (r) -> counts.merge(r.getStatus(), 1, Integer::sum) );
+            return counts;
+        }
+
+        /**
+         * @return one line per problem, then the number of files of each status
+         */
+        String report() {
+            StringBuilder sb = new StringBuilder();
+            getProblems().forEach( (r) -> sb.append(r).append(System.lineSeparator() ) );
+            sb.append(results.size() ).append(" files checked: ").append(counts() ).append(System.lineSeparator() );
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package org.ericghara;
+
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Removes junk files, and the folders left empty by their removal, from a subtree of a {@link MovieCollection}.
+ * <p>
+ * Cleanup is planned in a single post-order pass over the in-memory {@link MovieFolder} tree.  Every file of a junk
+ * type is planned for deletion.  A folder below the origin is planned for deletion when, once its junk is gone, it
+ * would be empty: it holds only junk files and each of its sub-folders is itself planned for deletion.  The plan may
+ * be reviewed with {@link TreeDeleter.Plan#report()} before it is passed to {@link #execute(TreeDeleter.Plan)}.
+ */
+class JunkCleaner {
+
+    private final MovieCollection collection;
+    private final Set<FileType> junkTypes;
+    private final TreeDeleter deleter;
+
+    /**
+     * @param collection collection to clean
+     * @param junkTypes file types to treat as junk, must not include {@link FileType#Folder}
+     */
+    JunkCleaner(MovieCollection collection, Set<FileType> junkTypes) {
+        this.collection = Objects.requireNonNull(collection, "Received a null collection.");
+        if (junkTypes.contains(FileType.Folder) ) {
+            throw new IllegalArgumentException("Folders can not be junk types.");
+        }
+        this.junkTypes = junkTypes.isEmpty() ? EnumSet.noneOf(FileType.class) : EnumSet.copyOf(junkTypes);
+        this.deleter = new TreeDeleter(collection);
+    }
+
+    /**
+     * Treats {@link FileType#PossiblyJunk} files as junk.
+     * @param collection collection to clean
+     */
+    JunkCleaner(MovieCollection collection) {
+        this(collection, EnumSet.of(FileType.PossiblyJunk) );
+    }
+
+    /**
+     * Plans the cleanup of the origin and everything below it.  The origin folder itself is never planned for
+     * deletion.  Nothing is modified.
+     * @param origin absolute path to a folder in the collection
+     * @return the planned deletions
+     */
+    TreeDeleter.Plan plan(Path origin) {
+        MovieFolder originFolder = collection.openFolder(origin, "Could not open the origin folder: " + origin);
+        TreeDeleter.Plan plan = new TreeDeleter.Plan();
+        planFolder(originFolder, plan);
+        return plan;
+    }
+
+    /**
+     * @param plan a plan made by this cleaner
+     * @return the outcome of the cleanup
+     */
+    TreeDeleter.Report execute(TreeDeleter.Plan plan) {
+        return deleter.execute(plan);
+    }
+
+    // plans folder's junk and removable sub-folders, returns true if folder would be empty afterwards
+    private boolean planFolder(MovieFolder folder, TreeDeleter.Plan plan) {
+        if (folder.isEmpty() ) {
+            return true;
+        }
+        boolean removable = true;
+        for (MovieFolder child : folder.getFolders() ) {
+            if (planFolder(child, plan) ) {
+                plan.addFolder(folder, child);
+            }
+            else {
+                removable = false;
+            }
+        }
+        for (FileType type : FileType.values() ) {
+            if (type == FileType.Folder) {
+                continue;
+            }
+            Set<Path> filenames = folder.getFilenames(type);
+            if (junkTypes.contains(type) ) {
+                filenames.forEach( (f) -> plan.addFile(folder, f, type) );
+            }
+            else if (!filenames.isEmpty() ) {
+                removable = false;
+            }
+        }
+        return removable;
+    }
+
+    @Override
+    public String toString() {
+        return "JunkCleaner{junkTypes=" + junkTypes + "}";
+    }
+}
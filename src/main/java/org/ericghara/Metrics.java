@@ -0,0 +1,282 @@
+package org.ericghara;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A lightweight in-process metrics registry of {@link Counter}s, {@link Histogram}s and {@link Timer}s.
+ * <p>
+ * Metrics are disabled by default and can be switched on with the {@code movieorganizer.metrics} system
+ * property or {@link Metrics#setEnabled}.  When disabled every recording method returns after a single
+ * volatile read, so instrumentation may be left in hot paths.  Metric handles are intended to be looked up
+ * once and stored in {@code static final} fields.  A snapshot is exported as JSON by {@link Metrics#snapshotJson}
+ * and periodically to Flight Recorder as a {@link FlightEvents.MetricsSnapshotEvent}.  The periodic event is
+ * registered when metrics are first enabled, so short runs without metrics don't pay for initializing Flight
+ * Recorder.
+ */
+final class Metrics {
+
+    private static volatile boolean enabled;
+    private static final ConcurrentHashMap<String, Metric> REGISTRY = new ConcurrentHashMap<>();
+
+    static {
+        setEnabled(Boolean.getBoolean("movieorganizer.metrics") );
+    }
+
+    private Metrics() {}
+
+    static boolean isEnabled() {
+        return enabled;
+    }
+
+    static void setEnabled(boolean enable) {
+        if (enable) {
+            FlightEvents.registerPeriodicEvents();
+        }
+        enabled = enable;
+    }
+
+    static Counter counter(String name) {
+        return register(name, Counter.class, Counter::new);
+    }
+
+    static Histogram histogram(String name) {
+        return register(name, Histogram.class, Histogram::new);
+    }
+
+    static Timer timer(String name) {
+        return register(name, Timer.class, Timer::new);
+    }
+
+    private static <T extends Metric> T register(String name, Class<T> kind, Function<String, T> constructor) {
+        Objects.requireNonNull(name, "Received a null metric name.");
+        Metric metric = REGISTRY.computeIfAbsent(name, constructor);
+        if (!kind.isInstance(metric) ) {
+            throw new IllegalArgumentException("The metric " + name + " is already registered as a "
+                    + metric.getClass().getSimpleName() );
+        }
+        return kind.cast(metric);
+    }
+
+    /**
+     * Zeroes every registered metric.  Registrations are retained.
+     */
+    static void reset() {
+        REGISTRY.values().forEach(Metric::reset);
+    }
+
+    /**
+     * @return a point in time JSON document of all registered metrics, grouped by kind and sorted by name
+     */
+    static String snapshotJson() {
+        Map<String, Metric> sorted = new TreeMap<>(REGISTRY);
+        StringBuilder json = new StringBuilder();
+        json.append("{\"enabled\":").append(enabled);
+        appendGroup(json, "counters", sorted, Counter.class);
+        appendGroup(json, "histograms", sorted, Histogram.class);
+        appendGroup(json, "timers", sorted, Timer.class);
+        return json.append('}').toString();
+    }
+
+    private static void appendGroup(StringBuilder json, String group, Map<String, Metric> metrics,
+                                    Class<? extends Metric> kind) {
+        json.append(",\"").append(group).append("\":{");
+        boolean first = true;
+        for (Metric m : metrics.values() ) {
+            if (m.getClass() != kind) {
+                continue;
+            }
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            json.append('"').append(m.getName() ).append("\":");
+            m.appendJson(json);
+        }
+        json.append('}');
+    }
+
+    abstract static class Metric {
+        private final String name;
+
+        Metric(String name) {
+            this.name = name;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        abstract void reset();
+
+        abstract void appendJson(StringBuilder json);
+    }
+
+    static final class Counter extends Metric {
+        private final LongAdder count = new LongAdder();
+
+        private Counter(String name) {
+            super(name);
+        }
+
+        void increment() {
+            if (enabled) {
+                count.increment();
+            }
+        }
+
+        void add(long n) {
+            if (enabled) {
+                count.add(n);
+            }
+        }
+
+        long get() {
+            return count.sum();
+        }
+
+        @Override
+        void reset() {
+            count.reset();
+        }
+
+        @Override
+        void appendJson(StringBuilder json) {
+            json.append(get() );
+        }
+    }
+
+    /**
+     * Records non-negative values into power of two buckets.  Percentiles are reported as the upper bound of the
+     * bucket they fall in, which is accurate to within a factor of two.
+     */
+    static class Histogram extends Metric {
+        private static final int NUM_BUCKETS = 64;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(NUM_BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+
+        private Histogram(String name) {
+            super(name);
+        }
+
+        void record(long value) {
+            if (enabled) {
+                long v = Math.max(0L, value);
+                buckets.incrementAndGet(v == 0L ? 0 : NUM_BUCKETS - 1 - Long.numberOfLeadingZeros(v) );
+                count.increment();
+                sum.add(v);
+                max.accumulate(v);
+            }
+        }
+
+        long getCount() {
+            return count.sum();
+        }
+
+        long getSum() {
+            return sum.sum();
+        }
+
+        long getMax() {
+            return max.get();
+        }
+
+        /**
+         * @param quantile between 0 and 1
+         * @return the upper bound of the bucket containing the quantile, or 0 if nothing was recorded
+         */
+        long percentile(double quantile) {
+            long total = 0;
+            long[] snapshot = new long[NUM_BUCKETS];
+            for (int i = 0; i < NUM_BUCKETS; i++) {
+                snapshot[i] = buckets.get(i);
+                total += snapshot[i];
+            }
+            long rank = (long) Math.ceil(quantile * total);
+            long seen = 0;
+            for (int i = 0; i < NUM_BUCKETS; i++) {
+                seen += snapshot[i];
+                if (seen >= rank && snapshot[i] > 0) {
+                    long upperBound = i == NUM_BUCKETS - 1 ? Long.MAX_VALUE : (1L << (i + 1) ) - 1;
+                    return Math.min(upperBound, getMax() );
+                }
+            }
+            return 0L;
+        }
+
+        @Override
+        void reset() {
+            for (int i = 0; i < NUM_BUCKETS; i++) {
+                buckets.set(i, 0L);
+            }
+            count.reset();
+            sum.reset();
+            max.reset();
+        }
+
+        @Override
+        void appendJson(StringBuilder json) {
+            json.append("{\"count\":").append(getCount() )
+                .append(",\"sum\":").append(getSum() )
+                .append(",\"max\":").append(getMax() )
+                .append(",\"p50\":").append(percentile(0.50) )
+                .append(",\"p90\":").append(percentile(0.90) )
+                .append(",\"p99\":").append(percentile(0.99) )
+                .append('}');
+        }
+    }
+
+    /**
+     * A {@link Histogram} of durations in nanoseconds.  Usage:
+     * <pre>{@code
+     * long start = TIMER.start();
+     * doWork();
+     * TIMER.stop(start);
+     * }</pre>
+     * When metrics are disabled {@code start} returns 0 and {@code stop} ignores it, so no clock is read.
+     */
+    static final class Timer extends Histogram {
+
+        private Timer(String name) {
+            super(name);
+        }
+
+        long start() {
+            return enabled ? System.nanoTime() : 0L;
+        }
+
+        /**
+         * @param start value returned by {@link Timer#start}
+         * @return elapsed nanoseconds, or 0 if the timer was not started
+         */
+        long stop(long start) {
+            if (start == 0L || !enabled) {
+                return 0L;
+            }
+            long elapsed = System.nanoTime() - start;
+            record(elapsed);
+            return elapsed;
+        }
+
+        @Override
+        void appendJson(StringBuilder json) {
+            final double NANOS_PER_MS = 1_000_000D;
+            json.append("{\"count\":").append(getCount() )
+                .append(",\"totalMs\":").append(getSum() / NANOS_PER_MS)
+                .append(",\"maxMs\":").append(getMax() / NANOS_PER_MS)
+                .append(",\"p50Ms\":").append(percentile(0.50) / NANOS_PER_MS)
+                .append(",\"p90Ms\":").append(percentile(0.90) / NANOS_PER_MS)
+                .append(",\"p99Ms\":").append(percentile(0.99) / NANOS_PER_MS)
+                .append('}');
+        }
+    }
+}
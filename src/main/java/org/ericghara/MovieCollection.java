@@ -1,36 +1,121 @@
 package org.ericghara;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
 import java.nio.file.FileSystems;
-import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.SimpleFileVisitor;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.LongConsumer;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-public class MovieCollection {
+public class MovieCollection implements Closeable {
+
+    private static final Metrics.Timer OPEN_FOLDER_TIMER = Metrics.timer("collection.openFolder");
+    private static final Metrics.Counter OPEN_FOLDER_MISSES = Metrics.counter("collection.openFolder.misses");
+    private static final Metrics.Counter CROSS_DEVICE_MOVES = Metrics.counter("io.moveFile.crossDevice");
+    private static final Metrics.Counter CROSS_DEVICE_BYTES = Metrics.counter("io.moveFile.crossDevice.bytes");
 
     private final MovieFolder rootFolder;
+    private final ScanReport scanReport;
+    private final Optional<FolderStore> folderStore;
+    private final List<CollectionListener> listeners = new CopyOnWriteArrayList<>();
 
     public MovieCollection(String pathString) {
+        this(pathString, ScanOptions.defaults() );
+    }
+
+    /**
+     * @param pathString path to the root folder (may be relative or absolute)
+     * @param options controls how the root folder is scanned
+     * @see ScanOptions
+     */
+    public MovieCollection(String pathString, ScanOptions options) {
+        Objects.requireNonNull(options, "Received null scan options.");
         Path rootPath = FileSystems.getDefault().getPath(pathString).toAbsolutePath();
-        Collector collector = new Collector(rootPath);
+        Collector collector = new Collector(rootPath, options);
         rootFolder = collector.getRootFolder();
+        scanReport = collector.report;
+        folderStore = collector.store;
     }
 
     public Path getRootPath() {
         return rootFolder.getFolderPath();
     }
 
+    /**
+     * @return statistics of the scan which built this collection, including what the {@link ScanOptions} pruned
+     */
+    public ScanReport getScanReport() {
+        return scanReport;
+    }
+
+    /**
+     * @return the store holding the folder records when scanned in spill mode, see {@link ScanOptions#spill}
+     */
+    Optional<FolderStore> getFolderStore() {
+        return folderStore;
+    }
+
+    /**
+     * Deletes the record file of a collection scanned in spill mode, after which the collection can't be used.  Does
+     * nothing for a collection held in memory.
+     * @throws IOException if the record file couldn't be closed
+     * @see ScanOptions#spill
+     */
+    @Override
+    public void close() throws IOException {
+        if (folderStore.isPresent() ) {
+            folderStore.get().close();
+        }
+    }
+
+    /**
+     * Registers a listener notified after every record change made through this collection.
+     * @param listener the listener
+     * @see CollectionListener
+     */
+    void addListener(CollectionListener listener) {
+        listeners.add(Objects.requireNonNull(listener, "Received a null listener.") );
+    }
+
+    void removeListener(CollectionListener listener) {
+        listeners.remove(listener);
+    }
+
+    // for record updates made outside of this class, such as bulk operations
+    void notifyListeners(Consumer<CollectionListener> notification) {
+        listeners.forEach(notification);
+    }
+
     public boolean containsFolder(Path path) {
         return openFolder(path).isPresent();
     }
@@ -44,6 +129,7 @@ public class MovieCollection {
 
     Optional<MovieFolder> openFolder(Path path) {
         FileClassifier.mustBeAbsolutePath(path);
+        long start = OPEN_FOLDER_TIMER.start();
         Path rootPath = getRootPath();
         Optional <MovieFolder> curFolder =
                 path.startsWith(rootPath) ? Optional.of(rootFolder) : Optional.empty();
@@ -54,6 +140,10 @@ public class MovieCollection {
             curFolder = curFolder.get()
                                  .getFolder(path.getName(i) );
         }
+        OPEN_FOLDER_TIMER.stop(start);
+        if (curFolder.isEmpty() ) {
+            OPEN_FOLDER_MISSES.increment();
+        }
         return curFolder;
     }
 
@@ -65,43 +155,160 @@ public class MovieCollection {
     void deleteFile(Path path) {
         BiConsumerThrows<Path,Path> copyIO = (src, nul) ->
                 Files.delete(src);
-        TetraConsumer<MovieFolder, MovieFolder, Path, Path> updateRecords = (src, nul0, filename, nul1) -> {
+        fileIOHelper(IOOperation.DELETE_FILE, path, null, copyIO, deleteFileRecords() );
+    }
+
+    /**
+     * Updates the {@link MovieCollection} data structure for a file which has already been removed from the
+     * filesystem, for instance moved to another root of a {@link FederatedCollection}.
+     * @param path absolute path of the removed file
+     */
+    void recordFileDelete(Path path) {
+        BiConsumerThrows<Path,Path> verifyIO = (src, nul) -> {
+            if (Files.exists(src, LinkOption.NOFOLLOW_LINKS) ) {
+                throw new FileAlreadyExistsException(src.toString() );
+            }
+        };
+        fileIOHelper(IOOperation.RECORD_FILE_DELETE, path, null, verifyIO, deleteFileRecords() );
+    }
+
+    private TetraConsumer<MovieFolder, MovieFolder, Path, Path> deleteFileRecords() {
+        return (src, nul0, filename, nul1) -> {
             FileType type = src.getFileType(filename)
                     .orElseThrow(IllegalArgumentException::new); // this exception will never be thrown
             src.deleteRecord(filename, type);
+            listeners.forEach( (l) -> l.fileRemoved(src, filename, type) );
         };
-        fileIOHelper(path, null, copyIO, updateRecords);
+    }
+
+    /**
+     * Adds a file which has already been created on the filesystem, for instance moved from another root of a
+     * {@link FederatedCollection}, to the {@link MovieCollection} data structure.
+     * @param path absolute path of the new file, its parent must be in the {@link MovieCollection}
+     * @param type type of the file
+     */
+    void recordFileAdd(Path path, FileType type) {
+        if (type == FileType.Folder) {
+            throw new IllegalArgumentException("Expected a file type but received: " + type);
+        }
+        MovieFolder folder = openFolder(path.getParent(), "Could not open the parent folder of: " + path);
+        Path filename = path.getFileName();
+        if (folder.getFileType(filename).isPresent() || folder.getFolder(filename).isPresent() ) {
+            throw new IllegalArgumentException("The folder already contains: " + path);
+        }
+        if (!Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS) ) {
+            throw new IllegalArgumentException("The file does not exist: " + path);
+        }
+        folder.addFile(filename, type, RecentAdditions.addedTime(path) );
+        listeners.forEach( (l) -> l.fileAdded(folder, filename, type) );
     }
 
     void copyFile(Path source, Path destination) {
-        BiConsumerThrows<Path,Path> copyIO = (src, dest) ->
-                Files.copy(src, dest, StandardCopyOption.COPY_ATTRIBUTES, LinkOption.NOFOLLOW_LINKS);
+        copyFile(source, destination, FileCopier.CopyMode.COPY);
+    }
+
+    /**
+     * Copies a file.  With {@link FileCopier.CopyMode#LINK} or {@link FileCopier.CopyMode#REFLINK} a copy on the same
+     * filesystem shares the source's data instead of duplicating it, see {@link FileCopier}.
+     * @param source absolute path of the file to copy
+     * @param destination absolute path of the copy
+     * @param mode the preferred way of making the copy
+     */
+    void copyFile(Path source, Path destination, FileCopier.CopyMode mode) {
+        BiConsumerThrows<Path,Path> copyIO = (src, dest) -> FileCopier.copy(src, dest, mode);
         TetraConsumer<MovieFolder, MovieFolder, Path, Path> updateRecords = (src, dest, srcFilename, destFilename) -> {
             FileType type = src.getFileType(srcFilename)
                                .orElseThrow(IllegalArgumentException::new); // this exception will never be thrown
-            dest.addFile(destFilename, type);
+            // a copy keeps the source's modification time, but arrived now
+            dest.addFile(destFilename, type, System.currentTimeMillis() );
+            listeners.forEach( (l) -> l.fileAdded(dest, destFilename, type) );
         };
-        fileIOHelper(source, destination, copyIO, updateRecords);
+        fileIOHelper(IOOperation.COPY_FILE, source, destination, copyIO, updateRecords);
     }
 
     void moveFile(Path source, Path destination) {
-        BiConsumerThrows<Path,Path> moveIO = (src, dest) ->
-                Files.move(src, dest, LinkOption.NOFOLLOW_LINKS);
-        TetraConsumer<MovieFolder, MovieFolder, Path, Path> updateRecords = (src, dest, srcFilename, destFilename) -> {
+        moveFile(source, destination, FileTransfer.Verification.SIZE);
+    }
+
+    /**
+     * @see #moveFile(Path, Path, FileTransfer.Verification, LongConsumer)
+     */
+    void moveFile(Path source, Path destination, FileTransfer.Verification verification) {
+        moveFile(source, destination, verification, (bytes) -> { } );
+    }
+
+    /**
+     * Moves a file.  When the destination is on a different filesystem than the source the file is streamed across,
+     * verified and only then is the source deleted, see {@link FileTransfer}.  The copied bytes are counted by the
+     * {@code io.moveFile.crossDevice.bytes} metric as the transfer progresses.
+     * <p>
+     * The move blocks the caller until the file is in place, which for a large file on another filesystem may be
+     * minutes; a caller which can't wait should run it on its own executor.  Offering an asynchronous move is
+     * deliberately left out: the collection's records are only updated once the file is in place, so a caller
+     * would have to wait on the result anyway before relying on them.
+     * @param source absolute path of the file to move
+     * @param destination absolute path to move the file to
+     * @param verification how a copy between filesystems is checked before the source is deleted
+     * @param progress receives the number of bytes copied after each chunk of a move between filesystems, on the
+     *                 calling thread.  Not called for a rename.
+     */
+    void moveFile(Path source, Path destination, FileTransfer.Verification verification, LongConsumer progress) {
+        BiConsumerThrows<Path,Path> moveIO = (src, dest) -> {
+            // an atomic rename silently replaces an existing destination on some platforms
+            if (Files.exists(dest, LinkOption.NOFOLLOW_LINKS) ) {
+                throw new FileAlreadyExistsException(dest.toString() );
+            }
+            try {
+                Files.move(src, dest, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) { // most likely another filesystem
+                CROSS_DEVICE_MOVES.increment();
+                FileTransfer.copyAndDelete(src, dest, verification, (bytes) -> {
+                    CROSS_DEVICE_BYTES.add(bytes);
+                    progress.accept(bytes);
+                });
+            }
+        };
+        fileIOHelper(IOOperation.MOVE_FILE, source, destination, moveIO, moveFileRecords() );
+    }
+
+    /**
+     * Updates the {@link MovieCollection} data structure for a file move which has already been performed on the
+     * filesystem, for instance by a {@link BatchMover}.
+     * @param source absolute path the file was moved from
+     * @param destination absolute path the file was moved to
+     */
+    void recordFileMove(Path source, Path destination) {
+        BiConsumerThrows<Path,Path> verifyIO = (src, dest) -> {
+            if (!Files.exists(dest, LinkOption.NOFOLLOW_LINKS) ) {
+                throw new NoSuchFileException(dest.toString() );
+            }
+        };
+        fileIOHelper(IOOperation.RECORD_FILE_MOVE, source, destination, verifyIO, moveFileRecords() );
+    }
+
+    private TetraConsumer<MovieFolder, MovieFolder, Path, Path> moveFileRecords() {
+        return (src, dest, srcFilename, destFilename) -> {
             FileType type = src.getFileType(srcFilename)
                     .orElseThrow(IllegalArgumentException::new); // this exception will never be thrown
+            long addedTime = src.getFileTime(srcFilename).orElse(-1L); // a move doesn't make a file new
             src.deleteRecord(srcFilename, type);
-            dest.addFile(destFilename, type);
+            dest.addFile(destFilename, type, addedTime);
+            listeners.forEach( (l) -> {
+                l.fileRemoved(src, srcFilename, type);
+                l.fileAdded(dest, destFilename, type);
+            });
         };
-        fileIOHelper(source, destination, moveIO, updateRecords);
     }
 
     /**
      * Encapsulates shared functionality required by file IO methods: {@link MovieCollection#deleteFile},
      * {@link MovieCollection#moveFile}, {@link MovieCollection#copyFile}.  The destination path may be null for
      * operations which only require a source path.  The IO operation may return any exception which will be
-     * caught and rethrown as an {@link IllegalArgumentException};
+     * caught and rethrown as an {@link IllegalArgumentException};  The duration of the IO operation and the number
+     * of bytes it touched are recorded against the {@code operation}'s metrics and as a
+     * {@link FlightEvents.FileOperationEvent}.
      *
+     * @param operation the operation being performed, used for instrumentation
      * @param source full filepath including filename
      * @param destination full filepath including filename
      * @param ioOperation BiConsumerThrows which performs file IO operations
@@ -109,7 +316,8 @@ public class MovieCollection {
      * @see BiConsumerThrows
      * @see TetraConsumer
      */
-    private void fileIOHelper(Path source, Path destination, BiConsumerThrows<Path, Path> ioOperation,
+    private void fileIOHelper(IOOperation operation, Path source, Path destination,
+                              BiConsumerThrows<Path, Path> ioOperation,
                               TetraConsumer<MovieFolder, MovieFolder, Path, Path> updateRecords ) {
         Path sourceParent = source.getParent();
         Path sourceFileName = source.getFileName();
@@ -131,12 +339,22 @@ public class MovieCollection {
                 throw new IllegalArgumentException("The destination folder contains a folder with the same name: " + source);
             }
         }
+        FlightEvents.FileOperationEvent event = new FlightEvents.FileOperationEvent();
+        // only stat when someone is counting
+        long bytes = Metrics.isEnabled() || event.isEnabled() ? sizeOrZero(source) : 0L;
+        long start = operation.timer.start();
+        event.begin();
         try {
             ioOperation.accept(source, destination);
         } catch (Exception e) {
+            operation.failures.increment();
+            event.finish(operation, source, destination, bytes, false);
             throw new IllegalArgumentException("A low level file IO error occurred " +
                     source +" to " + destination  + " - check file permissions.", e);
         }
+        operation.timer.stop(start);
+        operation.bytes.add(bytes);
+        event.finish(operation, source, destination, bytes, true);
         updateRecords.accept(sourceFolder, destinationFolder, sourceFileName, destinationFileName);
     }
 
@@ -150,11 +368,27 @@ public class MovieCollection {
      */
     void moveFolder(Path source, Path destination) {
         BiConsumerThrows<Path,Path> moveIO = (src, dest) -> Files.move(src,dest, LinkOption.NOFOLLOW_LINKS);
-        TetraConsumer<MovieFolder, MovieFolder, MovieFolder, Path>
-                updateRecords = (srcFolder,
-                                 srcParent,
-                                 dstParent,
-                                 dstFolderName) -> {
+        folderIOHelper(IOOperation.MOVE_FOLDER, source, destination, moveIO, moveFolderRecords() );
+    }
+
+    /**
+     * Updates the {@link MovieCollection} data structure for a folder move which has already been performed on the
+     * filesystem, for instance by a {@link BatchMover}.
+     * @param source absolute path the folder was moved from
+     * @param destination absolute path the folder was moved to
+     */
+    void recordFolderMove(Path source, Path destination) {
+        BiConsumerThrows<Path,Path> verifyIO = (src, dest) -> {
+            if (!Files.isDirectory(dest, LinkOption.NOFOLLOW_LINKS) ) {
+                throw new NoSuchFileException(dest.toString() );
+            }
+        };
+        folderIOHelper(IOOperation.RECORD_FOLDER_MOVE, source, destination, verifyIO, moveFolderRecords() );
+    }
+
+    private TetraConsumer<MovieFolder, MovieFolder, MovieFolder, Path> moveFolderRecords() {
+        return (srcFolder, srcParent, dstParent, dstFolderName) -> {
+            Path formerPath = srcFolder.getFolderPath();
             srcParent.deleteRecord(
                     srcFolder.getFolderPath()
                              .getFileName(),
@@ -162,8 +396,28 @@ public class MovieCollection {
             srcFolder.changePath(dstFolderName, -1); // set to dummy depth and new folder name
             dstParent.addFolder(srcFolder);
             updateSubfolderPaths(srcFolder);
+            listeners.forEach( (l) -> l.folderMoved(srcFolder, formerPath, srcParent, dstParent) );
         };
-        folderIOHelper(source, destination, moveIO, updateRecords);
+    }
+
+    /**
+     * Creates an empty folder and adds it to the {@link MovieCollection} data structure.
+     * @param path absolute path of the new folder, its parent must be in the {@link MovieCollection}
+     */
+    void createFolder(Path path) {
+        MovieFolder parent = openFolder(path.getParent(), "Could not open the parent folder of: " + path);
+        if (parent.getFolder(path.getFileName() ).isPresent() ) {
+            throw new IllegalArgumentException("The folder already exists: " + path);
+        }
+        try {
+            Files.createDirectory(path);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("A low level file IO error occurred creating " + path +
+                    " - check folder permissions.", e);
+        }
+        MovieFolder folder = new MovieFolder(path, parent.getDepth() + 1);
+        parent.addFolder(folder);
+        listeners.forEach( (l) -> l.folderAdded(parent, folder) );
     }
 
     /**
@@ -174,6 +428,18 @@ public class MovieCollection {
      * @param destination absolute path to the destination folder which will be created
      */
     void copyFolder(Path source, Path destination) {
+        copyFolder(source, destination, FileCopier.CopyMode.COPY);
+    }
+
+    /**
+     * Copies an entire directory subtree, see {@link MovieCollection#copyFolder(Path, Path)}.  Files are copied
+     * with the given mode, so on the same filesystem a {@link FileCopier.CopyMode#LINK} or
+     * {@link FileCopier.CopyMode#REFLINK} copy only creates folders and links, whatever the size of the files.
+     * @param source absolute path to the source folder to be copied
+     * @param destination absolute path to the destination folder which will be created
+     * @param mode the preferred way of copying each file
+     */
+    void copyFolder(Path source, Path destination, FileCopier.CopyMode mode) {
         BiConsumerThrows<Path,Path> moveIO = (src, dest) -> { // copies only the folder (not contents)
             Files.copy(src, dest, LinkOption.NOFOLLOW_LINKS, StandardCopyOption.COPY_ATTRIBUTES);
         };
@@ -186,17 +452,21 @@ public class MovieCollection {
             Path newPath = dstParent.toAbsolutePath(dstFolderName );
             MovieFolder dstFolder = new MovieFolder(newPath, newDepth);
             dstParent.addFolder(dstFolder);                   // add new folder record (no files added)
+            listeners.forEach( (l) -> l.folderAdded(dstParent, dstFolder) );
             srcFolder.getAllFiles().forEach( (f) ->           // copy all files and update MovieFolder records
-                    copyFile(srcFolder.toAbsolutePath(f), dstFolder.toAbsolutePath(f) ) );
+                    copyFile(srcFolder.toAbsolutePath(f), dstFolder.toAbsolutePath(f), mode) );
         };
         Function<Path, Path> toDest = (f) -> {         // generates destination path from src MovieFolder
             Path relPath = source.relativize(f);
             return destination.resolve(relPath);
         };
-        // walks source subfolder tree and copies all folders and their contents to the destination
+        // walks source subfolder tree and copies all folders and their contents to the destination.  The paths are
+        // collected first as in spill mode the walk is lazy and would otherwise see the copies
         getSubFolders(source).map(MovieFolder::getFolderPath)
+                             .collect(Collectors.toList() )
                              .forEach( (f) ->
-                                     folderIOHelper(f, toDest.apply(f), moveIO, createRecords ) );
+                                     folderIOHelper(IOOperation.COPY_FOLDER, f, toDest.apply(f), moveIO,
+                                             createRecords ) );
     }
 
     /**
@@ -208,20 +478,57 @@ public class MovieCollection {
         TetraConsumer<MovieFolder, MovieFolder, MovieFolder, Path> updateRecords = (target, parent, nul, nul0) -> {
             Path folderName = target.getFolderPath().getFileName();
             parent.deleteRecord(folderName, FileType.Folder);
+            listeners.forEach( (l) -> l.folderRemoved(parent, target) );
         };
-        folderIOHelper(path, null, deleteIO, updateRecords);
+        folderIOHelper(IOOperation.DELETE_FOLDER, path, null, deleteIO, updateRecords);
+    }
+
+    /**
+     * Deletes a folder and everything below it, using the in-memory tree rather than re-walking the filesystem.  Files
+     * are deleted in parallel, one batch per folder, then folders are deleted in post-order.  The subtree's record is
+     * dropped from its parent in one step.  When something can't be deleted the remaining work still proceeds, only
+     * the folders above the failure are left in place, and the records of anything that was deleted are updated.
+     * @param path absolute path to a folder in the {@link MovieCollection}, not the root
+     * @return what was deleted and what could not be
+     * @see TreeDeleter
+     */
+    TreeDeleter.Report deleteFolderRecursive(Path path) {
+        if (path.equals(getRootPath() ) ) {
+            throw new IllegalArgumentException("The root folder can not be deleted: " + path);
+        }
+        MovieFolder target = openFolder(path, "Could not open the folder: " + path);
+        MovieFolder parent = openFolder(path.getParent(), "" ); // will never be thrown
+        return new TreeDeleter(this).execute(TreeDeleter.Plan.subtree(parent, target) );
+    }
+
+    /**
+     * Exports the whole tree, with each file's type, size and modification time, as a columnar snapshot which
+     * {@link ColumnarReader} maps without loading it.
+     * @param destination the snapshot file to create or replace
+     * @see ColumnarExport
+     */
+    void exportColumnar(Path destination) {
+        try {
+            ColumnarExport.write(this, destination);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("A low level file IO error occurred exporting to " + destination,
+                    e);
+        }
     }
 
     /**
      * A method which systematizes folder IO operations by breaking them down into an I/O operation ({@code ioOperation})
-     * and a data record operation ({@code recordOps}).
+     * and a data record operation ({@code recordOps}).  The duration of the IO operation is recorded against the
+     * {@code operation}'s metrics and as a {@link FlightEvents.FolderOperationEvent}.
+     * @param operation the operation being performed, used for instrumentation
      * @param source full path to the source or target, must be provided
      * @param destination full path to the destination, for operations with no destination, should be null
      * @param ioOperation a {@link BiConsumerThrows} that takes source and destination arguments
      * @param recordOps a {@link TetraConsumer} that takes source {@code MovieFolder}, source parent {@code MovieFolder},
      *                  destination parent {@code MovieFolder} and destination {@code Path} arguments.
      */
-    void folderIOHelper(Path source, Path destination, BiConsumerThrows<Path, Path> ioOperation,
+    void folderIOHelper(IOOperation operation, Path source, Path destination,
+                        BiConsumerThrows<Path, Path> ioOperation,
                         TetraConsumer<MovieFolder, MovieFolder, MovieFolder, Path> recordOps ) {
         MovieFolder srcFolder = openFolder(source).orElseThrow(
                 () -> new IllegalArgumentException("Could not open the source: " + source) );
@@ -233,12 +540,19 @@ public class MovieCollection {
             dstParent = openFolder(destination.getParent(),
                     "Could not open the parent destination folder of: " + destination);
         }
+        FlightEvents.FolderOperationEvent event = new FlightEvents.FolderOperationEvent();
+        long start = operation.timer.start();
+        event.begin();
         try {
             ioOperation.accept(source, destination);
         } catch (Exception e) {
+            operation.failures.increment();
+            event.finish(operation, source, destination, false);
             throw new IllegalArgumentException("A low level file IO error occurred " +
                     source +" to " + destination  + " - check folder permissions.", e);
         }
+        operation.timer.stop(start);
+        event.finish(operation, source, destination, true);
          recordOps.accept(srcFolder, srcParent, dstParent, dstFolderName);
     }
 
@@ -246,12 +560,31 @@ public class MovieCollection {
      * Performs a breadth first search beginning at the origin subfolder.  The first folder to be returned in the
      * search will always be the origin folder subsequent directories will be returned in the order of increasing
      * depth from the origin directory, with directories occurring at the same depth being returned in an undefined
-     * order.
+     * order.  In spill mode the search is lazy, so folders are only loaded as the stream reaches them and the
+     * stream should be consumed before the tree is changed.
      * @param origin MovieFolder to begin the search from
      * @return Stream of the origin MovieFolder and all MovieFolders that are children of origin.
      */
     Stream<MovieFolder> getSubFolders(MovieFolder origin) {
         Objects.requireNonNull(origin, "Received a null origin folder.");
+        if (folderStore.isPresent() ) {
+            LinkedList<MovieFolder> queue = new LinkedList<>(List.of(origin) );
+            Iterator<MovieFolder> search = new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return !queue.isEmpty();
+                }
+
+                @Override
+                public MovieFolder next() {
+                    MovieFolder cur = queue.removeFirst();
+                    cur.getFolders().forEach(queue::addLast);
+                    return cur;
+                }
+            };
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(search,
+                    Spliterator.ORDERED | Spliterator.NONNULL), false);
+        }
         Stream.Builder<MovieFolder> folders = Stream.builder();
         LinkedList<MovieFolder> queue = new LinkedList<>();
         queue.addLast(origin);
@@ -284,6 +617,42 @@ public class MovieCollection {
         return path.getNameCount() - getRootPath().getNameCount();
     }
 
+    private static long sizeOrZero(Path path) {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+
+    /**
+     * The file and folder operations performed through {@link MovieCollection#fileIOHelper} and
+     * {@link MovieCollection#folderIOHelper}, each with its own set of metrics.
+     */
+    enum IOOperation {
+        DELETE_FILE("deleteFile"), COPY_FILE("copyFile"), MOVE_FILE("moveFile"),
+        DELETE_FOLDER("deleteFolder"), COPY_FOLDER("copyFolder"), MOVE_FOLDER("moveFolder"),
+        // record updates for changes already performed on the filesystem, see BatchMover and FederatedCollection
+        RECORD_FILE_MOVE("recordFileMove"), RECORD_FOLDER_MOVE("recordFolderMove"),
+        RECORD_FILE_DELETE("recordFileDelete");
+
+        private final String label;
+        final Metrics.Timer timer;
+        final Metrics.Counter bytes;
+        final Metrics.Counter failures;
+
+        IOOperation(String label) {
+            this.label = label;
+            timer = Metrics.timer("io." + label);
+            bytes = Metrics.counter("io." + label + ".bytes");
+            failures = Metrics.counter("io." + label + ".failures");
+        }
+
+        String label() {
+            return label;
+        }
+    }
+
     @FunctionalInterface
     public interface BiConsumerThrows<T, U> {
 
@@ -297,43 +666,151 @@ public class MovieCollection {
     }
 
     /**
-     * Simple test client that takes two arguments:
-     * <ol>
-     *     <li>Path to movie folder (may be relative or absolute)</li>
-     *     <li>The path to a folder within the movie folder (may be relative or absolute)</li>
-     * </ol>
-     * Prints to stdout the movie folder directory
-     * @param args path to a movie folder and a path to a folder within that folder
+     * Usage: {@code <root> <query>} prints the root and the queried folder, {@code serve <root> [port]
+     * [refresh seconds]} keeps the collection in memory and serves it, see {@link CollectionServer}, and
+     * {@code batch <root> [commands file] [--parallel N]} executes many commands after one scan, see
+     * {@link BatchCli}.  When metrics are enabled ({@code -Dmovieorganizer.metrics=true}) the query prints a JSON
+     * snapshot of them last.  A batch in which any command failed exits with status 1.
+     * @param args see usage
+     * @throws IOException if the server could not be started
      */
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("serve") ) {
+            CollectionServer.serve(Arrays.copyOfRange(args, 1, args.length) );
+            return;
+        }
+        if (args.length > 0 && args[0].equals("batch") ) {
+            int failed = BatchCli.batch(Arrays.copyOfRange(args, 1, args.length) );
+            if (failed > 0) {
+                System.err.println(failed + " command" + (failed == 1 ? "" : "s") + " failed.");
+                System.exit(1);
+            }
+            return;
+        }
         String pathString = args[0];
         Path query = Paths.get(args[1]);
         MovieCollection col = new MovieCollection(pathString);
         Path absQuery = query.isAbsolute() ? query : col.getRootPath().resolve(query);
         System.out.println(col.rootFolder);
         System.out.println(col.openFolder(absQuery));
+        if (Metrics.isEnabled() ) {
+            System.out.println(Metrics.snapshotJson() );
+        }
     }
 
     private static class Collector {
-        private final int MIN_VIDEO_SIZE_MB = 50;
+        private static final Metrics.Timer WALK_TIMER = Metrics.timer("scan.walk");
+        private static final Metrics.Timer SORT_TIMER = Metrics.timer("scan.sort");
+        private static final Metrics.Timer STAT_TIMER = Metrics.timer("scan.stat");
+        private static final Metrics.Timer CLASSIFY_TIMER = Metrics.timer("scan.classify");
+        private static final Metrics.Counter FOLDERS = Metrics.counter("scan.folders");
+        private static final Metrics.Counter FILES = Metrics.counter("scan.files");
+        private static final Metrics.Counter ERRORS = Metrics.counter("scan.errors");
+        private static final Metrics.Counter RECLASSIFIED = Metrics.counter("scan.sniff.reclassified");
+        private static final Metrics.Counter PRUNED = Metrics.counter("scan.pruned");
+        private static final Metrics.Counter SKIPPED = Metrics.counter("scan.skippedFiles");
+        private static final Metrics.Counter RETRIES = Metrics.counter("scan.retries");
+        private static final Metrics.Counter RECOVERED = Metrics.counter("scan.retries.recovered");
 
         Path rootPath;
         MovieFolder rootFolder;
         LinkedList<MovieFolder> folderStack;
-        private final FileClassifier fileClassifier;
+        private final ClassificationRules rules;
+        private final ScanOptions options;
+        private final ScanReport report = new ScanReport();
+        private final Optional<ScanThrottle> throttle;
+        private final Optional<FolderStore> store;
+        private final RetryLane retries;
+        private final List<List<WalkedPath>> recovered = new ArrayList<>(); // walked by retries which succeeded
+        private final Optional<ContainerSniffer> sniffer;
+        private final LinkedList<PendingFile> pendingFiles; // files awaiting a content sniff
+        private ExecutorService sniffExecutor;
 
 
-        private Collector(Path rootPath) {
+        private Collector(Path rootPath, ScanOptions options) {
             mustBeDir(rootPath);
             this.rootPath = rootPath;
             folderStack = new LinkedList<>();
-            fileClassifier = new FileClassifier();
-            walkStream().filter(FileClassifier::isReadableAndWriteable)
-                        .map(this::manageStack)
-                        .forEach(this::sortFiles);
+            this.options = options;
+            throttle = options.getThrottle();
+            retries = options.newRetryLane();
+            rules = options.getRules();
+            sniffer = options.getSniffer();
+            pendingFiles = new LinkedList<>();
+            store = options.newFolderStore();
+            try {
+                collect();
+            } catch (RuntimeException | Error e) { // no collection will close the store
+                if (Objects.nonNull(sniffExecutor) ) {
+                    sniffExecutor.shutdownNow();
+                }
+                if (store.isPresent() ) {
+                    try {
+                        store.get().close();
+                    } catch (IOException closeError) {
+                        e.addSuppressed(closeError);
+                    }
+                }
+                throw e;
+            }
+        }
+
+        private void collect() {
+            if (sniffer.isPresent() ) {
+                sniffExecutor = Executors.newFixedThreadPool(options.getSniffThreads(), (r) -> {
+                    Thread t = new Thread(r, "collector-sniffer");
+                    t.setDaemon(true);
+                    return t;
+                });
+            }
+            if (store.isPresent() ) {
+                sortWhileWalking();
+            }
+            else {
+                walkThenSort();
+            }
+            integrateRetries();
+            addPendingFiles();
+            if (folderStack.isEmpty() ) {
+                throw new IllegalArgumentException("The root folder could not be listed: " + rootPath + " "
+                        + report.getFailures() );
+            }
             rootFolder = folderStack.removeFirst(); // ...it's a stack 99.9% of the time.
         }
 
+        private void walkThenSort() {
+            FlightEvents.ScanPhaseEvent walkEvent = new FlightEvents.ScanPhaseEvent();
+            long walkStart = WALK_TIMER.start();
+            walkEvent.begin();
+            List<WalkedPath> paths = walkStream().collect(Collectors.toList() );
+            WALK_TIMER.stop(walkStart);
+            walkEvent.finish(rootPath, "walk", paths.size() );
+            FlightEvents.ScanPhaseEvent sortEvent = new FlightEvents.ScanPhaseEvent();
+            long sortStart = SORT_TIMER.start();
+            sortEvent.begin();
+            for (WalkedPath walked : paths) { // the walk leaves out what it couldn't stat, list or access
+                manageStack(walked.path);
+                sortFiles(walked);
+            }
+            SORT_TIMER.stop(sortStart);
+            sortEvent.finish(rootPath, "sort", paths.size() );
+        }
+
+        // in spill mode the tree may not fit in memory, so neither may a list of its paths
+        private void sortWhileWalking() {
+            FlightEvents.ScanPhaseEvent walkEvent = new FlightEvents.ScanPhaseEvent();
+            long walkStart = WALK_TIMER.start();
+            walkEvent.begin();
+            long[] sorted = new long[1];
+            walk(rootPath, 1, (walked) -> {
+                manageStack(walked.path);
+                sortFiles(walked);
+                sorted[0]++;
+            });
+            WALK_TIMER.stop(walkStart);
+            walkEvent.finish(rootPath, "walk", sorted[0]);
+        }
+
         private MovieFolder getRootFolder() {
             return rootFolder;
         }
@@ -367,98 +844,370 @@ public class MovieCollection {
         return path;
         }
 
-        private Path sortFiles(Path path) {
-            if (FileClassifier.isFile(path)) {
+        // records a walked path from the attributes the walk read, only a symlink is stat-ed again, for its target
+        private Path sortFiles(WalkedPath walked) {
+            Path path = walked.path;
+            BasicFileAttributes attributes = walked.attributes;
+            if (attributes.isSymbolicLink() ) {
+                try {
+                    attributes = stat(path);
+                } catch (IOException e) {
+                    // a broken link is neither a directory nor a regular file
+                }
+            }
+            if (attributes.isRegularFile() ) {
                 MovieFolder folder = Objects.requireNonNull(folderStack.peekLast(), "Received a null folder!");
-                addFile(folder, path);
+                addFile(folder, path, attributes);
             }
-            else if (FileClassifier.isDir(path)) {
+            else if (walked.attributes.isDirectory() ) {
                 addFolder(path);
             }
             else {
-                System.out.println("Path target couldn't be classified as a directory or regular file: " + path);
+                ERRORS.increment();
+                report.error(new ScanReport.ScanError(path, ScanReport.Operation.STAT,
+                        new FileSystemException(path.toString(), null, "not a directory or regular file"), 1, false) );
             }
             return path;
         }
 
-        private void addFile(MovieFolder folder, Path path) {
+        private void addFile(MovieFolder folder, Path path, BasicFileAttributes attributes) {
             Path filename = path.getFileName();
-            if (fileClassifier.fileSizeLargerThan(path, MIN_VIDEO_SIZE_MB) ) {
-                if (fileClassifier.isVideo(filename) )  {
-                    folder.addFile(filename, FileType.Movie);
-                }
-                else {
-                    folder.addFile(filename, FileType.Unusual);
-                }
-            }
-            // Note: currently rejecting potential isSub matches with file sizes > MIN_VIDEO_SIZE_MB.
-            else if (fileClassifier.isSub(filename)) {
-                folder.addFile(filename, FileType.Sub);
+            long classifyStart = CLASSIFY_TIMER.start();
+            FileType type = rules.classify(filename, attributes.size() );
+            long addedTime = RecentAdditions.addedTime(attributes);
+            CLASSIFY_TIMER.stop(classifyStart);
+            if (sniffer.isPresent() && type != FileType.Movie && type != FileType.Sub) {
+                // defer the record until the sniff completes, the walk continues meanwhile
+                ContainerSniffer s = sniffer.get();
+                Future<ContainerSniffer.Container> container = sniffExecutor.submit( () -> s.sniff(path) );
+                pendingFiles.addLast(new PendingFile(folder, path, type, addedTime, container) );
             }
             else {
-                folder.addFile(filename, FileType.PossiblyJunk);
+                folder.addFile(filename, type, addedTime);
+            }
+            FILES.increment();
+            report.fileScanned();
+        }
+
+        /**
+         * Waits for outstanding content sniffs and adds their files, reclassifying those with a video container as
+         * {@link FileType#Movie}.  Sniff failures fall back to the name and size classification.
+         */
+        private void addPendingFiles() {
+            if (Objects.isNull(sniffExecutor) ) {
+                return;
+            }
+            try {
+                for (PendingFile pending : pendingFiles) {
+                    FileType type = pending.fallback;
+                    try {
+                        if (pending.container.get().isVideo() ) {
+                            type = FileType.Movie;
+                            RECLASSIFIED.increment();
+                        }
+                    } catch (ExecutionException e) {
+                        ERRORS.increment();
+                        Throwable cause = e.getCause();
+                        report.error(new ScanReport.ScanError(pending.path, ScanReport.Operation.SNIFF,
+                                cause instanceof Exception ? (Exception) cause : e, 1, false) );
+                    }
+                    pending.folder.addFile(pending.path.getFileName(), type, pending.addedTime);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for content sniffing.", e);
+            } finally {
+                pendingFiles.clear();
+                sniffExecutor.shutdownNow();
             }
         }
 
         private void addFolder(Path path) {
             int depth = getDepth(path);
-            MovieFolder newFolder = new MovieFolder(path, depth);
+            MovieFolder newFolder = folderStack.isEmpty() && store.isPresent() // sub-folders join the root's store
+                    ? new MovieFolder(path, depth, store.get() ) : new MovieFolder(path, depth);
             if (!folderStack.isEmpty()) {
                 MovieFolder curFolder = Objects.requireNonNull(folderStack.peekLast());
                 curFolder.addFolder(newFolder);
             }
             folderStack.addLast(newFolder);
+            FOLDERS.increment();
+            report.folderScanned();
+        }
+
+        private static class PendingFile {
+            private final MovieFolder folder;
+            private final Path path;
+            private final FileType fallback;
+            private final long addedTime;
+            private final Future<ContainerSniffer.Container> container;
+
+            private PendingFile(MovieFolder folder, Path path, FileType fallback, long addedTime,
+                                Future<ContainerSniffer.Container> container) {
+                this.folder = folder;
+                this.path = path;
+                this.fallback = fallback;
+                this.addedTime = addedTime;
+                this.container = container;
+            }
+        }
+
+        // a path reached by the walk, with the attributes its stat read
+        private static final class WalkedPath {
+            private final Path path;
+            private final BasicFileAttributes attributes;
+
+            private WalkedPath(Path path, BasicFileAttributes attributes) {
+                this.path = path;
+                this.attributes = attributes;
+            }
         }
 
         /**
-         * Creates the stream of paths from walking from the root path.  Does not follow Symlinks, and filters files
-         * which are neither readable nor writeable.
+         * Creates the stream of paths from walking from the root path.  Does not follow Symlinks.  Folders pruned by
+         * the {@link ScanOptions} are skipped with their subtrees, and files the options don't record are left out.
+         * With a {@link ScanThrottle} each listing, stat and access check waits for a permit, and each stat and access
+         * check is timed for the throttle.
          *
-         * @return Paths from current directory
+         * @return Paths from current directory, with their attributes
+         */
+        Stream<WalkedPath> walkStream() {
+            Stream.Builder<WalkedPath> walkStream = Stream.builder();
+            walk(rootPath, 1, walkStream::add);
+            return walkStream.build();
+        }
+
+        /**
+         * Reads a path's attributes, which the scan records it from.  Takes a throttle permit and reports the latency
+         * to the throttle.  The {@link ScanOptions#check} runs for anything but a folder, as a file's size is read
+         * here.
+         * @param path the path
+         * @param linkOptions {@link LinkOption#NOFOLLOW_LINKS} to read a symlink's own attributes
+         * @return the attributes
+         * @throws IOException if the stat or the check failed
          */
-        Stream<Path> walkStream() {
-            Stream.Builder<Path> walkStream = Stream.builder();
+        private BasicFileAttributes stat(Path path, LinkOption... linkOptions) throws IOException {
+            throttle.ifPresent(ScanThrottle::acquire);
+            long statStart = STAT_TIMER.start();
+            long latencyStart = throttle.isPresent() ? System.nanoTime() : 0L;
+            BasicFileAttributes attributes;
             try {
-                // Custom SimpleFileVisitor which suppresses IOExceptions (unlike Files.walk(Path) )
-                Files.walkFileTree( rootPath,new SimpleFileVisitor<>() {
-                            @Override
-                            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
-                                try {
-                                        walkStream.add(file);
-                                } catch (Exception e) {
-                                    System.out.println("Suppressed an IOException in SimpleFileVisitor.FileVisit: "
-                                    + file + ".");
-                                }
-                                return FileVisitResult.CONTINUE;
-                            }
-                            @Override
-                            public FileVisitResult visitFileFailed(Path file, IOException exc) {
-                                System.out.println("Suppressed an IOException in SimpleFileVisitor.FileVisitFailed: "
-                                        + file + ".");
-                                exc.printStackTrace();
-                                exc.addSuppressed(new IOException());
-                                return FileVisitResult.CONTINUE;
-                            }
-                            @Override
-                            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
-                                walkStream.add(dir);
-                                return FileVisitResult.CONTINUE;
-                            }
-                            @Override
-                            public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
-                                if (Objects.nonNull(exc) ) {
-                                    exc.addSuppressed(new IOException());
-                                    System.out.println("Suppressed an IOException in SimpleFileVisitor.postVisitDirectory: "
-                                            + dir + ".");
-                                }
-                                    return FileVisitResult.CONTINUE;
-                            }
-
-                        } ); } catch (Exception e) {
-                                System.out.println("Suppressed an exception in SimpleFileVisitor.FileVisit.");
-                                e.printStackTrace();
+                attributes = Files.readAttributes(path, BasicFileAttributes.class, linkOptions);
+            } finally {
+                STAT_TIMER.stop(statStart);
+                observe(latencyStart);
             }
-            return walkStream.build();
+            if (!attributes.isDirectory() ) {
+                options.check(path);
+            }
+            return attributes;
+        }
+
+        /**
+         * Lists a folder, taking a throttle permit.  The latency isn't reported to the throttle, as listing a large
+         * folder takes longer however idle the filesystem is.
+         * @param dir the folder
+         * @param entries receives the folder's entries
+         * @return the error which broke the listing off, null if it completed, in either case {@code entries} holds
+         * those read
+         * @throws IOException if the folder couldn't be opened
+         */
+        private IOException list(Path dir, List<Path> entries) throws IOException {
+            throttle.ifPresent(ScanThrottle::acquire);
+            options.check(dir);
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir) ) {
+                stream.forEach(entries::add);
+            } catch (DirectoryIteratorException e) {
+                return e.getCause();
+            }
+            return null;
+        }
+
+        /**
+         * Checks whether a file is readable or writable, taking a throttle permit and reporting the latency to the
+         * throttle.  A folder needs no check, one which could be listed is readable.
+         * @param path the file
+         * @return true if the file is readable or writable
+         */
+        private boolean accessible(Path path) {
+            throttle.ifPresent(ScanThrottle::acquire);
+            long latencyStart = throttle.isPresent() ? System.nanoTime() : 0L;
+            try {
+                return FileClassifier.isReadableAndWriteable(path);
+            } finally {
+                observe(latencyStart);
+            }
+        }
+
+        // reports the latency of an operation started at latencyStart to the throttle
+        private void observe(long latencyStart) {
+            throttle.ifPresent( (t) -> t.observe(System.nanoTime() - latencyStart) );
+        }
+
+        /**
+         * Walks from {@code start}, see {@link Collector#walkStream}, passing each path to the visitor as it's
+         * reached.  Errors are reported to {@link Collector#failed}, which schedules transient ones for a retry.
+         * @param start the root path, or for a retry the path which failed
+         * @param attempt the attempt at {@code start}, the first is 1
+         * @param visitor receives each path, in walk order
+         * @return false if {@code start} itself failed
+         */
+        boolean walk(Path start, int attempt, Consumer<WalkedPath> visitor) {
+            boolean[] startFailed = new boolean[1];
+            WalkFailure fail = (path, operation, e) -> {
+                boolean isStart = path.equals(start);
+                startFailed[0] |= isStart;
+                failed(path, operation, e, isStart ? attempt : 1);
+            };
+            try {
+                visit(start, stat(start, LinkOption.NOFOLLOW_LINKS), visitor, fail);
+            } catch (IOException e) {
+                fail.accept(start, ScanReport.Operation.STAT, e);
+            }
+            return !startFailed[0];
+        }
+
+        // receives a walk's errors with the operation which failed
+        @FunctionalInterface
+        private interface WalkFailure {
+            void accept(Path path, ScanReport.Operation operation, Exception e);
+        }
+
+        // depth first, like Files.walkFileTree, but each listing and stat is made, throttled and timed here
+        private void visit(Path path, BasicFileAttributes attributes, Consumer<WalkedPath> visitor,
+                           WalkFailure fail) {
+            if (!attributes.isDirectory() ) {
+                if (options.recordsFile(rootPath.relativize(path) ) ) {
+                    if (accessible(path) ) { // a file neither readable nor writable isn't recorded
+                        visitor.accept(new WalkedPath(path, attributes) );
+                    }
+                }
+                else {
+                    SKIPPED.increment();
+                    report.fileSkipped();
+                }
+                return;
+            }
+            if (!path.equals(rootPath) ) {
+                Optional<ScanReport.PruneReason> reason =
+                        options.pruneReason(rootPath.relativize(path), getDepth(path), attributes);
+                if (reason.isPresent() ) {
+                    PRUNED.increment();
+                    report.folderPruned(path, reason.get() );
+                    return;
+                }
+            }
+            List<Path> entries = new ArrayList<>();
+            IOException brokenOff;
+            try {
+                brokenOff = list(path, entries);
+            } catch (IOException e) {
+                fail.accept(path, ScanReport.Operation.LIST, e);
+                return;
+            }
+            visitor.accept(new WalkedPath(path, attributes) );
+            for (Path entry : entries) {
+                try {
+                    visit(entry, stat(entry, LinkOption.NOFOLLOW_LINKS), visitor, fail);
+                } catch (IOException e) {
+                    fail.accept(entry, ScanReport.Operation.STAT, e);
+                }
+            }
+            if (Objects.nonNull(brokenOff) ) { // the retry lists the folder again
+                fail.accept(path, ScanReport.Operation.LIST, brokenOff);
+            }
+        }
+
+        /**
+         * Reports an error, or when it's transient and attempts remain schedules a retry walk of the path instead.
+         * @param path absolute path which failed
+         * @param operation what failed
+         * @param e the error
+         * @param attempt the attempt which failed, the first is 1
+         */
+        private void failed(Path path, ScanReport.Operation operation, Exception e, int attempt) {
+            ERRORS.increment();
+            if (e instanceof IOException && RetryLane.isTransient( (IOException) e)
+                    && retries.schedule(attempt, () -> retry(path, operation, e, attempt + 1) ) ) {
+                RETRIES.increment();
+                return;
+            }
+            report.error(new ScanReport.ScanError(path, operation, e, attempt, false) );
+        }
+
+        // runs on the retry lane, the paths walked are recorded by integrateRetries once the main walk is done
+        private void retry(Path path, ScanReport.Operation operation, Exception previous, int attempt) {
+            List<WalkedPath> paths = new ArrayList<>();
+            if (walk(path, attempt, paths::add) ) {
+                synchronized (recovered) {
+                    recovered.add(paths);
+                }
+                RECOVERED.increment();
+                report.error(new ScanReport.ScanError(path, operation, previous, attempt, true) );
+            }
+        }
+
+        /**
+         * Waits for the retry lane, then records the paths which recovered.  Each batch is sorted like the main walk,
+         * starting from the stack of folders above it.  A folder whose listing broke off may already be recorded,
+         * as may some of its files, these are kept.
+         */
+        private void integrateRetries() {
+            try {
+                retries.awaitAndClose();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for scan retries.", e);
+            }
+            for (List<WalkedPath> batch : recovered) {
+                if (batch.isEmpty() || !restoreStack(batch.get(0).path.getParent() ) ) {
+                    batch.stream().findFirst().ifPresent( (w) -> report.error(new ScanReport.ScanError(w.path,
+                            ScanReport.Operation.LIST, new NoSuchFileException(w.path.getParent().toString(), null,
+                                    "the parent folder was not recorded"), 1, false) ) );
+                    continue;
+                }
+                for (WalkedPath walked : batch) {
+                    Path path = walked.path;
+                    if (path.equals(rootPath) && !folderStack.isEmpty() ) {
+                        continue;
+                    }
+                    manageStack(path);
+                    MovieFolder parent = folderStack.peekLast();
+                    Optional<MovieFolder> existing = Objects.isNull(parent) ? Optional.empty()
+                                                                            : parent.getFolder(path.getFileName() );
+                    if (existing.isPresent() ) {
+                        folderStack.addLast(existing.get() );
+                    }
+                    else if (Objects.isNull(parent) || !parent.containsFile(path.getFileName() ) ) {
+                        sortFiles(walked);
+                    }
+                }
+            }
+        }
+
+        // sets the stack to the recorded folders from the root down to folder, false if one isn't recorded
+        private boolean restoreStack(Path folder) {
+            if (folderStack.isEmpty() ) { // only the root itself can recover without a recorded root
+                return folder.equals(rootPath.getParent() );
+            }
+            MovieFolder cur = folderStack.getFirst();
+            folderStack.clear();
+            folderStack.addLast(cur);
+            if (folder.equals(rootPath.getParent() ) ) { // the root's listing broke off
+                return true;
+            }
+            if (!folder.startsWith(rootPath) ) {
+                return false;
+            }
+            for (int i = rootPath.getNameCount(); i < folder.getNameCount(); i++) {
+                Optional<MovieFolder> next = cur.getFolder(folder.getName(i) );
+                if (next.isEmpty() ) {
+                    return false;
+                }
+                cur = next.get();
+                folderStack.addLast(cur);
+            }
+            return true;
         }
     }
 }
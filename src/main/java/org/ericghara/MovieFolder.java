@@ -1,15 +1,24 @@
 package org.ericghara;
 
 import static org.ericghara.FileClassifier.mustBeFilename;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.LinkOption;
 import java.nio.file.Path;
+import java.util.AbstractCollection;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.OptionalInt;
+import java.util.OptionalLong;
 import java.util.Set;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
@@ -49,16 +58,56 @@ class MovieFolder {
     private final ArrayList<HashSet<Path>> allFiles;
     private Path folderPath;
     private int depth;
+    private int modCount; // incremented by every change to the records, invalidates listings
+    private FolderListing listing;
+    // in spill mode sub-folders are held by the store and referred to by id, see FolderStore
+    private FolderStore store;
+    private int storeId = -1;
+    private final HashMap<Path, Integer> folderIds;
+    private final HashMap<Path, Long> fileTimes; // when each file was added in millis, see RecentAdditions#addedTime
+    private long changeTime = -1;
 
     MovieFolder(Path path, int depth) {
         folderPath = path.toAbsolutePath();
         this.depth = depth;
         folders = new HashMap<>();
+        folderIds = new HashMap<>();
+        fileTimes = new HashMap<>();
         allFiles = new ArrayList<>(FileType.numFileTypes() );
         IntStream.range(0, FileType.numFileTypes() )
                  .forEach( (i) -> allFiles.add(new HashSet<>() ) );
     }
 
+    /**
+     * Creates a folder in spill mode.  Sub-folders added to it join the same store.
+     * @param path absolute path of the folder
+     * @param depth depth of the folder
+     * @param store the store holding the collection's folders
+     */
+    MovieFolder(Path path, int depth, FolderStore store) {
+        this(path, depth);
+        adopt(store);
+    }
+
+    // moves this folder and any sub-folders into the store
+    private void adopt(FolderStore store) {
+        this.store = store;
+        storeId = store.newId();
+        folders.forEach( (name, folder) -> {
+            folder.adopt(store);
+            folderIds.put(name, folder.storeId);
+        });
+        folders.clear();
+        store.changed(storeId, this);
+    }
+
+    private void changed() {
+        modCount++;
+        if (Objects.nonNull(store) ) {
+            store.changed(storeId, this);
+        }
+    }
+
     public boolean contains(Path name, FileType type) {
         mustBeFilename(name);
         return getFilenames(type).contains(name);
@@ -85,7 +134,7 @@ class MovieFolder {
             return allFiles.get(id);
         }
         else if (type.equals(FileType.Folder) ) {
-            return folders.keySet();
+            return Objects.isNull(store) ? folders.keySet() : folderIds.keySet();
         }
         else {
             throw new IllegalArgumentException("The given FileType has not been fully implemented: "
@@ -94,7 +143,31 @@ class MovieFolder {
     }
 
     Collection<MovieFolder> getFolders() {
-        return folders.values();
+        if (Objects.isNull(store) ) {
+            return folders.values();
+        }
+        return new AbstractCollection<>() { // loads each folder as it's reached
+            @Override
+            public Iterator<MovieFolder> iterator() {
+                Iterator<Integer> ids = folderIds.values().iterator();
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return ids.hasNext();
+                    }
+
+                    @Override
+                    public MovieFolder next() {
+                        return store.load(ids.next() );
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return folderIds.size();
+            }
+        };
     }
 
     public Path getFolderPath() {
@@ -128,12 +201,44 @@ class MovieFolder {
     }
 
     void addFile(Path filename, FileType type) {
+        addFile(filename, type, -1L);
+    }
+
+    /**
+     * @param filename name of the file
+     * @param type type of the file
+     * @param addedTime when the file was added to the folder in epoch millis, negative if unknown
+     * @see RecentAdditions#addedTime
+     */
+    void addFile(Path filename, FileType type, long addedTime) {
         mustBeFilename(filename);
         boolean success = allFiles.get(type.id() ).add(filename);
         if (!success) {
             throw new IllegalArgumentException(String.format(
                     "The folder: %s already contains a file named %s", this, filename) );
         }
+        if (addedTime >= 0) {
+            fileTimes.put(filename, addedTime);
+            changeTime = Math.max(changeTime, addedTime);
+        }
+        changed();
+    }
+
+    /**
+     * @param filename name of a file in this folder
+     * @return when the file was added in epoch millis, empty if unknown
+     */
+    OptionalLong getFileTime(Path filename) {
+        Long time = fileTimes.get(filename);
+        return Objects.isNull(time) ? OptionalLong.empty() : OptionalLong.of(time);
+    }
+
+    /**
+     * @return epoch millis of the newest file added to this folder or of the last file removed from it, whichever is
+     * later, or -1 if unknown
+     */
+    long getChangeTime() {
+        return changeTime;
     }
 
     void addFolder(MovieFolder folder) {
@@ -144,7 +249,16 @@ class MovieFolder {
                     "it does not exist in this location: " + fullPath);
         }
         folder.changePath(fullPath, getDepth()+1);
-        folders.put(folderName, folder);
+        if (Objects.isNull(store) ) {
+            folders.put(folderName, folder);
+        }
+        else {
+            if (Objects.isNull(folder.store) ) {
+                folder.adopt(store);
+            }
+            folderIds.put(folderName, folder.storeId);
+        }
+        changed();
     }
 
     /**
@@ -191,16 +305,128 @@ class MovieFolder {
             throw new IllegalArgumentException("Could not locate the record for" +
                     " deletion: " + absPath );
         }
+        removed(List.of(name) );
+        changed();
+    }
+
+    /**
+     * Deletes many records of the same type from this {@code MovieFolder} object in one step.  Unlike
+     * {@link MovieFolder#deleteRecord} the filesystem is not checked, the caller must have observed each deletion.
+     * @param names - files targeted for record deletion (must be names only)
+     * @param type - type of the files to be deleted
+     * @see TreeDeleter
+     */
+    void deleteRecords(Collection<Path> names, FileType type) {
+        Set<Path> records = getFilenames(type);
+        for (Path name : names) {
+            mustBeFilename(name);
+            if (!records.contains(name) ) {
+                throw new IllegalArgumentException("Could not locate the record for" +
+                        " deletion: " + toAbsolutePath(name) );
+            }
+        }
+        names.forEach(records::remove);
+        removed(names);
+        changed();
+    }
+
+    /**
+     * Lists a page of the names of one type, sorted.  The sorted index behind the listing is built on first use and
+     * kept until this folder's records change, so paging through a large folder doesn't re-sort it.
+     *
+     * @param type the type to list (including Folders), or null for files of every type
+     * @param order sort order, ties are broken by name
+     * @param descending if the order should be reversed
+     * @param after the cursor returned with the previous page, or null for the first page
+     * @param limit maximum names in the page
+     * @return the page following {@code after}
+     * @see FolderListing
+     */
+    FolderListing.Page list(FileType type, FolderListing.Order order, boolean descending,
+                            FolderListing.Cursor after, int limit) {
+        return listing().page(type, order, descending, after, limit);
+    }
+
+    // created on first use, a folder which is never listed doesn't pay for its indexes
+    private synchronized FolderListing listing() {
+        if (Objects.isNull(listing) ) {
+            listing = new FolderListing(this);
+        }
+        return listing;
+    }
+
+    int getModCount() {
+        return modCount;
+    }
+
+    private void removed(Collection<Path> names) {
+        names.forEach(fileTimes::remove);
+        changeTime = Math.max(changeTime, System.currentTimeMillis() );
     }
 
     Optional<MovieFolder> getFolder(Path folderName) {
         mustBeFilename(folderName);
-        return Optional.ofNullable(folders.get(folderName) );
+        if (Objects.isNull(store) ) {
+            return Optional.ofNullable(folders.get(folderName) );
+        }
+        return Optional.ofNullable(folderIds.get(folderName) ).map(store::load);
     }
 
     void changePath(Path path, int depth) {
         this.folderPath = path;
         this.depth = depth;
+        changed();
+    }
+
+    /**
+     * Writes the record of a folder in spill mode, read back by {@link MovieFolder#read}.
+     * @param out destination of the record
+     * @throws IOException if the record could not be written
+     */
+    void write(DataOutput out) throws IOException {
+        out.writeUTF(folderPath.toString() );
+        out.writeInt(depth);
+        out.writeLong(changeTime);
+        for (HashSet<Path> files : allFiles) {
+            out.writeInt(files.size() );
+            for (Path name : files) {
+                out.writeUTF(name.toString() );
+                out.writeLong(fileTimes.getOrDefault(name, -1L) );
+            }
+        }
+        out.writeInt(folderIds.size() );
+        for (Map.Entry<Path, Integer> folder : folderIds.entrySet() ) {
+            out.writeUTF(folder.getKey().toString() );
+            out.writeInt(folder.getValue() );
+        }
+    }
+
+    /**
+     * @param in a record written by {@link MovieFolder#write}
+     * @param store the store the record was written to
+     * @param id the folder's id in the store
+     * @return the folder
+     * @throws IOException if the record could not be read
+     */
+    static MovieFolder read(DataInput in, FolderStore store, int id) throws IOException {
+        MovieFolder folder = new MovieFolder(Path.of(in.readUTF() ), in.readInt() );
+        folder.store = store;
+        folder.storeId = id;
+        folder.changeTime = in.readLong();
+        for (HashSet<Path> files : folder.allFiles) {
+            for (int i = in.readInt(); i > 0; i--) {
+                Path name = Path.of(in.readUTF() );
+                long time = in.readLong();
+                files.add(name);
+                if (time >= 0) {
+                    folder.fileTimes.put(name, time);
+                }
+            }
+        }
+        for (int i = in.readInt(); i > 0; i--) {
+            folder.folderIds.put(Path.of(in.readUTF() ), in.readInt() );
+        }
+        return folder;
     }
 
     Stream<Path> getAllFiles() {
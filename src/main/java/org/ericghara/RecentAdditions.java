@@ -0,0 +1,251 @@
+package org.ericghara;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * The most recently added files of a {@link MovieCollection}, newest first, for a "new arrivals" feed.
+ * <p>
+ * Each file record carries the time its file was added, taken from the same stat which sizes it during the scan, see
+ * {@link #addedTime(BasicFileAttributes)}, so building the index stats nothing.  Entries are kept in a skip list
+ * ordered by time and bounded to a capacity, and the index is maintained as a {@link CollectionListener}: a copy
+ * enters it as of the copy, a move keeps the file's time under its new path and a removal drops the entry.  The
+ * latest {@code n} additions are read by walking the head of the skip list, so a query costs {@code O(n)} however
+ * large the collection is.
+ * <p>
+ * Entries pushed out by the bound are forgotten, so once removals leave fewer entries than a query asks for the
+ * index is built again from the records.  Queries don't block updates, instances are thread safe.
+ */
+class RecentAdditions implements CollectionListener {
+
+    private static final Metrics.Timer BUILD_TIMER = Metrics.timer("recent.build");
+    private static final Comparator<Entry> NEWEST_FIRST = Comparator.comparingLong(Entry::getAddedTime).reversed()
+                                                                    .thenComparing(Entry::getPath);
+
+    private final MovieCollection collection;
+    private final FileType type;
+    private final int capacity;
+    private final Map<Path, Entry> byPath = new HashMap<>();
+    private volatile ConcurrentSkipListSet<Entry> entries = new ConcurrentSkipListSet<>(NEWEST_FIRST);
+    private volatile boolean truncated; // older entries were dropped to stay within the capacity
+
+    /**
+     * Builds the index from the collection's records and registers for updates.
+     * @param collection the collection to follow
+     * @param type the file type to index, null for files of every type
+     * @param capacity the most entries kept, and so the most a query returns
+     */
+    RecentAdditions(MovieCollection collection, FileType type, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Received a non-positive capacity: " + capacity);
+        }
+        if (type == FileType.Folder) {
+            throw new IllegalArgumentException("Expected a file type but received: " + type);
+        }
+        this.collection = Objects.requireNonNull(collection, "Received a null collection.");
+        this.type = type;
+        this.capacity = capacity;
+        build();
+        collection.addListener(this);
+    }
+
+    /**
+     * Stops incremental maintenance.  Results are frozen as of this call.
+     */
+    void close() {
+        collection.removeListener(this);
+    }
+
+    /**
+     * When a file arrived: the later of its creation and last modification, as a file copied or moved in with
+     * its original timestamps is only new by its creation, and filesystems without creation times report the
+     * modification time instead.
+     * @param attributes the file's attributes
+     * @return epoch millis
+     */
+    static long addedTime(BasicFileAttributes attributes) {
+        return Math.max(attributes.creationTime().toMillis(), attributes.lastModifiedTime().toMillis() );
+    }
+
+    /**
+     * @param file absolute path of a file
+     * @return epoch millis, see {@link #addedTime(BasicFileAttributes)}, or -1 if the file couldn't be read
+     */
+    static long addedTime(Path file) {
+        try {
+            return addedTime(Files.readAttributes(file, BasicFileAttributes.class) );
+        } catch (IOException e) {
+            return -1L;
+        }
+    }
+
+    /**
+     * Discards the index and builds it again from the collection's records.
+     */
+    synchronized void build() {
+        long start = BUILD_TIMER.start();
+        byPath.clear();
+        truncated = false;
+        ConcurrentSkipListSet<Entry> built = new ConcurrentSkipListSet<>(NEWEST_FIRST);
+        collection.getSubFolders(collection.getRootPath() ).forEach( (folder) -> {
+            for (FileType t : FileType.values() ) {
+                if (t != FileType.Folder && matches(t) ) {
+                    folder.getFilenames(t).forEach( (f) -> offer(built, folder, f, t) );
+                }
+            }
+        });
+        entries = built;
+        BUILD_TIMER.stop(start);
+    }
+
+    /**
+     * @param n the number of files
+     * @return the {@code n} most recently added files, newest first, or fewer if the collection has fewer or
+     * {@code n} exceeds the capacity
+     */
+    List<Entry> latest(int n) {
+        if (n < 1) {
+            throw new IllegalArgumentException("Received a non-positive number of entries: " + n);
+        }
+        List<Entry> latest = head(n);
+        if (truncated && latest.size() < Math.min(n, capacity) ) {
+            build();
+            latest = head(n);
+        }
+        return latest;
+    }
+
+    private List<Entry> head(int n) {
+        List<Entry> head = new ArrayList<>(Math.min(n, capacity) );
+        Iterator<Entry> it = entries.iterator();
+        while (head.size() < n && it.hasNext() ) {
+            head.add(it.next() );
+        }
+        return head;
+    }
+
+    private boolean matches(FileType t) {
+        return Objects.isNull(type) || type == t;
+    }
+
+    // adds a file's entry unless it is older than every entry of a full index, then trims to the capacity
+    private void offer(ConcurrentSkipListSet<Entry> set, MovieFolder folder, Path filename, FileType t) {
+        long time = folder.getFileTime(filename).orElse(-1L);
+        if (time < 0) {
+            return;
+        }
+        Entry entry = new Entry(folder.toAbsolutePath(filename), t, time);
+        if (byPath.size() >= capacity && NEWEST_FIRST.compare(entry, set.last() ) > 0) {
+            truncated = true;
+            return;
+        }
+        remove(set, entry.getPath() );
+        set.add(entry);
+        byPath.put(entry.getPath(), entry);
+        if (byPath.size() > capacity) {
+            byPath.remove(set.pollLast().getPath() );
+            truncated = true;
+        }
+    }
+
+    private void remove(ConcurrentSkipListSet<Entry> set, Path path) {
+        Entry entry = byPath.remove(path);
+        if (Objects.nonNull(entry) ) {
+            set.remove(entry);
+        }
+    }
+
+    // paths of the entries in the folder or below it
+    private List<Path> below(Path folderPath) {
+        List<Path> paths = new ArrayList<>();
+        byPath.keySet().forEach( (p) -> {
+            if (p.startsWith(folderPath) ) {
+                paths.add(p);
+            }
+        });
+        return paths;
+    }
+
+    @Override
+    public synchronized void fileAdded(MovieFolder folder, Path filename, FileType type) {
+        if (matches(type) ) {
+            offer(entries, folder, filename, type);
+        }
+    }
+
+    @Override
+    public synchronized void fileRemoved(MovieFolder folder, Path filename, FileType type) {
+        remove(entries, folder.toAbsolutePath(filename) );
+    }
+
+    @Override
+    public synchronized void folderRemoved(MovieFolder parent, MovieFolder folder) {
+        below(folder.getFolderPath() ).forEach( (p) -> remove(entries, p) );
+    }
+
+    @Override
+    public synchronized void folderMoved(MovieFolder folder, Path formerPath, MovieFolder formerParent,
+                                         MovieFolder newParent) {
+        Path newPath = folder.getFolderPath();
+        for (Path p : below(formerPath) ) {
+            Entry entry = byPath.get(p);
+            remove(entries, p);
+            Entry moved = new Entry(newPath.resolve(formerPath.relativize(p) ), entry.getType(),
+                    entry.getAddedTime() );
+            entries.add(moved);
+            byPath.put(moved.getPath(), moved);
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "RecentAdditions{type=" + type + ", entries=" + byPath.size() + ", capacity=" + capacity
+                + ", truncated=" + truncated + "}";
+    }
+
+    /**
+     * A file and when it was added.
+     */
+    static final class Entry {
+        private final Path path;
+        private final FileType type;
+        private final long addedTime;
+
+        Entry(Path path, FileType type, long addedTime) {
+            this.path = path;
+            this.type = type;
+            this.addedTime = addedTime;
+        }
+
+        Path getPath() {
+            return path;
+        }
+
+        FileType getType() {
+            return type;
+        }
+
+        /**
+         * @return epoch millis
+         */
+        long getAddedTime() {
+            return addedTime;
+        }
+
+        @Override
+        public String toString() {
+            return Instant.ofEpochMilli(addedTime) + " " + path;
+        }
+    }
+}
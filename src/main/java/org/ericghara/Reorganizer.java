@@ -0,0 +1,287 @@
+package org.ericghara;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Reorganizes a {@link MovieCollection} into the canonical {@code Title (Year)/Title (Year).ext} layout.
+ * <p>
+ * The title and year of each {@link FileType#Movie} are parsed from its filename or, failing that, from the name
+ * of its folder.  The movie and the subs paired with it by {@link SubtitlePairing} are planned into a folder named
+ * {@code Title (Year)} directly below the root.  Subs keep their language tags and flags, for example
+ * {@code Title (Year).en.forced.srt}.  The plan prefers renaming a movie's folder over moving its files, which is
+ * possible when the folder's subtree holds no other movie.  Other files in a renamed folder move along with it.
+ * A plan is executed in three steps: folder renames, folder creation and then file moves.  Renames and file moves
+ * are each performed as a single {@link BatchMover} batch.
+ */
+class Reorganizer {
+
+    // a year which is not part of a longer number
+    private static final Pattern YEAR = Pattern.compile("(?<![0-9])(19[0-9]{2}|20[0-9]{2})(?![0-9])");
+    private static final Pattern SEPARATORS = Pattern.compile("[._]+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern TRAILING_PUNCTUATION = Pattern.compile("[\\s\\-\\[(]+$");
+
+    private final MovieCollection collection;
+    private final BatchMover mover;
+
+    Reorganizer(MovieCollection collection) {
+        this.collection = Objects.requireNonNull(collection, "Received a null collection.");
+        this.mover = new BatchMover(collection);
+    }
+
+    /**
+     * Parses a title and year from a file or folder name.  The year is the last one in the name which is preceded by
+     * some text, the title is that preceding text with separators replaced by spaces.  Anything after the year, such
+     * as release tags, is dropped.
+     * @param name a file or folder name, with any extension removed
+     * @return the canonical {@code Title (Year)} name, or empty if no title and year could be found
+     */
+    static Optional<String> canonicalName(String name) {
+        String spaced = SEPARATORS.matcher(name).replaceAll(" ");
+        Matcher year = YEAR.matcher(spaced);
+        String title = null;
+        String found = null;
+        while (year.find() ) {
+            String before = TRAILING_PUNCTUATION.matcher(spaced.substring(0, year.start() ) ).replaceAll("");
+            before = WHITESPACE.matcher(before).replaceAll(" ").strip();
+            if (!before.isEmpty() ) {
+                title = before;
+                found = year.group(1);
+            }
+        }
+        return Objects.isNull(title) ? Optional.empty() : Optional.of(title + " (" + found + ")");
+    }
+
+    private static String baseName(Path filename) {
+        String name = filename.toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    private static String extension(Path filename) {
+        String name = filename.toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(dot) : "";
+    }
+
+    /**
+     * Plans the reorganization of the whole collection.  Nothing is modified.
+     * @return the planned moves
+     */
+    Plan plan() {
+        Path rootPath = collection.getRootPath();
+        MovieFolder root = collection.openFolder(rootPath, "Could not open the root folder.");
+        SubtitlePairing pairing = new SubtitlePairing(collection);
+        pairing.close(); // a snapshot is enough for planning
+        Plan plan = new Plan();
+        Set<Path> claimed = new HashSet<>(); // planned destinations
+        List<MovieFolder> folders = collection.getSubFolders(root)
+                                              .sorted(Comparator.comparing(MovieFolder::getFolderPath) )
+                                              .collect(Collectors.toList() );
+        for (MovieFolder folder : folders) {
+            List<Path> movies = new ArrayList<>(folder.getFilenames(FileType.Movie) );
+            Collections.sort(movies);
+            for (Path movie : movies) {
+                planMovie(folder, movie, pairing, plan, claimed);
+            }
+        }
+        return plan;
+    }
+
+    private void planMovie(MovieFolder folder, Path movie, SubtitlePairing pairing, Plan plan, Set<Path> claimed) {
+        Path rootPath = collection.getRootPath();
+        Path folderPath = folder.getFolderPath();
+        Optional<String> canonical = canonicalName(baseName(movie) );
+        if (canonical.isEmpty() && !folderPath.equals(rootPath) ) {
+            canonical = canonicalName(folderPath.getFileName().toString() );
+        }
+        if (canonical.isEmpty() ) {
+            plan.unparsed.add(folder.toAbsolutePath(movie) );
+            return;
+        }
+        Path target = rootPath.resolve(canonical.get() );
+        boolean renamed = false;
+        if (!folderPath.equals(target) ) {
+            boolean targetFree = !occupied(target, plan) && !claimed.contains(target);
+            // renames run in parallel, so a folder can't be renamed into a target another rename vacates
+            if (targetFree && !plan.vacated.contains(target) && canRename(folder) ) {
+                plan.folderMoves.add(BatchMover.Move.folder(folderPath, target) );
+                plan.vacated.add(folderPath);
+                claimMoved(folder, target, claimed);
+                renamed = true;
+            }
+            else if (targetFree) {
+                plan.newFolders.add(target);
+            }
+            claimed.add(target);
+        }
+        // where a file below the movie's folder will be once folder renames are done
+        Function<Path, Path> current = renamed ? (p) -> target.resolve(folderPath.relativize(p) ) : (p) -> p;
+        planFile(current.apply(folder.toAbsolutePath(movie) ), target.resolve(canonical.get() + extension(movie) ),
+                plan, claimed);
+        for (Path sub : pairing.subsFor(folder.toAbsolutePath(movie) ) ) {
+            Path source = current.apply(sub);
+            String name = canonical.get() + SubtitlePairing.tagSuffix(sub.getFileName() );
+            Path destination = target.resolve(name + extension(sub.getFileName() ) );
+            for (int i = 1; claimed.contains(destination) && !source.equals(destination); i++) {
+                destination = target.resolve(name + "." + i + extension(sub.getFileName() ) );
+            }
+            planFile(source, destination, plan, claimed);
+        }
+    }
+
+    private void planFile(Path source, Path destination, Plan plan, Set<Path> claimed) {
+        if (source.equals(destination) ) {
+            claimed.add(destination);
+            return;
+        }
+        if (claimed.contains(destination) || occupied(destination, plan) ) {
+            plan.conflicts.add(BatchMover.Move.file(source, destination) );
+            return;
+        }
+        plan.fileMoves.add(BatchMover.Move.file(source, destination) );
+        claimed.add(destination);
+    }
+
+    // whether the collection will hold a file or folder at the path once the plan's folder renames are done
+    private boolean occupied(Path path, Plan plan) {
+        for (Path p = path; Objects.nonNull(p); p = p.getParent() ) {
+            if (plan.vacated.contains(p) ) {
+                return false;
+            }
+        }
+        return collection.containsFolder(path) || collection.containsFile(path);
+    }
+
+    // claims the paths the folder's subtree will have once it's renamed to target
+    private void claimMoved(MovieFolder folder, Path target, Set<Path> claimed) {
+        Path folderPath = folder.getFolderPath();
+        collection.getSubFolders(folder).forEach( (f) -> {
+            claimed.add(target.resolve(folderPath.relativize(f.getFolderPath() ) ) );
+            for (FileType type : FileType.values() ) {
+                if (type != FileType.Folder) {
+                    f.getFilenames(type).forEach( (name) ->
+                            claimed.add(target.resolve(folderPath.relativize(f.toAbsolutePath(name) ) ) ) );
+                }
+            }
+        });
+    }
+
+    // a folder may be renamed to the movie's canonical name when no other movie would move along with it
+    private boolean canRename(MovieFolder folder) {
+        if (folder.getFolderPath().equals(collection.getRootPath() )
+                || hasSubsFolderAncestor(folder.getFolderPath() ) ) {
+            return false;
+        }
+        return collection.getSubFolders(folder).mapToInt( (f) -> f.getNum(FileType.Movie) ).sum() == 1;
+    }
+
+    private boolean hasSubsFolderAncestor(Path folderPath) {
+        Path relative = collection.getRootPath().relativize(folderPath);
+        for (Path name : relative) {
+            if (SubtitlePairing.isSubsFolder(name) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Executes a plan made by this reorganizer.  Folders are renamed first, then target folders are created and
+     * finally files are moved.  File moves which depend on a failed folder rename or creation fail in turn.
+     * @param plan the plan to execute
+     * @return the outcome of every planned move
+     */
+    BatchMover.Report execute(Plan plan) {
+        BatchMover.Report report = mover.move(plan.folderMoves);
+        for (Path folder : plan.newFolders) {
+            try {
+                collection.createFolder(folder);
+            } catch (IllegalArgumentException e) {
+                // the file moves into this folder will fail and be reported
+            }
+        }
+        report.addAll(mover.move(plan.fileMoves) );
+        return report;
+    }
+
+    /**
+     * The moves needed to reach the canonical layout.
+     */
+    static class Plan {
+        private final List<BatchMover.Move> folderMoves = new ArrayList<>();
+        private final List<Path> newFolders = new ArrayList<>();
+        private final List<BatchMover.Move> fileMoves = new ArrayList<>();
+        private final List<BatchMover.Move> conflicts = new ArrayList<>();
+        private final List<Path> unparsed = new ArrayList<>();
+        private final Set<Path> vacated = new HashSet<>(); // sources of the folder renames
+
+        List<BatchMover.Move> getFolderMoves() {
+            return Collections.unmodifiableList(folderMoves);
+        }
+
+        List<Path> getNewFolders() {
+            return Collections.unmodifiableList(newFolders);
+        }
+
+        List<BatchMover.Move> getFileMoves() {
+            return Collections.unmodifiableList(fileMoves);
+        }
+
+        /**
+         * @return file moves which were not planned because their destination is taken
+         */
+        List<BatchMover.Move> getConflicts() {
+            return Collections.unmodifiableList(conflicts);
+        }
+
+        /**
+         * @return movies for which no title and year could be found
+         */
+        List<Path> getUnparsed() {
+            return Collections.unmodifiableList(unparsed);
+        }
+
+        int numMoves() {
+            return folderMoves.size() + fileMoves.size();
+        }
+
+        /**
+         * @return a dry-run report: one line per planned operation, then anything which will be left in place
+         */
+        String report() {
+            StringBuilder sb = new StringBuilder();
+            folderMoves.forEach( (m) -> sb.append("rename  ").append(m.getSource() ).append(" -> ")
+                    .append(m.getDestination() ).append(System.lineSeparator() ) );
+            newFolders.forEach( (f) -> sb.append("create  ").append(f).append(System.lineSeparator() ) );
+            fileMoves.forEach( (m) -> sb.append("move    ").append(m.getSource() ).append(" -> ")
+                    .append(m.getDestination() ).append(System.lineSeparator() ) );
+            conflicts.forEach( (m) -> sb.append("skip    ").append(m.getSource() ).append(" (")
+                    .append(m.getDestination() ).append(" is taken)").append(System.lineSeparator() ) );
+            unparsed.forEach( (p) -> sb.append("skip    ").append(p).append(" (no title and year)")
+                    .append(System.lineSeparator() ) );
+            sb.append(String.format("%d folder renames, %d new folders and %d file moves%n", folderMoves.size(),
+                    newFolders.size(), fileMoves.size() ) );
+            return sb.toString();
+        }
+
+        @Override
+        public String toString() {
+            return "Reorganizer.Plan{folderMoves=" + folderMoves.size() + ", newFolders=" + newFolders.size()
+                    + ", fileMoves=" + fileMoves.size() + ", conflicts=" + conflicts.size() + ", unparsed="
+                    + unparsed.size() + "}";
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package org.ericghara;
+
+import java.io.IOException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.NotLinkException;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retries operations of a scan which failed transiently, on a single thread of its own so the walk keeps going
+ * meanwhile.  Each retry waits longer than the last: the first waits the initial backoff, the next twice that and so
+ * on, up to {@value #MAX_BACKOFF_MS} ms.  The thread is only started by the first retry, so scans without errors
+ * don't pay for it.
+ */
+class RetryLane {
+
+    private static final long MAX_BACKOFF_MS = 5_000;
+
+    private final int attempts;
+    private final long backoffNanos;
+    private ScheduledExecutorService executor;
+    private int pending;
+    private boolean closed;
+
+    /**
+     * @param attempts maximum attempts of an operation, including the first, 1 disables retries
+     * @param initialBackoff wait before the first retry
+     */
+    RetryLane(int attempts, Duration initialBackoff) {
+        if (attempts < 1) {
+            throw new IllegalArgumentException("Received a non-positive number of attempts: " + attempts);
+        }
+        if (initialBackoff.isNegative() ) {
+            throw new IllegalArgumentException("Received a negative backoff: " + initialBackoff);
+        }
+        this.attempts = attempts;
+        this.backoffNanos = initialBackoff.toNanos();
+    }
+
+    /**
+     * Errors which are likely to persist: a missing file, a denied permission, a file of the wrong kind or a loop.
+     * Anything else, such as an {@code EIO} from a flaky network mount, is worth retrying.
+     * @param e the error
+     * @return true if the operation may succeed when retried
+     */
+    static boolean isTransient(IOException e) {
+        return !(e instanceof NoSuchFileException || e instanceof AccessDeniedException
+                || e instanceof NotDirectoryException || e instanceof NotLinkException
+                || e instanceof FileSystemLoopException);
+    }
+
+    /**
+     * @param failedAttempt the attempt which failed, the first is 1
+     * @param retry the next attempt
+     * @return false if the attempts are used up or the lane was closed, and the retry won't run
+     */
+    synchronized boolean schedule(int failedAttempt, Runnable retry) {
+        Objects.requireNonNull(retry, "Received a null retry.");
+        if (closed || failedAttempt >= attempts) {
+            return false;
+        }
+        if (Objects.isNull(executor) ) {
+            executor = Executors.newSingleThreadScheduledExecutor( (r) -> {
+                Thread t = new Thread(r, "scan-retry");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        pending++;
+        executor.schedule( () -> {
+            try {
+                retry.run();
+            } finally {
+                finished();
+            }
+        }, backoffNanos(failedAttempt), TimeUnit.NANOSECONDS);
+        return true;
+    }
+
+    long backoffNanos(int failedAttempt) {
+        long backoff = backoffNanos << Math.min(failedAttempt - 1, 30);
+        return Math.min(backoff < 0 ? Long.MAX_VALUE : backoff, TimeUnit.MILLISECONDS.toNanos(MAX_BACKOFF_MS) );
+    }
+
+    private synchronized void finished() {
+        pending--;
+        notifyAll();
+    }
+
+    /**
+     * Waits for every retry, including those scheduled by retries, then closes the lane.
+     * @throws InterruptedException if interrupted while waiting, the lane is closed regardless
+     */
+    synchronized void awaitAndClose() throws InterruptedException {
+        try {
+            while (pending > 0) {
+                wait();
+            }
+        } finally {
+            closed = true;
+            if (Objects.nonNull(executor) ) {
+                executor.shutdownNow();
+            }
+        }
+    }
+}
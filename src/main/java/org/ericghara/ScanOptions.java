@@ -0,0 +1,325 @@
+package org.ericghara;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.DosFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Options controlling how a {@link MovieCollection} scans its root folder.  Setters return {@code this} so
+ * options can be chained:
+ * <pre>{@code
+ * new MovieCollection(root, ScanOptions.defaults().sniffContent(true) );
+ * }</pre>
+ * Folders which are excluded, hidden or too deep are pruned: the walk never lists them, so nothing below them
+ * costs any IO.  What was pruned is reported by {@link MovieCollection#getScanReport()}.  The root is never
+ * pruned.
+ * <p>
+ * Globs use the {@link java.nio.file.FileSystem#getPathMatcher glob syntax}.  A glob without a {@code /} is matched
+ * against the name of each folder or file at any depth, e.g. {@code .git} or {@code *sample*}; a glob containing a
+ * {@code /} is matched against the path relative to the root, e.g. {@code TV/**}.
+ */
+public class ScanOptions {
+
+    private ClassificationRules rules = ClassificationRules.defaults();
+    private ContainerSniffer sniffer;
+    private int sniffThreads = Runtime.getRuntime().availableProcessors();
+    private final List<PathMatcher> excludes = new ArrayList<>();
+    private final List<PathMatcher> includes = new ArrayList<>();
+    private int maxDepth = Integer.MAX_VALUE;
+    private boolean skipHiddenFolders;
+    private ScanThrottle throttle;
+    private Path spillDirectory;
+    private int spillCache;
+    private int retryAttempts = 3;
+    private Duration retryBackoff = Duration.ofMillis(200);
+    private PathCheck check = (path) -> { };
+
+    /**
+     * @return options which reproduce the default scan: classification by filename and size with the built in
+     * rules
+     */
+    public static ScanOptions defaults() {
+        return new ScanOptions();
+    }
+
+    /**
+     * Classify files with the rules in {@code config} instead of the built in rules.
+     * @param config path to a rules file, see {@link ClassificationRules} for the format
+     * @return this
+     * @throws IllegalArgumentException if the file cannot be read or contains an invalid rule
+     */
+    public ScanOptions rulesFile(Path config) {
+        return rules(ClassificationRules.load(config) );
+    }
+
+    ScanOptions rules(ClassificationRules rules) {
+        this.rules = Objects.requireNonNull(rules, "Received null classification rules.");
+        return this;
+    }
+
+    /**
+     * When enabled, files which would not be classified as a {@link FileType#Movie} or {@link FileType#Sub} by name
+     * and size have their headers checked for a video container in parallel with the walk.  Files with a
+     * recognized container are classified as a {@code Movie}.  Uses the process wide
+     * {@link ContainerSniffer#shared()} cache.
+     * @param enable true to sniff file contents
+     * @return this
+     */
+    public ScanOptions sniffContent(boolean enable) {
+        return sniffer(enable ? ContainerSniffer.shared() : null);
+    }
+
+    ScanOptions sniffer(ContainerSniffer sniffer) {
+        this.sniffer = sniffer;
+        return this;
+    }
+
+    /**
+     * @param threads number of threads used to sniff file contents, must be positive
+     * @return this
+     */
+    public ScanOptions sniffThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Received a non-positive number of sniff threads: " + threads);
+        }
+        sniffThreads = threads;
+        return this;
+    }
+
+    /**
+     * Prune folders matching any of the globs, and don't record files matching any of them.
+     * @param globs see the class description
+     * @return this
+     * @throws IllegalArgumentException if a glob is invalid
+     */
+    public ScanOptions exclude(String... globs) {
+        addGlobs(excludes, globs);
+        return this;
+    }
+
+    /**
+     * Only record files matching at least one of the globs.  Folders are still walked, use
+     * {@link ScanOptions#exclude} to prune them.
+     * @param globs see the class description
+     * @return this
+     * @throws IllegalArgumentException if a glob is invalid
+     */
+    public ScanOptions include(String... globs) {
+        addGlobs(includes, globs);
+        return this;
+    }
+
+    private static void addGlobs(List<PathMatcher> matchers, String[] globs) {
+        for (String glob : globs) {
+            Objects.requireNonNull(glob, "Received a null glob.");
+            matchers.add(new GlobMatcher(glob) );
+        }
+    }
+
+    /**
+     * @param depth depth of the deepest folder to scan, the root's depth is 0 so 0 only scans the root's files
+     * @return this
+     */
+    public ScanOptions maxDepth(int depth) {
+        if (depth < 0) {
+            throw new IllegalArgumentException("Received a negative max depth: " + depth);
+        }
+        maxDepth = depth;
+        return this;
+    }
+
+    /**
+     * @param skip true to prune folders whose names begin with a {@code .}, or which have the hidden attribute on
+     *             filesystems supporting it
+     * @return this
+     */
+    public ScanOptions skipHiddenFolders(boolean skip) {
+        skipHiddenFolders = skip;
+        return this;
+    }
+
+    /**
+     * Limits the scan's directory listings, stats and access checks, for background scans of a shared filesystem.
+     * The limit adapts to the filesystem: it is lowered while stats and access checks take longer than
+     * {@code latencyTarget} and recovers when they speed up again, see {@link ScanThrottle}.  Scans are not
+     * throttled by default.
+     * @param operationsPerSecond maximum listings, stats and access checks per second
+     * @param latencyTarget stat latency above which the scan slows down
+     * @return this
+     */
+    public ScanOptions throttle(double operationsPerSecond, Duration latencyTarget) {
+        return throttle(new ScanThrottle(operationsPerSecond, latencyTarget) );
+    }
+
+    ScanOptions throttle(ScanThrottle throttle) {
+        this.throttle = throttle;
+        return this;
+    }
+
+    Optional<ScanThrottle> getThrottle() {
+        return Optional.ofNullable(throttle);
+    }
+
+    /**
+     * Bounds the memory held by the collection's folder tree, for archives whose tree doesn't fit in the heap.  At
+     * most {@code cachedFolders} folders are kept in memory, the rest are written to a record file in
+     * {@code directory} and read back when they're opened, see {@link FolderStore}.  The walk also records each
+     * path as it's visited instead of listing the whole tree first.  Off by default.  A collection scanned in spill
+     * mode must be closed, see {@link MovieCollection#close()}.
+     * @param directory directory for the record file, which is deleted when the collection is closed
+     * @param cachedFolders maximum folders kept in memory, must be positive
+     * @return this
+     */
+    public ScanOptions spill(Path directory, int cachedFolders) {
+        Objects.requireNonNull(directory, "Received a null spill directory.");
+        if (cachedFolders < 1) {
+            throw new IllegalArgumentException("Received a non-positive number of cached folders: " + cachedFolders);
+        }
+        spillDirectory = directory;
+        spillCache = cachedFolders;
+        return this;
+    }
+
+    /**
+     * Retries listings and stats which fail with a transient error, such as an {@code EIO} from a flaky network mount,
+     * waiting longer before each retry.  Retries run on a separate thread while the walk carries on, see
+     * {@link RetryLane}.  Errors, whether they recovered or not, are reported by
+     * {@link MovieCollection#getScanReport()}.  By default an operation is attempted 3 times, first retried after
+     * 200 ms.
+     * @param attempts maximum attempts of each operation including the first, 1 disables retries
+     * @param initialBackoff wait before the first retry, doubled for each further retry
+     * @return this
+     */
+    public ScanOptions retries(int attempts, Duration initialBackoff) {
+        Objects.requireNonNull(initialBackoff, "Received a null backoff.");
+        if (attempts < 1) {
+            throw new IllegalArgumentException("Received a non-positive number of attempts: " + attempts);
+        }
+        if (initialBackoff.isNegative() ) {
+            throw new IllegalArgumentException("Received a negative backoff: " + initialBackoff);
+        }
+        retryAttempts = attempts;
+        retryBackoff = initialBackoff;
+        return this;
+    }
+
+    RetryLane newRetryLane() {
+        return new RetryLane(retryAttempts, retryBackoff);
+    }
+
+    /**
+     * Runs {@code check} before each folder is listed and each file's size is read, an exception it throws is handled
+     * as if the operation had failed.  For tests of IO failures.
+     * @param check the check
+     * @return this
+     */
+    ScanOptions check(PathCheck check) {
+        this.check = Objects.requireNonNull(check, "Received a null check.");
+        return this;
+    }
+
+    void check(Path path) throws IOException {
+        check.check(path);
+    }
+
+    @FunctionalInterface
+    interface PathCheck {
+
+        void check(Path path) throws IOException;
+    }
+
+    /**
+     * @return a new store for the folders of a scan, or empty if the scan isn't in spill mode
+     */
+    Optional<FolderStore> newFolderStore() {
+        return Optional.ofNullable(spillDirectory).map( (d) -> new FolderStore(d, spillCache) );
+    }
+
+    /**
+     * @param relative path of a folder below the root, relative to the root
+     * @param depth depth of the folder
+     * @param attrs the folder's attributes, as read by the walk
+     * @return the reason the folder should be pruned, or empty to scan it
+     */
+    Optional<ScanReport.PruneReason> pruneReason(Path relative, int depth, BasicFileAttributes attrs) {
+        if (depth > maxDepth) {
+            return Optional.of(ScanReport.PruneReason.MAX_DEPTH);
+        }
+        if (skipHiddenFolders && (relative.getFileName().toString().startsWith(".")
+                || (attrs instanceof DosFileAttributes && ( (DosFileAttributes) attrs).isHidden() ) ) ) {
+            return Optional.of(ScanReport.PruneReason.HIDDEN);
+        }
+        if (matchesAny(excludes, relative) ) {
+            return Optional.of(ScanReport.PruneReason.EXCLUDED);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * @param relative path of a file, relative to the root
+     * @return true if the file should be recorded
+     */
+    boolean recordsFile(Path relative) {
+        return !matchesAny(excludes, relative) && (includes.isEmpty() || matchesAny(includes, relative) );
+    }
+
+    private static boolean matchesAny(List<PathMatcher> matchers, Path relative) {
+        for (PathMatcher m : matchers) {
+            if (m.matches(relative) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // matches names for globs without a separator, relative paths otherwise
+    private static class GlobMatcher implements PathMatcher {
+        private final String glob;
+        private final PathMatcher matcher;
+        private final boolean byName;
+
+        GlobMatcher(String glob) {
+            this.glob = glob;
+            byName = !glob.contains("/");
+            matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        }
+
+        @Override
+        public boolean matches(Path relative) {
+            return matcher.matches(byName ? relative.getFileName() : relative);
+        }
+
+        @Override
+        public String toString() {
+            return glob;
+        }
+    }
+
+    ClassificationRules getRules() {
+        return rules;
+    }
+
+    Optional<ContainerSniffer> getSniffer() {
+        return Optional.ofNullable(sniffer);
+    }
+
+    int getSniffThreads() {
+        return sniffThreads;
+    }
+
+    @Override
+    public String toString() {
+        return "ScanOptions{rules=" + rules.numRules() + ", sniffContent=" + Objects.nonNull(sniffer)
+                + ", sniffThreads=" + sniffThreads + ", excludes=" + excludes + ", includes=" + includes
+                + ", maxDepth=" + maxDepth + ", skipHiddenFolders=" + skipHiddenFolders + ", throttle=" + throttle
+                + "}";
+    }
+}
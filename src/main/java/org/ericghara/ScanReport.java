@@ -0,0 +1,179 @@
+package org.ericghara;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Statistics of the scan which built a {@link MovieCollection}: what was recorded, what the
+ * {@link ScanOptions} pruned or skipped and which paths failed to be read.  Instances are thread safe, as retries
+ * report errors from their own thread.
+ */
+public class ScanReport {
+
+    /**
+     * Why a folder was pruned from the scan.
+     */
+    public enum PruneReason {
+        EXCLUDED, MAX_DEPTH, HIDDEN
+    }
+
+    /**
+     * What the scan was doing when an error occurred.
+     */
+    public enum Operation {
+        /** listing a folder, nothing below it was recorded unless it recovered */
+        LIST,
+        /** reading the attributes or size of a file, which was not recorded unless it recovered */
+        STAT,
+        /** reading a file's header, which was classified by name and size instead */
+        SNIFF
+    }
+
+    private final LinkedHashMap<Path, PruneReason> prunedFolders = new LinkedHashMap<>();
+    private int folders;
+    private int files;
+    private int skippedFiles;
+    private final List<ScanError> errors = new ArrayList<>();
+
+    synchronized void folderScanned() {
+        folders++;
+    }
+
+    synchronized void fileScanned() {
+        files++;
+    }
+
+    synchronized void fileSkipped() {
+        skippedFiles++;
+    }
+
+    synchronized void folderPruned(Path folder, PruneReason reason) {
+        prunedFolders.put(folder, reason);
+    }
+
+    synchronized void error(ScanError error) {
+        errors.add(error);
+    }
+
+    /**
+     * @return number of folders recorded, including the root
+     */
+    public synchronized int getFolders() {
+        return folders;
+    }
+
+    /**
+     * @return number of files recorded
+     */
+    public synchronized int getFiles() {
+        return files;
+    }
+
+    /**
+     * @return number of files in scanned folders which were not recorded due to include or exclude globs
+     */
+    public synchronized int getSkippedFiles() {
+        return skippedFiles;
+    }
+
+    /**
+     * @return absolute paths of the pruned folders in walk order, the folders below them were never listed
+     */
+    public synchronized Map<Path, PruneReason> getPrunedFolders() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(prunedFolders) );
+    }
+
+    /**
+     * @return number of pruned folders by reason
+     */
+    public synchronized Map<PruneReason, Integer> prunedByReason() {
+        EnumMap<PruneReason, Integer> counts = new EnumMap<>(PruneReason.class);
+        prunedFolders.values().forEach( (r) -> counts.merge(r, 1, Integer::sum) );
+        return counts;
+    }
+
+    /**
+     * @return every error in the order it was settled, both those which recovered on a retry and those which didn't
+     */
+    public synchronized List<ScanError> getErrors() {
+        return List.copyOf(errors);
+    }
+
+    /**
+     * @return the errors which did not recover.  The paths of failed listings and stats are missing from the
+     * collection, files whose sniff failed were classified by name and size
+     */
+    public synchronized List<ScanError> getFailures() {
+        return errors.stream().filter( (e) -> !e.isRecovered() ).collect(Collectors.toUnmodifiableList() );
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ScanReport{folders=" + folders + ", files=" + files + ", skippedFiles=" + skippedFiles
+                + ", pruned=" + prunedByReason() + ", errors=" + errors.size() + ", failures="
+                + getFailures().size() + "}";
+    }
+
+    /**
+     * An error reading one path.
+     */
+    public static final class ScanError {
+        private final Path path;
+        private final Operation operation;
+        private final String error;
+        private final int attempts;
+        private final boolean recovered;
+
+        ScanError(Path path, Operation operation, Exception error, int attempts, boolean recovered) {
+            this.path = path;
+            this.operation = operation;
+            this.error = error.getClass().getSimpleName() + ": " + error.getMessage();
+            this.attempts = attempts;
+            this.recovered = recovered;
+        }
+
+        /**
+         * @return absolute path which failed
+         */
+        public Path getPath() {
+            return path;
+        }
+
+        public Operation getOperation() {
+            return operation;
+        }
+
+        /**
+         * @return the type and message of the last exception
+         */
+        public String getError() {
+            return error;
+        }
+
+        /**
+         * @return attempts made, including the one which succeeded if it recovered
+         */
+        public int getAttempts() {
+            return attempts;
+        }
+
+        /**
+         * @return true if a retry succeeded and the path was recorded
+         */
+        public boolean isRecovered() {
+            return recovered;
+        }
+
+        @Override
+        public String toString() {
+            return operation + " " + path + " " + (recovered ? "recovered" : "failed") + " after " + attempts
+                    + (attempts == 1 ? " attempt: " : " attempts: ") + error;
+        }
+    }
+}
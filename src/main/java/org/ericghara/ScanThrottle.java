@@ -0,0 +1,127 @@
+package org.ericghara;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits the rate of filesystem metadata operations, directory listings, stats and access checks, made by a scan so
+ * a background scan doesn't starve other users of a NAS.
+ * <p>
+ * Operations take permits from a token bucket refilled at the current rate, which holds at most a tenth of a
+ * second's worth of permits so short bursts pass straight through.  The rate adapts to the latency of the stats and
+ * access checks the scan observes, listings are left out as their latency grows with the folder's size.  While the
+ * moving average stays under the target the rate grows additively back toward the configured maximum, and when it
+ * rises above the target the rate is halved, down to a sixteenth of the maximum.  Adjustments are made at most once
+ * every 250 ms, so a single slow burst only halves the rate once.  Instances are thread safe.
+ */
+class ScanThrottle {
+
+    private static final Metrics.Timer WAIT_TIMER = Metrics.timer("scan.throttle.wait");
+    private static final Metrics.Counter BACKOFFS = Metrics.counter("scan.throttle.backoffs");
+    private static final long ADJUST_INTERVAL_MS = 250;
+    private static final double MIN_RATE_FRACTION = 1.0 / 16;
+    private static final double INCREASE_FRACTION = 1.0 / 20; // of the max rate per interval
+    private static final double LATENCY_WEIGHT = 0.2;         // of each new observation in the moving average
+    private static final double BURST_SECONDS = 0.1;
+
+    private final double maxRate;
+    private final long latencyTargetNanos;
+    private final LongSupplier clock;
+    private double rate;
+    private double tokens;
+    private long lastRefill;
+    private long lastAdjust;
+    private double averageLatency = -1; // nanos, negative until the first observation
+
+    /**
+     * @param operationsPerSecond maximum listings, stats and access checks per second
+     * @param latencyTarget stat and access check latency above which the rate is reduced
+     */
+    ScanThrottle(double operationsPerSecond, Duration latencyTarget) {
+        this(operationsPerSecond, latencyTarget, System::nanoTime);
+    }
+
+    ScanThrottle(double operationsPerSecond, Duration latencyTarget, LongSupplier clock) {
+        if (!(operationsPerSecond > 0) || Double.isInfinite(operationsPerSecond) ) {
+            throw new IllegalArgumentException("Received an invalid rate: " + operationsPerSecond);
+        }
+        if (latencyTarget.isNegative() || latencyTarget.isZero() ) {
+            throw new IllegalArgumentException("Received a non-positive latency target: " + latencyTarget);
+        }
+        this.maxRate = operationsPerSecond;
+        this.latencyTargetNanos = latencyTarget.toNanos();
+        this.clock = Objects.requireNonNull(clock, "Received a null clock.");
+        rate = maxRate;
+        tokens = capacity();
+        lastRefill = clock.getAsLong();
+        lastAdjust = lastRefill;
+    }
+
+    /**
+     * Takes a permit for one operation, waiting until one is available.  If the thread is interrupted while
+     * waiting, returns early with the interrupt status set.
+     */
+    void acquire() {
+        long waitNanos = reserve();
+        if (waitNanos <= 0) {
+            return;
+        }
+        long start = WAIT_TIMER.start();
+        try {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        WAIT_TIMER.stop(start);
+    }
+
+    // takes a permit, possibly borrowing it from the future, and returns how long the caller must wait to repay it
+    synchronized long reserve() {
+        long now = clock.getAsLong();
+        tokens = Math.min(capacity(), tokens + (now - lastRefill) * rate / TimeUnit.SECONDS.toNanos(1) );
+        lastRefill = now;
+        tokens -= 1;
+        return tokens >= 0 ? 0L : (long) (-tokens / rate * TimeUnit.SECONDS.toNanos(1) );
+    }
+
+    /**
+     * Reports the latency of a metadata operation, adapting the rate.
+     * @param latencyNanos duration of the operation
+     */
+    synchronized void observe(long latencyNanos) {
+        averageLatency = averageLatency < 0 ? latencyNanos
+                                            : (1 - LATENCY_WEIGHT) * averageLatency + LATENCY_WEIGHT * latencyNanos;
+        long now = clock.getAsLong();
+        if (now - lastAdjust < TimeUnit.MILLISECONDS.toNanos(ADJUST_INTERVAL_MS) ) {
+            return;
+        }
+        lastAdjust = now;
+        if (averageLatency > latencyTargetNanos) {
+            rate = Math.max(maxRate * MIN_RATE_FRACTION, rate / 2);
+            BACKOFFS.increment();
+        }
+        else {
+            rate = Math.min(maxRate, rate + maxRate * INCREASE_FRACTION);
+        }
+        tokens = Math.min(tokens, capacity() );
+    }
+
+    private double capacity() {
+        return Math.max(1.0, rate * BURST_SECONDS);
+    }
+
+    /**
+     * @return the current permitted operations per second
+     */
+    synchronized double getRate() {
+        return rate;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ScanThrottle{rate=" + rate + ", maxRate=" + maxRate + ", latencyTargetMs="
+                + latencyTargetNanos / 1_000_000D + "}";
+    }
+}
@@ -0,0 +1,376 @@
+package org.ericghara;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * An in-memory inverted index of every file and folder name in a {@link MovieCollection}, supporting exact, prefix
+ * and typo tolerant queries.
+ * <p>
+ * Names are lower cased and split into alphanumeric tokens (file extensions are dropped).  Each distinct token is
+ * stored once and maps to a posting list of document ids held in a primitive {@code int} array, where a document is
+ * one file or folder.  A sorted token dictionary answers prefix queries, and a trigram index over the dictionary
+ * finds tokens within a small edit distance of a misspelled query token.  Every query token must match a document;
+ * documents are ranked by how closely their tokens matched (exact, then prefix, then fuzzy).
+ * <p>
+ * The index is built in a single pass over the scanned tree and maintained as a {@link CollectionListener}.
+ * Documents refer to their {@code MovieFolder}, so moving a folder only reindexes the folder's own name when it
+ * changes.  Removed documents are tombstoned and the index is compacted once half of it is dead.
+ */
+class SearchIndex implements CollectionListener {
+
+    private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final int EXACT = 3;
+    private static final int PREFIX = 2;
+    private static final int FUZZY = 1;
+    private static final int GRAM = 3;
+
+    private final MovieCollection collection;
+
+    // documents, indexed by id
+    private MovieFolder[] docFolder;
+    private Path[] docName;      // null if the document is the folder itself
+    private BitSet deleted;
+    private int numDocs;
+    private int numDeleted;
+    private final HashMap<MovieFolder, Integer> folderDocs = new HashMap<>();
+    private final HashMap<MovieFolder, HashMap<Path, Integer>> fileDocs = new HashMap<>();
+
+    // tokens, indexed by id
+    private final TreeMap<String, Integer> dictionary = new TreeMap<>();
+    private final List<String> tokens = new ArrayList<>();
+    private final List<IntList> postings = new ArrayList<>();
+    private final HashMap<String, IntList> trigrams = new HashMap<>(); // trigram -> token ids
+
+    /**
+     * Indexes every file and folder in the collection and registers for updates.
+     * @param collection the collection to index
+     */
+    SearchIndex(MovieCollection collection) {
+        this.collection = Objects.requireNonNull(collection, "Received a null collection.");
+        build();
+        collection.addListener(this);
+    }
+
+    /**
+     * Stops incremental maintenance.  Results are frozen as of this call.
+     */
+    void close() {
+        collection.removeListener(this);
+    }
+
+    private void build() {
+        docFolder = new MovieFolder[1024];
+        docName = new Path[1024];
+        deleted = new BitSet();
+        numDocs = 0;
+        numDeleted = 0;
+        folderDocs.clear();
+        fileDocs.clear();
+        dictionary.clear();
+        tokens.clear();
+        postings.clear();
+        trigrams.clear();
+        collection.getSubFolders(collection.getRootPath() ).forEach( (folder) -> {
+            if (folder.getDepth() > 0) { // the root's name isn't part of the collection
+                indexFolder(folder);
+            }
+            folder.getAllFiles().forEach( (f) -> indexFile(folder, f) );
+        });
+    }
+
+    /**
+     * @return the number of files and folders indexed
+     */
+    int size() {
+        return numDocs - numDeleted;
+    }
+
+    /**
+     * @param query free text, for example {@code "matrx reload"}
+     * @param limit maximum number of results
+     * @return absolute paths of the best matching files and folders, best first
+     */
+    List<Path> search(String query, int limit) {
+        List<String> queryTokens = tokenize(query, false);
+        if (queryTokens.isEmpty() || limit < 1) {
+            return List.of();
+        }
+        HashMap<Integer, Integer> scores = null;
+        for (String q : queryTokens) {
+            HashMap<Integer, Integer> tokenScores = match(q);
+            if (Objects.isNull(scores) ) {
+                scores = tokenScores;
+            }
+            else {
+                HashMap<Integer, Integer> intersection = new HashMap<>();
+                for (Map.Entry<Integer, Integer> e : scores.entrySet() ) {
+                    Integer s = tokenScores.get(e.getKey() );
+                    if (Objects.nonNull(s) ) {
+                        intersection.put(e.getKey(), e.getValue() + s);
+                    }
+                }
+                scores = intersection;
+            }
+            if (scores.isEmpty() ) {
+                return List.of();
+            }
+        }
+        Comparator<Map.Entry<Integer, Integer>> byScore = Map.Entry.comparingByValue(Comparator.reverseOrder() );
+        List<Path> results = new ArrayList<>();
+        scores.entrySet().stream()
+              .sorted(byScore.thenComparing( (e) -> path(e.getKey() ).toString() ) )
+              .limit(limit)
+              .forEach( (e) -> results.add(path(e.getKey() ) ) );
+        return results;
+    }
+
+    // live documents matching a single query token, with the best score of any token that matched them
+    private HashMap<Integer, Integer> match(String q) {
+        HashMap<Integer, Integer> scores = new HashMap<>();
+        // tokens starting with q, including q itself
+        for (Map.Entry<String, Integer> e : dictionary.subMap(q, q + Character.MAX_VALUE).entrySet() ) {
+            addPostings(scores, e.getValue(), e.getKey().equals(q) ? EXACT : PREFIX);
+        }
+        int maxEdits = maxEdits(q);
+        if (maxEdits > 0) {
+            for (int tokenId : fuzzyCandidates(q, maxEdits) ) {
+                if (withinEdits(q, tokens.get(tokenId), maxEdits) ) {
+                    addPostings(scores, tokenId, FUZZY);
+                }
+            }
+        }
+        return scores;
+    }
+
+    private void addPostings(HashMap<Integer, Integer> scores, int tokenId, int score) {
+        IntList list = postings.get(tokenId);
+        for (int i = 0; i < list.size; i++) {
+            int doc = list.values[i];
+            if (!deleted.get(doc) ) {
+                scores.merge(doc, score, Math::max);
+            }
+        }
+    }
+
+    private static int maxEdits(String q) {
+        if (q.length() < 4) {
+            return 0;
+        }
+        return q.length() < 8 ? 1 : 2;
+    }
+
+    // tokens sharing enough trigrams with q to possibly be within maxEdits of it
+    private Set<Integer> fuzzyCandidates(String q, int maxEdits) {
+        List<String> grams = grams(q);
+        HashMap<Integer, Integer> shared = new HashMap<>();
+        for (String g : grams) {
+            IntList ids = trigrams.get(g);
+            if (Objects.nonNull(ids) ) {
+                for (int i = 0; i < ids.size; i++) {
+                    shared.merge(ids.values[i], 1, Integer::sum);
+                }
+            }
+        }
+        int required = Math.max(1, grams.size() - GRAM * maxEdits); // each edit destroys at most 3 trigrams
+        Set<Integer> candidates = new LinkedHashSet<>();
+        shared.forEach( (id, count) -> {
+            if (count >= required && Math.abs(tokens.get(id).length() - q.length() ) <= maxEdits) {
+                candidates.add(id);
+            }
+        });
+        return candidates;
+    }
+
+    // Levenshtein distance <= maxEdits, abandoning rows which already exceed it
+    static boolean withinEdits(String a, String b, int maxEdits) {
+        if (Math.abs(a.length() - b.length() ) > maxEdits) {
+            return false;
+        }
+        int[] prev = new int[b.length() + 1];
+        int[] cur = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            prev[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            cur[0] = i;
+            int rowMin = cur[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                cur[j] = Math.min(Math.min(cur[j - 1] + 1, prev[j] + 1), prev[j - 1] + cost);
+                rowMin = Math.min(rowMin, cur[j]);
+            }
+            if (rowMin > maxEdits) {
+                return false;
+            }
+            int[] swap = prev;
+            prev = cur;
+            cur = swap;
+        }
+        return prev[b.length()] <= maxEdits;
+    }
+
+    private static List<String> grams(String token) {
+        String padded = "$" + token + "$";
+        List<String> grams = new ArrayList<>();
+        for (int i = 0; i + GRAM <= padded.length(); i++) {
+            grams.add(padded.substring(i, i + GRAM) );
+        }
+        return grams;
+    }
+
+    /**
+     * @param name a file or folder name, or a query
+     * @param dropExtension true to ignore the text after the last '.'
+     * @return distinct lower case alphanumeric tokens
+     */
+    static List<String> tokenize(String name, boolean dropExtension) {
+        String text = name.toLowerCase(Locale.ROOT);
+        int dot = text.lastIndexOf('.');
+        if (dropExtension && dot > 0) {
+            text = text.substring(0, dot);
+        }
+        Set<String> distinct = new LinkedHashSet<>();
+        for (String t : NON_ALPHANUMERIC.split(text) ) {
+            if (!t.isEmpty() ) {
+                distinct.add(t);
+            }
+        }
+        return new ArrayList<>(distinct);
+    }
+
+    private Path path(int doc) {
+        Path name = docName[doc];
+        return Objects.isNull(name) ? docFolder[doc].getFolderPath() : docFolder[doc].toAbsolutePath(name);
+    }
+
+    private void indexFolder(MovieFolder folder) {
+        int doc = addDoc(folder, null, folder.getFolderPath().getFileName().toString(), false);
+        folderDocs.put(folder, doc);
+    }
+
+    private void indexFile(MovieFolder folder, Path filename) {
+        int doc = addDoc(folder, filename, filename.toString(), true);
+        fileDocs.computeIfAbsent(folder, (f) -> new HashMap<>() ).put(filename, doc);
+    }
+
+    private int addDoc(MovieFolder folder, Path filename, String name, boolean dropExtension) {
+        if (numDocs == docFolder.length) {
+            docFolder = Arrays.copyOf(docFolder, numDocs * 2);
+            docName = Arrays.copyOf(docName, numDocs * 2);
+        }
+        int doc = numDocs++;
+        docFolder[doc] = folder;
+        docName[doc] = filename;
+        for (String t : tokenize(name, dropExtension) ) {
+            postings.get(tokenId(t) ).add(doc); // doc ids only increase, so postings stay sorted
+        }
+        return doc;
+    }
+
+    // interns the token, adding it to the dictionary and trigram index when new
+    private int tokenId(String token) {
+        Integer id = dictionary.get(token);
+        if (Objects.nonNull(id) ) {
+            return id;
+        }
+        int newId = tokens.size();
+        dictionary.put(token, newId);
+        tokens.add(token);
+        postings.add(new IntList() );
+        for (String g : new LinkedHashSet<>(grams(token) ) ) {
+            trigrams.computeIfAbsent(g, (k) -> new IntList() ).add(newId);
+        }
+        return newId;
+    }
+
+    private void removeDoc(Integer doc) {
+        if (Objects.nonNull(doc) && !deleted.get(doc) ) {
+            deleted.set(doc);
+            docFolder[doc] = null; // release the reference, the slot is reclaimed on compaction
+            numDeleted++;
+        }
+    }
+
+    private void compactIfSparse() {
+        if (numDeleted > 1024 && numDeleted * 2 > numDocs) {
+            build();
+        }
+    }
+
+    private void unindexSubtree(MovieFolder origin) {
+        collection.getSubFolders(origin).forEach( (f) -> {
+            removeDoc(folderDocs.remove(f) );
+            HashMap<Path, Integer> files = fileDocs.remove(f);
+            if (Objects.nonNull(files) ) {
+                files.values().forEach(this::removeDoc);
+            }
+        });
+    }
+
+    @Override
+    public void fileAdded(MovieFolder folder, Path filename, FileType type) {
+        indexFile(folder, filename);
+    }
+
+    @Override
+    public void fileRemoved(MovieFolder folder, Path filename, FileType type) {
+        HashMap<Path, Integer> files = fileDocs.get(folder);
+        if (Objects.nonNull(files) ) {
+            removeDoc(files.remove(filename) );
+        }
+        compactIfSparse();
+    }
+
+    @Override
+    public void folderAdded(MovieFolder parent, MovieFolder folder) {
+        indexFolder(folder);
+    }
+
+    @Override
+    public void folderRemoved(MovieFolder parent, MovieFolder folder) {
+        unindexSubtree(folder);
+        compactIfSparse();
+    }
+
+    @Override
+    public void folderMoved(MovieFolder folder, Path formerPath, MovieFolder formerParent, MovieFolder newParent) {
+        if (!formerPath.getFileName().equals(folder.getFolderPath().getFileName() ) ) {
+            removeDoc(folderDocs.remove(folder) );
+            indexFolder(folder);
+            compactIfSparse();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SearchIndex{documents=" + size() + ", tokens=" + tokens.size() + "}";
+    }
+
+    /**
+     * A growable array of primitive ints.
+     */
+    private static class IntList {
+        private int[] values = new int[2];
+        private int size;
+
+        private void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package org.ericghara;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Associates every {@link FileType#Sub} in a {@link MovieCollection} with the {@link FileType#Movie} it belongs to.
+ * <p>
+ * A movie folder owns the subs it contains directly and those anywhere below a child subs folder ({@code subs},
+ * {@code subtitles}, ...).  Folders at or below a subs folder own nothing themselves.  Within a movie folder each
+ * sub is paired by comparing normalized base names: lower cased, with the extension and trailing language tags and
+ * flags such as {@code .en}, {@code .forced} or {@code _sdh} removed.  Subs are paired by, in order of preference:
+ * <ol>
+ *     <li>an exact normalized name match</li>
+ *     <li>the only movie in the folder</li>
+ *     <li>the movie with the longest normalized name contained in the sub's name</li>
+ * </ol>
+ * Subs matching none of these are unpaired.  The pairing is built in a single pass over the tree and maintained
+ * incrementally as a {@link CollectionListener}: a change only re-pairs the movie folder it falls in.  Pairs are
+ * stored per {@code MovieFolder} with relative paths, so moving or renaming a folder only requires work when it
+ * enters or leaves a subs folder.
+ */
+class SubtitlePairing implements CollectionListener {
+
+    private static final Pattern SEPARATORS = Pattern.compile("[._\\- ]+");
+    private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Set<String> SUBS_FOLDERS = Set.of("subs", "sub", "subtitles", "subtitle", "subz");
+    private static final Set<String> TAGS = Set.of(
+            // flags
+            "forced", "sdh", "cc", "hi", "default", "full", "foreign",
+            // ISO 639-1, ISO 639-2 and English names of common subtitle languages
+            "en", "eng", "english", "fr", "fre", "fra", "french", "es", "spa", "spanish", "de", "ger", "deu", "german",
+            "it", "ita", "italian", "pt", "por", "portuguese", "br", "pob", "nl", "dut", "nld", "dutch",
+            "ru", "rus", "russian", "ja", "jpn", "japanese", "zh", "chi", "zho", "chinese", "chs", "cht",
+            "ko", "kor", "korean", "ar", "ara", "arabic", "sv", "swe", "swedish", "no", "nor", "norwegian",
+            "da", "dan", "danish", "fi", "fin", "finnish", "pl", "pol", "polish", "tr", "tur", "turkish",
+            "el", "gre", "ell", "greek", "he", "heb", "hebrew", "hu", "hun", "hungarian", "cs", "cze", "ces", "czech",
+            "ro", "rum", "ron", "romanian", "vi", "vie", "vietnamese", "th", "tha", "thai", "id", "ind", "indonesian",
+            "hr", "hrv", "croatian", "sr", "srp", "serbian", "bg", "bul", "bulgarian", "uk", "ukr", "ukrainian");
+
+    private final MovieCollection collection;
+    // movie folder -> (movie filename -> sub paths relative to the movie folder)
+    private final HashMap<MovieFolder, Map<Path, List<Path>>> pairs = new HashMap<>();
+    // movie folder -> sub paths relative to the movie folder which matched no movie
+    private final HashMap<MovieFolder, List<Path>> unpaired = new HashMap<>();
+
+    /**
+     * Pairs every sub in the collection and registers for updates.
+     * @param collection the collection to pair
+     */
+    SubtitlePairing(MovieCollection collection) {
+        this.collection = Objects.requireNonNull(collection, "Received a null collection.");
+        pairSubtree(collection.openFolder(collection.getRootPath(), "Could not open the root folder.") );
+        collection.addListener(this);
+    }
+
+    /**
+     * Stops incremental maintenance.  Results are frozen as of this call.
+     */
+    void close() {
+        collection.removeListener(this);
+    }
+
+    /**
+     * @param movie absolute path to a movie
+     * @return absolute paths to the movie's subs, empty if it has none or is not a movie
+     */
+    List<Path> subsFor(Path movie) {
+        Optional<MovieFolder> folder = collection.openFolder(movie.getParent() );
+        if (folder.isEmpty() ) {
+            return List.of();
+        }
+        Map<Path, List<Path>> folderPairs = pairs.getOrDefault(folder.get(), Map.of() );
+        List<Path> subs = folderPairs.getOrDefault(movie.getFileName(), List.of() );
+        return toAbsolute(folder.get(), subs);
+    }
+
+    /**
+     * @return every movie with at least one sub, mapped to absolute paths of its subs
+     */
+    Map<Path, List<Path>> pairs() {
+        Map<Path, List<Path>> all = new HashMap<>();
+        pairs.forEach( (folder, folderPairs) -> folderPairs.forEach( (movie, subs) ->
+                all.put(folder.toAbsolutePath(movie), toAbsolute(folder, subs) ) ) );
+        return all;
+    }
+
+    /**
+     * @return absolute paths of subs which could not be paired with a movie
+     */
+    List<Path> unpaired() {
+        List<Path> all = new ArrayList<>();
+        unpaired.forEach( (folder, subs) -> all.addAll(toAbsolute(folder, subs) ) );
+        return all;
+    }
+
+    private static List<Path> toAbsolute(MovieFolder folder, List<Path> relative) {
+        List<Path> absolute = new ArrayList<>(relative.size() );
+        relative.forEach( (p) -> absolute.add(folder.getFolderPath().resolve(p) ) );
+        return absolute;
+    }
+
+    static boolean isSubsFolder(Path folderName) {
+        return SUBS_FOLDERS.contains(folderName.toString().toLowerCase(Locale.ROOT) );
+    }
+
+    // the movie folder which owns subs in folderPath: the parent of the shallowest subs folder on the path below
+    // the root, otherwise folderPath itself
+    private Path ownerPath(Path folderPath) {
+        Path rootPath = collection.getRootPath();
+        Path relative = rootPath.relativize(folderPath);
+        for (int i = 0; i < relative.getNameCount(); i++) {
+            if (isSubsFolder(relative.getName(i) ) ) {
+                return i == 0 ? rootPath : rootPath.resolve(relative.subpath(0, i) );
+            }
+        }
+        return folderPath;
+    }
+
+    private boolean inSubsArea(Path folderPath) {
+        return !ownerPath(folderPath).equals(folderPath);
+    }
+
+    /**
+     * @param filename name of a movie or sub
+     * @return the lower case base name with the extension and any trailing language tags or flags removed
+     */
+    static String normalize(Path filename) {
+        String name = filename.getFileName().toString().toLowerCase(Locale.ROOT);
+        int dot = name.lastIndexOf('.');
+        if (dot > 0) {
+            name = name.substring(0, dot);
+        }
+        String[] tokens = SEPARATORS.split(name);
+        int end = tokens.length;
+        while (end > 1 && TAGS.contains(tokens[end - 1]) ) {
+            end--;
+        }
+        return String.join(" ", Arrays.asList(tokens).subList(0, end) ).strip();
+    }
+
+    /**
+     * @param filename name of a sub
+     * @return the trailing language tags and flags of the name, as written and each preceded by a dot, for example
+     *         {@code .en.forced} for {@code Movie_2010_en-forced.srt}, or an empty string if there are none
+     */
+    static String tagSuffix(Path filename) {
+        String name = filename.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        if (dot > 0) {
+            name = name.substring(0, dot);
+        }
+        String[] tokens = SEPARATORS.split(name);
+        int end = tokens.length;
+        while (end > 1 && TAGS.contains(tokens[end - 1].toLowerCase(Locale.ROOT) ) ) {
+            end--;
+        }
+        StringBuilder suffix = new StringBuilder();
+        for (int i = end; i < tokens.length; i++) {
+            suffix.append('.').append(tokens[i]);
+        }
+        return suffix.toString();
+    }
+
+    // re-pairs a single movie folder from scratch
+    private void pair(MovieFolder folder) {
+        pairs.remove(folder);
+        unpaired.remove(folder);
+        List<Path> subs = new ArrayList<>();
+        collectSubs(folder, folder, subs);
+        Set<Path> movies = folder.getFilenames(FileType.Movie);
+        if (subs.isEmpty() ) {
+            return;
+        }
+        Map<String, Path> byName = new HashMap<>();
+        Map<String, Path> byCompactName = new LinkedHashMap<>();
+        for (Path movie : movies) {
+            String normalized = normalize(movie);
+            byName.put(normalized, movie);
+            byCompactName.put(NON_ALPHANUMERIC.matcher(normalized).replaceAll(""), movie);
+        }
+        Map<Path, List<Path>> folderPairs = new HashMap<>();
+        List<Path> folderUnpaired = new ArrayList<>();
+        for (Path sub : subs) {
+            Path movie = match(sub, movies, byName, byCompactName);
+            if (Objects.isNull(movie) ) {
+                folderUnpaired.add(sub);
+            }
+            else {
+                folderPairs.computeIfAbsent(movie, (m) -> new ArrayList<>() ).add(sub);
+            }
+        }
+        if (!folderPairs.isEmpty() ) {
+            pairs.put(folder, folderPairs);
+        }
+        if (!folderUnpaired.isEmpty() ) {
+            unpaired.put(folder, folderUnpaired);
+        }
+    }
+
+    private static Path match(Path sub, Set<Path> movies, Map<String, Path> byName,
+                              Map<String, Path> byCompactName) {
+        String normalized = normalize(sub);
+        Path movie = byName.get(normalized);
+        if (Objects.nonNull(movie) ) {
+            return movie;
+        }
+        if (movies.size() == 1) {
+            return movies.iterator().next();
+        }
+        String compact = NON_ALPHANUMERIC.matcher(normalized).replaceAll("");
+        String longest = "";
+        for (Map.Entry<String, Path> e : byCompactName.entrySet() ) {
+            if (e.getKey().length() > longest.length() && compact.contains(e.getKey() ) ) {
+                longest = e.getKey();
+                movie = e.getValue();
+            }
+        }
+        return movie;
+    }
+
+    // subs in folder, and below any subs folders it contains, relative to owner
+    private static void collectSubs(MovieFolder owner, MovieFolder folder, List<Path> subs) {
+        Path relative = owner.getFolderPath().relativize(folder.getFolderPath() );
+        folder.getFilenames(FileType.Sub).forEach( (s) -> subs.add(relative.resolve(s) ) );
+        for (MovieFolder child : folder.getFolders() ) {
+            if (folder != owner || isSubsFolder(child.getFolderPath().getFileName() ) ) {
+                collectSubs(owner, child, subs);
+            }
+        }
+    }
+
+    // pairs every movie folder in the subtree, origin must not be in a subs area
+    private void pairSubtree(MovieFolder origin) {
+        pair(origin);
+        for (MovieFolder child : origin.getFolders() ) {
+            if (!isSubsFolder(child.getFolderPath().getFileName() ) ) {
+                pairSubtree(child);
+            }
+        }
+    }
+
+    private void forgetSubtree(MovieFolder origin) {
+        collection.getSubFolders(origin).forEach( (f) -> {
+            pairs.remove(f);
+            unpaired.remove(f);
+        });
+    }
+
+    private void repairOwner(MovieFolder folder) {
+        collection.openFolder(ownerPath(folder.getFolderPath() ) ).ifPresent(this::pair);
+    }
+
+    @Override
+    public void fileAdded(MovieFolder folder, Path filename, FileType type) {
+        if (type == FileType.Movie || type == FileType.Sub) {
+            repairOwner(folder);
+        }
+    }
+
+    @Override
+    public void fileRemoved(MovieFolder folder, Path filename, FileType type) {
+        fileAdded(folder, filename, type);
+    }
+
+    @Override
+    public void folderAdded(MovieFolder parent, MovieFolder folder) {
+        // a new folder is empty, its files are reported as they are added
+    }
+
+    @Override
+    public void folderRemoved(MovieFolder parent, MovieFolder folder) {
+        forgetSubtree(folder);
+        repairOwner(parent);
+    }
+
+    @Override
+    public void folderMoved(MovieFolder folder, Path formerPath, MovieFolder formerParent, MovieFolder newParent) {
+        if (!inSubsArea(formerPath) && !inSubsArea(folder.getFolderPath() ) ) {
+            return; // the subtree still owns exactly the subs it did, and pairs are stored relative to it
+        }
+        forgetSubtree(folder);
+        Path owner = ownerPath(folder.getFolderPath() );
+        if (owner.equals(folder.getFolderPath() ) ) {
+            pairSubtree(folder);
+        }
+        else {
+            repairOwner(folder);
+        }
+        repairOwner(formerParent);
+    }
+
+    @Override
+    public String toString() {
+        return "SubtitlePairing{movies=" + pairs.values().stream().mapToInt(Map::size).sum()
+                + ", unpaired=" + unpaired.values().stream().mapToInt(List::size).sum() + "}";
+    }
+}
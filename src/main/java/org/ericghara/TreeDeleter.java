@@ -0,0 +1,328 @@
+package org.ericghara;
+
+import java.io.IOException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Executes a {@link Plan} of file and folder deletions against a {@link MovieCollection}.
+ * <p>
+ * Files are deleted in parallel, one batch per folder.  Folders are then deleted in post-order: all planned folders
+ * at the greatest depth in parallel, then the next depth up, and so on.  A folder is skipped if any file or folder
+ * below it could not be deleted.  Records are updated in bulk once the filesystem work is done: surviving folders
+ * drop their deleted file records in one call per type, and each deleted subtree is dropped from its parent in a
+ * single step.  Failures never interrupt the execution, they are collected in the returned {@link Report}.
+ */
+class TreeDeleter {
+
+    private static final Metrics.Timer DELETE_TIMER = Metrics.timer("io.treeDelete");
+    private static final Metrics.Counter FAILURES = Metrics.counter("io.treeDelete.failures");
+
+    private final MovieCollection collection;
+    private final int parallelism;
+
+    /**
+     * @param collection collection which the plan was made from
+     * @param parallelism maximum number of concurrent filesystem deletions
+     */
+    TreeDeleter(MovieCollection collection, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Received a non-positive parallelism: " + parallelism);
+        }
+        this.collection = Objects.requireNonNull(collection, "Received a null collection.");
+        this.parallelism = parallelism;
+    }
+
+    TreeDeleter(MovieCollection collection) {
+        this(collection, Runtime.getRuntime().availableProcessors() );
+    }
+
+    /**
+     * @param plan deletions to perform
+     * @return what was deleted and what failed
+     */
+    Report execute(Plan plan) {
+        long start = DELETE_TIMER.start();
+        Report report = new Report();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, (r) -> {
+            Thread t = new Thread(r, "tree-deleter");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            Map<MovieFolder, Map<Path, FileType>> deletedFiles = deleteFiles(plan, executor, report);
+            Set<MovieFolder> deletedFolders = deleteFolders(plan, executor, report);
+            updateRecords(plan, deletedFiles, deletedFolders);
+        } finally {
+            executor.shutdownNow();
+            DELETE_TIMER.stop(start);
+        }
+        FAILURES.add(report.failures.size() );
+        return report;
+    }
+
+    private Map<MovieFolder, Map<Path, FileType>> deleteFiles(Plan plan, ExecutorService executor, Report report) {
+        List<Callable<Map<Path, Object>>> batches = new ArrayList<>();
+        List<MovieFolder> batchFolders = new ArrayList<>();
+        plan.files.forEach( (folder, files) -> {
+            batchFolders.add(folder);
+            batches.add( () -> {
+                Map<Path, Object> outcomes = new LinkedHashMap<>(); // filename -> type or exception
+                files.forEach( (filename, type) -> {
+                    try {
+                        Files.delete(folder.toAbsolutePath(filename) );
+                        outcomes.put(filename, type);
+                    } catch (IOException e) {
+                        outcomes.put(filename, e);
+                    }
+                });
+                return outcomes;
+            });
+        });
+        Map<MovieFolder, Map<Path, FileType>> deleted = new HashMap<>();
+        List<Map<Path, Object>> results = invokeAll(executor, batches);
+        for (int i = 0; i < results.size(); i++) {
+            MovieFolder folder = batchFolders.get(i);
+            Map<Path, FileType> folderDeleted = new LinkedHashMap<>();
+            results.get(i).forEach( (filename, outcome) -> {
+                Path absPath = folder.toAbsolutePath(filename);
+                if (outcome instanceof FileType) {
+                    folderDeleted.put(filename, (FileType) outcome);
+                    report.deletedFiles.add(absPath);
+                }
+                else {
+                    report.failures.put(absPath, (IOException) outcome);
+                }
+            });
+            deleted.put(folder, folderDeleted);
+        }
+        return deleted;
+    }
+
+    private Set<MovieFolder> deleteFolders(Plan plan, ExecutorService executor, Report report) {
+        Set<MovieFolder> blocked = new HashSet<>();
+        plan.files.forEach( (folder, files) -> {
+            if (files.keySet().stream().anyMatch( (f) -> report.failures.containsKey(folder.toAbsolutePath(f) ) ) ) {
+                blocked.add(folder);
+            }
+        });
+        TreeMap<Integer, List<MovieFolder>> byDepth = new TreeMap<>(Comparator.reverseOrder() );
+        plan.folders.forEach( (f) -> byDepth.computeIfAbsent(f.getDepth(), (d) -> new ArrayList<>() ).add(f) );
+        Set<MovieFolder> deleted = new HashSet<>();
+        for (List<MovieFolder> level : byDepth.values() ) {
+            List<MovieFolder> attempted = new ArrayList<>();
+            List<Callable<IOException>> deletions = new ArrayList<>();
+            for (MovieFolder folder : level) {
+                if (blocked.contains(folder) ) {
+                    report.failures.put(folder.getFolderPath(),
+                            new DirectoryNotEmptyException(folder.getFolderPath().toString() ) );
+                    blockParent(plan, folder, blocked);
+                    continue;
+                }
+                attempted.add(folder);
+                deletions.add( () -> {
+                    try {
+                        Files.delete(folder.getFolderPath() );
+                        return null;
+                    } catch (IOException e) {
+                        return e;
+                    }
+                });
+            }
+            List<IOException> results = invokeAll(executor, deletions);
+            for (int i = 0; i < results.size(); i++) {
+                MovieFolder folder = attempted.get(i);
+                if (Objects.isNull(results.get(i) ) ) {
+                    deleted.add(folder);
+                    report.deletedFolders.add(folder.getFolderPath() );
+                }
+                else {
+                    report.failures.put(folder.getFolderPath(), results.get(i) );
+                    blockParent(plan, folder, blocked);
+                }
+            }
+        }
+        return deleted;
+    }
+
+    private static void blockParent(Plan plan, MovieFolder folder, Set<MovieFolder> blocked) {
+        MovieFolder parent = plan.parents.get(folder);
+        if (Objects.nonNull(parent) ) {
+            blocked.add(parent);
+        }
+    }
+
+    private void updateRecords(Plan plan, Map<MovieFolder, Map<Path, FileType>> deletedFiles,
+                               Set<MovieFolder> deletedFolders) {
+        // deleted folders take their file records with them
+        deletedFiles.forEach( (folder, files) -> {
+            if (deletedFolders.contains(folder) || files.isEmpty() ) {
+                return;
+            }
+            EnumMap<FileType, List<Path>> byType = new EnumMap<>(FileType.class);
+            files.forEach( (filename, type) -> byType.computeIfAbsent(type, (t) -> new ArrayList<>() ).add(filename) );
+            byType.forEach( (type, names) -> folder.deleteRecords(names, type) );
+            collection.notifyListeners( (l) -> files.forEach( (filename, type) ->
+                    l.fileRemoved(folder, filename, type) ) );
+        });
+        // drop each deleted subtree from the nearest surviving ancestor
+        for (MovieFolder folder : plan.folders) {
+            MovieFolder parent = plan.parents.get(folder);
+            if (deletedFolders.contains(folder) && !deletedFolders.contains(parent) ) {
+                parent.deleteRecord(folder.getFolderPath().getFileName(), FileType.Folder);
+                collection.notifyListeners( (l) -> l.folderRemoved(parent, folder) );
+            }
+        }
+    }
+
+    private static <T> List<T> invokeAll(ExecutorService executor, List<Callable<T>> tasks) {
+        List<T> results = new ArrayList<>(tasks.size() );
+        try {
+            for (Future<T> f : executor.invokeAll(tasks) ) {
+                results.add(f.get() );
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while deleting.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("An unexpected error occurred while deleting.", e.getCause() );
+        }
+        return results;
+    }
+
+    /**
+     * Files and folders to delete.  Folders must be added after every folder and file below them.
+     */
+    static class Plan {
+        private final LinkedHashMap<MovieFolder, Map<Path, FileType>> files = new LinkedHashMap<>();
+        private final List<MovieFolder> folders = new ArrayList<>();
+        private final HashMap<MovieFolder, MovieFolder> parents = new HashMap<>();
+
+        /**
+         * Plans the deletion of a folder and everything below it.
+         * @param parent parent of the origin
+         * @param origin the top-most folder to delete
+         * @return a plan covering every file and folder in the subtree, including the origin
+         */
+        static Plan subtree(MovieFolder parent, MovieFolder origin) {
+            Plan plan = new Plan();
+            plan.addSubtree(parent, origin);
+            return plan;
+        }
+
+        private void addSubtree(MovieFolder parent, MovieFolder folder) {
+            folder.getFolders().forEach( (child) -> addSubtree(folder, child) );
+            for (FileType type : FileType.values() ) {
+                if (type != FileType.Folder) {
+                    folder.getFilenames(type).forEach( (f) -> addFile(folder, f, type) );
+                }
+            }
+            addFolder(parent, folder);
+        }
+
+        void addFile(MovieFolder folder, Path filename, FileType type) {
+            files.computeIfAbsent(folder, (f) -> new LinkedHashMap<>() ).put(filename, type);
+        }
+
+        void addFolder(MovieFolder parent, MovieFolder folder) {
+            folders.add(folder);
+            parents.put(folder, Objects.requireNonNull(parent, "Received a null parent folder.") );
+        }
+
+        int numFiles() {
+            return files.values().stream().mapToInt(Map::size).sum();
+        }
+
+        int numFolders() {
+            return folders.size();
+        }
+
+        boolean isEmpty() {
+            return files.isEmpty() && folders.isEmpty();
+        }
+
+        /**
+         * A dry-run report of the plan.  File sizes are read from the filesystem when the report is made.
+         * @return one line per planned deletion followed by totals
+         */
+        String report() {
+            StringBuilder sb = new StringBuilder();
+            long totalBytes = 0;
+            for (Map.Entry<MovieFolder, Map<Path, FileType>> e : files.entrySet() ) {
+                for (Map.Entry<Path, FileType> f : e.getValue().entrySet() ) {
+                    Path absPath = e.getKey().toAbsolutePath(f.getKey() );
+                    long size;
+                    try {
+                        size = Files.size(absPath);
+                        totalBytes += size;
+                    } catch (IOException ex) {
+                        size = -1;
+                    }
+                    sb.append(String.format("delete file   %-12s %14d  %s%n", f.getValue(), size, absPath) );
+                }
+            }
+            folders.forEach( (f) -> sb.append(String.format("delete folder %-12s %14s  %s%n", "", "",
+                    f.getFolderPath() ) ) );
+            sb.append(String.format("%d files (%d bytes) and %d folders would be deleted%n", numFiles(),
+                    totalBytes, numFolders() ) );
+            return sb.toString();
+        }
+
+        @Override
+        public String toString() {
+            return "TreeDeleter.Plan{files=" + numFiles() + ", folders=" + numFolders() + "}";
+        }
+    }
+
+    /**
+     * The outcome of executing a {@link Plan}.
+     */
+    static class Report {
+        private final List<Path> deletedFiles = Collections.synchronizedList(new ArrayList<>() );
+        private final List<Path> deletedFolders = new ArrayList<>();
+        private final LinkedHashMap<Path, IOException> failures = new LinkedHashMap<>();
+
+        List<Path> getDeletedFiles() {
+            return Collections.unmodifiableList(deletedFiles);
+        }
+
+        List<Path> getDeletedFolders() {
+            return Collections.unmodifiableList(deletedFolders);
+        }
+
+        /**
+         * @return paths which could not be deleted, and why
+         */
+        Map<Path, IOException> getFailures() {
+            return Collections.unmodifiableMap(failures);
+        }
+
+        boolean isComplete() {
+            return failures.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return "TreeDeleter.Report{deletedFiles=" + deletedFiles.size() + ", deletedFolders="
+                    + deletedFolders.size() + ", failures=" + failures.size() + "}";
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org.ericghara;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@DisplayName("BatchCliTest")
+public class BatchCliTest {
+
+    @TempDir
+    Path tmpDir;
+    MovieCollection collection;
+
+    @BeforeEach
+    void setup() {
+        new TestMovieDir("Example.csv", tmpDir);
+        collection = new MovieCollection(tmpDir.toString() );
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 4})
+    @DisplayName("run - output in command order, serial or parallel")
+    void run(int parallelism) throws IOException {
+        String commands = String.join("\n",
+                "# comment",
+                "open dir0",
+                "list dir0/subs",
+                "stat \"dir0/movie right here.mp4\"",
+                "",
+                "move movie0.mp4 dir0/subs/movie0.mp4",
+                "list dir0/subs",
+                "stat dir0",
+                "open nothing",
+                "delete dir0 -r",
+                "open dir0",
+                "frobnicate");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int failed = new BatchCli(collection, parallelism).run(new StringReader(commands),
+                new PrintStream(bytes, true, StandardCharsets.UTF_8) );
+        List<String> lines = bytes.toString(StandardCharsets.UTF_8).lines().collect(Collectors.toList() );
+        Assertions.assertEquals(3, failed);
+        Assertions.assertEquals(tmpDir.resolve("dir0").toString(), lines.get(0) );
+        Assertions.assertEquals("Sub\tsubsForMovie1.srt", lines.get(1) );
+        Assertions.assertTrue(lines.get(2).startsWith("Movie\t" + 51 * 1024 * 1024 + "\t") );
+        Assertions.assertEquals(List.of("Movie\tmovie0.mp4", "Sub\tsubsForMovie1.srt"), lines.subList(3, 5) );
+        Assertions.assertEquals("Folder\t4", lines.get(5) );
+        Assertions.assertTrue(lines.get(6).startsWith("error 9: ") );
+        Assertions.assertTrue(lines.get(7).startsWith("error 11: ") );
+        Assertions.assertEquals("error 12: Unknown command: frobnicate", lines.get(8) );
+        Assertions.assertEquals(9, lines.size() );
+        Assertions.assertFalse(Files.exists(tmpDir.resolve("dir0") ) );
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 4})
+    @DisplayName("run - paths outside of the root are errors, the batch carries on")
+    void outsideRoot(int parallelism) throws IOException {
+        String commands = String.join("\n",
+                "stat /",
+                "list ..",
+                "stat dir0/../../x",
+                "move movie0.mp4 /movie0.mp4",
+                "stat \"\"");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int failed = new BatchCli(collection, parallelism).run(new StringReader(commands),
+                new PrintStream(bytes, true, StandardCharsets.UTF_8) );
+        List<String> lines = bytes.toString(StandardCharsets.UTF_8).lines().collect(Collectors.toList() );
+        Assertions.assertEquals(4, failed);
+        for (int i = 0; i < 4; i++) {
+            Assertions.assertTrue(lines.get(i).startsWith("error " + (i + 1) + ": Not under the root"), lines.get(i) );
+        }
+        Assertions.assertEquals("Folder\t5", lines.get(4) );
+        Assertions.assertTrue(Files.exists(tmpDir.resolve("movie0.mp4") ) );
+    }
+
+    @Test
+    @DisplayName("batch - scans the root, runs a commands file and returns the failures")
+    void batch() throws IOException {
+        Path commands = Files.writeString(tmpDir.resolve("commands.txt"), "open dir0\nopen nothing\n");
+        Assertions.assertEquals(1, BatchCli.batch(new String[] {tmpDir.toString(), commands.toString() }) );
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"a b  c", "a \"b c\" d", "\"\" x y"})
+    @DisplayName("tokenize - whitespace separated, quotes keep spaces")
+    void tokenize(String line) {
+        List<String> tokens = BatchCli.tokenize(line);
+        Assertions.assertEquals(3, tokens.size() );
+        Assertions.assertThrows(IllegalArgumentException.class, () -> BatchCli.tokenize("a \"b") );
+    }
+}
@@ -0,0 +1,83 @@
+package org.ericghara;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+@DisplayName("ClassificationRulesTest")
+public class ClassificationRulesTest {
+
+    static final long ONE_MB = 1_048_576L;
+
+    @ParameterizedTest
+    @CsvSource({"movie.mkv, 51", "movie.MKV, 51", "movie.mkv, 50", "movie.mkv, 0", ".hidden.mkv, 51",
+                "archive.iso, 51", "archive.iso, 50", "sub.srt, 1", "sub.SRT, 50", "sub.srt, 51",
+                "noextension, 1", "trailingdot., 51", "movie.m2ts, 51", "movie.ts, 51", "a.b.avi, 700"})
+    @DisplayName("defaults - agree with the original regex classification")
+    void defaultsMatchRegex(String filename, long sizeMB) {
+        FileClassifier legacy = new FileClassifier();
+        Path name = Path.of(filename);
+        FileType expected;
+        if (sizeMB > 50) {
+            expected = legacy.isVideo(name) ? FileType.Movie : FileType.Unusual;
+        }
+        else {
+            expected = legacy.isSub(name) ? FileType.Sub : FileType.PossiblyJunk;
+        }
+        Assertions.assertEquals(expected, ClassificationRules.defaults().classify(name, sizeMB * ONE_MB) );
+    }
+
+    @Test
+    @DisplayName("custom rules - first match wins and name patterns override")
+    void customRules() {
+        List<String> lines = List.of(
+                "# a comment",
+                "PossiblyJunk  mkv,webm   *      (?i).*\\bsample\\b.*  # trailing comment",
+                "Movie         .mkv,webm  >=10",
+                "Sub           srt,ass    0-5",
+                "Unusual       *          >100",
+                "");
+        ClassificationRules rules = ClassificationRules.parse(lines, "test");
+        Assertions.assertEquals(4, rules.numRules() );
+        Assertions.assertEquals(FileType.Movie, rules.classify("clip.webm", 10 * ONE_MB) );
+        Assertions.assertEquals(FileType.PossiblyJunk, rules.classify("clip.webm", 9 * ONE_MB) );
+        Assertions.assertEquals(FileType.PossiblyJunk, rules.classify("Movie.Sample.mkv", 700 * ONE_MB) );
+        Assertions.assertEquals(FileType.Sub, rules.classify("movie.en.ass", 5 * ONE_MB + 1) );
+        Assertions.assertEquals(FileType.PossiblyJunk, rules.classify("movie.en.ass", 6 * ONE_MB) );
+        Assertions.assertEquals(FileType.Unusual, rules.classify("movie.ass", 101 * ONE_MB) );
+        Assertions.assertEquals(FileType.Unusual, rules.classify("disk.iso", 101 * ONE_MB) );
+        Assertions.assertEquals(FileType.PossiblyJunk, rules.classify("disk.iso", 100 * ONE_MB) ); // no rule matches
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"Movie mkv", "Folder * *", "Film mkv *", "Movie mkv >>5", "Movie mkv 9-2",
+            "Movie mkv * ([unclosed"})
+    @DisplayName("parse - invalid rules are rejected")
+    void invalidRules(String line) {
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> ClassificationRules.parse(List.of(line), "test") );
+    }
+
+    @Test
+    @DisplayName("MovieCollection - scans with a rules file")
+    void collectionUsesRules(@TempDir Path tmpDir) throws Exception {
+        Path movies = Files.createDirectory(tmpDir.resolve("movies") );
+        new TestMovieDir("Example.csv", movies);
+        Path config = Files.write(tmpDir.resolve("rules.conf"), List.of(
+                "Movie         mp4   >=5",
+                "PossiblyJunk  *     *") );
+        MovieCollection collection = new MovieCollection(movies.toString(),
+                ScanOptions.defaults().rulesFile(config) );
+        MovieFolder root = collection.openFolder(movies, "couldn't open root");
+        Assertions.assertTrue(root.contains(Path.of("junk1.mp4"), FileType.Movie) );
+        Assertions.assertTrue(root.contains(Path.of("sub0.srt"), FileType.PossiblyJunk) );
+    }
+}
@@ -0,0 +1,61 @@
+package org.ericghara;
+
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Compares per-file classification cost of the original regex path ({@link FileClassifier#isVideo},
+ * {@link FileClassifier#isSub} and a size cutoff) against the compiled {@link ClassificationRules}.
+ * Run with {@code gradle classifierBenchmark}.  Prints ns/op for each, best of several rounds.
+ */
+public class ClassifierBenchmark {
+
+    private static final long ONE_MB = 1_048_576L;
+    private static final String[] EXTS = {"mkv", "mp4", "avi", "srt", "sub", "nfo", "txt", "jpg", "part", "m2ts",
+            "idx", "iso"};
+    private static final int NUM_FILES = 100_000;
+    private static final int ROUNDS = 15;
+
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        Path[] names = new Path[NUM_FILES];
+        long[] sizes = new long[NUM_FILES];
+        for (int i = 0; i < NUM_FILES; i++) {
+            String ext = EXTS[random.nextInt(EXTS.length)];
+            names[i] = Path.of("Some.Movie.Title." + (1950 + random.nextInt(70) ) + ".1080p." + i + "." + ext);
+            sizes[i] = random.nextInt(4096) * ONE_MB / 8;
+        }
+        FileClassifier legacy = new FileClassifier();
+        ClassificationRules rules = ClassificationRules.defaults();
+
+        long bestLegacy = Long.MAX_VALUE;
+        long bestRules = Long.MAX_VALUE;
+        int blackhole = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < NUM_FILES; i++) {
+                blackhole += legacy(legacy, names[i], sizes[i]).ordinal();
+            }
+            bestLegacy = Math.min(bestLegacy, System.nanoTime() - start);
+            start = System.nanoTime();
+            for (int i = 0; i < NUM_FILES; i++) {
+                blackhole += rules.classify(names[i], sizes[i]).ordinal();
+            }
+            bestRules = Math.min(bestRules, System.nanoTime() - start);
+        }
+        System.out.printf("regex classification: %6.1f ns/op%n", (double) bestLegacy / NUM_FILES);
+        System.out.printf("rules classification: %6.1f ns/op%n", (double) bestRules / NUM_FILES);
+        System.out.printf("(checksum %d)%n", blackhole);
+    }
+
+    // the classification performed by Collector.addFile before ClassificationRules
+    private static FileType legacy(FileClassifier classifier, Path filename, long sizeBytes) {
+        if (sizeBytes / ONE_MB > 50) {
+            return classifier.isVideo(filename) ? FileType.Movie : FileType.Unusual;
+        }
+        else if (classifier.isSub(filename) ) {
+            return FileType.Sub;
+        }
+        return FileType.PossiblyJunk;
+    }
+}
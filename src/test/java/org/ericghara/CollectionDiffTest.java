@@ -0,0 +1,105 @@
+package org.ericghara;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@DisplayName("CollectionDiffTest")
+public class CollectionDiffTest {
+
+    @TempDir
+    Path tmpDir;
+    Path root;
+
+    @BeforeEach
+    void setup() throws IOException {
+        root = Files.createDirectory(tmpDir.resolve("root") );
+        new TestMovieDir("Example.csv", root);
+    }
+
+    private static List<String> changes(CollectionDiff diff, CollectionDiff.Kind kind) {
+        return diff.getChanges(kind).stream().map(CollectionDiff.Change::toString).collect(Collectors.toList() );
+    }
+
+    // renames a movie, resizes a sub, deletes a junk file and adds a new one
+    private void modify() throws IOException {
+        Files.move(root.resolve("movie0.mp4"), root.resolve("renamed.mp4") );
+        Files.write(root.resolve("dir0/subs/subsForMovie1.srt"), new byte[10], StandardOpenOption.APPEND);
+        Files.delete(root.resolve("junk0.nfo") );
+        Files.write(root.resolve("new.nfo"), new byte[1]);
+    }
+
+    @Test
+    @DisplayName("compare - unchanged trees have no changes")
+    void unchanged() {
+        Assertions.assertTrue(CollectionDiff.compare(new MovieCollection(root.toString() ),
+                new MovieCollection(root.toString() ) ).isEmpty() );
+    }
+
+    @Test
+    @DisplayName("compare - renames are moves, not a removal and an addition")
+    void scans() throws IOException {
+        CollectionDiff.Tree before = CollectionDiff.Tree.of(new MovieCollection(root.toString() ) );
+        modify();
+        CollectionDiff diff = CollectionDiff.compare(before, CollectionDiff.Tree.of(new MovieCollection(root.toString() ) ) );
+        Assertions.assertEquals(List.of("MOVED movie0.mp4 -> renamed.mp4"), changes(diff, CollectionDiff.Kind.MOVED) );
+        Assertions.assertEquals(List.of("REMOVED junk0.nfo"), changes(diff, CollectionDiff.Kind.REMOVED) );
+        Assertions.assertEquals(List.of("ADDED new.nfo"), changes(diff, CollectionDiff.Kind.ADDED) );
+        List<CollectionDiff.Change> resized = diff.getChanges(CollectionDiff.Kind.RESIZED);
+        Assertions.assertEquals(1, resized.size() );
+        Assertions.assertEquals(Path.of("dir0/subs/subsForMovie1.srt"), resized.get(0).getPath() );
+        Assertions.assertEquals(10, resized.get(0).getNewSize() - resized.get(0).getOldSize() );
+    }
+
+    @Test
+    @DisplayName("compare - a snapshot against a scan, renames aren't paired by size alone")
+    void snapshot() throws IOException {
+        Path snapshot = tmpDir.resolve("before.col");
+        new MovieCollection(root.toString() ).exportColumnar(snapshot);
+        modify();
+        try (ColumnarReader before = new ColumnarReader(snapshot) ) {
+            CollectionDiff diff = CollectionDiff.compare(before, new MovieCollection(root.toString() ) );
+            Assertions.assertEquals(5, diff.getChanges().size(), diff.report() );
+            // a snapshot has no file keys, so the renamed movie can't be told from a new file of the same size
+            Assertions.assertTrue(changes(diff, CollectionDiff.Kind.MOVED).isEmpty() );
+            Assertions.assertEquals(List.of("REMOVED junk0.nfo", "REMOVED movie0.mp4"),
+                    changes(diff, CollectionDiff.Kind.REMOVED) );
+            Assertions.assertEquals(List.of("ADDED new.nfo", "ADDED renamed.mp4"),
+                    changes(diff, CollectionDiff.Kind.ADDED) );
+            Assertions.assertEquals(1, diff.getChanges(CollectionDiff.Kind.RESIZED).size() );
+        }
+    }
+
+    @Test
+    @DisplayName("compare - a renamed folder is one move")
+    void folderMove() throws IOException {
+        CollectionDiff.Tree before = CollectionDiff.Tree.of(new MovieCollection(root.toString() ) );
+        Files.move(root.resolve("dir0"), root.resolve("dir1") );
+        CollectionDiff diff = CollectionDiff.compare(before, CollectionDiff.Tree.of(new MovieCollection(root.toString() ) ) );
+        Assertions.assertEquals(List.of("MOVED dir0 -> dir1"), changes(diff, CollectionDiff.Kind.MOVED), diff.report() );
+        Assertions.assertEquals(1, diff.getChanges().size() );
+    }
+
+    @Test
+    @DisplayName("compare - a folder which lost a file is removed and added")
+    void partialFolderMove() throws IOException {
+        CollectionDiff.Tree before = CollectionDiff.Tree.of(new MovieCollection(root.toString() ) );
+        Files.move(root.resolve("dir0"), root.resolve("dir1") );
+        Files.delete(root.resolve("dir1/movie1.mp4") );
+        CollectionDiff diff = CollectionDiff.compare(before, CollectionDiff.Tree.of(new MovieCollection(root.toString() ) ) );
+        Assertions.assertTrue(changes(diff, CollectionDiff.Kind.REMOVED).containsAll(
+                List.of("REMOVED dir0", "REMOVED dir0/movie1.mp4") ), diff.report() );
+        Assertions.assertTrue(changes(diff, CollectionDiff.Kind.ADDED).contains("ADDED dir1") );
+        Assertions.assertTrue(changes(diff, CollectionDiff.Kind.MOVED).contains(
+                "MOVED dir0/subs/subsForMovie1.srt -> dir1/subs/subsForMovie1.srt") );
+    }
+}
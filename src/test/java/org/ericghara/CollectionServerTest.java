@@ -0,0 +1,169 @@
+package org.ericghara;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@DisplayName("CollectionServerTest")
+public class CollectionServerTest {
+
+    @TempDir
+    Path tmpDir;
+    CollectionServer server;
+    HttpClient client = HttpClient.newHttpClient();
+
+    @BeforeEach
+    void setup() throws IOException {
+        new TestMovieDir("Example.csv", tmpDir);
+        server = new CollectionServer( () -> new MovieCollection(tmpDir.toString() ), 0);
+        server.start();
+    }
+
+    @AfterEach
+    void teardown() throws IOException {
+        server.stop();
+    }
+
+    private HttpRequest request(String method, String pathAndQuery) {
+        URI uri = URI.create("http://localhost:" + server.getAddress().getPort() + pathAndQuery);
+        return HttpRequest.newBuilder(uri).method(method, HttpRequest.BodyPublishers.noBody() ).build();
+    }
+
+    private HttpResponse<String> send(String method, String pathAndQuery) throws Exception {
+        return client.send(request(method, pathAndQuery), HttpResponse.BodyHandlers.ofString() );
+    }
+
+    private CompletableFuture<HttpResponse<String>> sendAsync(String method, String pathAndQuery) {
+        return client.sendAsync(request(method, pathAndQuery), HttpResponse.BodyHandlers.ofString() );
+    }
+
+    @Test
+    @DisplayName("queries - folder listing, contains and search")
+    void queries() throws Exception {
+        HttpResponse<String> folder = send("GET", "/folder?path=dir0");
+        Assertions.assertEquals(200, folder.statusCode() );
+        Assertions.assertEquals("{\"path\": \"dir0\", \"folders\": [\"subs\"], \"files\": ["
+                + "{\"name\": \"junk2.nfo\", \"type\": \"PossiblyJunk\"}, "
+                + "{\"name\": \"movie right here.mp4\", \"type\": \"Movie\"}, "
+                + "{\"name\": \"movie1.mp4\", \"type\": \"Movie\"}]}", folder.body() );
+        Assertions.assertEquals("{\"file\": true, \"folder\": false}",
+                send("GET", "/contains?path=dir0%2Fmovie1.mp4").body() );
+        Assertions.assertEquals("{\"results\": [\"dir0/movie right here.mp4\"]}",
+                send("GET", "/search?q=right+here").body() );
+        Assertions.assertEquals(400, send("GET", "/folder?path=..%2F..").statusCode() );
+        Assertions.assertEquals(400, send("GET", "/folder?path=nothing").statusCode() );
+        Assertions.assertEquals(405, send("POST", "/folder?path=dir0").statusCode() );
+    }
+
+    @Test
+    @DisplayName("operations - move, delete and refresh")
+    void operations() throws Exception {
+        Assertions.assertEquals(200, send("POST", "/move?from=movie0.mp4&to=dir0%2Fmovie0.mp4").statusCode() );
+        Assertions.assertTrue(Files.exists(tmpDir.resolve("dir0/movie0.mp4") ) );
+        Assertions.assertEquals("{\"results\": [\"dir0/movie0.mp4\"]}", send("GET", "/search?q=movie0&limit=1").body() ); // exact first
+        Assertions.assertEquals(400, send("POST", "/delete?path=dir0").statusCode() ); // not empty
+        Assertions.assertEquals("{\"ok\": true, \"failures\": []}",
+                send("POST", "/delete?path=dir0&recursive=true").body() );
+        Assertions.assertFalse(Files.exists(tmpDir.resolve("dir0") ) );
+
+        Files.createDirectory(tmpDir.resolve("outside") ); // made behind the server's back
+        Assertions.assertEquals("{\"file\": false, \"folder\": false}", send("GET", "/contains?path=outside").body() );
+        Assertions.assertEquals(200, send("POST", "/refresh").statusCode() );
+        Assertions.assertEquals("{\"file\": false, \"folder\": true}", send("GET", "/contains?path=outside").body() );
+    }
+
+    @Test
+    @DisplayName("recent - the latest movies, current after a refresh")
+    void recent() throws Exception {
+        Files.setLastModifiedTime(tmpDir.resolve("dir0/movie1.mp4"), FileTime.fromMillis(4_102_444_800_000L) );
+        Assertions.assertEquals(200, send("POST", "/refresh").statusCode() );
+        Assertions.assertEquals("{\"results\": [{\"path\": \"dir0/movie1.mp4\", \"added\": \"2100-01-01T00:00:00Z\"}]}",
+                send("GET", "/recent?limit=1").body() );
+        Assertions.assertEquals(400, send("GET", "/recent?limit=0").statusCode() );
+    }
+
+    @Test
+    @DisplayName("refresh - file operations wait for a running scan, concurrent refreshes share a scan")
+    void concurrentRefresh() throws Exception {
+        server.stop();
+        AtomicInteger scans = new AtomicInteger();
+        CountDownLatch scanning = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        server = new CollectionServer( () -> {
+            if (scans.incrementAndGet() == 2) {
+                scanning.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            return new MovieCollection(tmpDir.toString() );
+        }, 0);
+        server.start();
+        CompletableFuture<HttpResponse<String>> first = sendAsync("POST", "/refresh");
+        Assertions.assertTrue(scanning.await(5, TimeUnit.SECONDS) );
+        CompletableFuture<HttpResponse<String>> move = sendAsync("POST", "/move?from=movie0.mp4&to=dir0%2Fmovie0.mp4");
+        CompletableFuture<HttpResponse<String>> second = sendAsync("POST", "/refresh");
+        CompletableFuture<HttpResponse<String>> third = sendAsync("POST", "/refresh");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (server.queuedWrites() < 3 && System.nanoTime() < deadline) { // the move and both refreshes wait
+            Thread.onSpinWait();
+        }
+        Assertions.assertEquals(3, server.queuedWrites() );
+        Assertions.assertFalse(move.isDone() );
+        Assertions.assertTrue(Files.exists(tmpDir.resolve("movie0.mp4") ) );
+        release.countDown();
+        for (CompletableFuture<HttpResponse<String>> response : List.of(first, move, second, third) ) {
+            Assertions.assertEquals(200, response.get(5, TimeUnit.SECONDS).statusCode() );
+        }
+        Assertions.assertEquals(3, scans.get() ); // the second and third refresh shared a scan
+        Assertions.assertEquals("{\"file\": true, \"folder\": false}",
+                send("GET", "/contains?path=dir0%2Fmovie0.mp4").body() );
+        Assertions.assertEquals("{\"file\": false, \"folder\": false}",
+                send("GET", "/contains?path=movie0.mp4").body() );
+    }
+
+    @Test
+    @DisplayName("stats - a failed periodic refresh is kept, the last good scan is still served")
+    void failedRefresh() throws Exception {
+        server.stop();
+        AtomicInteger scans = new AtomicInteger();
+        server = new CollectionServer( () -> {
+            if (scans.incrementAndGet() > 1) {
+                throw new IllegalStateException("scan failed");
+            }
+            return new MovieCollection(tmpDir.toString() );
+        }, 0);
+        server.start();
+        Assertions.assertTrue(server.getLastFailure().isEmpty() );
+        Assertions.assertTrue(send("GET", "/stats").body().startsWith("{\"lastFailure\": null, \"metrics\": ") );
+        server.refreshEvery(1, TimeUnit.MILLISECONDS);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (server.getLastFailure().isEmpty() && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        Assertions.assertEquals("scan failed", server.getLastFailure().get().getMessage() );
+        Assertions.assertTrue(send("GET", "/stats").body().startsWith(
+                "{\"lastFailure\": \"java.lang.IllegalStateException: scan failed\", \"metrics\": ") );
+        Assertions.assertEquals("{\"file\": true, \"folder\": false}",
+                send("GET", "/contains?path=movie0.mp4").body() ); // the last good scan is still served
+    }
+}
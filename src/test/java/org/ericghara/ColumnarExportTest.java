@@ -0,0 +1,63 @@
+package org.ericghara;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+@DisplayName("ColumnarExportTest")
+public class ColumnarExportTest {
+
+    @TempDir
+    Path tmpDir;
+
+    @Test
+    @DisplayName("exportColumnar - every folder and file round trips through the reader")
+    void roundTrip() throws IOException {
+        Path root = Files.createDirectory(tmpDir.resolve("root") );
+        new TestMovieDir("Example.csv", root);
+        MovieCollection collection = new MovieCollection(root.toString() );
+        Path snapshot = tmpDir.resolve("collection.mvcl");
+        collection.exportColumnar(snapshot);
+        try (ColumnarReader reader = new ColumnarReader(snapshot) ) {
+            Assertions.assertEquals(3, reader.numFolders() );
+            Assertions.assertEquals(8, reader.numFiles() );
+            Assertions.assertEquals(-1, reader.folderParent(0) );
+            Assertions.assertEquals(root, reader.folderPath(0) );
+            Set<Path> folders = new HashSet<>();
+            for (int i = 0; i < reader.numFolders(); i++) {
+                Assertions.assertTrue(i == 0 || reader.folderParent(i) < i); // breadth first
+                folders.add(reader.folderPath(i) );
+            }
+            Assertions.assertEquals(Set.of(root, root.resolve("dir0"), root.resolve("dir0/subs") ), folders);
+            Map<Path, Integer> files = new HashMap<>();
+            for (int i = 0; i < reader.numFiles(); i++) {
+                Path file = reader.filePath(i);
+                files.put(file, i);
+                Assertions.assertTrue(collection.containsFile(file), file.toString() );
+                Assertions.assertEquals(Files.size(file), reader.fileSize(i) );
+                Assertions.assertEquals(Files.getLastModifiedTime(file).toMillis(), reader.fileModified(i) );
+                Assertions.assertEquals(collection.openFolder(file.getParent(), "").getFileType(file.getFileName() )
+                        .orElseThrow(), reader.fileType(i) );
+            }
+            Assertions.assertEquals(8, files.size() );
+            Assertions.assertEquals("movie right here.mp4", reader.fileName(files.get(root.resolve("dir0/movie right here.mp4") ) ) );
+            Assertions.assertThrows(IllegalArgumentException.class, () -> reader.fileSize(8) );
+        }
+    }
+
+    @Test
+    @DisplayName("ColumnarReader - rejects files which aren't snapshots")
+    void notASnapshot() throws IOException {
+        Path file = Files.write(tmpDir.resolve("junk"), new byte[128]);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new ColumnarReader(file) );
+    }
+}
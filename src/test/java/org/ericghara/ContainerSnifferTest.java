@@ -0,0 +1,106 @@
+package org.ericghara;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+@DisplayName("ContainerSnifferTest")
+public class ContainerSnifferTest {
+
+    // writes a file beginning with the given hex header followed by zeros
+    private static Path writeHeader(Path path, String hex, int length) throws Exception {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < hex.length() / 2; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        }
+        return Files.write(path, bytes);
+    }
+
+    @ParameterizedTest
+    @CsvSource({"1A45DFA3, MATROSKA",
+                "0000001C66747970, MP4",            // ....ftyp
+                "0000001C6D6F6F76, MP4",            // ....moov
+                "00000008776964650000002C6D646174, MP4", // ....wide....mdat, the media data fits in the file
+                "000100006D646174, NONE",           // ....mdat larger than the file
+                "466F722066726565206D6F76696573, NONE", // "For free movies", text
+                "0000000866726565466F722066726565, NONE", // ....freeFor free, not followed by an atom
+                "52494646000000004156492020, AVI",  // RIFF....AVI_
+                "000001BA, MPEG_PS",
+                "3026B2758E66CF11, ASF",
+                "464C56010500000009, FLV",          // FLV, version 1, audio and video, 9 byte header
+                "464C56010500000000, NONE",         // FLV with a bad header size
+                "464C56206973, NONE",               // "FLV is", text
+                "52494646000000005741564520, NONE", // RIFF....WAVE
+                "00, NONE"})
+    @DisplayName("identify - magic numbers")
+    void identify(String hex, ContainerSniffer.Container expected, @TempDir Path tmpDir) throws Exception {
+        Path file = writeHeader(tmpDir.resolve("file"), hex, 64);
+        Assertions.assertEquals(expected, new ContainerSniffer(1).sniff(file) );
+    }
+
+    @Test
+    @DisplayName("identify - transport stream sync bytes")
+    void identifyTransportStream() {
+        ByteBuffer ts = ByteBuffer.allocate(ContainerSniffer.SNIFF_BYTES);
+        for (int i = 0; i < ts.capacity(); i += 188) {
+            ts.put(i, (byte) 0x47);
+        }
+        Assertions.assertEquals(ContainerSniffer.Container.MPEG_TS, ContainerSniffer.identify(ts) );
+        ts.limit(200); // too short to confirm 3 packets
+        Assertions.assertEquals(ContainerSniffer.Container.NONE, ContainerSniffer.identify(ts) );
+    }
+
+    @Test
+    @DisplayName("sniff - cached until the file changes")
+    void cached(@TempDir Path tmpDir) throws Exception {
+        ContainerSniffer sniffer = new ContainerSniffer(1);
+        Path file = writeHeader(tmpDir.resolve("file"), "1A45DFA3", 64);
+        Assertions.assertEquals(ContainerSniffer.Container.MATROSKA, sniffer.sniff(file) );
+        writeHeader(file, "00", 128); // size changed
+        Assertions.assertEquals(ContainerSniffer.Container.NONE, sniffer.sniff(file) );
+    }
+
+    @Test
+    @DisplayName("sniff - the cache is bounded and forgets deleted files")
+    void cacheBounded(@TempDir Path tmpDir) throws Exception {
+        ContainerSniffer sniffer = new ContainerSniffer(1, 2);
+        for (int i = 0; i < 3; i++) {
+            sniffer.sniff(writeHeader(tmpDir.resolve("file" + i), "1A45DFA3", 64) );
+        }
+        Assertions.assertEquals(2, sniffer.cachedResults() );
+        Files.delete(tmpDir.resolve("file2") );
+        Assertions.assertThrows(NoSuchFileException.class, () -> sniffer.sniff(tmpDir.resolve("file2") ) );
+        Assertions.assertEquals(1, sniffer.cachedResults() );
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new ContainerSniffer(1, 0) );
+    }
+
+    @Test
+    @DisplayName("MovieCollection - sniffing reclassifies short and misnamed videos")
+    void collectionReclassifies(@TempDir Path tmpDir) throws Exception {
+        new TestMovieDir("Example.csv", tmpDir);
+        writeHeader(tmpDir.resolve("junk1.mp4"), "0000001C66747970", 1024); // a short film
+        writeHeader(tmpDir.resolve("dir0/junk2.nfo"), "1A45DFA3", 1024);    // misnamed
+        writeHeader(tmpDir.resolve("junk0.nfo"), "466F722066726565", 1024); // "For free", not a video
+        MovieCollection plain = new MovieCollection(tmpDir.toString() );
+        MovieFolder root = plain.openFolder(tmpDir, "couldn't open root");
+        Assertions.assertTrue(root.contains(Path.of("junk1.mp4"), FileType.PossiblyJunk) );
+
+        MovieCollection sniffed = new MovieCollection(tmpDir.toString(),
+                ScanOptions.defaults().sniffer(new ContainerSniffer(2) ).sniffThreads(2) );
+        root = sniffed.openFolder(tmpDir, "couldn't open root");
+        MovieFolder dir0 = sniffed.openFolder(tmpDir.resolve("dir0"), "couldn't open dir0");
+        Assertions.assertTrue(root.contains(Path.of("junk1.mp4"), FileType.Movie) );
+        Assertions.assertTrue(dir0.contains(Path.of("junk2.nfo"), FileType.Movie) );
+        Assertions.assertTrue(root.contains(Path.of("junk0.nfo"), FileType.PossiblyJunk) );
+        Assertions.assertTrue(root.contains(Path.of("sub0.srt"), FileType.Sub) );
+        Assertions.assertEquals(3, dir0.getNum(FileType.Movie) );
+    }
+}
@@ -0,0 +1,74 @@
+package org.ericghara;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@DisplayName("DiskUsageTest")
+public class DiskUsageTest {
+
+    static final long MB = 1024 * 1024;
+
+    @TempDir
+    Path tmpDir;
+    MovieCollection collection;
+    DiskUsage usage;
+
+    @BeforeEach
+    void setup() {
+        new TestMovieDir("Example.csv", tmpDir);
+        collection = new MovieCollection(tmpDir.toString() );
+        usage = new DiskUsage(collection, 2);
+    }
+
+    @ParameterizedTest
+    @CsvSource({"0, 0B", "1023, 1023B", "1536, 1.5K", "52428800, 50M", "10737418240, 10G"})
+    @DisplayName("humanReadable - du -h style sizes")
+    void humanReadable(long bytes, String expected) {
+        Assertions.assertEquals(expected, DiskUsage.humanReadable(bytes) );
+    }
+
+    @Test
+    @DisplayName("totals - per type and per subtree")
+    void totals() {
+        Assertions.assertEquals(153 * MB, usage.totalBytes(tmpDir, FileType.Movie) );
+        Assertions.assertEquals(2 * MB, usage.totalBytes(tmpDir, FileType.Sub) );
+        Assertions.assertEquals(104 * MB, usage.totalBytes(tmpDir.resolve("dir0") ) );
+        Assertions.assertEquals(1 * MB, usage.totalBytes(tmpDir.resolve("dir0/subs") ) );
+        Assertions.assertEquals(List.of(tmpDir.resolve("dir0"), tmpDir.resolve("dir0/subs") ),
+                usage.largestFolders().stream().map(DiskUsage.Entry::getPath).collect(Collectors.toList() ) );
+        Assertions.assertEquals(2, usage.largestFiles().size() );
+        Assertions.assertEquals(51 * MB, usage.largestFiles().get(1).getBytes() );
+        Assertions.assertTrue(usage.report().contains("104M     dir0") );
+    }
+
+    @Test
+    @DisplayName("totals - maintained as files and folders change")
+    void incremental() {
+        long total = usage.totalBytes(tmpDir);
+        collection.moveFile(tmpDir.resolve("movie0.mp4"), tmpDir.resolve("dir0/subs/movie0.mp4") );
+        Assertions.assertEquals(52 * MB, usage.totalBytes(tmpDir.resolve("dir0/subs") ) );
+        Assertions.assertEquals(155 * MB, usage.totalBytes(tmpDir.resolve("dir0") ) );
+        Assertions.assertEquals(total, usage.totalBytes(tmpDir) );
+        Assertions.assertEquals(tmpDir.resolve("dir0/subs"), usage.largestFolders().get(1).getPath() );
+
+        collection.moveFolder(tmpDir.resolve("dir0/subs"), tmpDir.resolve("subs") );
+        Assertions.assertEquals(103 * MB, usage.totalBytes(tmpDir.resolve("dir0") ) );
+        collection.copyFolder(tmpDir.resolve("subs"), tmpDir.resolve("dir0/subs") );
+        Assertions.assertEquals(total + 52 * MB, usage.totalBytes(tmpDir) );
+        collection.deleteFolderRecursive(tmpDir.resolve("dir0") );
+        Assertions.assertEquals(total + 52 * MB - 155 * MB, usage.totalBytes(tmpDir) );
+
+        long maintained = usage.totalBytes(tmpDir);
+        usage.compute();
+        Assertions.assertEquals(maintained, usage.totalBytes(tmpDir) );
+    }
+}
@@ -0,0 +1,82 @@
+package org.ericghara;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+@DisplayName("FederatedCollectionTest")
+public class FederatedCollectionTest {
+
+    @TempDir
+    Path tmpDir;
+    Path volume0;
+    Path volume1;
+    FederatedCollection federated;
+
+    @BeforeEach
+    void setup() throws Exception {
+        volume0 = Files.createDirectory(tmpDir.resolve("volume0") );
+        volume1 = Files.createDirectory(tmpDir.resolve("volume1") );
+        new TestMovieDir("Example.csv", volume0);
+        new TestMovieDir("deleteTopLevelDirs.csv", volume1);
+        federated = new FederatedCollection(List.of(volume0.toString(), volume1.toString() ) );
+    }
+
+    @Test
+    @DisplayName("route - paths resolve to the collection of their root")
+    void route() {
+        Assertions.assertEquals(List.of(volume0, volume1), federated.getRoots() );
+        Assertions.assertSame(federated.getCollection(volume0), federated.route(volume0.resolve("dir0/subs") ).get() );
+        Assertions.assertSame(federated.getCollection(volume1), federated.route(volume1).get() );
+        Assertions.assertTrue(federated.route(tmpDir).isEmpty() );
+        Assertions.assertTrue(federated.containsFile(volume0.resolve("dir0/subs/subsForMovie1.srt") ) );
+        Assertions.assertTrue(federated.containsFolder(volume1.resolve("1/6/9/10") ) );
+        Assertions.assertFalse(federated.containsFolder(volume1.resolve("dir0") ) );
+    }
+
+    @Test
+    @DisplayName("nested roots are rejected")
+    void nestedRoots() {
+        Assertions.assertThrows(IllegalArgumentException.class, () ->
+                new FederatedCollection(List.of(volume0.toString(), volume0.resolve("dir0").toString() ) ) );
+    }
+
+    @Test
+    @DisplayName("moveFile - between roots")
+    void moveFile() {
+        Path source = volume0.resolve("movie0.mp4");
+        Path destination = volume1.resolve("1/movie0.mp4");
+        federated.moveFile(source, destination);
+        Assertions.assertFalse(Files.exists(source) );
+        Assertions.assertTrue(Files.isRegularFile(destination) );
+        Assertions.assertFalse(federated.containsFile(source) );
+        Assertions.assertEquals(FileType.Movie, federated.openFolder(destination.getParent() ).get()
+                .getFileType(destination.getFileName() ).get() );
+        Assertions.assertThrows(IllegalArgumentException.class, () ->
+                federated.moveFile(volume0.resolve("junk0.nfo"), volume1.resolve("1/file0.nfo") ) );
+    }
+
+    @Test
+    @DisplayName("moveFolder - between roots, counts follow")
+    void moveFolder() {
+        Map<FileType, Long> before = federated.counts();
+        Path destination = volume1.resolve("1/dir0");
+        federated.moveFolder(volume0.resolve("dir0"), destination);
+        Assertions.assertFalse(Files.exists(volume0.resolve("dir0") ) );
+        Assertions.assertFalse(federated.containsFolder(volume0.resolve("dir0") ) );
+        Assertions.assertTrue(federated.containsFile(destination.resolve("subs/subsForMovie1.srt") ) );
+        Assertions.assertTrue(Files.isRegularFile(destination.resolve("movie right here.mp4") ) );
+        Assertions.assertEquals(before, federated.counts() );
+        Map<Path, Map<FileType, Long>> byRoot = federated.countsByRoot();
+        Assertions.assertEquals(1L, byRoot.get(volume0).get(FileType.Folder) );
+        Assertions.assertEquals(1L, byRoot.get(volume0).get(FileType.Movie) );
+        Assertions.assertThrows(IllegalArgumentException.class, () -> federated.moveFolder(volume1, volume0.resolve("x") ) );
+    }
+}
@@ -0,0 +1,65 @@
+package org.ericghara;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+@DisplayName("FileCopierTest")
+public class FileCopierTest {
+
+    @TempDir
+    Path tmpDir;
+
+    @Test
+    @DisplayName("copy - each mode makes a copy with the same content")
+    void copy() throws IOException {
+        Path source = Files.writeString(tmpDir.resolve("source.mkv"), "movie");
+        Assertions.assertEquals(FileCopier.CopyMode.COPY,
+                FileCopier.copy(source, tmpDir.resolve("copy.mkv"), FileCopier.CopyMode.COPY) );
+        Assertions.assertFalse(Files.isSameFile(source, tmpDir.resolve("copy.mkv") ) );
+        Assertions.assertEquals(FileCopier.CopyMode.LINK,
+                FileCopier.copy(source, tmpDir.resolve("link.mkv"), FileCopier.CopyMode.LINK) );
+        Assertions.assertTrue(Files.isSameFile(source, tmpDir.resolve("link.mkv") ) );
+        FileCopier.CopyMode made = FileCopier.copy(source, tmpDir.resolve("reflink.mkv"),
+                FileCopier.CopyMode.REFLINK); // a clone if the filesystem supports them, otherwise a link
+        Assertions.assertNotEquals(FileCopier.CopyMode.COPY, made);
+        Assertions.assertEquals("movie", Files.readString(tmpDir.resolve("reflink.mkv") ) );
+        Assertions.assertThrows(FileAlreadyExistsException.class, () ->
+                FileCopier.copy(source, tmpDir.resolve("copy.mkv"), FileCopier.CopyMode.REFLINK) );
+        Assertions.assertEquals("movie", Files.readString(tmpDir.resolve("copy.mkv") ) );
+    }
+
+    @Test
+    @DisplayName("refusesClone - only a filesystem's refusal is remembered, not a transient failure")
+    void refusesClone() {
+        Assertions.assertTrue(FileCopier.refusesClone("cp: failed to clone 'b' from 'a': Operation not supported\n") );
+        Assertions.assertTrue(FileCopier.refusesClone(
+                "cp: failed to clone 'b' from 'a': Invalid cross-device link\n") );
+        Assertions.assertFalse(FileCopier.refusesClone("cp: error writing 'b': No space left on device\n") );
+        Assertions.assertFalse(FileCopier.refusesClone("cp: cannot open 'a' for reading: Permission denied\n") );
+    }
+
+    @Test
+    @DisplayName("copyFolder - linked copy keeps records correct")
+    void copyFolderLinked() {
+        new TestMovieDir("Example.csv", tmpDir);
+        MovieCollection collection = new MovieCollection(tmpDir.toString() );
+        collection.copyFolder(tmpDir.resolve("dir0"), tmpDir.resolve("dir1"), FileCopier.CopyMode.LINK);
+        for (String p : List.of("movie1.mp4", "junk2.nfo", "movie right here.mp4", "subs/subsForMovie1.srt") ) {
+            Assertions.assertTrue(collection.containsFile(tmpDir.resolve("dir1").resolve(p) ), p);
+            Assertions.assertEquals(collection.openFolder(tmpDir.resolve("dir0").resolve(p).getParent(), "")
+                            .getFileType(Path.of(p).getFileName() ),
+                    collection.openFolder(tmpDir.resolve("dir1").resolve(p).getParent(), "")
+                            .getFileType(Path.of(p).getFileName() ) );
+            Assertions.assertDoesNotThrow( () -> Assertions.assertTrue(
+                    Files.isSameFile(tmpDir.resolve("dir0").resolve(p), tmpDir.resolve("dir1").resolve(p) ) ) );
+        }
+    }
+}
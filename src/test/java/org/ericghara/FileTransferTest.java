@@ -0,0 +1,82 @@
+package org.ericghara;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+@DisplayName("FileTransferTest")
+public class FileTransferTest {
+
+    @TempDir
+    Path tmpDir;
+
+    private Path randomFile(String name, int size) throws IOException {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        Path file = Files.write(tmpDir.resolve(name), content);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(1_000_000_000_000L) );
+        return file;
+    }
+
+    @Test
+    @DisplayName("copyAndDelete - verified copy replaces the source")
+    void copyAndDelete() throws IOException {
+        Path source = randomFile("movie.mkv", 3_000_000);
+        byte[] digest = FileTransfer.sha256(source);
+        Files.createDirectory(tmpDir.resolve("dest") );
+        Path destination = tmpDir.resolve("dest/movie.mkv");
+        AtomicLong progress = new AtomicLong();
+        FileTransfer.copyAndDelete(source, destination, FileTransfer.Verification.HASH, progress::addAndGet);
+        Assertions.assertFalse(Files.exists(source) );
+        Assertions.assertArrayEquals(digest, FileTransfer.sha256(destination) );
+        Assertions.assertEquals(3_000_000, progress.get() );
+        Assertions.assertEquals(FileTime.fromMillis(1_000_000_000_000L), Files.getLastModifiedTime(destination) );
+        Assertions.assertEquals(1, Files.list(tmpDir.resolve("dest") ).count() ); // no partial left behind
+    }
+
+    @Test
+    @DisplayName("copyAndDelete - existing destination leaves the source in place")
+    void existingDestination() throws IOException {
+        Path source = randomFile("movie.mkv", 1000);
+        Path destination = randomFile("other.mkv", 10);
+        Assertions.assertThrows(FileAlreadyExistsException.class, () ->
+                FileTransfer.copyAndDelete(source, destination, FileTransfer.Verification.SIZE, (b) -> { } ) );
+        Assertions.assertEquals(1000, Files.size(source) );
+        Assertions.assertEquals(10, Files.size(destination) );
+    }
+
+    @Test
+    @DisplayName("copyAndDelete - a source which can't be deleted rolls the copy back")
+    void sourceNotDeleted() throws IOException {
+        Path source = randomFile("movie.mkv", 1000);
+        Files.createDirectory(tmpDir.resolve("dest") );
+        Path destination = tmpDir.resolve("dest/movie.mkv");
+        Assertions.assertThrows(AccessDeniedException.class, () -> FileTransfer.copyAndDelete(source, destination,
+                FileTransfer.Verification.SIZE, (b) -> { }, (p) -> {
+                    throw new AccessDeniedException(p.toString() );
+                }) );
+        Assertions.assertEquals(1000, Files.size(source) );
+        Assertions.assertEquals(0, Files.list(tmpDir.resolve("dest") ).count() ); // neither the copy nor a partial
+    }
+
+    @Test
+    @DisplayName("sameFileStore - distinguishes filesystems, when a second one is available")
+    void sameFileStore() throws IOException {
+        Path source = randomFile("movie.mkv", 10);
+        Assertions.assertTrue(FileTransfer.sameFileStore(source, tmpDir.resolve("other.mkv") ) );
+        Path shm = Path.of("/dev/shm");
+        Assumptions.assumeTrue(Files.isDirectory(shm) && !Files.getFileStore(shm).equals(Files.getFileStore(tmpDir) ) );
+        Assertions.assertFalse(FileTransfer.sameFileStore(source, shm.resolve("movie.mkv") ) );
+    }
+}
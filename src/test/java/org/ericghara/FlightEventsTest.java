@@ -0,0 +1,59 @@
+package org.ericghara;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@DisplayName("FlightEventsTest")
+public class FlightEventsTest {
+
+    @Test
+    @DisplayName("scan phases and file/folder operations are recorded")
+    void eventsRecorded(@TempDir Path tmpDir) throws Exception {
+        Path movieDir = Files.createDirectory(tmpDir.resolve("movies") );
+        new TestMovieDir("Example.csv", movieDir);
+        Path source = movieDir.resolve("movie0.mp4");
+        Path destination = movieDir.resolve("dir0/movie0.mp4");
+        Path recordingFile = tmpDir.resolve("recording.jfr");
+        try (Recording recording = new Recording() ) {
+            recording.enable(FlightEvents.FileOperationEvent.class).withThreshold(Duration.ZERO);
+            recording.enable(FlightEvents.FolderOperationEvent.class).withThreshold(Duration.ZERO);
+            recording.enable(FlightEvents.ScanPhaseEvent.class).withThreshold(Duration.ZERO);
+            recording.start();
+            MovieCollection collection = new MovieCollection(movieDir.toString() );
+            collection.moveFile(source, destination);
+            Path notEmpty = movieDir.resolve("dir0");
+            Assertions.assertThrows(IllegalArgumentException.class, () -> collection.deleteFolder(notEmpty) );
+            recording.stop();
+            recording.dump(recordingFile);
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(recordingFile);
+        List<RecordedEvent> scans = byName(events, "org.ericghara.ScanPhase");
+        Assertions.assertEquals(2, scans.size() );
+        RecordedEvent move = byName(events, "org.ericghara.FileOperation").get(0);
+        Assertions.assertEquals("moveFile", move.getString("operation") );
+        Assertions.assertEquals(source.toString(), move.getString("source") );
+        Assertions.assertEquals(destination.toString(), move.getString("destination") );
+        Assertions.assertEquals(51L * 1_048_576, move.getLong("bytes") );
+        Assertions.assertTrue(move.getBoolean("succeeded") );
+        RecordedEvent delete = byName(events, "org.ericghara.FolderOperation").get(0);
+        Assertions.assertEquals("deleteFolder", delete.getString("operation") );
+        Assertions.assertFalse(delete.getBoolean("succeeded") );
+    }
+
+    private static List<RecordedEvent> byName(List<RecordedEvent> events, String name) {
+        return events.stream()
+                     .filter( (e) -> e.getEventType().getName().equals(name) )
+                     .collect(Collectors.toList() );
+    }
+}
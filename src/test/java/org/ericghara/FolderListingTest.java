@@ -0,0 +1,94 @@
+package org.ericghara;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+@DisplayName("FolderListingTest")
+public class FolderListingTest {
+
+    static final int NUM_FILES = 25;
+
+    @TempDir
+    Path tmpDir;
+    MovieCollection collection;
+    MovieFolder root;
+
+    // file{i}.nfo is 100 - i bytes, so size order is the reverse of name order
+    @BeforeEach
+    void setup() throws IOException {
+        for (int i = 0; i < NUM_FILES; i++) {
+            Files.write(tmpDir.resolve(String.format("file%02d.nfo", i) ), new byte[100 - i]);
+        }
+        Files.createDirectory(tmpDir.resolve("dir") );
+        collection = new MovieCollection(tmpDir.toString() );
+        root = collection.openFolder(tmpDir).get();
+    }
+
+    private static List<Path> names(IntStream indexes) {
+        return indexes.mapToObj( (i) -> Path.of(String.format("file%02d.nfo", i) ) ).collect(Collectors.toList() );
+    }
+
+    private List<Path> pageThrough(FileType type, FolderListing.Order order, boolean descending, int limit) {
+        List<Path> all = new ArrayList<>();
+        FolderListing.Cursor cursor = null;
+        do {
+            FolderListing.Page page = root.list(type, order, descending, cursor, limit);
+            Assertions.assertTrue(page.getNames().size() <= limit);
+            all.addAll(page.getNames() );
+            cursor = page.next().orElse(null);
+        } while (cursor != null);
+        return all;
+    }
+
+    @Test
+    @DisplayName("list - pages by name, size and in reverse")
+    void list() {
+        FolderListing.Page first = root.list(null, FolderListing.Order.NAME, false, null, 10);
+        Assertions.assertEquals(names(IntStream.range(0, 10) ), first.getNames() );
+        Assertions.assertEquals(names(IntStream.range(0, NUM_FILES) ),
+                pageThrough(null, FolderListing.Order.NAME, false, 10) );
+        Assertions.assertEquals(names(IntStream.range(0, NUM_FILES).map( (i) -> NUM_FILES - 1 - i) ),
+                pageThrough(FileType.PossiblyJunk, FolderListing.Order.SIZE, false, 7) );
+        Assertions.assertEquals(names(IntStream.range(0, NUM_FILES) ),
+                pageThrough(FileType.PossiblyJunk, FolderListing.Order.SIZE, true, 25) );
+        Assertions.assertEquals(List.of(Path.of("dir") ), pageThrough(FileType.Folder, FolderListing.Order.MODIFIED,
+                false, 1) );
+        Assertions.assertTrue(root.list(FileType.Movie, FolderListing.Order.NAME, false, null, 5).getNames().isEmpty() );
+    }
+
+    @Test
+    @DisplayName("list - a cursor stays valid while the folder changes")
+    void mutation() throws IOException {
+        FolderListing.Page first = root.list(null, FolderListing.Order.NAME, false, null, 10);
+        collection.deleteFile(tmpDir.resolve("file05.nfo") );
+        Files.write(tmpDir.resolve("file10a.nfo"), new byte[1]);
+        collection.recordFileAdd(tmpDir.resolve("file10a.nfo"), FileType.PossiblyJunk);
+        FolderListing.Page second = root.list(null, FolderListing.Order.NAME, false, first.next().get(), 2);
+        Assertions.assertEquals(List.of(Path.of("file10.nfo"), Path.of("file10a.nfo") ), second.getNames() );
+    }
+
+    @Test
+    @DisplayName("cursor - tokens round trip, mismatched cursors are rejected")
+    void cursor() {
+        FolderListing.Cursor cursor = root.list(null, FolderListing.Order.SIZE, true, null, 3).next().get();
+        Assertions.assertEquals("SIZE-:98:file02.nfo", cursor.toString() );
+        FolderListing.Cursor parsed = FolderListing.Cursor.parse(cursor.toString() );
+        Assertions.assertEquals(names(IntStream.range(3, 6) ),
+                root.list(null, FolderListing.Order.SIZE, true, parsed, 3).getNames() );
+        Assertions.assertThrows(IllegalArgumentException.class, () ->
+                root.list(null, FolderListing.Order.NAME, true, parsed, 3) );
+        Assertions.assertThrows(IllegalArgumentException.class, () -> FolderListing.Cursor.parse("SIZE:1:x") );
+        Assertions.assertThrows(IllegalArgumentException.class, () -> FolderListing.Cursor.parse("SIZE-:x:x") );
+    }
+}
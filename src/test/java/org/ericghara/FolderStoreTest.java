@@ -0,0 +1,132 @@
+package org.ericghara;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@DisplayName("FolderStoreTest")
+public class FolderStoreTest {
+
+    static final int CACHED_FOLDERS = 2;
+
+    @TempDir
+    Path tmpDir;
+    Path root;
+    MovieCollection spilled;
+
+    @BeforeEach
+    void setup() throws IOException {
+        root = Files.createDirectory(tmpDir.resolve("root") );
+        new TestMovieDir("Example.csv", Files.createDirectory(root.resolve("example") ) );
+        new TestMovieDir("deepDirs.csv", Files.createDirectory(root.resolve("deep") ) );
+        spilled = new MovieCollection(root.toString(), ScanOptions.defaults().spill(tmpDir, CACHED_FOLDERS) );
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        spilled.close();
+    }
+
+    // record files in the spill directory, plus those still open, on Linux a delete on close file is unlinked early
+    private long spillFiles() throws IOException {
+        long open = 0;
+        Path fds = Path.of("/proc/self/fd");
+        if (Files.isDirectory(fds) ) {
+            try (Stream<Path> links = Files.list(fds) ) {
+                open = links.map( (l) -> {
+                    try {
+                        return Files.readSymbolicLink(l).toString();
+                    } catch (IOException e) {
+                        return ""; // closed meanwhile, such as the listing's own
+                    }
+                }).filter( (t) -> t.startsWith(tmpDir.toString() ) && t.contains(".spill") ).count();
+            }
+        }
+        try (Stream<Path> files = Files.list(tmpDir) ) {
+            return Math.max(open, files.filter( (f) -> f.getFileName().toString().endsWith(".spill") ).count() );
+        }
+    }
+
+    // every folder's path mapped to its files and sub-folders
+    private static Map<Path, Set<Path>> contents(MovieCollection collection) {
+        return collection.getSubFolders(collection.getRootPath() ).collect(Collectors.toMap(
+                MovieFolder::getFolderPath,
+                (f) -> {
+                    Set<Path> names = f.getAllFiles().collect(Collectors.toCollection(TreeSet::new) );
+                    names.addAll(f.getFilenames(FileType.Folder) );
+                    return names;
+                },
+                (a, b) -> a, TreeMap::new) );
+    }
+
+    @Test
+    @DisplayName("scan - a spilled tree matches an in memory tree, with a bounded cache")
+    void scan() {
+        FolderStore store = spilled.getFolderStore().get();
+        Assertions.assertEquals(contents(new MovieCollection(root.toString() ) ), contents(spilled) );
+        Assertions.assertTrue(store.cachedFolders() <= CACHED_FOLDERS);
+        Assertions.assertTrue(store.fileBytes() > 0);
+        Assertions.assertTrue(spilled.containsFile(root.resolve("deep/dir0/dir1/dir2/dir3/subs1/subs1.srt") ) );
+        Assertions.assertTrue(spilled.openFolder(root.resolve("deep/dir8") ).isEmpty() );
+    }
+
+    @Test
+    @DisplayName("changes - survive eviction, referenced folders keep their identity")
+    void changes() {
+        MovieFolder example = spilled.openFolder(root.resolve("example") ).get();
+        spilled.moveFolder(root.resolve("example/dir0"), root.resolve("deep/dir7/dir0") );
+        spilled.deleteFile(root.resolve("example/junk0.nfo") );
+        spilled.getSubFolders(root).count(); // cycles every folder through the cache
+        Assertions.assertSame(example, spilled.openFolder(root.resolve("example") ).get() );
+        Assertions.assertFalse(spilled.containsFile(root.resolve("example/junk0.nfo") ) );
+        Assertions.assertFalse(spilled.containsFolder(root.resolve("example/dir0") ) );
+        MovieFolder moved = spilled.openFolder(root.resolve("deep/dir7/dir0/subs") ).get();
+        Assertions.assertEquals(root.resolve("deep/dir7/dir0/subs"), moved.getFolderPath() );
+        Assertions.assertEquals(4, moved.getDepth() );
+        Assertions.assertEquals(contents(new MovieCollection(root.toString() ) ), contents(spilled) );
+    }
+
+    @Test
+    @DisplayName("close - deletes the record file, also when the scan fails")
+    void deletesRecordFile() throws IOException {
+        Assertions.assertEquals(1, spillFiles() );
+        spilled.close();
+        Assertions.assertEquals(0, spillFiles() );
+        ScanOptions unlistable = ScanOptions.defaults().spill(tmpDir, CACHED_FOLDERS).retries(1, Duration.ZERO)
+                .check( (p) -> {
+                    if (p.equals(root) ) {
+                        throw new AccessDeniedException(p.toString() );
+                    }
+                });
+        Assertions.assertThrows(IllegalArgumentException.class, () ->
+                new MovieCollection(root.toString(), unlistable) );
+        Assertions.assertEquals(0, spillFiles() );
+        FederatedCollection federated = new FederatedCollection(List.of(root.resolve("example").toString(),
+                root.resolve("deep").toString() ), ScanOptions.defaults().spill(tmpDir, CACHED_FOLDERS) );
+        Assertions.assertEquals(2, spillFiles() );
+        federated.close();
+        Assertions.assertEquals(0, spillFiles() );
+    }
+
+    @Test
+    @DisplayName("spill - rejects an invalid cache size")
+    void invalid() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ScanOptions.defaults().spill(tmpDir, 0) );
+    }
+}
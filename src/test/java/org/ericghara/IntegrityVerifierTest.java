@@ -0,0 +1,148 @@
+package org.ericghara;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+@DisplayName("IntegrityVerifierTest")
+public class IntegrityVerifierTest {
+
+    @TempDir
+    Path tmpDir;
+
+    private Path write(String name, byte[] bytes) throws IOException {
+        return Files.write(tmpDir.resolve(name), bytes);
+    }
+
+    private static IntegrityVerifier.Status check(Path file) {
+        return IntegrityVerifier.check(file).getStatus();
+    }
+
+    private static byte[] truncate(byte[] bytes, int remove) {
+        return Arrays.copyOf(bytes, bytes.length - remove);
+    }
+
+    private static byte[] mp4Box(String type, int dataBytes) {
+        ByteBuffer box = ByteBuffer.allocate(8 + dataBytes);
+        box.putInt(8 + dataBytes).put(type.getBytes(StandardCharsets.US_ASCII) );
+        return box.array();
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] p : parts) {
+            out.writeBytes(p);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] mp4(boolean moov) {
+        return concat(mp4Box("ftyp", 8), moov ? mp4Box("moov", 100) : new byte[0], mp4Box("mdat", 10_000) );
+    }
+
+    // an element with a 2 byte size
+    private static byte[] ebml(int id, byte[] data) {
+        ByteBuffer e = ByteBuffer.allocate(4 + 2 + data.length);
+        e.putInt(id).putShort( (short) (0x4000 | data.length) ).put(data);
+        return e.array();
+    }
+
+    private static byte[] mkv(boolean cluster) {
+        byte[] children = concat(ebml(0x1549A966, new byte[20]), ebml(0x1654AE6B, new byte[50]),
+                cluster ? ebml(0x1F43B675, new byte[10_000]) : new byte[0]);
+        ByteBuffer segment = ByteBuffer.allocate(4 + 8 + children.length);
+        segment.putInt(0x18538067).putLong(0x0100000000000000L | children.length).put(children);
+        return concat(ebml(0x1A45DFA3, new byte[30]), segment.array() );
+    }
+
+    private static byte[] avi() {
+        ByteBuffer b = ByteBuffer.allocate(12 + 8 + 4 + 100 + 8 + 4 + 5_000).order(ByteOrder.LITTLE_ENDIAN);
+        b.put("RIFF".getBytes(StandardCharsets.US_ASCII) ).putInt(b.capacity() - 8)
+         .put("AVI ".getBytes(StandardCharsets.US_ASCII) )
+         .put("LIST".getBytes(StandardCharsets.US_ASCII) ).putInt(104).put("hdrl".getBytes(StandardCharsets.US_ASCII) )
+         .position(b.position() + 100)
+         .put("LIST".getBytes(StandardCharsets.US_ASCII) ).putInt(5_004)
+         .put("movi".getBytes(StandardCharsets.US_ASCII) );
+        return b.array();
+    }
+
+    private static byte[] ts(int packets) {
+        byte[] bytes = new byte[188 * packets];
+        for (int i = 0; i < packets; i++) {
+            bytes[188 * i] = 0x47;
+        }
+        return bytes;
+    }
+
+    @Test
+    @DisplayName("mp4 - complete, truncated and without a moov box")
+    void mp4() throws IOException {
+        Assertions.assertEquals(IntegrityVerifier.Status.OK, check(write("ok.mp4", mp4(true) ) ) );
+        IntegrityVerifier.Result truncated = IntegrityVerifier.check(write("short.mp4", truncate(mp4(true), 1) ) );
+        Assertions.assertEquals(IntegrityVerifier.Status.TRUNCATED, truncated.getStatus() );
+        Assertions.assertTrue(truncated.getDetail().startsWith("box 'mdat'") );
+        Assertions.assertEquals(IntegrityVerifier.Status.CORRUPT, check(write("nomoov.mp4", mp4(false) ) ) );
+    }
+
+    @Test
+    @DisplayName("mkv - complete, truncated and without clusters")
+    void mkv() throws IOException {
+        Assertions.assertEquals(IntegrityVerifier.Status.OK, check(write("ok.mkv", mkv(true) ) ) );
+        Assertions.assertEquals(IntegrityVerifier.Status.TRUNCATED, check(write("short.mkv", truncate(mkv(true), 10) ) ) );
+        Assertions.assertEquals(IntegrityVerifier.Status.CORRUPT, check(write("empty.mkv", mkv(false) ) ) );
+    }
+
+    @Test
+    @DisplayName("avi and ts - complete and truncated")
+    void aviAndTs() throws IOException {
+        Assertions.assertEquals(IntegrityVerifier.Status.OK, check(write("ok.avi", avi() ) ) );
+        Assertions.assertEquals(IntegrityVerifier.Status.TRUNCATED, check(write("short.avi", truncate(avi(), 100) ) ) );
+        Assertions.assertEquals(IntegrityVerifier.Status.OK, check(write("ok.ts", ts(20) ) ) );
+        Assertions.assertEquals(IntegrityVerifier.Status.TRUNCATED, check(write("short.ts", truncate(ts(20), 50) ) ) );
+    }
+
+    @Test
+    @DisplayName("preallocated zeros are corrupt, unknown content is unchecked")
+    void unrecognized() throws IOException {
+        Assertions.assertEquals(IntegrityVerifier.Status.CORRUPT, check(write("zeros.mkv", new byte[10_000]) ) );
+        Assertions.assertEquals(IntegrityVerifier.Status.UNCHECKED,
+                check(write("text.mkv", "not a video".getBytes(StandardCharsets.US_ASCII) ) ) );
+        Assertions.assertEquals(IntegrityVerifier.Status.UNREADABLE, check(tmpDir.resolve("missing.mkv") ) );
+    }
+
+    @Test
+    @DisplayName("verify - checks every movie of a collection")
+    void verify() throws IOException {
+        new TestMovieDir("Example.csv", tmpDir);
+        Path movie = tmpDir.resolve("movie0.mp4");
+        // give one movie a valid structure: ftyp, moov and an mdat filling the rest of the file
+        try (FileChannel channel = FileChannel.open(movie, StandardOpenOption.WRITE) ) {
+            byte[] head = concat(mp4Box("ftyp", 8), mp4Box("moov", 100) );
+            ByteBuffer mdat = ByteBuffer.allocate(8).putInt( (int) (channel.size() - head.length) )
+                                        .put("mdat".getBytes(StandardCharsets.US_ASCII) ).flip();
+            channel.write(ByteBuffer.wrap(head), 0);
+            channel.write(mdat, head.length);
+        }
+        MovieCollection collection = new MovieCollection(tmpDir.toString() );
+        IntegrityVerifier.Report report = new IntegrityVerifier(collection, 2).verify();
+        Assertions.assertEquals(3, report.getResults().size() );
+        Assertions.assertEquals(Map.of(IntegrityVerifier.Status.OK, 1, IntegrityVerifier.Status.CORRUPT, 2),
+                report.counts() );
+        List<IntegrityVerifier.Result> problems = report.getProblems();
+        Assertions.assertFalse(problems.stream().anyMatch( (r) -> r.getPath().equals(movie) ) );
+    }
+}
@@ -0,0 +1,77 @@
+package org.ericghara;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@DisplayName("JunkCleanerTest")
+public class JunkCleanerTest {
+
+    @TempDir
+    Path tmpDir;
+    MovieCollection collection;
+    JunkCleaner cleaner;
+
+    @BeforeEach
+    void setup() {
+        new TestMovieDir("deleteTopLevelDirs.csv", tmpDir);
+        collection = new MovieCollection(tmpDir.toString() );
+        cleaner = new JunkCleaner(collection);
+    }
+
+    @Test
+    @DisplayName("plan - junk files and folders left empty, bottom-up, nothing modified")
+    void plan() {
+        TreeDeleter.Plan plan = cleaner.plan(tmpDir);
+        Assertions.assertEquals(2, plan.numFiles() ); // file0.nfo and file1.mp4
+        Assertions.assertEquals(9, plan.numFolders() ); // 0, 1/2, 1/3, 1/4/5 and 1/6 with its 4 descendants
+        Assertions.assertTrue(plan.report().endsWith(String.format("2 files (%d bytes) and 9 folders would be deleted%n",
+                6 * 1024 * 1024) ) );
+        Assertions.assertTrue(Files.exists(tmpDir.resolve("1/6/7/8") ) );
+        Assertions.assertTrue(collection.containsFile(tmpDir.resolve("1/file0.nfo") ) );
+    }
+
+    @Test
+    @DisplayName("execute - filesystem and records updated")
+    void execute() {
+        TreeDeleter.Report report = cleaner.execute(cleaner.plan(tmpDir) );
+        Assertions.assertTrue(report.isComplete() );
+        Assertions.assertEquals(9, report.getDeletedFolders().size() );
+        for (Path p : List.of(tmpDir.resolve("0"), tmpDir.resolve("1/6"), tmpDir.resolve("1/4/5"),
+                tmpDir.resolve("1/file1.mp4") ) ) {
+            Assertions.assertFalse(Files.exists(p) );
+            Assertions.assertFalse(collection.containsFolder(p) || collection.containsFile(p) );
+        }
+        Assertions.assertTrue(collection.containsFile(tmpDir.resolve("1/file2.part") ) );
+        Assertions.assertTrue(collection.containsFile(tmpDir.resolve("1/4/file3.srt") ) );
+        Assertions.assertEquals(Set.of(tmpDir.resolve("1/4") ),
+                Set.copyOf(collection.openFolder(tmpDir.resolve("1"), "").getFolders().stream()
+                        .map(MovieFolder::getFolderPath).collect(Collectors.toList() ) ) );
+        Assertions.assertTrue(cleaner.plan(tmpDir).isEmpty() );
+    }
+
+    @Test
+    @DisplayName("execute - failures reported and block parent folders")
+    void partialFailure() throws Exception {
+        Files.createFile(tmpDir.resolve("1/6/7/8/untracked") ); // not in the collection, so 8 can't be deleted
+        TreeDeleter.Report report = cleaner.execute(cleaner.plan(tmpDir) );
+        Assertions.assertFalse(report.isComplete() );
+        Assertions.assertEquals(Set.of(tmpDir.resolve("1/6/7/8"), tmpDir.resolve("1/6/7"), tmpDir.resolve("1/6") ),
+                report.getFailures().keySet() );
+        Assertions.assertTrue(report.getFailures().values().stream()
+                .allMatch( (e) -> e instanceof DirectoryNotEmptyException) );
+        Assertions.assertTrue(collection.containsFolder(tmpDir.resolve("1/6/7/8") ) );
+        Assertions.assertFalse(collection.containsFolder(tmpDir.resolve("1/6/9") ) );
+        Assertions.assertFalse(Files.exists(tmpDir.resolve("1/6/9") ) );
+        Assertions.assertFalse(collection.containsFile(tmpDir.resolve("1/file0.nfo") ) );
+    }
+}
@@ -0,0 +1,71 @@
+package org.ericghara;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+@DisplayName("MetricsTest")
+public class MetricsTest {
+
+    @AfterEach
+    void teardown() {
+        Metrics.setEnabled(false);
+        Metrics.reset();
+    }
+
+    @Test
+    @DisplayName("disabled metrics record nothing")
+    void disabledRecordsNothing() {
+        Metrics.setEnabled(false);
+        Metrics.Counter counter = Metrics.counter("test.disabled.counter");
+        Metrics.Timer timer = Metrics.timer("test.disabled.timer");
+        counter.increment();
+        long start = timer.start();
+        Assertions.assertEquals(0L, start);
+        timer.stop(start);
+        Assertions.assertEquals(0L, counter.get() );
+        Assertions.assertEquals(0L, timer.getCount() );
+    }
+
+    @Test
+    @DisplayName("histogram percentiles are bucket upper bounds")
+    void histogramPercentiles() {
+        Metrics.setEnabled(true);
+        Metrics.Histogram histogram = Metrics.histogram("test.histogram");
+        for (long v = 1; v <= 100; v++) {
+            histogram.record(v);
+        }
+        Assertions.assertEquals(100L, histogram.getCount() );
+        Assertions.assertEquals(5050L, histogram.getSum() );
+        Assertions.assertEquals(100L, histogram.getMax() );
+        Assertions.assertEquals(63L, histogram.percentile(0.5) );   // 50 falls in [32, 63]
+        Assertions.assertEquals(100L, histogram.percentile(0.99) ); // capped by max
+    }
+
+    @Test
+    @DisplayName("a name can only be registered as one kind of metric")
+    void registrationConflict() {
+        Metrics.counter("test.conflict");
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Metrics.timer("test.conflict") );
+    }
+
+    @Test
+    @DisplayName("scan and file operations are instrumented")
+    void collectionInstrumented(@TempDir Path tmpDir) {
+        Metrics.setEnabled(true);
+        new TestMovieDir("Example.csv", tmpDir);
+        MovieCollection collection = new MovieCollection(tmpDir.toString() );
+        collection.copyFile(tmpDir.resolve("movie0.mp4"), tmpDir.resolve("movie0 (copy).mp4") );
+        Assertions.assertEquals(1L, Metrics.timer("scan.walk").getCount() );
+        Assertions.assertEquals(8L, Metrics.counter("scan.files").get() );
+        Assertions.assertEquals(1L, Metrics.timer("io.copyFile").getCount() );
+        Assertions.assertEquals(51L * 1_048_576, Metrics.counter("io.copyFile.bytes").get() );
+        String json = Metrics.snapshotJson();
+        Assertions.assertTrue(json.startsWith("{\"enabled\":true,\"counters\":{") );
+        Assertions.assertTrue(json.contains("\"io.copyFile.bytes\":" + 51L * 1_048_576) );
+    }
+}
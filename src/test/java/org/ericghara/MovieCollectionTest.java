@@ -12,6 +12,7 @@ import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.LinkOption;
 import java.nio.file.Path;
@@ -20,6 +21,7 @@ import java.util.Collection;
 import java.util.Comparator;
 import java.util.LinkedList;
 import java.util.Objects;
+import java.util.Set;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Stream;
@@ -187,6 +189,30 @@ public class MovieCollectionTest {
             });
         }
 
+        @ParameterizedTest
+        @ValueSource(strings = {"deleteTopLevelDirs.csv"} )
+        @DisplayName("deleteFolderRecursive - Deletion of non-empty subtrees")
+        void deleteFolderRecursive(String csv) throws IOException {
+            setup(csv);
+            Path one = tmpDir.resolve("1");
+            Files.createFile(one.resolve("6/9/untracked") ); // not in the collection, so 9 can't be deleted
+            TreeDeleter.Report report = collection.deleteFolderRecursive(one);
+            Assertions.assertFalse(report.isComplete() );
+            Assertions.assertEquals(Set.of(one.resolve("6/9"), one.resolve("6"), one), report.getFailures().keySet() );
+            Assertions.assertTrue(collection.containsFolder(one.resolve("6/9") ) );
+            Assertions.assertFalse(collection.containsFolder(one.resolve("6/9/10") ) );
+            Assertions.assertFalse(collection.containsFolder(one.resolve("4") ) );
+            Assertions.assertFalse(collection.containsFile(one.resolve("file0.nfo") ) );
+
+            Files.delete(one.resolve("6/9/untracked") );
+            report = collection.deleteFolderRecursive(one);
+            Assertions.assertTrue(report.isComplete() );
+            Assertions.assertFalse(Files.exists(one, LinkOption.NOFOLLOW_LINKS) );
+            Assertions.assertFalse(collection.containsFolder(one) );
+            Assertions.assertThrows(IllegalArgumentException.class,
+                    () -> collection.deleteFolderRecursive(tmpDir) );
+        }
+
         @ParameterizedTest
         @ValueSource(strings = {"deepDirs.csv"} )
         @DisplayName("moveFolder - move all folders into the root dir")
@@ -0,0 +1,84 @@
+package org.ericghara;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+@DisplayName("RecentAdditionsTest")
+public class RecentAdditionsTest {
+
+    @TempDir
+    Path tmpDir;
+    MovieCollection collection;
+    long now;
+
+    // the movies are modified in the future, so they are newer than their creation and than anything copied now
+    @BeforeEach
+    void setup() throws IOException {
+        new TestMovieDir("Example.csv", tmpDir);
+        now = System.currentTimeMillis();
+        modified("movie0.mp4", 1);
+        modified("dir0/movie1.mp4", 2);
+        modified("dir0/movie right here.mp4", 3);
+        collection = new MovieCollection(tmpDir.toString() );
+    }
+
+    private void modified(String file, int hoursFromNow) throws IOException {
+        Files.setLastModifiedTime(tmpDir.resolve(file),
+                FileTime.fromMillis(now + TimeUnit.HOURS.toMillis(hoursFromNow) ) );
+    }
+
+    private List<Path> latest(RecentAdditions recent, int n) {
+        return recent.latest(n).stream().map( (e) -> tmpDir.relativize(e.getPath() ) ).collect(Collectors.toList() );
+    }
+
+    @Test
+    @DisplayName("latest - newest first, bounded by the capacity, from the scanned times")
+    void latest() {
+        RecentAdditions recent = new RecentAdditions(collection, FileType.Movie, 2);
+        Assertions.assertEquals(List.of(Path.of("dir0/movie right here.mp4"), Path.of("dir0/movie1.mp4") ),
+                latest(recent, 5) );
+        Assertions.assertEquals(now + TimeUnit.HOURS.toMillis(3), recent.latest(1).get(0).getAddedTime() );
+        Assertions.assertEquals(8, new RecentAdditions(collection, null, 100).latest(100).size() );
+        Assertions.assertEquals(now + TimeUnit.HOURS.toMillis(1),
+                collection.openFolder(tmpDir).get().getChangeTime() );
+        Assertions.assertThrows(IllegalArgumentException.class, () -> recent.latest(0) );
+    }
+
+    @Test
+    @DisplayName("updates - moves keep their time, copies are new, removals drop out")
+    void updates() {
+        RecentAdditions recent = new RecentAdditions(collection, FileType.Movie, 4);
+        collection.moveFolder(tmpDir.resolve("dir0"), tmpDir.resolve("moved") );
+        collection.copyFile(tmpDir.resolve("movie0.mp4"), tmpDir.resolve("copy.mp4") );
+        Assertions.assertEquals(List.of(Path.of("moved/movie right here.mp4"), Path.of("moved/movie1.mp4"),
+                Path.of("movie0.mp4"), Path.of("copy.mp4") ), latest(recent, 4) );
+        collection.moveFile(tmpDir.resolve("moved/movie1.mp4"), tmpDir.resolve("movie1.mp4") );
+        collection.deleteFile(tmpDir.resolve("moved/movie right here.mp4") );
+        Assertions.assertEquals(List.of(Path.of("movie1.mp4"), Path.of("movie0.mp4"), Path.of("copy.mp4") ),
+                latest(recent, 4) );
+        recent.close();
+        collection.deleteFile(tmpDir.resolve("movie1.mp4") );
+        Assertions.assertEquals(3, recent.latest(4).size() );
+    }
+
+    @Test
+    @DisplayName("latest - rebuilds once removals leave fewer entries than requested")
+    void truncated() {
+        RecentAdditions recent = new RecentAdditions(collection, FileType.Movie, 2);
+        collection.deleteFile(tmpDir.resolve("dir0/movie right here.mp4") );
+        Assertions.assertEquals(List.of(Path.of("dir0/movie1.mp4"), Path.of("movie0.mp4") ), latest(recent, 2) );
+        collection.deleteFile(tmpDir.resolve("dir0/movie1.mp4") );
+        Assertions.assertEquals(List.of(Path.of("movie0.mp4") ), latest(recent, 2) );
+    }
+}
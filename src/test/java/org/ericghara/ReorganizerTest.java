@@ -0,0 +1,105 @@
+package org.ericghara;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+@DisplayName("ReorganizerTest")
+public class ReorganizerTest {
+
+    @TempDir
+    Path tmpDir;
+    MovieCollection collection;
+    Reorganizer reorganizer;
+
+    @BeforeEach
+    void setup() {
+        new TestMovieDir("reorganize.csv", tmpDir);
+        collection = new MovieCollection(tmpDir.toString() );
+        reorganizer = new Reorganizer(collection);
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {"Some.Movie.2010.1080p.BluRay|Some Movie (2010)",
+            "Other_Film_1999|Other Film (1999)", "Third Movie (2001)|Third Movie (2001)",
+            "2001.A.Space.Odyssey.1968.REMASTERED|2001 A Space Odyssey (1968)",
+            "Blade Runner 2049 [2017]|Blade Runner 2049 (2017)", "Movie - 1999|Movie (1999)"})
+    @DisplayName("canonicalName - title and year parsed from names")
+    void canonicalName(String name, String expected) {
+        Assertions.assertEquals(Optional.of(expected), Reorganizer.canonicalName(name) );
+    }
+
+    @Test
+    @DisplayName("canonicalName - names without a title and year")
+    void canonicalNameEmpty() {
+        Assertions.assertEquals(Optional.empty(), Reorganizer.canonicalName("random") );
+        Assertions.assertEquals(Optional.empty(), Reorganizer.canonicalName("2010") );
+        Assertions.assertEquals(Optional.empty(), Reorganizer.canonicalName("Movie 12010") );
+    }
+
+    @Test
+    @DisplayName("plan - folder renames preferred over file moves")
+    void plan() {
+        Reorganizer.Plan plan = reorganizer.plan();
+        Assertions.assertEquals(List.of(BatchMover.Move.folder(tmpDir.resolve("Some.Movie.2010.1080p.BluRay"),
+                tmpDir.resolve("Some Movie (2010)") ) ), plan.getFolderMoves() );
+        Assertions.assertEquals(List.of(tmpDir.resolve("Other Film (1999)"), tmpDir.resolve("Alpha (2004)"),
+                tmpDir.resolve("Beta (2005)") ), plan.getNewFolders() );
+        Assertions.assertTrue(plan.getFileMoves().contains(BatchMover.Move.file(
+                tmpDir.resolve("Some Movie (2010)/Some.Movie.2010.1080p.BluRay.en.srt"),
+                tmpDir.resolve("Some Movie (2010)/Some Movie (2010).en.srt") ) ) );
+        Assertions.assertEquals(6, plan.getFileMoves().size() );
+        Assertions.assertEquals(List.of(tmpDir.resolve("random.mp4") ), plan.getUnparsed() );
+        Assertions.assertTrue(plan.getConflicts().isEmpty() );
+        Assertions.assertTrue(Files.exists(tmpDir.resolve("Some.Movie.2010.1080p.BluRay") ) );
+    }
+
+    @Test
+    @DisplayName("execute - canonical layout on disk and in the records")
+    void execute() {
+        BatchMover.Report report = reorganizer.execute(reorganizer.plan() );
+        Assertions.assertTrue(report.isComplete() );
+        Assertions.assertEquals(7, report.getMoved().size() );
+        for (String p : List.of("Some Movie (2010)/Some Movie (2010).mkv", "Some Movie (2010)/Some Movie (2010).en.srt",
+                "Some Movie (2010)/sample.nfo", "Other Film (1999)/Other Film (1999).mp4",
+                "Other Film (1999)/Other Film (1999).eng.srt", "Third Movie (2001)/Third Movie (2001).mkv",
+                "Alpha (2004)/Alpha (2004).mkv", "Beta (2005)/Beta (2005).mkv", "random.mp4") ) {
+            Assertions.assertTrue(Files.exists(tmpDir.resolve(p) ), p);
+            Assertions.assertTrue(collection.containsFile(tmpDir.resolve(p) ), p);
+        }
+        Assertions.assertFalse(collection.containsFolder(tmpDir.resolve("Some.Movie.2010.1080p.BluRay") ) );
+        Assertions.assertTrue(collection.openFolder(tmpDir.resolve("Pack"), "").isEmpty() );
+        Assertions.assertEquals(0, reorganizer.plan().numMoves() ); // idempotent
+    }
+
+    @Test
+    @DisplayName("plan - targets a rename vacates are created, the renamed folder's files keep their names")
+    void planVacated() throws IOException {
+        Path dir = Files.createDirectory(tmpDir.resolve("vacated") );
+        new TestMovieDir("reorganizeVacated.csv", dir);
+        collection = new MovieCollection(dir.toString() );
+        reorganizer = new Reorganizer(collection);
+        Reorganizer.Plan plan = reorganizer.plan();
+        Assertions.assertEquals(List.of(BatchMover.Move.folder(dir.resolve("Foo (2000)"), dir.resolve("Bar (2001)") ) ),
+                plan.getFolderMoves() );
+        Assertions.assertEquals(List.of(dir.resolve("Foo (2000)") ), plan.getNewFolders() );
+        Assertions.assertEquals(List.of(BatchMover.Move.file(dir.resolve("Bar (2001)/Bar.2001.mkv"),
+                dir.resolve("Bar (2001)/Bar (2001).mkv") ) ), plan.getConflicts() );
+        BatchMover.Report report = reorganizer.execute(plan);
+        Assertions.assertTrue(report.isComplete() );
+        for (String p : List.of("Bar (2001)/Bar.2001.mkv", "Bar (2001)/Bar (2001).mkv", "Foo (2000)/Foo (2000).mkv") ) {
+            Assertions.assertTrue(Files.exists(dir.resolve(p) ), p);
+            Assertions.assertTrue(collection.containsFile(dir.resolve(p) ), p);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package org.ericghara;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@DisplayName("RetryLaneTest")
+public class RetryLaneTest {
+
+    @TempDir
+    Path tmpDir;
+    Map<Path, AtomicInteger> checks;
+
+    @BeforeEach
+    void setup() {
+        new TestMovieDir("Example.csv", tmpDir);
+        checks = new ConcurrentHashMap<>();
+    }
+
+    // fails the first failures checks of path with the error
+    private ScanOptions.PathCheck failing(Path path, int failures, IOException error) {
+        return (p) -> {
+            if (p.equals(path) && checks.computeIfAbsent(p, (k) -> new AtomicInteger() ).incrementAndGet() <= failures) {
+                throw error;
+            }
+        };
+    }
+
+    private MovieCollection scan(ScanOptions.PathCheck... failing) {
+        ScanOptions.PathCheck check = (p) -> {
+            for (ScanOptions.PathCheck c : failing) {
+                c.check(p);
+            }
+        };
+        return new MovieCollection(tmpDir.toString(), ScanOptions.defaults().retries(3, Duration.ofMillis(5) )
+                                                                 .check(check) );
+    }
+
+    @Test
+    @DisplayName("scan - transient listing and stat errors recover on a retry")
+    void recovers() {
+        IOException eio = new IOException("Input/output error");
+        MovieCollection collection = scan(failing(tmpDir.resolve("dir0"), 1, eio),
+                failing(tmpDir.resolve("movie0.mp4"), 2, eio) );
+        Assertions.assertTrue(collection.containsFile(tmpDir.resolve("dir0/subs/subsForMovie1.srt") ) );
+        Assertions.assertTrue(collection.containsFile(tmpDir.resolve("movie0.mp4") ) );
+        ScanReport report = collection.getScanReport();
+        Assertions.assertEquals(8, report.getFiles() );
+        Assertions.assertEquals(3, report.getFolders() );
+        Assertions.assertTrue(report.getFailures().isEmpty(), report.getErrors().toString() );
+        Map<Path, Integer> attempts = new ConcurrentHashMap<>();
+        report.getErrors().forEach( (e) -> attempts.put(e.getPath(), e.getAttempts() ) );
+        Assertions.assertEquals(Map.of(tmpDir.resolve("dir0"), 2, tmpDir.resolve("movie0.mp4"), 3), attempts);
+        Assertions.assertEquals(ScanReport.Operation.LIST, report.getErrors().stream()
+                .filter( (e) -> e.getPath().endsWith("dir0") ).findFirst().get().getOperation() );
+    }
+
+    @Test
+    @DisplayName("scan - persistent and permanent errors are reported, the rest of the tree is recorded")
+    void failures() {
+        MovieCollection collection = scan(failing(tmpDir.resolve("dir0"), 5, new IOException("Input/output error") ),
+                failing(tmpDir.resolve("junk0.nfo"), 5, new AccessDeniedException("junk0.nfo") ) );
+        Assertions.assertFalse(collection.containsFolder(tmpDir.resolve("dir0") ) );
+        Assertions.assertFalse(collection.containsFile(tmpDir.resolve("junk0.nfo") ) );
+        Assertions.assertTrue(collection.containsFile(tmpDir.resolve("movie0.mp4") ) );
+        List<ScanReport.ScanError> failures = collection.getScanReport().getFailures();
+        Assertions.assertEquals(2, failures.size() );
+        Map<Path, Integer> attempts = new ConcurrentHashMap<>();
+        failures.forEach( (e) -> attempts.put(e.getPath(), e.getAttempts() ) );
+        Assertions.assertEquals(Map.of(tmpDir.resolve("dir0"), 3, tmpDir.resolve("junk0.nfo"), 1), attempts);
+    }
+
+    @Test
+    @DisplayName("scan - a root which can't be listed is an error")
+    void root() {
+        Assertions.assertThrows(IllegalArgumentException.class, () ->
+                scan(failing(tmpDir, 5, new IOException("Input/output error") ) ) );
+    }
+
+    @Test
+    @DisplayName("backoff - doubles from the initial backoff, up to a cap")
+    void backoff() {
+        RetryLane lane = new RetryLane(10, Duration.ofMillis(100) );
+        Assertions.assertEquals(TimeUnit.MILLISECONDS.toNanos(100), lane.backoffNanos(1) );
+        Assertions.assertEquals(TimeUnit.MILLISECONDS.toNanos(400), lane.backoffNanos(3) );
+        Assertions.assertEquals(TimeUnit.SECONDS.toNanos(5), lane.backoffNanos(9) );
+        Assertions.assertTrue(RetryLane.isTransient(new IOException("Input/output error") ) );
+        Assertions.assertFalse(RetryLane.isTransient(new AccessDeniedException("x") ) );
+        Assertions.assertFalse(lane.schedule(10, () -> { }) );
+    }
+
+    @Test
+    @DisplayName("awaitAndClose - waits for retries scheduled by retries")
+    void await() throws InterruptedException {
+        RetryLane lane = new RetryLane(3, Duration.ofMillis(1) );
+        Set<Integer> ran = ConcurrentHashMap.newKeySet();
+        lane.schedule(1, () -> {
+            ran.add(2);
+            lane.schedule(2, () -> ran.add(3) );
+        });
+        lane.awaitAndClose();
+        Assertions.assertEquals(Set.of(2, 3), ran);
+        Assertions.assertFalse(lane.schedule(1, () -> { }) );
+    }
+}
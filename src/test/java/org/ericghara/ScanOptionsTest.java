@@ -0,0 +1,98 @@
+package org.ericghara;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+
+@DisplayName("ScanOptionsTest - pruning and filters")
+public class ScanOptionsTest {
+
+    @TempDir
+    Path tmpDir;
+
+    @BeforeEach
+    void setup() {
+        new TestMovieDir("pruning.csv", tmpDir);
+    }
+
+    private MovieCollection scan(ScanOptions options) {
+        return new MovieCollection(tmpDir.toString(), options);
+    }
+
+    @Test
+    @DisplayName("defaults - everything is scanned")
+    void defaults() {
+        ScanReport report = scan(ScanOptions.defaults() ).getScanReport();
+        Assertions.assertEquals(9, report.getFolders() );
+        Assertions.assertEquals(8, report.getFiles() );
+        Assertions.assertEquals(0, report.getSkippedFiles() );
+        Assertions.assertTrue(report.getPrunedFolders().isEmpty() );
+    }
+
+    @Test
+    @DisplayName("exclude - matching folders are pruned with their subtrees")
+    void exclude() {
+        MovieCollection collection = scan(ScanOptions.defaults().exclude(".git", "@eaDir", "Sample") );
+        ScanReport report = collection.getScanReport();
+        Assertions.assertEquals(Map.of(tmpDir.resolve(".git"), ScanReport.PruneReason.EXCLUDED,
+                                       tmpDir.resolve("@eaDir"), ScanReport.PruneReason.EXCLUDED,
+                                       tmpDir.resolve("Movie (2001)/Sample"), ScanReport.PruneReason.EXCLUDED),
+                                report.getPrunedFolders() );
+        Assertions.assertEquals(5, report.getFiles() );
+        Assertions.assertFalse(collection.containsFolder(tmpDir.resolve(".git") ) );
+        Assertions.assertFalse(collection.containsFolder(tmpDir.resolve("Movie (2001)/Sample") ) );
+        Assertions.assertTrue(collection.containsFile(tmpDir.resolve("Movie (2001)/Extras/deep/deeper/extra.nfo") ) );
+    }
+
+    @Test
+    @DisplayName("exclude - a glob with a separator matches the path relative to the root")
+    void excludeRelativePath() {
+        ScanReport report = scan(ScanOptions.defaults().exclude("Movie (2001)/Extras") ).getScanReport();
+        Assertions.assertEquals(Set.of(tmpDir.resolve("Movie (2001)/Extras") ), report.getPrunedFolders().keySet() );
+        Assertions.assertEquals(6, report.getFolders() );
+    }
+
+    @Test
+    @DisplayName("skipHiddenFolders - dot folders are pruned")
+    void skipHidden() {
+        ScanReport report = scan(ScanOptions.defaults().skipHiddenFolders(true) ).getScanReport();
+        Assertions.assertEquals(Map.of(tmpDir.resolve(".git"), ScanReport.PruneReason.HIDDEN),
+                                report.getPrunedFolders() );
+        Assertions.assertEquals(7, report.getFolders() );
+    }
+
+    @Test
+    @DisplayName("maxDepth - folders below the depth are pruned")
+    void maxDepth() {
+        MovieCollection collection = scan(ScanOptions.defaults().maxDepth(1) );
+        ScanReport report = collection.getScanReport();
+        Assertions.assertEquals(Map.of(ScanReport.PruneReason.MAX_DEPTH, 3), report.prunedByReason() );
+        Assertions.assertEquals(4, report.getFolders() );
+        Assertions.assertTrue(collection.containsFile(tmpDir.resolve("Movie (2001)/movie1.srt") ) );
+        Assertions.assertEquals(1, scan(ScanOptions.defaults().maxDepth(0) ).getScanReport().getFolders() );
+    }
+
+    @Test
+    @DisplayName("include - only matching files are recorded")
+    void include() {
+        MovieCollection collection = scan(ScanOptions.defaults().include("*.mkv", "*.srt").exclude("sample*") );
+        ScanReport report = collection.getScanReport();
+        Assertions.assertEquals(3, report.getFiles() );
+        Assertions.assertEquals(5, report.getSkippedFiles() );
+        Assertions.assertFalse(collection.containsFile(tmpDir.resolve("junk0.part") ) );
+        Assertions.assertTrue(collection.containsFolder(tmpDir.resolve("Movie (2001)/Sample") ) );
+    }
+
+    @Test
+    @DisplayName("invalid options are rejected")
+    void invalid() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ScanOptions.defaults().exclude("[") );
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ScanOptions.defaults().maxDepth(-1) );
+    }
+}
@@ -0,0 +1,132 @@
+package org.ericghara;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+@DisplayName("ScanThrottleTest")
+public class ScanThrottleTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    @DisplayName("reserve - permits beyond the burst wait for the refill")
+    void reserve() {
+        AtomicLong clock = new AtomicLong(1_000 * MS);
+        ScanThrottle throttle = new ScanThrottle(10, Duration.ofMillis(10), clock::get);
+        Assertions.assertEquals(0L, throttle.reserve() ); // a burst of one permit at 10/s
+        Assertions.assertEquals(100 * MS, throttle.reserve() );
+        Assertions.assertEquals(200 * MS, throttle.reserve() );
+        clock.addAndGet(300 * MS); // repays the two borrowed permits and refills the burst
+        Assertions.assertEquals(0L, throttle.reserve() );
+        Assertions.assertEquals(100 * MS, throttle.reserve() );
+    }
+
+    @Test
+    @DisplayName("observe - the rate halves on high latency and recovers additively")
+    void observe() {
+        AtomicLong clock = new AtomicLong(0);
+        ScanThrottle throttle = new ScanThrottle(160, Duration.ofMillis(10), clock::get);
+        throttle.observe(50 * MS); // within the adjust interval, no change
+        Assertions.assertEquals(160, throttle.getRate() );
+        for (double expected : new double[] {80, 40, 20, 10, 10}) {
+            clock.addAndGet(300 * MS);
+            throttle.observe(50 * MS);
+            Assertions.assertEquals(expected, throttle.getRate() );
+        }
+        for (int i = 0; i < 20; i++) { // the average latency drops under the target
+            throttle.observe(MS);
+        }
+        clock.addAndGet(300 * MS);
+        throttle.observe(MS);
+        Assertions.assertEquals(18, throttle.getRate() );
+        for (int i = 0; i < 30; i++) {
+            clock.addAndGet(300 * MS);
+            throttle.observe(MS);
+        }
+        Assertions.assertEquals(160, throttle.getRate() );
+    }
+
+    @Test
+    @DisplayName("acquire - limits the rate of operations")
+    void acquire() {
+        ScanThrottle throttle = new ScanThrottle(200, Duration.ofSeconds(1) );
+        long start = System.nanoTime();
+        for (int i = 0; i < 60; i++) {
+            throttle.acquire();
+        }
+        // 20 permits of burst, then 40 at 200/s
+        Assertions.assertTrue(System.nanoTime() - start >= 180 * MS);
+    }
+
+    @Test
+    @DisplayName("a throttled scan finds the same files")
+    void throttledScan(@TempDir Path tmpDir) {
+        new TestMovieDir("Example.csv", tmpDir);
+        ScanReport full = new MovieCollection(tmpDir.toString() ).getScanReport();
+        ScanReport throttled = new MovieCollection(tmpDir.toString(),
+                ScanOptions.defaults().throttle(500, Duration.ofMillis(50) ) ).getScanReport();
+        Assertions.assertEquals(full.getFolders(), throttled.getFolders() );
+        Assertions.assertEquals(full.getFiles(), throttled.getFiles() );
+    }
+
+    @Test
+    @DisplayName("a scan takes one permit per listing, stat and access check, only the latter two are reported")
+    void permitsPerOperation(@TempDir Path tmpDir) {
+        new TestMovieDir("Example.csv", tmpDir);
+        AtomicInteger permits = new AtomicInteger();
+        AtomicInteger observed = new AtomicInteger();
+        ScanThrottle counting = new ScanThrottle(1_000_000, Duration.ofSeconds(1) ) {
+            @Override
+            synchronized long reserve() {
+                permits.incrementAndGet();
+                return super.reserve();
+            }
+
+            @Override
+            synchronized void observe(long latencyNanos) {
+                observed.incrementAndGet();
+                super.observe(latencyNanos);
+            }
+        };
+        new MovieCollection(tmpDir.toString(), ScanOptions.defaults().throttle(counting) );
+        // 3 folders listed, 11 stats: the root and the 10 entries below it, 8 access checks: one per file
+        Assertions.assertEquals(22, permits.get() );
+        Assertions.assertEquals(19, observed.get() ); // the listings' latencies are left out
+    }
+
+    @Test
+    @DisplayName("a throttled scan runs at the configured rate")
+    void effectiveRate(@TempDir Path tmpDir) throws IOException {
+        final int files = 400;
+        final double rate = 2_000;
+        for (int i = 0; i < files; i++) {
+            Files.createFile(tmpDir.resolve("file" + i + ".nfo") );
+        }
+        new MovieCollection(tmpDir.toString() ); // warm up
+        long start = System.nanoTime();
+        new MovieCollection(tmpDir.toString(), ScanOptions.defaults().throttle(rate, Duration.ofSeconds(1) ) );
+        double seconds = (System.nanoTime() - start) / 1e9;
+        // 802 operations: the root's stat and listing, and a stat and access check per file, the first 200 are the
+        // burst
+        double expected = (2 * files + 2 - rate * 0.1) / rate;
+        Assertions.assertTrue(seconds >= expected * 0.95, "took " + seconds + "s");
+        Assertions.assertTrue(seconds < expected * 2, "took " + seconds + "s, the effective rate is too low");
+    }
+
+    @Test
+    @DisplayName("invalid rates and targets are rejected")
+    void invalid() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new ScanThrottle(0, Duration.ofMillis(1) ) );
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new ScanThrottle(1, Duration.ZERO) );
+    }
+}
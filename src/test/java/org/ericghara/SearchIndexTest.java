@@ -0,0 +1,76 @@
+package org.ericghara;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.nio.file.Path;
+import java.util.List;
+
+@DisplayName("SearchIndexTest")
+public class SearchIndexTest {
+
+    @TempDir
+    Path tmpDir;
+    MovieCollection collection;
+    SearchIndex index;
+
+    @BeforeEach
+    void setup() {
+        new TestMovieDir("Example.csv", tmpDir);
+        collection = new MovieCollection(tmpDir.toString() );
+        index = new SearchIndex(collection);
+    }
+
+    @ParameterizedTest
+    @CsvSource({"abcd, abce, 1, true", "abcd, abcd, 0, true", "abcd, abdc, 1, false", "kitten, sitting, 2, false",
+                "kitten, sittin, 2, true"})
+    @DisplayName("withinEdits - bounded Levenshtein distance")
+    void withinEdits(String a, String b, int maxEdits, boolean expected) {
+        Assertions.assertEquals(expected, SearchIndex.withinEdits(a, b, maxEdits) );
+    }
+
+    @Test
+    @DisplayName("search - exact, prefix, fuzzy and multi-token queries")
+    void search() {
+        Assertions.assertEquals(10, index.size() ); // 8 files + dir0 + dir0/subs
+        List<Path> movie1 = index.search("MOVIE1", 10);
+        Assertions.assertEquals(tmpDir.resolve("dir0/movie1.mp4"), movie1.get(0) ); // exact ranks first
+        Assertions.assertEquals(3, movie1.size() ); // "movie0" and "movie" are within one edit
+        Assertions.assertEquals(List.of(tmpDir.resolve("dir0/movie right here.mp4") ),
+                index.search("movie here", 10) );
+        Assertions.assertEquals(List.of(tmpDir.resolve("dir0/movie right here.mp4") ),
+                index.search("rigt", 10) ); // fuzzy, one insertion
+        Assertions.assertEquals(List.of(tmpDir.resolve("dir0/subs/subsForMovie1.srt") ),
+                index.search("subsformovi", 10) ); // prefix
+        Assertions.assertEquals(List.of(tmpDir.resolve("dir0/subs/subsForMovie1.srt") ),
+                index.search("subsformvie1", 10) ); // fuzzy, one deletion
+        Assertions.assertEquals(List.of(tmpDir.resolve("dir0/subs") ), index.search("subs", 10).subList(0, 1) );
+        Assertions.assertEquals(List.of(), index.search("nothing here", 10) );
+        Assertions.assertEquals(3, index.search("movie", 3).size() );
+    }
+
+    @Test
+    @DisplayName("search - maintained as files and folders change")
+    void incremental() {
+        collection.moveFile(tmpDir.resolve("movie0.mp4"), tmpDir.resolve("dir0/Matrix.Reloaded.mp4") );
+        Assertions.assertFalse(index.search("movie0", 10).contains(tmpDir.resolve("movie0.mp4") ) );
+        Assertions.assertEquals(List.of(tmpDir.resolve("dir0/Matrix.Reloaded.mp4") ),
+                index.search("matrx reload", 10) );
+
+        collection.moveFolder(tmpDir.resolve("dir0"), tmpDir.resolve("Trilogy") );
+        Assertions.assertEquals(List.of(tmpDir.resolve("Trilogy/Matrix.Reloaded.mp4") ),
+                index.search("reloaded", 10) );
+        Assertions.assertEquals(List.of(tmpDir.resolve("Trilogy") ), index.search("trilogy", 10) );
+        Assertions.assertEquals(List.of(), index.search("dir0", 10) );
+
+        collection.deleteFile(tmpDir.resolve("Trilogy/subs/subsForMovie1.srt") );
+        collection.deleteFolder(tmpDir.resolve("Trilogy/subs") );
+        Assertions.assertEquals(List.of(), index.search("subsformovie1", 10) );
+        Assertions.assertEquals(8, index.size() );
+    }
+}
@@ -0,0 +1,77 @@
+package org.ericghara;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures the time from launching the application jar in a new JVM to the first line of output, which for a
+ * {@code <root> <query>} run is the scanned root folder.  Each configuration is launched several times and the
+ * median is reported: class data sharing off, the JDK's default archive, and the application archive produced by
+ * {@code gradle cdsArchive}.  Run with {@code gradle startupBenchmark [-PstartupBudgetMs=N]}; exits with status 1
+ * if the median with the application archive is over the budget.
+ * <p>
+ * Arguments: {@code <java executable> <jar> <archive> <budget ms> <application args...>}
+ */
+public class StartupBenchmark {
+
+    private static final int ROUNDS = 11;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 5) {
+            throw new IllegalArgumentException("Usage: <java executable> <jar> <archive> <budget ms> <args...>");
+        }
+        String java = args[0];
+        String jar = args[1];
+        String archive = args[2];
+        long budgetMs = Long.parseLong(args[3]);
+        List<String> appArgs = Arrays.asList(args).subList(4, args.length);
+
+        long off = median(java, "-Xshare:off", jar, appArgs);
+        long jdk = median(java, "-Xshare:auto", jar, appArgs);
+        long app = median(java, "-XX:SharedArchiveFile=" + archive, jar, appArgs);
+        System.out.printf("time to first result, no sharing:          %5d ms%n", off);
+        System.out.printf("time to first result, JDK archive:         %5d ms%n", jdk);
+        System.out.printf("time to first result, application archive: %5d ms (budget %d ms)%n", app, budgetMs);
+        if (app > budgetMs) {
+            System.err.println("Startup is over budget.");
+            System.exit(1);
+        }
+    }
+
+    private static long median(String java, String shareOption, String jar, List<String> appArgs)
+            throws IOException, InterruptedException {
+        long[] times = new long[ROUNDS];
+        for (int i = 0; i < ROUNDS; i++) {
+            times[i] = timeToFirstLine(java, shareOption, jar, appArgs);
+        }
+        Arrays.sort(times);
+        return times[ROUNDS / 2];
+    }
+
+    private static long timeToFirstLine(String java, String shareOption, String jar, List<String> appArgs)
+            throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(List.of(java, shareOption, "-jar", jar) );
+        command.addAll(appArgs);
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        long elapsed;
+        try (BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream(),
+                StandardCharsets.UTF_8) ) ) {
+            if (out.readLine() == null) {
+                throw new IllegalStateException("The application produced no output: " + command);
+            }
+            elapsed = System.nanoTime() - start;
+            out.transferTo(Writer.nullWriter() );
+        }
+        if (process.waitFor() != 0) {
+            throw new IllegalStateException("The application failed: " + command);
+        }
+        return elapsed / 1_000_000;
+    }
+}
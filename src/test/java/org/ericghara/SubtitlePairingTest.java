@@ -0,0 +1,68 @@
+package org.ericghara;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+@DisplayName("SubtitlePairingTest")
+public class SubtitlePairingTest {
+
+    @TempDir
+    Path tmpDir;
+    MovieCollection collection;
+    SubtitlePairing pairing;
+
+    @BeforeEach
+    void setup() {
+        new TestMovieDir("Example.csv", tmpDir);
+        collection = new MovieCollection(tmpDir.toString() );
+        pairing = new SubtitlePairing(collection);
+    }
+
+    @ParameterizedTest
+    @CsvSource({"Movie.2010.srt, movie 2010", "Movie.2010.en.forced.srt, movie 2010", "Movie_2010_ENG_SDH.srt, movie 2010",
+                "Movie 2010.mkv, movie 2010", "en.srt, en"})
+    @DisplayName("normalize - strips extension, language tags and flags")
+    void normalize(String filename, String expected) {
+        Assertions.assertEquals(expected, SubtitlePairing.normalize(Path.of(filename) ) );
+    }
+
+    @Test
+    @DisplayName("pairs - scanned tree, including a subs folder")
+    void scannedPairs() {
+        Assertions.assertEquals(List.of(tmpDir.resolve("sub0.srt") ),
+                pairing.subsFor(tmpDir.resolve("movie0.mp4") ) );  // only movie in the folder
+        Assertions.assertEquals(List.of(tmpDir.resolve("dir0/subs/subsForMovie1.srt") ),
+                pairing.subsFor(tmpDir.resolve("dir0/movie1.mp4") ) ); // name contains the movie's name
+        Assertions.assertEquals(List.of(), pairing.subsFor(tmpDir.resolve("dir0/movie right here.mp4") ) );
+        Assertions.assertEquals(2, pairing.pairs().size() );
+        Assertions.assertTrue(pairing.unpaired().isEmpty() );
+    }
+
+    @Test
+    @DisplayName("pairs - maintained as files and folders move")
+    void incremental() throws Exception {
+        collection.moveFile(tmpDir.resolve("sub0.srt"), tmpDir.resolve("dir0/movie right here.en.srt") );
+        Assertions.assertEquals(List.of(), pairing.subsFor(tmpDir.resolve("movie0.mp4") ) );
+        Assertions.assertEquals(List.of(tmpDir.resolve("dir0/movie right here.en.srt") ),
+                pairing.subsFor(tmpDir.resolve("dir0/movie right here.mp4") ) );
+
+        Files.createDirectory(tmpDir.resolve("subs") ); // created outside the collection, so add the record directly
+        collection.openFolder(tmpDir, "couldn't open root").addFolder(new MovieFolder(tmpDir.resolve("subs"), 1) );
+        collection.moveFolder(tmpDir.resolve("dir0/subs"), tmpDir.resolve("subs/subs") );
+        Assertions.assertEquals(List.of(tmpDir.resolve("subs/subs/subsForMovie1.srt") ),
+                pairing.subsFor(tmpDir.resolve("movie0.mp4") ) ); // now below root's subs folder
+        Assertions.assertEquals(List.of(), pairing.subsFor(tmpDir.resolve("dir0/movie1.mp4") ) );
+
+        collection.deleteFile(tmpDir.resolve("movie0.mp4") );
+        Assertions.assertEquals(List.of(tmpDir.resolve("subs/subs/subsForMovie1.srt") ), pairing.unpaired() );
+    }
+}